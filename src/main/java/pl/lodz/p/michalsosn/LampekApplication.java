@@ -1,23 +1,105 @@
 package pl.lodz.p.michalsosn;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.multipart.MultipartResolver;
 import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
+import pl.lodz.p.michalsosn.entities.DecodedResults;
+import pl.lodz.p.michalsosn.entities.ResultEntity.ImageResultEntity;
+import pl.lodz.p.michalsosn.entities.ResultPayload;
+import pl.lodz.p.michalsosn.io.ImageEncoding;
+import pl.lodz.p.michalsosn.io.FilePayloadStore;
+import pl.lodz.p.michalsosn.service.OperationScheduler;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
-@EnableAsync
 @SpringBootApplication
+@EnableScheduling
 public class LampekApplication {
 
+    @Value("${lampek.image.tile-size:" + TiledEvaluator.DEFAULT_TILE_SIZE + "}")
+    private int imageTileSize;
+
+    @Value("${lampek.image.parallelism:0}")
+    private int imageParallelism;
+
+    @Value("${lampek.image.operation-parallelism:0}")
+    private int imageOperationParallelism;
+
+    @Value("${lampek.image.result-encoding:FAST}")
+    private ImageEncoding imageResultEncoding;
+
+    @Value("${lampek.result.store-directory:}")
+    private String resultStoreDirectory;
+
+    @Value("${lampek.result.background-writes:false}")
+    private boolean resultBackgroundWrites;
+
+    @Value("${lampek.result.cache-size:" + DecodedResults.DEFAULT_CAPACITY + "}")
+    private long resultCacheSize;
+
+    @Value("${lampek.operation.workers:2}")
+    private int operationWorkers;
+
+    @Value("${lampek.operation.queue-size:100}")
+    private int operationQueueSize;
+
+    private FilePayloadStore resultStore;
+
     public static void main(String[] args) {
         SpringApplication.run(LampekApplication.class, args);
     }
 
+    @PostConstruct
+    public void configureImageEvaluation() {
+        TiledEvaluator.configure(imageTileSize, imageThreads());
+        ImageResultEntity.configureEncoding(imageResultEncoding);
+    }
+
+    @PostConstruct
+    public void configureResultStore() throws IOException {
+        if (!resultStoreDirectory.isEmpty()) {
+            resultStore = new FilePayloadStore(Paths.get(resultStoreDirectory),
+                                               resultBackgroundWrites);
+            ResultPayload.configureStore(resultStore);
+        }
+    }
+
+    @PreDestroy
+    public void closeResultStore() throws IOException {
+        if (resultStore != null) {
+            resultStore.close();
+        }
+    }
+
+    @PostConstruct
+    public void configureDecodedResults() {
+        DecodedResults.configure(resultCacheSize);
+    }
+
+    @Bean(destroyMethod = "close")
+    public OperationScheduler operationScheduler() {
+        int operationParallelism = imageOperationParallelism > 0
+                ? imageOperationParallelism
+                : Math.max(1, imageThreads() / operationWorkers);
+        return new OperationScheduler(operationWorkers, operationQueueSize,
+                                      operationParallelism);
+    }
+
+    private int imageThreads() {
+        return imageParallelism > 0 ? imageParallelism
+                : Runtime.getRuntime().availableProcessors();
+    }
+
     @Bean
     public MultipartResolver multipartResolver() {
         return new StandardServletMultipartResolver() {
@@ -1,19 +1,32 @@
 package pl.lodz.p.michalsosn.domain.complex;
 
 import pl.lodz.p.michalsosn.domain.util.MathUtils;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.IntStream;
 
 /**
  * @author Michał Sośnicki
  */
 public final class Fourier {
+
+    private static final int PARALLEL_THRESHOLD = 64;
+    private static final int COLUMN_STRIPE = 64;
+
+    private static final ConcurrentMap<Integer, Twiddles> FORWARD_TWIDDLES
+            = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Integer, Twiddles> INVERSE_TWIDDLES
+            = new ConcurrentHashMap<>();
+
     private Fourier() {
     }
 
     public static void fft(Complex[] row, Complex[] kernel, boolean normalize) {
         final int length = row.length;
         final int recDepth = MathUtils.log2(length);
+        final TaskContext context = TaskContext.current();
 
         for (int i = 0; i < length; ++i) {
             int rev = MathUtils.reverseBits(i, recDepth);
@@ -29,6 +42,7 @@ public final class Fourier {
         int width = 1;
         int kernelStep = length;
         for (int depth = 0; depth < recDepth; ++depth) {
+            context.checkpoint();
             half = width;
             width <<= 1;
             kernelStep >>= 1;
@@ -54,6 +68,245 @@ public final class Fourier {
         }
     }
 
+    /**
+     * In-place radix-2 transform of a row split into real and imaginary
+     * parts. Gives the same values as {@link #fft(Complex[], Complex[],
+     * boolean)} with a {@code fourierBasis(n, n / 2)} or
+     * {@code inverseBasis(n, n / 2)} kernel, without allocating.
+     */
+    public static void fft(double[] re, double[] im,
+                           boolean inverse, boolean normalize) {
+        final int length = re.length;
+        if (im.length != length) {
+            throw new IllegalArgumentException(
+                    "Real and imaginary parts must have equal lengths"
+            );
+        }
+        if (!MathUtils.isPowerOfTwo(length)) {
+            throw new IllegalArgumentException(
+                    "Length not a power of two but " + length
+            );
+        }
+        fft(re, im, twiddles(length, inverse), normalize, TaskContext.current());
+    }
+
+    /**
+     * In-place transform of a matrix split into real and imaginary parts,
+     * first along the rows and then along the columns. Large matrices are
+     * processed in parallel. Row arrays may be swapped between indices.
+     */
+    public static void fft2d(double[][] re, double[][] im,
+                             boolean inverse, boolean normalize) {
+        final int height = re.length;
+        if (height == 0) {
+            return;
+        }
+        final int width = re[0].length;
+        if (im.length != height) {
+            throw new IllegalArgumentException(
+                    "Real and imaginary parts must have equal sizes"
+            );
+        }
+        for (int y = 0; y < height; y++) {
+            if (re[y].length != width || im[y].length != width) {
+                throw new IllegalArgumentException(
+                        "Rows must have equal lengths"
+                );
+            }
+        }
+        if (!MathUtils.isPowerOfTwo(height)) {
+            throw new IllegalArgumentException(
+                    "Height not a power of two but " + height
+            );
+        }
+        if (!MathUtils.isPowerOfTwo(width)) {
+            throw new IllegalArgumentException(
+                    "Width not a power of two but " + width
+            );
+        }
+
+        // the rows and stripes are run by the common pool, which doesn't
+        // know the context of the caller
+        final TaskContext context = TaskContext.current();
+        final Twiddles rowTwiddles = twiddles(width, inverse);
+        rangeOf(height, height).forEach(y ->
+                fft(re[y], im[y], rowTwiddles, normalize, context)
+        );
+
+        final Twiddles colTwiddles = twiddles(height, inverse);
+        final int recDepth = MathUtils.log2(height);
+        for (int y = 0; y < height; ++y) {
+            int rev = MathUtils.reverseBits(y, recDepth);
+            if (rev < y) {
+                double[] temp = re[y];
+                re[y] = re[rev];
+                re[rev] = temp;
+                temp = im[y];
+                im[y] = im[rev];
+                im[rev] = temp;
+            }
+        }
+        final int stripes = (width + COLUMN_STRIPE - 1) / COLUMN_STRIPE;
+        rangeOf(stripes, width).forEach(stripe -> {
+            int from = stripe * COLUMN_STRIPE;
+            int to = Math.min(width, from + COLUMN_STRIPE);
+            fftColumns(re, im, from, to, colTwiddles, normalize, context);
+        });
+    }
+
+    /**
+     * Runs the butterflies of {@link #fft(double[], double[], Twiddles,
+     * boolean, TaskContext)} down the columns {@code from} to {@code to},
+     * on whole row segments at once. Rows must already be in bit-reversed
+     * order.
+     */
+    private static void fftColumns(double[][] re, double[][] im,
+                                   int from, int to,
+                                   Twiddles twiddles, boolean normalize,
+                                   TaskContext context) {
+        final int length = re.length;
+        final int recDepth = MathUtils.log2(length);
+        final double[] cos = twiddles.cos;
+        final double[] sin = twiddles.sin;
+
+        int half;
+        int width = 1;
+        int kernelStep = length;
+        for (int depth = 0; depth < recDepth; ++depth) {
+            context.checkpoint();
+            half = width;
+            width <<= 1;
+            kernelStep >>= 1;
+            for (int offset = 0; offset < length; offset += width) {
+                int halfOffset = offset + half;
+                for (int i = 1; i < half; ++i) {
+                    double kRe = cos[i * kernelStep];
+                    double kIm = sin[i * kernelStep];
+                    double[] rowRe = re[i + halfOffset];
+                    double[] rowIm = im[i + halfOffset];
+                    for (int x = from; x < to; ++x) {
+                        double vRe = rowRe[x];
+                        double vIm = rowIm[x];
+                        rowRe[x] = kRe * vRe - kIm * vIm;
+                        rowIm[x] = kRe * vIm + kIm * vRe;
+                    }
+                }
+                for (int i = offset; i < halfOffset; ++i) {
+                    double[] firstRe = re[i];
+                    double[] firstIm = im[i];
+                    double[] secondRe = re[i + half];
+                    double[] secondIm = im[i + half];
+                    for (int x = from; x < to; ++x) {
+                        double sumRe = firstRe[x] + secondRe[x];
+                        double sumIm = firstIm[x] + secondIm[x];
+                        secondRe[x] = firstRe[x] - secondRe[x];
+                        secondIm[x] = firstIm[x] - secondIm[x];
+                        firstRe[x] = sumRe;
+                        firstIm[x] = sumIm;
+                    }
+                }
+            }
+        }
+
+        if (normalize) {
+            final double scale = 1.0 / length;
+            for (int y = 0; y < length; ++y) {
+                for (int x = from; x < to; ++x) {
+                    re[y][x] *= scale;
+                    im[y][x] *= scale;
+                }
+            }
+        }
+    }
+
+    private static IntStream rangeOf(int count, int lines) {
+        IntStream range = IntStream.range(0, count);
+        return lines >= PARALLEL_THRESHOLD ? range.parallel() : range;
+    }
+
+    private static void fft(double[] re, double[] im,
+                            Twiddles twiddles, boolean normalize,
+                            TaskContext context) {
+        final int length = re.length;
+        final int recDepth = MathUtils.log2(length);
+        final double[] cos = twiddles.cos;
+        final double[] sin = twiddles.sin;
+
+        for (int i = 0; i < length; ++i) {
+            int rev = MathUtils.reverseBits(i, recDepth);
+            if (rev < i) {
+                double temp = re[i];
+                re[i] = re[rev];
+                re[rev] = temp;
+                temp = im[i];
+                im[i] = im[rev];
+                im[rev] = temp;
+            }
+        }
+
+        int half;
+        int width = 1;
+        int kernelStep = length;
+        for (int depth = 0; depth < recDepth; ++depth) {
+            context.checkpoint();
+            half = width;
+            width <<= 1;
+            kernelStep >>= 1;
+            for (int offset = 0; offset < length; offset += width) {
+                int halfOffset = offset + half;
+                for (int i = 1; i < half; ++i) {
+                    int j = i + halfOffset;
+                    double kRe = cos[i * kernelStep];
+                    double kIm = sin[i * kernelStep];
+                    double vRe = re[j];
+                    double vIm = im[j];
+                    re[j] = kRe * vRe - kIm * vIm;
+                    im[j] = kRe * vIm + kIm * vRe;
+                }
+                for (int i = offset; i < halfOffset; ++i) {
+                    int j = i + half;
+                    double sumRe = re[i] + re[j];
+                    double sumIm = im[i] + im[j];
+                    re[j] = re[i] - re[j];
+                    im[j] = im[i] - im[j];
+                    re[i] = sumRe;
+                    im[i] = sumIm;
+                }
+            }
+        }
+
+        if (normalize) {
+            final double scale = 1.0 / length;
+            for (int i = 0; i < length; ++i) {
+                re[i] *= scale;
+                im[i] *= scale;
+            }
+        }
+    }
+
+    private static Twiddles twiddles(int length, boolean inverse) {
+        ConcurrentMap<Integer, Twiddles> cache
+                = inverse ? INVERSE_TWIDDLES : FORWARD_TWIDDLES;
+        return cache.computeIfAbsent(length, n -> new Twiddles(n, inverse));
+    }
+
+    private static final class Twiddles {
+        private final double[] cos;
+        private final double[] sin;
+
+        private Twiddles(int basicPeriod, boolean inverse) {
+            int size = basicPeriod / 2;
+            double sign = inverse ? 1.0 : -1.0;
+            cos = new double[size];
+            sin = new double[size];
+            for (int kn = 0; kn < size; kn++) {
+                double phase = sign * kn * 2 * Math.PI / basicPeriod;
+                cos[kn] = Math.cos(phase);
+                sin[kn] = Math.sin(phase);
+            }
+        }
+    }
+
     public static Complex[] fourierBasis(int basicPeriod) {
         return fourierBasis(basicPeriod, basicPeriod);
     }
@@ -77,19 +77,22 @@ public final class BufferChannel implements Channel {
         System.arraycopy(values[y], 0, buffer, dest, values[y].length);
     }
 
+    /**
+     * Computes the values of a new channel tile by tile
+     * with the shared {@link TiledEvaluator}.
+     */
+    public static BufferChannel construct(int height, int width,
+                                          IntBinaryOperator valueFunction) {
+        return new BufferChannel(
+                TiledEvaluator.shared().evaluate(height, width, valueFunction)
+        );
+    }
+
     @Override
     public BufferChannel map(IntUnaryOperator valueMapper) {
-        int height = getHeight();
-        int width = getWidth();
-
-        int[][] newValues = new int[height][width];
-
-        for (int y = 0; y < height; ++y) {
-            final int cY = y;
-            Arrays.setAll(newValues[y], x -> valueMapper.applyAsInt(values[cY][x]));
-        }
-
-        return new BufferChannel(newValues);
+        return construct(getHeight(), getWidth(), (y, x) ->
+                valueMapper.applyAsInt(values[y][x])
+        );
     }
 
     @Override
@@ -105,13 +108,7 @@ public final class BufferChannel implements Channel {
     @Override
     public Channel constructSimilar(int height, int width,
                                     IntBinaryOperator valueFunction) {
-        int[][] newValues = new int[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                newValues[y][x] = valueFunction.applyAsInt(y, x);
-            }
-        }
-        return new BufferChannel(newValues);
+        return construct(height, width, valueFunction);
     }
 
     @Override
@@ -124,6 +121,9 @@ public final class BufferChannel implements Channel {
         if (this == o) {
             return true;
         }
+        if (o instanceof PackedChannel) {
+            return PackedChannel.valuesEqual(this, (PackedChannel) o);
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
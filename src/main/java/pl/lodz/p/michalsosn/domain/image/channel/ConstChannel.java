@@ -75,13 +75,7 @@ public final class ConstChannel implements Channel {
     @Override
     public Channel constructSimilar(int height, int width,
                                     IntBinaryOperator valueFunction) {
-        int[][] newValues = new int[height][width];
-        for (int y = 0; y < height; ++y) {
-            for (int x = 0; x < width; ++x) {
-                newValues[y][x] = valueFunction.applyAsInt(y, x);
-            }
-        }
-        return new BufferChannel(newValues);
+        return BufferChannel.construct(height, width, valueFunction);
     }
 
     @Override
@@ -0,0 +1,256 @@
+package pl.lodz.p.michalsosn.domain.image.channel;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * A color channel with values from 0 to 255 packed into one byte array,
+ * a byte per pixel, rows following each other every {@code stride} bytes.
+ * Objects of this class are immutable, so crops share the array of the
+ * channel they were taken from.
+ * Strict channels with equal values are equal, whether they are packed
+ * or stored in a {@link BufferChannel}.
+ * @author Michał Sośnicki
+ */
+public final class PackedChannel implements Channel {
+
+    private static final int MAX_PACKED = 0xff;
+
+    private final byte[] values;
+    private final int offset;
+    private final int stride;
+    private final int height;
+    private final int width;
+
+    /**
+     * Creates the Channel from unsigned pixel values stored row by row.
+     * The array is not copied for efficiency, so do it if it's possible
+     * that it changes afterwards.
+     * @param height Number of rows.
+     * @param width Number of pixels in a row.
+     * @param values An array of {@code height * width} values.
+     */
+    public PackedChannel(int height, int width, byte[] values) {
+        this(values, 0, width, height, width);
+        if (height < 0 || width < 0) {
+            throw new IllegalArgumentException("Size can't be negative");
+        }
+        if (values.length != height * width) {
+            throw new IllegalArgumentException(
+                    "Expected " + height * width + " values but got "
+                    + values.length
+            );
+        }
+    }
+
+    private PackedChannel(byte[] values, int offset, int stride,
+                          int height, int width) {
+        this.values = values;
+        this.offset = offset;
+        this.stride = stride;
+        this.height = height;
+        this.width = width;
+    }
+
+    /**
+     * Computes the values of a new channel tile by tile with the shared
+     * {@link TiledEvaluator}. They are packed as long as all of them fit
+     * in a byte, otherwise the function is evaluated again into
+     * a {@link BufferChannel}.
+     */
+    public static Channel construct(int height, int width,
+                                    IntBinaryOperator valueFunction) {
+        byte[] newValues = new byte[height * width];
+        AtomicBoolean overflow = new AtomicBoolean(false);
+        TiledEvaluator.shared().forEachTile(height, width,
+                (fromY, toY, fromX, toX) -> {
+            for (int y = fromY; y < toY && !overflow.get(); y++) {
+                int rowStart = y * width;
+                for (int x = fromX; x < toX; x++) {
+                    int value = valueFunction.applyAsInt(y, x);
+                    if (value < 0 || value > MAX_PACKED) {
+                        overflow.set(true);
+                        return;
+                    }
+                    newValues[rowStart + x] = (byte) value;
+                }
+            }
+        });
+        if (overflow.get()) {
+            return BufferChannel.construct(height, width, valueFunction);
+        }
+        return new PackedChannel(height, width, newValues);
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getValue(int y, int x) {
+        return values[offset + y * stride + x] & MAX_PACKED;
+    }
+
+    @Override
+    public IntStream values() {
+        return IntStream.range(0, height).flatMap(y -> {
+            int rowStart = offset + y * stride;
+            return IntStream.range(rowStart, rowStart + width)
+                    .map(i -> values[i] & MAX_PACKED);
+        });
+    }
+
+    @Override
+    public int[][] copyValues() {
+        int[][] newValues = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            copyTo(y, newValues[y], 0);
+        }
+        return newValues;
+    }
+
+    @Override
+    public void copyTo(int y, int[] buffer, int dest) {
+        int rowStart = offset + y * stride;
+        for (int x = 0; x < width; x++) {
+            buffer[dest + x] = values[rowStart + x] & MAX_PACKED;
+        }
+    }
+
+    /**
+     * Copies the row without widening the values to ints.
+     */
+    public void copyTo(int y, byte[] buffer, int dest) {
+        System.arraycopy(values, offset + y * stride, buffer, dest, width);
+    }
+
+    /**
+     * Returns a view of a rectangular part of this channel.
+     */
+    public PackedChannel crop(int top, int left,
+                              int cropHeight, int cropWidth) {
+        if (top < 0 || left < 0 || cropHeight < 0 || cropWidth < 0
+                || top + cropHeight > height || left + cropWidth > width) {
+            throw new IllegalArgumentException(
+                    "Crop exceeds the channel of size " + height + "x" + width
+            );
+        }
+        return new PackedChannel(
+                values, offset + top * stride + left, stride,
+                cropHeight, cropWidth
+        );
+    }
+
+    @Override
+    public Channel map(IntUnaryOperator valueMapper) {
+        if (valueMapper instanceof ValueLut) {
+            return map((ValueLut) valueMapper);
+        }
+        return construct(height, width, (y, x) ->
+                valueMapper.applyAsInt(getValue(y, x))
+        );
+    }
+
+    /**
+     * Maps the bytes of the channel row by row through the table, without
+     * widening them to ints.
+     */
+    public PackedChannel map(ValueLut lut) {
+        byte[] newValues = new byte[height * width];
+        TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+            for (int y = fromY; y < toY; y++) {
+                lut.mapBytes(values, offset + y * stride,
+                             newValues, y * width, width);
+            }
+        });
+        return new PackedChannel(height, width, newValues);
+    }
+
+    @Override
+    public LazyChannel toLazy() {
+        return new LazyChannel(height, width, this::getValue);
+    }
+
+    @Override
+    public PackedChannel toStrict() {
+        return this;
+    }
+
+    @Override
+    public Channel constructSimilar(int height, int width,
+                                    IntBinaryOperator valueFunction) {
+        return construct(height, width, valueFunction);
+    }
+
+    @Override
+    public Channel constructConst(int height, int width, int value) {
+        return new ConstChannel(height, width, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedChannel || o instanceof BufferChannel)) {
+            return false;
+        }
+        return valuesEqual(this, (Channel) o);
+    }
+
+    @Override
+    public int hashCode() {
+        return valuesHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return "PackedChannel{"
+             + "height=" + height
+             + ", width=" + width
+             + ", values=" + Arrays.toString(Arrays.copyOfRange(
+                     values, offset, Math.min(values.length, offset + 10)))
+             + '}';
+    }
+
+    static boolean valuesEqual(Channel first, Channel second) {
+        if (!first.isEqualSize(second)) {
+            return false;
+        }
+        int height = first.getHeight();
+        int width = first.getWidth();
+        int[] firstRow = new int[width];
+        int[] secondRow = new int[width];
+        for (int y = 0; y < height; y++) {
+            first.copyTo(y, firstRow, 0);
+            second.copyTo(y, secondRow, 0);
+            if (!Arrays.equals(firstRow, secondRow)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link Arrays#deepHashCode(Object[])} of the values.
+     */
+    static int valuesHashCode(Channel channel) {
+        int height = channel.getHeight();
+        int[] row = new int[channel.getWidth()];
+        int result = 1;
+        for (int y = 0; y < height; y++) {
+            channel.copyTo(y, row, 0);
+            result = 31 * result + Arrays.hashCode(row);
+        }
+        return result;
+    }
+}
@@ -68,11 +68,13 @@ public final class RgbImage implements Image {
 
     @Override
     public Image map(UnaryOperator<Channel> channelMapper) {
-        Channel newRed = channelMapper.apply(red);
-        Channel newGreen = channelMapper.apply(green);
-        Channel newBlue = channelMapper.apply(blue);
+        List<Channel> newChannels = TiledEvaluator.shared().mapAll(
+                Arrays.asList(red, green, blue), channelMapper
+        );
 
-        return new RgbImage(newRed, newGreen, newBlue);
+        return new RgbImage(
+                newChannels.get(0), newChannels.get(1), newChannels.get(2)
+        );
     }
 
     @Override
@@ -0,0 +1,221 @@
+package pl.lodz.p.michalsosn.domain.image.channel;
+
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits a 2d area into square tiles and processes them on a bounded
+ * fork-join pool. Every operation uses at most {@code parallelism}
+ * workers which take tiles one after another, so a cheap operation
+ * doesn't flood the pool with tasks and an expensive one can be capped
+ * with {@link #withParallelism(int)}. The shared evaluator is capped by
+ * the parallelism of the {@link TaskContext} of the caller, so tasks
+ * running at once split the pool between them.
+ * Operations started from inside the pool join their tiles with work
+ * stealing, so they can be nested.
+ * Tiles are processed in the {@link TaskContext} of the caller, which is
+ * checked for cancellation before every tile and row, and operations
+ * started from outside the pool report the share of finished tiles to it.
+ * Objects of this class are immutable.
+ * @author Michał Sośnicki
+ */
+public final class TiledEvaluator {
+
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    private static volatile TiledEvaluator shared = new TiledEvaluator(
+            DEFAULT_TILE_SIZE, Runtime.getRuntime().availableProcessors()
+    );
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final int parallelism;
+
+    private TiledEvaluator(ForkJoinPool pool, int tileSize, int parallelism) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Tile size must be positive but is " + tileSize
+            );
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "Parallelism must be positive but is " + parallelism
+            );
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+        this.parallelism = parallelism;
+    }
+
+    public TiledEvaluator(int tileSize, int parallelism) {
+        this(new ForkJoinPool(Math.max(1, parallelism)), tileSize, parallelism);
+    }
+
+    /**
+     * The configured evaluator, using at most as many workers as the task
+     * of the calling thread may.
+     */
+    public static TiledEvaluator shared() {
+        final TiledEvaluator evaluator = shared;
+        final int cap = TaskContext.current().getParallelism();
+        return cap > 0 && cap < evaluator.parallelism
+             ? evaluator.withParallelism(cap) : evaluator;
+    }
+
+    /**
+     * Replaces the evaluator used by the channels and transforms.
+     * The pool of the previous one finishes its work and shuts down.
+     */
+    public static synchronized void configure(int tileSize, int parallelism) {
+        TiledEvaluator previous = shared;
+        shared = new TiledEvaluator(tileSize, parallelism);
+        previous.pool.shutdown();
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public TiledEvaluator withTileSize(int newTileSize) {
+        return new TiledEvaluator(pool, newTileSize, parallelism);
+    }
+
+    /**
+     * Returns an evaluator sharing the pool but using at most
+     * {@code cap} workers per operation.
+     */
+    public TiledEvaluator withParallelism(int cap) {
+        return new TiledEvaluator(pool, tileSize, Math.min(parallelism, cap));
+    }
+
+    public int[][] evaluate(int height, int width,
+                            IntBinaryOperator valueFunction) {
+        int[][] values = new int[height][width];
+        forEachTile(height, width, (fromY, toY, fromX, toX) -> {
+            TaskContext context = TaskContext.current();
+            for (int y = fromY; y < toY; y++) {
+                context.checkpoint();
+                int[] row = values[y];
+                for (int x = fromX; x < toX; x++) {
+                    row[x] = valueFunction.applyAsInt(y, x);
+                }
+            }
+        });
+        return values;
+    }
+
+    public void forEachTile(int height, int width, TileConsumer consumer) {
+        if (height <= 0 || width <= 0) {
+            return;
+        }
+        int tilesY = (height + tileSize - 1) / tileSize;
+        int tilesX = (width + tileSize - 1) / tileSize;
+        run(tilesY * tilesX, tile -> {
+            int fromY = tile / tilesX * tileSize;
+            int fromX = tile % tilesX * tileSize;
+            consumer.accept(fromY, Math.min(height, fromY + tileSize),
+                            fromX, Math.min(width, fromX + tileSize));
+        });
+    }
+
+    /**
+     * Processes bands of whole rows, for algorithms that carry state
+     * along a row.
+     */
+    public void forEachBand(int height, BandConsumer consumer) {
+        if (height <= 0) {
+            return;
+        }
+        int bands = (height + tileSize - 1) / tileSize;
+        run(bands, band -> {
+            int fromY = band * tileSize;
+            consumer.accept(fromY, Math.min(height, fromY + tileSize));
+        });
+    }
+
+    /**
+     * Applies the function to all items at the same time.
+     */
+    public <T, R> List<R> mapAll(List<T> items, Function<T, R> function) {
+        TaskContext context = TaskContext.current();
+        List<ForkJoinTask<R>> tasks = new ArrayList<>(items.size());
+        for (T item : items) {
+            tasks.add(ForkJoinTask.adapt(() -> context.call(() -> {
+                context.checkpoint();
+                return function.apply(item);
+            })));
+        }
+        invoke(tasks);
+        List<R> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<R> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    private void run(int count, IntConsumer work) {
+        TaskContext context = TaskContext.current();
+        boolean reporting = ForkJoinTask.getPool() != pool;
+        int workers = Math.min(count, parallelism);
+        if (workers <= 1) {
+            for (int i = 0; i < count; i++) {
+                context.checkpoint();
+                work.accept(i);
+                if (reporting) {
+                    context.report(i + 1, count);
+                }
+            }
+            return;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            tasks[i] = ForkJoinTask.adapt(() -> context.run(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < count) {
+                    context.checkpoint();
+                    work.accept(index);
+                    int done = finished.incrementAndGet();
+                    if (reporting) {
+                        context.report(done, count);
+                    }
+                }
+            }));
+        }
+        invoke(Arrays.asList(tasks));
+    }
+
+    private <T extends ForkJoinTask<?>> void invoke(List<T> tasks) {
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+    }
+
+    @FunctionalInterface
+    public interface TileConsumer {
+        void accept(int fromY, int toY, int fromX, int toX);
+    }
+
+    @FunctionalInterface
+    public interface BandConsumer {
+        void accept(int fromY, int toY);
+    }
+
+}
@@ -0,0 +1,79 @@
+package pl.lodz.p.michalsosn.domain.image.channel;
+
+import java.util.function.IntUnaryOperator;
+
+import static pl.lodz.p.michalsosn.domain.image.channel.Image.MAX_VALUE;
+
+/**
+ * A mapping of values from 0 to 255 to values from 0 to 255, computed once
+ * into a table of bytes. Packed channels map their bytes straight through
+ * the table. Values out of the range of the table are left to the operator
+ * the table was computed from.
+ * Objects of this class are immutable.
+ * @author Michał Sośnicki
+ */
+public final class ValueLut implements IntUnaryOperator {
+
+    private static final int SIZE = MAX_VALUE + 1;
+
+    private final byte[] table;
+    private final IntUnaryOperator operator;
+
+    private ValueLut(byte[] table, IntUnaryOperator operator) {
+        this.table = table;
+        this.operator = operator;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the operator maps a value from
+     *                                  0 to 255 out of that range
+     */
+    public static ValueLut of(IntUnaryOperator operator) {
+        if (operator instanceof ValueLut) {
+            return (ValueLut) operator;
+        }
+        final byte[] table = new byte[SIZE];
+        for (int value = 0; value <= MAX_VALUE; ++value) {
+            final int mapped = operator.applyAsInt(value);
+            if (mapped < 0 || mapped > MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        "Value " + value + " is mapped to " + mapped
+                      + " out of [0, " + MAX_VALUE + "]."
+                );
+            }
+            table[value] = (byte) mapped;
+        }
+        return new ValueLut(table, operator);
+    }
+
+    @Override
+    public int applyAsInt(int value) {
+        return value >= 0 && value <= MAX_VALUE
+             ? table[value] & MAX_VALUE
+             : operator.applyAsInt(value);
+    }
+
+    /**
+     * Table mapping this one's values with the other one, without
+     * evaluating either operator again.
+     */
+    public ValueLut andThen(ValueLut after) {
+        final byte[] combined = new byte[SIZE];
+        for (int value = 0; value <= MAX_VALUE; ++value) {
+            combined[value] = after.table[table[value] & MAX_VALUE];
+        }
+        return new ValueLut(combined, operator.andThen(after.operator));
+    }
+
+    /**
+     * Maps packed values, a byte per pixel, through the table.
+     */
+    void mapBytes(byte[] source, int sourceStart,
+                  byte[] target, int targetStart, int length) {
+        final byte[] lookup = table;
+        for (int i = 0; i < length; ++i) {
+            target[targetStart + i] = lookup[source[sourceStart + i] & MAX_VALUE];
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package pl.lodz.p.michalsosn.domain.image.spectrum;
+
+import pl.lodz.p.michalsosn.domain.complex.Complex;
+import pl.lodz.p.michalsosn.domain.complex.ReImComplex;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * A spectrum stored as interleaved real and imaginary parts in one
+ * double array. Objects of this class are immutable, so views of rows
+ * and regions share the array of the spectrum they were taken from.
+ * Operations changing values always write to a new array.
+ * @author Michał Sośnicki
+ */
+public final class ArraySpectrum2d implements Spectrum2d {
+
+    private final double[] values;
+    private final int offset;
+    private final int stride;
+    private final int height;
+    private final int width;
+
+    /**
+     * Creates the Spectrum from interleaved values stored row by row.
+     * The array is not copied for efficiency, so do it if it's possible
+     * that it changes afterwards.
+     * @param height Number of rows.
+     * @param width Number of values in a row.
+     * @param values An array of {@code 2 * height * width} doubles.
+     */
+    public ArraySpectrum2d(int height, int width, double[] values) {
+        if (height < 0 || width < 0) {
+            throw new IllegalArgumentException("Size can't be negative");
+        }
+        if (values.length != 2 * height * width) {
+            throw new IllegalArgumentException(
+                    "Expected " + 2 * height * width + " values but got "
+                    + values.length
+            );
+        }
+        this.values = values;
+        this.offset = 0;
+        this.stride = 2 * width;
+        this.height = height;
+        this.width = width;
+    }
+
+    private ArraySpectrum2d(double[] values, int offset, int stride,
+                            int height, int width) {
+        this.values = values;
+        this.offset = offset;
+        this.stride = stride;
+        this.height = height;
+        this.width = width;
+    }
+
+    public static ArraySpectrum2d of(Spectrum2d spectrum) {
+        if (spectrum instanceof ArraySpectrum2d) {
+            return (ArraySpectrum2d) spectrum;
+        }
+        return new ArraySpectrum2d(
+                spectrum.getHeight(), spectrum.getWidth(), interleave(spectrum)
+        );
+    }
+
+    /**
+     * Copies the values of any spectrum into a new packed, interleaved
+     * array that can be modified and wrapped with
+     * {@link #ArraySpectrum2d(int, int, double[])}.
+     */
+    public static double[] interleave(Spectrum2d spectrum) {
+        int height = spectrum.getHeight();
+        int rowLength = 2 * spectrum.getWidth();
+        double[] buffer = new double[height * rowLength];
+        for (int y = 0; y < height; y++) {
+            spectrum.copyTo(y, buffer, y * rowLength);
+        }
+        return buffer;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public Complex getValue(int y, int x) {
+        int index = index(y, x);
+        return ReImComplex.of(values[index], values[index + 1]);
+    }
+
+    @Override
+    public double getRe(int y, int x) {
+        return values[index(y, x)];
+    }
+
+    @Override
+    public double getIm(int y, int x) {
+        return values[index(y, x) + 1];
+    }
+
+    @Override
+    public Complex[][] copyValues() {
+        Complex[][] newValues = new Complex[height][width];
+        for (int y = 0; y < height; y++) {
+            copyTo(y, newValues[y], 0);
+        }
+        return newValues;
+    }
+
+    @Override
+    public void copyTo(int y, Complex[] buffer, int dest) {
+        int index = index(y, 0);
+        for (int x = 0; x < width; x++, index += 2) {
+            buffer[dest + x] = ReImComplex.of(values[index], values[index + 1]);
+        }
+    }
+
+    @Override
+    public void copyTo(int y, double[] buffer, int dest) {
+        System.arraycopy(values, index(y, 0), buffer, dest, 2 * width);
+    }
+
+    public ArraySpectrum2d rowView(int y) {
+        return regionView(y, 0, 1, width);
+    }
+
+    public ArraySpectrum2d regionView(int top, int left,
+                                      int regionHeight, int regionWidth) {
+        if (top < 0 || left < 0 || regionHeight < 0 || regionWidth < 0
+                || top + regionHeight > height || left + regionWidth > width) {
+            throw new IllegalArgumentException(
+                    "Region exceeds the spectrum of size "
+                    + height + "x" + width
+            );
+        }
+        return new ArraySpectrum2d(
+                values, offset + top * stride + 2 * left, stride,
+                regionHeight, regionWidth
+        );
+    }
+
+    @Override
+    public Spectrum2d map(UnaryOperator<Complex> valueMapper) {
+        double[] newValues = new double[2 * height * width];
+        int dest = 0;
+        for (int y = 0; y < height; y++) {
+            int index = index(y, 0);
+            for (int x = 0; x < width; x++, index += 2) {
+                Complex value = valueMapper.apply(
+                        ReImComplex.of(values[index], values[index + 1])
+                );
+                newValues[dest++] = value.getRe();
+                newValues[dest++] = value.getIm();
+            }
+        }
+        return new ArraySpectrum2d(height, width, newValues);
+    }
+
+    private int index(int y, int x) {
+        return offset + y * stride + 2 * x;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ArraySpectrum2d that = (ArraySpectrum2d) o;
+
+        if (!isEqualSize(that)) {
+            return false;
+        }
+        for (int y = 0; y < height; y++) {
+            int index = index(y, 0);
+            int thatIndex = that.index(y, 0);
+            for (int i = 0; i < 2 * width; i++) {
+                // compared by bits like hashed, as Arrays.equals does
+                if (Double.doubleToLongBits(values[index + i])
+                        != Double.doubleToLongBits(that.values[thatIndex + i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int y = 0; y < height; y++) {
+            int index = index(y, 0);
+            for (int i = 0; i < 2 * width; i++) {
+                result = 31 * result + Double.hashCode(values[index + i]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ArraySpectrum2d{"
+                + "height=" + height
+                + ", width=" + width
+                + ", values=" + Arrays.toString(
+                        Arrays.copyOfRange(values, offset,
+                                Math.min(values.length, offset + 20)))
+                + '}';
+    }
+}
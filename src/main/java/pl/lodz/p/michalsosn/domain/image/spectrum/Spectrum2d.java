@@ -15,6 +15,14 @@ public interface Spectrum2d extends Size2d, Lift<UnaryOperator<Complex>, Spectru
 
     Complex getValue(int y, int x);
 
+    default double getRe(int y, int x) {
+        return getValue(y, x).getRe();
+    }
+
+    default double getIm(int y, int x) {
+        return getValue(y, x).getIm();
+    }
+
     default Stream<Complex> values() {
         return IntStream.range(0, getHeight()).boxed().flatMap(y ->
                 IntStream.range(0, getWidth()).mapToObj(x -> getValue(y, x))
@@ -25,4 +33,17 @@ public interface Spectrum2d extends Size2d, Lift<UnaryOperator<Complex>, Spectru
 
     void copyTo(int y, Complex[] buffer, int dest);
 
+    /**
+     * Copies the row as interleaved real and imaginary parts,
+     * filling {@code 2 * getWidth()} entries of the buffer.
+     */
+    default void copyTo(int y, double[] buffer, int dest) {
+        int width = getWidth();
+        for (int x = 0; x < width; x++) {
+            Complex value = getValue(y, x);
+            buffer[dest++] = value.getRe();
+            buffer[dest++] = value.getIm();
+        }
+    }
+
 }
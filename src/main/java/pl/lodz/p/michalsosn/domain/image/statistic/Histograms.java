@@ -2,6 +2,7 @@ package pl.lodz.p.michalsosn.domain.image.statistic;
 
 import pl.lodz.p.michalsosn.domain.image.channel.Channel;
 import pl.lodz.p.michalsosn.domain.image.channel.Image;
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
 
 /**
  * @author Michał Sośnicki
@@ -13,7 +14,21 @@ public final class Histograms {
 
     public static int[] valueHistogram(Channel channel) {
         int[] counters = new int[Image.MAX_VALUE + 1];
-        channel.forEach((y, x) -> ++counters[channel.getValue(y, x)]);
+        TiledEvaluator.shared().forEachTile(
+                channel.getHeight(), channel.getWidth(),
+                (fromY, toY, fromX, toX) -> {
+            int[] tileCounters = new int[Image.MAX_VALUE + 1];
+            for (int y = fromY; y < toY; y++) {
+                for (int x = fromX; x < toX; x++) {
+                    ++tileCounters[channel.getValue(y, x)];
+                }
+            }
+            synchronized (counters) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] += tileCounters[i];
+                }
+            }
+        });
         return counters;
     }
 
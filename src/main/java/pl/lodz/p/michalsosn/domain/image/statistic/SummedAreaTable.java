@@ -0,0 +1,154 @@
+package pl.lodz.p.michalsosn.domain.image.statistic;
+
+import pl.lodz.p.michalsosn.domain.image.Size2d;
+import pl.lodz.p.michalsosn.domain.image.channel.Channel;
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Sums, and optionally sums of squares, of all rectangles starting at
+ * the origin. Sums, means and variances of any rectangle are then
+ * answered in constant time. Rectangles are given by the top left corner
+ * and the size, like regions of the split and merge segmentation.
+ * @author Michał Sośnicki
+ */
+public final class SummedAreaTable implements Size2d {
+
+    private final int height;
+    private final int width;
+    private final int stride;
+    private final long[] sums;
+    private final long[] squares;
+
+    private SummedAreaTable(int height, int width, long[] sums,
+                            long[] squares) {
+        this.height = height;
+        this.width = width;
+        this.stride = width + 1;
+        this.sums = sums;
+        this.squares = squares;
+    }
+
+    public static SummedAreaTable of(Channel channel) {
+        return of(channel.getHeight(), channel.getWidth(), channel::getValue);
+    }
+
+    public static SummedAreaTable of(int height, int width,
+                                     IntBinaryOperator valueFunction) {
+        return build(height, width, valueFunction, true);
+    }
+
+    /**
+     * Table without the sums of squares, which takes half the memory.
+     */
+    public static SummedAreaTable sumsOf(int height, int width,
+                                         IntBinaryOperator valueFunction) {
+        return build(height, width, valueFunction, false);
+    }
+
+    private static SummedAreaTable build(int height, int width,
+                                         IntBinaryOperator valueFunction,
+                                         boolean withSquares) {
+        if (height < 0 || width < 0) {
+            throw new IllegalArgumentException(
+                    "Size " + height + "x" + width + " must not be negative."
+            );
+        }
+        int stride = width + 1;
+        long[] sums = new long[(height + 1) * stride];
+        long[] squares = withSquares ? new long[sums.length] : null;
+
+        TiledEvaluator evaluator = TiledEvaluator.shared();
+        evaluator.forEachBand(height, (fromY, toY) -> {
+            for (int y = fromY; y < toY; y++) {
+                int offset = (y + 1) * stride + 1;
+                long sum = 0;
+                long square = 0;
+                for (int x = 0; x < width; x++) {
+                    long value = valueFunction.applyAsInt(y, x);
+                    sum += value;
+                    sums[offset + x] = sum;
+                    if (withSquares) {
+                        square += value * value;
+                        squares[offset + x] = square;
+                    }
+                }
+            }
+        });
+        evaluator.forEachBand(width, (fromX, toX) -> {
+            for (int y = 1; y < height; y++) {
+                int previous = y * stride + 1;
+                int offset = previous + stride;
+                for (int x = fromX; x < toX; x++) {
+                    sums[offset + x] += sums[previous + x];
+                    if (withSquares) {
+                        squares[offset + x] += squares[previous + x];
+                    }
+                }
+            }
+        });
+
+        return new SummedAreaTable(height, width, sums, squares);
+    }
+
+    public long sum(int y, int x, int height, int width) {
+        checkRectangle(y, x, height, width);
+        return rectangle(sums, y, x, height, width);
+    }
+
+    public long sumOfSquares(int y, int x, int height, int width) {
+        if (squares == null) {
+            throw new IllegalStateException(
+                    "The table was built without the sums of squares."
+            );
+        }
+        checkRectangle(y, x, height, width);
+        return rectangle(squares, y, x, height, width);
+    }
+
+    public double mean(int y, int x, int height, int width) {
+        return (double) sum(y, x, height, width) / (height * width);
+    }
+
+    public double variance(int y, int x, int height, int width) {
+        long count = (long) height * width;
+        long sum = sum(y, x, height, width);
+        long sumOfSquares = sumOfSquares(y, x, height, width);
+        double mean = (double) sum / count;
+        return Math.max(0.0, (double) sumOfSquares / count - mean * mean);
+    }
+
+    public boolean hasSquares() {
+        return squares != null;
+    }
+
+    private long rectangle(long[] table, int y, int x, int height, int width) {
+        int top = y * stride + x;
+        int bottom = (y + height) * stride + x;
+        return table[bottom + width] - table[bottom]
+             - table[top + width] + table[top];
+    }
+
+    private void checkRectangle(int y, int x, int height, int width) {
+        if (y < 0 || x < 0 || height < 0 || width < 0
+                || y + height > this.height || x + width > this.width) {
+            throw new IllegalArgumentException(
+                    "Rectangle " + height + "x" + width + " at (" + y + ", "
+                  + x + ") is outside of the " + this.height + "x"
+                  + this.width + " table."
+            );
+        }
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+}
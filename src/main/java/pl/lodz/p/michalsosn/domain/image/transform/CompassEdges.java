@@ -0,0 +1,195 @@
+package pl.lodz.p.michalsosn.domain.image.transform;
+
+import pl.lodz.p.michalsosn.domain.image.channel.Channel;
+import pl.lodz.p.michalsosn.domain.image.channel.Image;
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Edge detection with the maximum response of the eight rotations of
+ * a 3x3 compass kernel. Every neighbourhood is read once and responses
+ * are computed on integers, then normalized like {@link Kernel#normalized}
+ * and rounded. Responses lying exactly on a rounding boundary are
+ * recomputed with the floating point sum {@link ChannelOps#convolution}
+ * would use, so results are the same as convolving with every kernel.
+ * The result at (y, x) is the full convolution value at (y, x), like in
+ * a convolution that doesn't keep size, cut to the size of the channel.
+ * @author Michał Sośnicki
+ */
+public final class CompassEdges {
+
+    /**
+     * Kernel positions on the ring around the center, clockwise
+     * from the top left corner.
+     */
+    private static final int[][] RING = {
+            {0, 0}, {0, 1}, {0, 2}, {1, 2}, {2, 2}, {2, 1}, {2, 0}, {1, 0}
+    };
+    private static final int DIRECTIONS = RING.length;
+
+    public enum CompassSet {
+        KIRSCH(0, 5, 5, 5, -3, -3, -3, -3, -3),
+        SOBEL(0, 1, 2, 1, 0, -1, -2, -1, 0),
+        PREWITT(-2, 1, 1, 1, 1, -1, -1, -1, 1),
+        ROBINSON(0, 1, 1, 1, 0, -1, -1, -1, 0);
+
+        private final int center;
+        private final int[] ring;
+        private final int total;
+        private final int negativeTotal;
+        private final int runLength;
+        private final Kernel[] kernels;
+
+        CompassSet(int center, int... ring) {
+            this.center = center;
+            this.ring = ring;
+
+            int positive = Math.max(center, 0);
+            int negative = Math.max(-center, 0);
+            for (int weight : ring) {
+                positive += Math.max(weight, 0);
+                negative += Math.max(-weight, 0);
+            }
+            this.total = positive + negative;
+            this.negativeTotal = negative;
+            this.runLength = findRun(ring);
+
+            this.kernels = new Kernel[DIRECTIONS];
+            for (int k = 0; k < DIRECTIONS; k++) {
+                double[][] values = new double[3][3];
+                values[1][1] = center;
+                for (int i = 0; i < DIRECTIONS; i++) {
+                    values[RING[i][0]][RING[i][1]]
+                            = ring[Math.floorMod(i - k, DIRECTIONS)];
+                }
+                kernels[k] = Kernel.normalized(values);
+            }
+        }
+
+        /**
+         * Length of the leading run of the larger weight, if the ring
+         * only has two weights and the larger ones are consecutive.
+         * Then responses differ only by a sliding window sum.
+         */
+        private static int findRun(int[] ring) {
+            if (ring[0] == ring[DIRECTIONS - 1]) {
+                return 0;
+            }
+            int length = 1;
+            while (length < DIRECTIONS && ring[length] == ring[0]) {
+                ++length;
+            }
+            for (int i = length; i < DIRECTIONS; i++) {
+                if (ring[i] != ring[length] || ring[i] > ring[0]) {
+                    return 0;
+                }
+            }
+            return length;
+        }
+
+        public Kernel[] getKernels() {
+            return kernels.clone();
+        }
+    }
+
+    private CompassEdges() {
+    }
+
+    public static UnaryOperator<Channel> compassOperator(CompassSet set) {
+        return channel -> {
+            int height = channel.getHeight();
+            int width = channel.getWidth();
+            int[][] values = channel.copyValues();
+            int[][] padded = new int[height + 2][width + 2];
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(values[y], 0, padded[y + 2], 2, width);
+            }
+
+            int[][] result = new int[height][width];
+            TiledEvaluator.shared().forEachTile(height, width,
+                    (fromY, toY, fromX, toX) -> {
+                int[] ring = new int[DIRECTIONS];
+                for (int y = fromY; y < toY; y++) {
+                    int[] top = padded[y + 2];
+                    int[] middle = padded[y + 1];
+                    int[] bottom = padded[y];
+                    for (int x = fromX; x < toX; x++) {
+                        ring[0] = top[x + 2];
+                        ring[1] = top[x + 1];
+                        ring[2] = top[x];
+                        ring[3] = middle[x];
+                        ring[4] = bottom[x];
+                        ring[5] = bottom[x + 1];
+                        ring[6] = bottom[x + 2];
+                        ring[7] = middle[x + 2];
+                        int response = maxResponse(set, ring, middle[x + 1]);
+                        result[y][x] = normalize(set, response, values, y, x);
+                    }
+                }
+            });
+
+            return channel.constructSimilar(height, width,
+                                            (y, x) -> result[y][x]);
+        };
+    }
+
+    private static int maxResponse(CompassSet set, int[] ring, int center) {
+        int max = Integer.MIN_VALUE;
+        if (set.runLength > 0) {
+            int high = set.ring[0];
+            int low = set.ring[DIRECTIONS - 1];
+            int sum = 0;
+            int window = 0;
+            for (int i = 0; i < set.runLength; i++) {
+                window += ring[i];
+            }
+            int maxWindow = window;
+            for (int i = 0; i < DIRECTIONS; i++) {
+                sum += ring[i];
+                window += ring[(i + set.runLength) % DIRECTIONS] - ring[i];
+                maxWindow = Math.max(maxWindow, window);
+            }
+            max = low * sum + (high - low) * maxWindow;
+        } else {
+            for (int k = 0; k < DIRECTIONS; k++) {
+                int response = 0;
+                for (int i = 0; i < DIRECTIONS; i++) {
+                    response += ring[i]
+                            * set.ring[(i - k + DIRECTIONS) % DIRECTIONS];
+                }
+                max = Math.max(max, response);
+            }
+        }
+        return max + set.center * center;
+    }
+
+    private static int normalize(CompassSet set, int response,
+                                 int[][] values, int y, int x) {
+        int doubled = 2 * (response + Image.MAX_VALUE * set.negativeTotal);
+        if ((doubled - set.total) % (2 * set.total) == 0) {
+            return exactMaxResponse(set, values, y, x);
+        }
+        double shift = (double) set.negativeTotal / set.total * Image.MAX_VALUE;
+        return (int) Math.round((double) response / set.total + shift);
+    }
+
+    private static int exactMaxResponse(CompassSet set, int[][] values,
+                                        int y, int x) {
+        int max = Integer.MIN_VALUE;
+        int fromY = Math.max(y - 2, 0);
+        int fromX = Math.max(x - 2, 0);
+        for (Kernel kernel : set.kernels) {
+            double result = 0;
+            for (int itY = fromY; itY <= y; itY++) {
+                for (int itX = fromX; itX <= x; itX++) {
+                    result += values[itY][itX]
+                            * kernel.getValue(y - itY, x - itX);
+                }
+            }
+            max = Math.max(max, (int) Math.round(result + kernel.getShift()));
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,331 @@
+package pl.lodz.p.michalsosn.domain.image.transform;
+
+import pl.lodz.p.michalsosn.domain.complex.Fourier;
+import pl.lodz.p.michalsosn.domain.image.channel.Channel;
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
+import pl.lodz.p.michalsosn.domain.util.MathUtils;
+
+import java.util.Optional;
+
+/**
+ * Picks the cheapest way to convolve a channel with a kernel.
+ * Every strategy gives the same integers as the direct sum. Separable
+ * and FFT results only differ from it by a small floating point error,
+ * so pixels whose value lands that close to a rounding boundary are
+ * recomputed directly.
+ * @author Michał Sośnicki
+ */
+public final class ConvolutionPlanner {
+
+    public enum Strategy {
+        DIRECT, SEPARABLE, FFT
+    }
+
+    private static final double RANK_TOLERANCE = 1e-12;
+    private static final double ROUNDING_TOLERANCE = 1e-7;
+    private static final int MIN_BLOCK_SIZE = 32;
+    private static final double SEPARABLE_COST_FACTOR = 1.5;
+    private static final double FFT_COST_FACTOR = 5.0;
+
+    private ConvolutionPlanner() {
+    }
+
+    public static Strategy plan(Kernel kernel, int height, int width) {
+        int kernelHeight = kernel.getHeight();
+        int kernelWidth = kernel.getWidth();
+
+        Strategy best = Strategy.DIRECT;
+        double bestCost = kernelHeight * kernelWidth;
+
+        if (separate(kernel).isPresent()) {
+            double cost = SEPARABLE_COST_FACTOR * (kernelHeight + kernelWidth);
+            if (cost < bestCost) {
+                best = Strategy.SEPARABLE;
+                bestCost = cost;
+            }
+        }
+
+        int blockSize = blockSize(kernel);
+        if (fftCost(kernel, blockSize) < bestCost
+                && (long) height * width > (long) blockSize * blockSize / 4) {
+            best = Strategy.FFT;
+        }
+        return best;
+    }
+
+    public static Channel convolve(Channel channel, Kernel kernel,
+                                   boolean crop) {
+        Strategy strategy = plan(kernel, channel.getHeight(),
+                                 channel.getWidth());
+        return convolve(channel, kernel, crop, strategy);
+    }
+
+    public static Channel convolve(Channel channel, Kernel kernel,
+                                   boolean crop, Strategy strategy) {
+        if (channel.getSize() == 0) {
+            throw new IllegalArgumentException("Channel has zero size.");
+        }
+
+        Input input = new Input(channel, kernel, crop);
+        int[][] result;
+        switch (strategy) {
+            case SEPARABLE:
+                result = convolveSeparable(input, separate(kernel).orElseThrow(
+                        () -> new IllegalArgumentException(
+                                "Kernel is not separable")
+                ));
+                break;
+            case FFT:
+                result = convolveFft(input);
+                break;
+            default:
+                result = TiledEvaluator.shared().evaluate(
+                        input.outHeight, input.outWidth, input::direct
+                );
+        }
+        return channel.constructSimilar(input.outHeight, input.outWidth,
+                                        (y, x) -> result[y][x]);
+    }
+
+    /**
+     * Finds a column and a row vector whose outer product is the kernel,
+     * if the kernel has rank one.
+     */
+    static Optional<double[][]> separate(Kernel kernel) {
+        int kernelHeight = kernel.getHeight();
+        int kernelWidth = kernel.getWidth();
+
+        int pivotY = 0;
+        int pivotX = 0;
+        double maxAbs = 0.0;
+        for (int y = 0; y < kernelHeight; y++) {
+            for (int x = 0; x < kernelWidth; x++) {
+                double abs = Math.abs(kernel.getValue(y, x));
+                if (abs > maxAbs) {
+                    maxAbs = abs;
+                    pivotY = y;
+                    pivotX = x;
+                }
+            }
+        }
+        if (maxAbs == 0.0) {
+            return Optional.empty();
+        }
+
+        double[] column = new double[kernelHeight];
+        double[] row = new double[kernelWidth];
+        double pivot = kernel.getValue(pivotY, pivotX);
+        for (int y = 0; y < kernelHeight; y++) {
+            column[y] = kernel.getValue(y, pivotX);
+        }
+        for (int x = 0; x < kernelWidth; x++) {
+            row[x] = kernel.getValue(pivotY, x) / pivot;
+        }
+
+        for (int y = 0; y < kernelHeight; y++) {
+            for (int x = 0; x < kernelWidth; x++) {
+                double error = kernel.getValue(y, x) - column[y] * row[x];
+                if (Math.abs(error) > RANK_TOLERANCE * maxAbs) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.of(new double[][]{column, row});
+    }
+
+    private static int[][] convolveSeparable(Input input, double[][] factors) {
+        double[] column = factors[0];
+        double[] row = factors[1];
+        int kernelHeight = column.length;
+        int kernelWidth = row.length;
+
+        double[][] rowPass = new double[input.height][input.outWidth];
+        TiledEvaluator.shared().forEachBand(input.height, (fromY, toY) -> {
+            for (int y = fromY; y < toY; y++) {
+                int[] values = input.values[y];
+                double[] target = rowPass[y];
+                for (int outX = 0; outX < input.outWidth; outX++) {
+                    int x = outX + input.offsetX;
+                    int fromX = Math.max(x - kernelWidth + 1, 0);
+                    int toX = Math.min(x + 1, input.width);
+                    double sum = 0.0;
+                    for (int itX = fromX; itX < toX; itX++) {
+                        sum += values[itX] * row[x - itX];
+                    }
+                    target[outX] = sum;
+                }
+            }
+        });
+
+        return TiledEvaluator.shared().evaluate(
+                input.outHeight, input.outWidth, (outY, outX) -> {
+            int y = outY + input.offsetY;
+            int fromY = Math.max(y - kernelHeight + 1, 0);
+            int toY = Math.min(y + 1, input.height);
+            double sum = 0.0;
+            for (int itY = fromY; itY < toY; itY++) {
+                sum += rowPass[itY][outX] * column[y - itY];
+            }
+            return input.round(sum, outY, outX);
+        });
+    }
+
+    /**
+     * Overlap-save: every output tile is cut from the circular
+     * convolution of an input block with the kernel.
+     */
+    private static int[][] convolveFft(Input input) {
+        int kernelHeight = input.kernel.getHeight();
+        int kernelWidth = input.kernel.getWidth();
+        int blockSize = blockSize(input.kernel);
+        int tileSize = blockSize - Math.max(kernelHeight, kernelWidth) + 1;
+
+        double[][] kernelRe = new double[blockSize][blockSize];
+        double[][] kernelIm = new double[blockSize][blockSize];
+        for (int y = 0; y < kernelHeight; y++) {
+            for (int x = 0; x < kernelWidth; x++) {
+                kernelRe[y][x] = input.kernel.getValue(y, x);
+            }
+        }
+        Fourier.fft2d(kernelRe, kernelIm, false, false);
+
+        int[][] result = new int[input.outHeight][input.outWidth];
+        TiledEvaluator.shared().withTileSize(tileSize).forEachTile(
+                input.outHeight, input.outWidth,
+                (fromY, toY, fromX, toX) -> {
+            int blockY = fromY + input.offsetY - kernelHeight + 1;
+            int blockX = fromX + input.offsetX - kernelWidth + 1;
+            double[][] re = new double[blockSize][blockSize];
+            double[][] im = new double[blockSize][blockSize];
+            for (int y = Math.max(0, -blockY),
+                     toBlockY = Math.min(blockSize, input.height - blockY);
+                 y < toBlockY; y++) {
+                int[] values = input.values[blockY + y];
+                for (int x = Math.max(0, -blockX),
+                         toBlockX = Math.min(blockSize, input.width - blockX);
+                     x < toBlockX; x++) {
+                    re[y][x] = values[blockX + x];
+                }
+            }
+
+            Fourier.fft2d(re, im, false, false);
+            for (int y = 0; y < blockSize; y++) {
+                double[] rowRe = re[y];
+                double[] rowIm = im[y];
+                double[] kRowRe = kernelRe[y];
+                double[] kRowIm = kernelIm[y];
+                for (int x = 0; x < blockSize; x++) {
+                    double vRe = rowRe[x];
+                    double vIm = rowIm[x];
+                    rowRe[x] = vRe * kRowRe[x] - vIm * kRowIm[x];
+                    rowIm[x] = vRe * kRowIm[x] + vIm * kRowRe[x];
+                }
+            }
+            Fourier.fft2d(re, im, true, true);
+
+            for (int outY = fromY; outY < toY; outY++) {
+                double[] rowRe = re[outY - fromY + kernelHeight - 1];
+                for (int outX = fromX; outX < toX; outX++) {
+                    result[outY][outX] = input.round(
+                            rowRe[outX - fromX + kernelWidth - 1], outY, outX
+                    );
+                }
+            }
+        });
+        return result;
+    }
+
+    private static int blockSize(Kernel kernel) {
+        int kernelSize = Math.max(kernel.getHeight(), kernel.getWidth());
+        int blockSize = MIN_BLOCK_SIZE;
+        while (blockSize < 2 * kernelSize) {
+            blockSize <<= 1;
+        }
+        if (fftCost(kernel, 2 * blockSize) < fftCost(kernel, blockSize)) {
+            blockSize <<= 1;
+        }
+        return blockSize;
+    }
+
+    private static double fftCost(Kernel kernel, int blockSize) {
+        int tileSize = blockSize
+                - Math.max(kernel.getHeight(), kernel.getWidth()) + 1;
+        double blockArea = (double) blockSize * blockSize;
+        return FFT_COST_FACTOR * blockArea * 4 * MathUtils.log2(blockSize)
+                / ((double) tileSize * tileSize);
+    }
+
+    private static final class Input {
+        private final int[][] values;
+        private final Kernel kernel;
+        private final int height;
+        private final int width;
+        private final int outHeight;
+        private final int outWidth;
+        private final int offsetY;
+        private final int offsetX;
+        private final double[][] kernelValues;
+        private final double shift;
+        private final double tolerance;
+
+        private Input(Channel channel, Kernel kernel, boolean crop) {
+            this.values = channel.copyValues();
+            this.kernel = kernel;
+            this.height = channel.getHeight();
+            this.width = channel.getWidth();
+            int kernelHeight = kernel.getHeight();
+            int kernelWidth = kernel.getWidth();
+            this.outHeight = crop ? height : height + kernelHeight - 1;
+            this.outWidth = crop ? width : width + kernelWidth - 1;
+            this.offsetY = crop ? (kernelHeight - 1) / 2 : 0;
+            this.offsetX = crop ? (kernelWidth - 1) / 2 : 0;
+
+            this.kernelValues = new double[kernelHeight][kernelWidth];
+            double absSum = 0.0;
+            for (int y = 0; y < kernelHeight; y++) {
+                for (int x = 0; x < kernelWidth; x++) {
+                    kernelValues[y][x] = kernel.getValue(y, x);
+                    absSum += Math.abs(kernelValues[y][x]);
+                }
+            }
+            int maxAbsValue = 0;
+            for (int[] row : values) {
+                for (int value : row) {
+                    maxAbsValue = Math.max(maxAbsValue, Math.abs(value));
+                }
+            }
+            this.tolerance = ROUNDING_TOLERANCE
+                    * Math.max(1.0, absSum * maxAbsValue);
+
+            this.shift = kernel.getShift();
+        }
+
+        private int direct(int outY, int outX) {
+            int y = outY + offsetY;
+            int x = outX + offsetX;
+            double result = 0;
+            int fromY = Math.max(y - kernelValues.length + 1, 0);
+            int toY = Math.min(y + 1, height);
+            int fromX = Math.max(x - kernelValues[0].length + 1, 0);
+            int toX = Math.min(x + 1, width);
+            for (int itY = fromY; itY < toY; itY++) {
+                int[] row = values[itY];
+                double[] kernelRow = kernelValues[y - itY];
+                for (int itX = fromX; itX < toX; itX++) {
+                    result += row[itX] * kernelRow[x - itX];
+                }
+            }
+            return (int) Math.round(result + shift);
+        }
+
+        private int round(double approximate, int outY, int outX) {
+            double shifted = approximate + shift;
+            double fraction = shifted - Math.floor(shifted);
+            if (Math.abs(fraction - 0.5) < tolerance) {
+                return direct(outY, outX);
+            }
+            return (int) Math.round(shifted);
+        }
+    }
+
+}
@@ -1,21 +1,15 @@
 package pl.lodz.p.michalsosn.domain.image.transform;
 
-import pl.lodz.p.michalsosn.domain.complex.Complex;
 import pl.lodz.p.michalsosn.domain.complex.Fourier;
 import pl.lodz.p.michalsosn.domain.image.Size2d;
 import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
 import pl.lodz.p.michalsosn.domain.image.channel.Channel;
-import pl.lodz.p.michalsosn.domain.image.spectrum.BufferSpectrum2d;
+import pl.lodz.p.michalsosn.domain.image.spectrum.ArraySpectrum2d;
 import pl.lodz.p.michalsosn.domain.image.spectrum.Spectrum2d;
-import pl.lodz.p.michalsosn.domain.util.IntBiFunction;
 import pl.lodz.p.michalsosn.domain.util.MathUtils;
 
-import java.util.Arrays;
-import java.util.function.IntFunction;
-
 import static pl.lodz.p.michalsosn.domain.image.channel.Image.MAX_VALUE;
 import static pl.lodz.p.michalsosn.domain.image.channel.Image.MIN_VALUE;
-import static pl.lodz.p.michalsosn.domain.util.ArrayUtils.transposeMatrix;
 
 
 /**
@@ -29,70 +23,67 @@ public final class DitFastFourierTransform {
     public static Spectrum2d transform(Channel channel) {
         checkSizePowerOfTwo(channel);
 
-        int[][] values = channel.copyValues();
-        Complex[][] complexValues = Arrays.stream(values).map(
-                row -> Arrays.stream(row).mapToObj(Complex::ofRe)
-                        .toArray(Complex[]::new)
-        ).toArray(Complex[][]::new);
-
-        complexValues = fftArray(
-                complexValues, Fourier::fourierBasis, false
-        );
-        complexValues = transposeMatrix(
-                complexValues, (y, x) -> new Complex[y][x]
-        );
-        moveCenter(complexValues, Complex[]::new);
-
-        return new BufferSpectrum2d(complexValues);
+        int height = channel.getHeight();
+        int width = channel.getWidth();
+        int[] buffer = new int[width];
+        double[][] re = new double[height][width];
+        double[][] im = new double[height][width];
+        for (int y = 0; y < height; y++) {
+            channel.copyTo(y, buffer, 0);
+            for (int x = 0; x < width; x++) {
+                re[y][x] = buffer[x];
+            }
+        }
+
+        Fourier.fft2d(re, im, false, false);
+        moveCenter(re);
+        moveCenter(im);
+
+        double[] interleaved = new double[2 * height * width];
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                interleaved[index++] = re[y][x];
+                interleaved[index++] = im[y][x];
+            }
+        }
+        return new ArraySpectrum2d(height, width, interleaved);
     }
 
     public static Channel inverse(Spectrum2d spectrum) {
         checkSizePowerOfTwo(spectrum);
 
-        Complex[][] values = spectrum.copyValues();
-
-        moveCenter(values, Complex[]::new);
-        values = transposeMatrix(values, (y, x) -> new Complex[y][x]);
-        values = fftArray(values, Fourier::inverseBasis, true);
-
-        int[][] integerValues = Arrays.stream(values).map(
-                row -> Arrays.stream(row).mapToInt(v -> (int) Math.round(
-                        Math.max(MIN_VALUE, Math.min(MAX_VALUE, v.getAbs()))
-                )).toArray()
-        ).toArray(int[][]::new);
-
-        return new BufferChannel(integerValues);
-    }
-
-    private static Complex[][] fftArray(Complex[][] array,
-                                        IntBiFunction<Complex[]> makeKernel,
-                                        boolean normalize) {
-        if (array.length == 0) {
-            return array;
+        int height = spectrum.getHeight();
+        int width = spectrum.getWidth();
+        double[] buffer = new double[2 * width];
+        double[][] re = new double[height][width];
+        double[][] im = new double[height][width];
+        for (int y = 0; y < height; y++) {
+            spectrum.copyTo(y, buffer, 0);
+            for (int x = 0; x < width; x++) {
+                re[y][x] = buffer[2 * x];
+                im[y][x] = buffer[2 * x + 1];
+            }
         }
 
-        int height = array.length;
-        int width = array[0].length;
-        Complex[] rowKernel = makeKernel.apply(width, width / 2);
-        Arrays.stream(array).forEach(row ->
-                Fourier.fft(row, rowKernel, normalize)
-        );
+        moveCenter(re);
+        moveCenter(im);
+        Fourier.fft2d(re, im, true, true);
 
-        Complex[][] transposed = transposeMatrix(
-                array, (h, w) -> new Complex[h][w]
-        );
-
-        Complex[] colKernel = makeKernel.apply(height, height / 2);
-        Arrays.stream(array).forEach(col ->
-                Fourier.fft(col, colKernel, normalize)
-        );
+        int[][] integerValues = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double abs = Math.hypot(re[y][x], im[y][x]);
+                integerValues[y][x] = (int) Math.round(
+                        Math.max(MIN_VALUE, Math.min(MAX_VALUE, abs))
+                );
+            }
+        }
 
-        return transposed;
+        return new BufferChannel(integerValues);
     }
 
-    private static <T> void moveCenter(
-            T[][] matrix, IntFunction<T[]> arrayMaker
-    ) {
+    private static void moveCenter(double[][] matrix) {
         if (matrix.length == 0) {
             return;
         }
@@ -102,7 +93,7 @@ public final class DitFastFourierTransform {
         int halfHeight = height / 2; // assumes even sizes
         int halfWidth = width / 2;
 
-        T[] temp = arrayMaker.apply(halfWidth);
+        double[] temp = new double[halfWidth];
         for (int y = 0; y < height; y++) {
             int pairY = (y + halfHeight) % height;
             System.arraycopy(matrix[y], 0, temp, 0, halfWidth);
@@ -1,15 +1,12 @@
 package pl.lodz.p.michalsosn.domain.image.transform;
 
-import pl.lodz.p.michalsosn.domain.image.spectrum.BufferSpectrum2d;
-import pl.lodz.p.michalsosn.domain.complex.Complex;
+import pl.lodz.p.michalsosn.domain.image.spectrum.ArraySpectrum2d;
 import pl.lodz.p.michalsosn.domain.image.spectrum.Spectrum2d;
 import pl.lodz.p.michalsosn.domain.util.MathUtils;
 
 import java.util.function.IntPredicate;
 import java.util.function.UnaryOperator;
 
-import static pl.lodz.p.michalsosn.domain.complex.Complex.ZERO;
-
 /**
  * @author Michał Sośnicki
  */
@@ -62,7 +59,7 @@ public final class Filters {
             int yMid = (height + 1) / 2;
             int xMid = (width + 1) / 2;
 
-            Complex[][] values = spectrum.copyValues();
+            double[] values = ArraySpectrum2d.interleave(spectrum);
 
             for (int y = 0; y <= yMid; ++y) {
                 int dy = yMid - y;
@@ -92,20 +89,20 @@ public final class Filters {
                     int mirrorY = (height - y) % height;
                     int mirrorX = (width - x) % width;
                     if (zero1) {
-                        values[y][x] = ZERO;
-                        values[mirrorY][mirrorX] = ZERO;
+                        erase(values, width, y, x);
+                        erase(values, width, mirrorY, mirrorX);
                     }
                     if (zero2) {
-                        values[mirrorY][x] = ZERO;
-                        values[y][mirrorX] = ZERO;
+                        erase(values, width, mirrorY, x);
+                        erase(values, width, y, mirrorX);
                     }
                 }
             }
 
             if (preserveMean && spectrum.getSize() > 0) {
-                values[height / 2][width / 2] = spectrum.getValue(height / 2, width / 2);
+                preserve(values, spectrum, height / 2, width / 2);
             }
-            return new BufferSpectrum2d(values);
+            return new ArraySpectrum2d(height, width, values);
         };
     }
 
@@ -117,7 +114,7 @@ public final class Filters {
             int yMid = (height + 1) / 2;
             int xMid = (width + 1) / 2;
 
-            Complex[][] values = spectrum.copyValues();
+            double[] values = ArraySpectrum2d.interleave(spectrum);
 
             for (int y = 0; y <= yMid; ++y) {
                 int dy = yMid - y;
@@ -128,19 +125,32 @@ public final class Filters {
                     if (eraseTest.test(xSq + ySq)) {
                         int mirrorY = (height - y) % height;
                         int mirrorX = (width - x) % width;
-                        values[y][x] = ZERO;
-                        values[mirrorY][x] = ZERO;
-                        values[y][mirrorX] = ZERO;
-                        values[mirrorY][mirrorX] = ZERO;
+                        erase(values, width, y, x);
+                        erase(values, width, mirrorY, x);
+                        erase(values, width, y, mirrorX);
+                        erase(values, width, mirrorY, mirrorX);
                     }
                 }
             }
 
             if (preserveMean && spectrum.getSize() > 0) {
-                values[height / 2][width / 2] = spectrum.getValue(height / 2, width / 2);
+                preserve(values, spectrum, height / 2, width / 2);
             }
-            return new BufferSpectrum2d(values);
+            return new ArraySpectrum2d(height, width, values);
         };
     }
 
+    private static void erase(double[] values, int width, int y, int x) {
+        int index = 2 * (y * width + x);
+        values[index] = 0.0;
+        values[index + 1] = 0.0;
+    }
+
+    private static void preserve(double[] values, Spectrum2d spectrum,
+                                 int y, int x) {
+        int index = 2 * (y * spectrum.getWidth() + x);
+        values[index] = spectrum.getRe(y, x);
+        values[index + 1] = spectrum.getIm(y, x);
+    }
+
 }
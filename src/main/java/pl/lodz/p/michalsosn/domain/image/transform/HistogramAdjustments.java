@@ -1,6 +1,7 @@
 package pl.lodz.p.michalsosn.domain.image.transform;
 
 import pl.lodz.p.michalsosn.domain.image.channel.Channel;
+import pl.lodz.p.michalsosn.domain.image.channel.ValueLut;
 
 import java.util.function.UnaryOperator;
 
@@ -21,9 +22,9 @@ public final class HistogramAdjustments {
             int length = runHistogram[runHistogram.length - 1];
             double valueWidth = maxValue - minValue;
 
-            return channel.map(value -> (int) Math.round(
+            return channel.map(ValueLut.of(value -> (int) Math.round(
                     minValue + valueWidth * runHistogram[value] / length
-            ));
+            )));
         };
     }
 
@@ -34,9 +35,9 @@ public final class HistogramAdjustments {
             double length = runHistogram[runHistogram.length - 1];
             double valueRatio = (double) maxValue / minValue;
 
-            return channel.map(value -> (int) Math.round(
+            return channel.map(ValueLut.of(value -> (int) Math.round(
                 minValue * Math.pow(valueRatio, runHistogram[value] / length)
-            ));
+            )));
         };
     }
 
@@ -3,6 +3,9 @@ package pl.lodz.p.michalsosn.domain.image.transform;
 import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
 import pl.lodz.p.michalsosn.domain.image.channel.Channel;
 import pl.lodz.p.michalsosn.domain.image.channel.Image;
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
+import pl.lodz.p.michalsosn.domain.image.statistic.SummedAreaTable;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
 
 import java.util.Arrays;
 import java.util.function.IntBinaryOperator;
@@ -16,6 +19,11 @@ import static java.lang.Math.min;
  */
 public final class NoiseFilters {
 
+    private static final int BUCKET_BITS = 4;
+    private static final int BUCKET_SIZE = 1 << BUCKET_BITS;
+    private static final int LEVELS = Image.MAX_VALUE + 1;
+    private static final int BUCKETS = LEVELS / BUCKET_SIZE;
+
     private NoiseFilters() {
     }
 
@@ -48,6 +56,11 @@ public final class NoiseFilters {
         };
     }
 
+    /**
+     * Mean filter reading window sums from a summed area table of
+     * the channel extended by the range on every side, so that the cost
+     * per pixel doesn't depend on the range.
+     */
     public static UnaryOperator<Channel>
     arithmeticMeanRunning(int range) {
         if (range < 0) {
@@ -61,36 +74,27 @@ public final class NoiseFilters {
             int width = channel.getWidth();
             int heightLim = height - 1;
             int widthLim = width - 1;
+            int window = 1 + 2 * range;
+
+            int[][] source = channel.copyValues();
+            SummedAreaTable table = SummedAreaTable.sumsOf(
+                    height + 2 * range, width + 2 * range,
+                    (y, x) -> source[max(0, min(heightLim, y - range))]
+                                    [max(0, min(widthLim, x - range))]
+            );
 
             int[][] values = new int[height][width];
 
-            int rangeLength = (1 + 2 * range) * (1 + 2 * range); // 1, 9, 25...
+            int rangeLength = window * window; // 1, 9, 25...
 
-            int sum = 0;
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    if (x == 0) {
-                        sum = 0;
-                        for (int i = -range; i <= range; i++) {
-                            for (int j = -range; j <= range; j++) {
-                                sum += channel.getValue(
-                                        max(0, min(heightLim, y + i)),
-                                        max(0, min(widthLim, x + j)));
-                            }
-                        }
-                    } else {
-                        for (int i = -range; i <= range; i++) {
-                            sum -= channel.getValue(
-                                    max(0, min(heightLim, y + i)),
-                                    max(0, min(widthLim, x - range - 1)));
-                            sum += channel.getValue(
-                                    max(0, min(heightLim, y + i)),
-                                    max(0, min(widthLim, x + range)));
-                        }
+            TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+                for (int y = fromY; y < toY; y++) {
+                    for (int x = 0; x < width; x++) {
+                        long sum = table.sum(y, x, window, window);
+                        values[y][x] = Math.round((float) sum / rangeLength);
                     }
-                    values[y][x] = Math.round((float) sum / rangeLength);
                 }
-            }
+            });
 
             return new BufferChannel(values);
         };
@@ -108,9 +112,11 @@ public final class NoiseFilters {
             int widthLim = channel.getWidth() - 1;
 
             int rangeLength = (1 + 2 * range) * (1 + 2 * range);
-            int[] buffer = new int[rangeLength];
+            ThreadLocal<int[]> buffers
+                    = ThreadLocal.withInitial(() -> new int[rangeLength]);
 
             IntBinaryOperator medianFunction = (y, x) -> {
+                int[] buffer = buffers.get();
                 int index = 0;
                 for (int i = -range; i <= range; i++) {
                     for (int j = -range; j <= range; j++) {
@@ -147,43 +153,203 @@ public final class NoiseFilters {
 
             int rangeLength = (1 + 2 * range) * (1 + 2 * range); // 1, 9, 25...
             int medianPos = (rangeLength + 1) / 2;
-            int[] histogram = new int[Image.MAX_VALUE + 1];
-
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    if (x == 0) {
-                        Arrays.fill(histogram, 0);
-                        for (int i = -range; i <= range; i++) {
-                            for (int j = -range; j <= range; j++) {
-                                int value = channel.getValue(
+
+            TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+                int[] histogram = new int[Image.MAX_VALUE + 1];
+                TaskContext context = TaskContext.current();
+
+                for (int y = fromY; y < toY; y++) {
+                    context.checkpoint();
+                    for (int x = 0; x < width; x++) {
+                        if (x == 0) {
+                            Arrays.fill(histogram, 0);
+                            for (int i = -range; i <= range; i++) {
+                                for (int j = -range; j <= range; j++) {
+                                    int value = channel.getValue(
+                                            max(0, min(heightLim, y + i)),
+                                            max(0, min(widthLim, x + j)));
+                                    histogram[value] += 1;
+                                }
+                            }
+                        } else {
+                            for (int i = -range; i <= range; i++) {
+                                int removed =  channel.getValue(
                                         max(0, min(heightLim, y + i)),
-                                        max(0, min(widthLim, x + j)));
-                                histogram[value] += 1;
+                                        max(0, min(widthLim, x - range - 1)));
+                                histogram[removed] -= 1;
+                                int added = channel.getValue(
+                                        max(0, min(heightLim, y + i)),
+                                        max(0, min(widthLim, x + range)));
+                                histogram[added] += 1;
                             }
                         }
-                    } else {
-                        for (int i = -range; i <= range; i++) {
-                            int removed =  channel.getValue(
-                                    max(0, min(heightLim, y + i)),
-                                    max(0, min(widthLim, x - range - 1)));
-                            histogram[removed] -= 1;
-                            int added = channel.getValue(
-                                    max(0, min(heightLim, y + i)),
-                                    max(0, min(widthLim, x + range)));
-                            histogram[added] += 1;
+                        int count = 0;
+                        int v = 0;
+                        while (count < medianPos) {
+                            count += histogram[v++];
                         }
+                        values[y][x] = v - 1;
                     }
-                    int count = 0;
-                    int v = 0;
-                    while (count < medianPos) {
-                        count += histogram[v++];
+                }
+            });
+
+            return new BufferChannel(values);
+        };
+    }
+
+    /**
+     * Median filter with a constant cost per pixel, by Perreault and Hébert.
+     * Each row band keeps a histogram for every column of the window and
+     * a coarse and a fine histogram of the whole window. Moving right updates
+     * only the coarse histogram and parts of the fine histogram are brought
+     * up to date when the median search enters them. Channels with values
+     * outside of the image range are filtered with {@link #median(int)}.
+     */
+    public static UnaryOperator<Channel> medianConstantTime(int range) {
+        if (range < 0) {
+            throw new IllegalArgumentException(
+                    range + " must not be negative."
+            );
+        }
+
+        return channel -> {
+            int height = channel.getHeight();
+            int width = channel.getWidth();
+            int[][] source = channel.copyValues();
+            for (int[] row : source) {
+                for (int value : row) {
+                    if (value < 0 || value > Image.MAX_VALUE) {
+                        return median(range).apply(channel);
                     }
-                    values[y][x] = v - 1;
                 }
             }
 
+            int[][] values = new int[height][width];
+
+            TiledEvaluator.shared().forEachBand(height, (fromY, toY) ->
+                new HistogramMedian(source, range).filter(fromY, toY, values)
+            );
+
             return new BufferChannel(values);
         };
     }
 
+    private static final class HistogramMedian {
+        private static final int STALE = Integer.MIN_VALUE;
+
+        private final int[][] source;
+        private final int range;
+        private final int window;
+        private final int rank;
+        private final int heightLim;
+        private final int widthLim;
+
+        private final int[] columnFine;
+        private final int[] columnCoarse;
+        private final int[] kernelFine = new int[LEVELS];
+        private final int[] kernelCoarse = new int[BUCKETS];
+        private final int[] refreshed = new int[BUCKETS];
+
+        private HistogramMedian(int[][] source, int range) {
+            this.source = source;
+            this.range = range;
+            this.window = 2 * range + 1;
+            this.rank = window * window / 2;
+            this.heightLim = source.length - 1;
+            this.widthLim = source[0].length - 1;
+            this.columnFine = new int[(widthLim + 1) * LEVELS];
+            this.columnCoarse = new int[(widthLim + 1) * BUCKETS];
+        }
+
+        private void filter(int fromY, int toY, int[][] values) {
+            for (int i = -range; i <= range; i++) {
+                updateColumns(source[clampY(fromY + i)], 1);
+            }
+            TaskContext context = TaskContext.current();
+            for (int y = fromY; y < toY; y++) {
+                context.checkpoint();
+                if (y > fromY) {
+                    updateColumns(source[clampY(y - range - 1)], -1);
+                    updateColumns(source[clampY(y + range)], 1);
+                }
+
+                Arrays.fill(kernelCoarse, 0);
+                Arrays.fill(refreshed, STALE);
+                for (int j = -range; j <= range; j++) {
+                    updateKernelCoarse(clampX(j), 1);
+                }
+
+                int[] row = values[y];
+                for (int x = 0; x <= widthLim; x++) {
+                    if (x > 0) {
+                        updateKernelCoarse(clampX(x - range - 1), -1);
+                        updateKernelCoarse(clampX(x + range), 1);
+                    }
+                    row[x] = findMedian(x);
+                }
+            }
+        }
+
+        private int findMedian(int x) {
+            int count = 0;
+            int bucket = 0;
+            while (count + kernelCoarse[bucket] <= rank) {
+                count += kernelCoarse[bucket++];
+            }
+            refreshBucket(bucket, x);
+            int value = bucket << BUCKET_BITS;
+            while (count + kernelFine[value] <= rank) {
+                count += kernelFine[value++];
+            }
+            return value;
+        }
+
+        private void updateColumns(int[] sourceRow, int sign) {
+            for (int x = 0; x <= widthLim; x++) {
+                int value = sourceRow[x];
+                columnFine[x * LEVELS + value] += sign;
+                columnCoarse[x * BUCKETS + (value >> BUCKET_BITS)] += sign;
+            }
+        }
+
+        private void updateKernelCoarse(int column, int sign) {
+            int offset = column * BUCKETS;
+            for (int b = 0; b < BUCKETS; b++) {
+                kernelCoarse[b] += sign * columnCoarse[offset + b];
+            }
+        }
+
+        private void refreshBucket(int bucket, int x) {
+            int last = refreshed[bucket];
+            int from = bucket << BUCKET_BITS;
+            if (last == STALE || 2 * (x - last) > window) {
+                Arrays.fill(kernelFine, from, from + BUCKET_SIZE, 0);
+                for (int j = -range; j <= range; j++) {
+                    updateKernelFine(from, clampX(x + j), 1);
+                }
+            } else {
+                for (int t = last + 1; t <= x; t++) {
+                    updateKernelFine(from, clampX(t - range - 1), -1);
+                    updateKernelFine(from, clampX(t + range), 1);
+                }
+            }
+            refreshed[bucket] = x;
+        }
+
+        private void updateKernelFine(int from, int column, int sign) {
+            int offset = column * LEVELS;
+            for (int v = from; v < from + BUCKET_SIZE; v++) {
+                kernelFine[v] += sign * columnFine[offset + v];
+            }
+        }
+
+        private int clampY(int y) {
+            return max(0, min(heightLim, y));
+        }
+
+        private int clampX(int x) {
+            return max(0, min(widthLim, x));
+        }
+    }
+
 }
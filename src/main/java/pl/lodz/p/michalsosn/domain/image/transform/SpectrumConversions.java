@@ -5,7 +5,6 @@ import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
 import pl.lodz.p.michalsosn.domain.image.channel.Channel;
 import pl.lodz.p.michalsosn.domain.image.channel.GrayImage;
 import pl.lodz.p.michalsosn.domain.image.channel.Image;
-import pl.lodz.p.michalsosn.domain.complex.Complex;
 import pl.lodz.p.michalsosn.domain.image.spectrum.ImageSpectrum;
 import pl.lodz.p.michalsosn.domain.image.spectrum.Spectrum2d;
 import pl.lodz.p.michalsosn.domain.util.MathUtils;
@@ -13,7 +12,7 @@ import pl.lodz.p.michalsosn.domain.util.MathUtils;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.DoubleSummaryStatistics;
-import java.util.function.ToDoubleFunction;
+import java.util.function.DoubleBinaryOperator;
 
 import static java.lang.Math.*;
 import static java.util.Arrays.stream;
@@ -29,26 +28,26 @@ public final class SpectrumConversions {
     }
 
     public static Channel spectrumToRe(Spectrum2d spectrum) {
-        return mapComplexSymmetricLog10(spectrum.copyValues(), Complex::getRe);
+        return mapDoubleSymmetricLog10(
+                mapParts(spectrum, (re, im) -> re)
+        );
     }
 
     public static Channel spectrumToIm(Spectrum2d spectrum) {
-        return mapComplexSymmetricLog10(spectrum.copyValues(), Complex::getIm);
+        return mapDoubleSymmetricLog10(
+                mapParts(spectrum, (re, im) -> im)
+        );
     }
 
     public static Channel spectrumToAbs(Spectrum2d spectrum) {
-        Complex[][] values = spectrum.copyValues();
-        double[][] absValues = stream(values).map(row ->
-                stream(row).mapToDouble(Complex::getAbs).toArray()
-        ).toArray(double[][]::new);
-        return mapDoubleWithLog10(absValues);
+        return mapDoubleWithLog10(mapParts(spectrum, Math::hypot));
     }
 
     public static Channel spectrumToPhase(Spectrum2d spectrum) {
         double scale = 255 / 2 * PI;
-        int[][] absValues = stream(spectrum.copyValues()).map(row ->
-                stream(row).mapToDouble(Complex::getPhase)
-                           .mapToInt(v -> (int) round(
+        double[][] phaseValues = mapParts(spectrum, (re, im) -> atan2(im, re));
+        int[][] absValues = stream(phaseValues).map(row ->
+                stream(row).mapToInt(v -> (int) round(
                                    MathUtils.mod(v + PI, 2 * PI) * scale
                            )).toArray()
         ).toArray(int[][]::new);
@@ -69,7 +68,9 @@ public final class SpectrumConversions {
 
         for (Spectrum2d spectrum : spectra) {
             spectrum.forEach((y, x) ->
-                    absValues[y][x] += spectrum.getValue(y, x).getAbs()
+                    absValues[y][x] += hypot(
+                            spectrum.getRe(y, x), spectrum.getIm(y, x)
+                    )
             );
         }
 
@@ -103,13 +104,21 @@ public final class SpectrumConversions {
         return new BufferChannel(normalized);
     }
 
-    private static Channel mapComplexSymmetricLog10(
-            Complex[][] values, ToDoubleFunction<Complex> mapper
-    ) {
-        double[][] absValues = stream(values).map(row ->
-                stream(row).mapToDouble(mapper).toArray()
-        ).toArray(double[][]::new);
-        return mapDoubleSymmetricLog10(absValues);
+    private static double[][] mapParts(Spectrum2d spectrum,
+                                       DoubleBinaryOperator mapper) {
+        int height = spectrum.getHeight();
+        int width = spectrum.getWidth();
+        double[] buffer = new double[2 * width];
+        double[][] values = new double[height][width];
+        for (int y = 0; y < height; y++) {
+            spectrum.copyTo(y, buffer, 0);
+            for (int x = 0; x < width; x++) {
+                values[y][x] = mapper.applyAsDouble(
+                        buffer[2 * x], buffer[2 * x + 1]
+                );
+            }
+        }
+        return values;
     }
 
     private static Channel mapDoubleSymmetricLog10(double[][] values) {
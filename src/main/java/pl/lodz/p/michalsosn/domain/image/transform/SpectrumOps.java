@@ -1,7 +1,6 @@
 package pl.lodz.p.michalsosn.domain.image.transform;
 
-import pl.lodz.p.michalsosn.domain.image.spectrum.BufferSpectrum2d;
-import pl.lodz.p.michalsosn.domain.complex.Complex;
+import pl.lodz.p.michalsosn.domain.image.spectrum.ArraySpectrum2d;
 import pl.lodz.p.michalsosn.domain.image.spectrum.Spectrum2d;
 
 import java.util.function.UnaryOperator;
@@ -18,18 +17,24 @@ public final class SpectrumOps {
             int height = spectrum.getHeight();
             int width = spectrum.getWidth();
 
-            Complex[][] values = spectrum.copyValues();
+            double[] values = ArraySpectrum2d.interleave(spectrum);
             double yMod = - k * 2 * Math.PI / height;
             double xMod = - l * 2 * Math.PI / width;
             double cMod = (k + l) * Math.PI;
+            int index = 0;
             for (int y = 0; y < height; ++y) {
-                for (int x = 0; x < width; ++x) {
-                    values[y][x] = values[y][x]
-                            .multiply(Complex.ofPolar(1, yMod * y + xMod * x + cMod));
+                for (int x = 0; x < width; ++x, index += 2) {
+                    double phase = yMod * y + xMod * x + cMod;
+                    double shiftRe = Math.cos(phase);
+                    double shiftIm = Math.sin(phase);
+                    double re = values[index];
+                    double im = values[index + 1];
+                    values[index] = re * shiftRe - im * shiftIm;
+                    values[index + 1] = re * shiftIm + im * shiftRe;
                 }
             }
 
-            return new BufferSpectrum2d(values);
+            return new ArraySpectrum2d(height, width, values);
         };
     }
 }
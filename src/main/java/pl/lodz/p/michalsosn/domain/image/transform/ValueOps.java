@@ -1,7 +1,8 @@
 package pl.lodz.p.michalsosn.domain.image.transform;
 
+import pl.lodz.p.michalsosn.domain.image.channel.ValueLut;
+
 import java.util.function.IntUnaryOperator;
-import java.util.stream.IntStream;
 
 import static pl.lodz.p.michalsosn.domain.image.channel.Image.MAX_VALUE;
 import static pl.lodz.p.michalsosn.domain.image.channel.Image.MIN_VALUE;
@@ -14,17 +15,17 @@ public final class ValueOps {
     private ValueOps() {
     }
 
-    public static IntUnaryOperator negate() {
-        return value -> MAX_VALUE - value;
+    public static ValueLut negate() {
+        return ValueLut.of(value -> MAX_VALUE - value);
     }
 
-    public static IntUnaryOperator changeBrightness(int change) {
+    public static ValueLut changeBrightness(int change) {
         if (change > 0) {
-            return value -> Math.min(value + change, MAX_VALUE);
+            return ValueLut.of(value -> Math.min(value + change, MAX_VALUE));
         } else if (change < 0) {
-            return value -> Math.max(value + change, MIN_VALUE);
+            return ValueLut.of(value -> Math.max(value + change, MIN_VALUE));
         } else {
-            return IntUnaryOperator.identity();
+            return ValueLut.of(IntUnaryOperator.identity());
         }
     }
 
@@ -38,7 +39,7 @@ public final class ValueOps {
      * @param change A coefficient in range [0.0, 128.0]
      * @return New value of a pixel.
      */
-    public static IntUnaryOperator changeContrast(double change) {
+    public static ValueLut changeContrast(double change) {
         if (change < 0.0 || change > 128.0) {
             throw new IllegalArgumentException(
                     "change must be in [0.0, 128.0]"
@@ -46,18 +47,18 @@ public final class ValueOps {
         }
 
         if (change < 1.0) {
-            return value -> (int) Math.round(
+            return ValueLut.of(value -> (int) Math.round(
                     value * change + 127 * (1 - change)
-            );
+            ));
         } else if (change > 1.0) {
-            return value -> {
+            return ValueLut.of(value -> {
                 int newValue = (int) Math.round(
                         value * change + 127 * (1 - change)
                 );
                 return Math.min(MAX_VALUE, Math.max(MIN_VALUE, newValue));
-            };
+            });
         } else {
-            return IntUnaryOperator.identity();
+            return ValueLut.of(IntUnaryOperator.identity());
         }
     }
 
@@ -65,11 +66,4 @@ public final class ValueOps {
         return value -> value < threshold ? threshold : value;
     }
 
-    public static IntUnaryOperator precalculating(IntUnaryOperator operator) {
-        int[] preCalculated = IntStream
-                .rangeClosed(MIN_VALUE, MAX_VALUE)
-                .map(operator).toArray();
-        return value -> preCalculated[value];
-    }
-
 }
@@ -1,13 +1,9 @@
 package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
 
-import java.util.DoubleSummaryStatistics;
-import java.util.stream.DoubleStream;
-
 /**
  * @author Michał Sośnicki
  */
-public final class DoubleMaxRangeClassifier
-        implements RegionClassifier<Double, DoubleStream> {
+public final class DoubleMaxRangeClassifier implements RegionClassifier {
     private final int maxRange;
 
     public DoubleMaxRangeClassifier(int maxRange) {
@@ -15,9 +11,8 @@ public final class DoubleMaxRangeClassifier
     }
 
     @Override
-    public boolean checkUniform(Region<Double, DoubleStream> region) {
-        DoubleSummaryStatistics statistics = region.values().summaryStatistics();
-        return statistics.getMax() - statistics.getMin() <= maxRange;
+    public boolean checkUniform(long count, double sum, double sumOfSquares,
+                                double min, double max) {
+        return count == 0 || max - min <= maxRange;
     }
 }
-
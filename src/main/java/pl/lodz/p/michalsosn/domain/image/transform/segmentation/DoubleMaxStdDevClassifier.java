@@ -1,13 +1,12 @@
 package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
 
-import java.util.OptionalDouble;
-import java.util.stream.DoubleStream;
-
 /**
  * @author Michał Sośnicki
  */
-public final class DoubleMaxStdDevClassifier
-        implements RegionClassifier<Double, DoubleStream> {
+public final class DoubleMaxStdDevClassifier implements RegionClassifier {
+    // relative error of variances computed from the moments of regions
+    private static final double TOLERANCE = 1e-9;
+
     private final double maxStdDev;
 
     public DoubleMaxStdDevClassifier(double maxStdDev) {
@@ -15,17 +14,16 @@ public final class DoubleMaxStdDevClassifier
     }
 
     @Override
-    public boolean checkUniform(Region<Double, DoubleStream> region) {
-        OptionalDouble optionalAverage = region.values().average();
-        if (!optionalAverage.isPresent()) {
+    public boolean checkUniform(long count, double sum, double sumOfSquares,
+                                double min, double max) {
+        if (count == 0) {
             return true;
         }
-        double average = optionalAverage.getAsDouble();
-        double avgOfSquares = region.values().map(v -> v * v).average().getAsDouble();
-        double stdDev = Math.sqrt(avgOfSquares - average * average);
+        double average = sum / count;
+        double variance = Math.max(0.0, sumOfSquares / count - average * average);
 
-        return stdDev <= maxStdDev;
+        // regions deviating exactly by the limit are uniform, whichever way
+        // the moments are rounded
+        return variance <= maxStdDev * maxStdDev * (1 + TOLERANCE);
     }
 }
-
-
@@ -0,0 +1,197 @@
+package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
+
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
+
+import java.util.Arrays;
+
+/**
+ * Minimums and maximums of all regions the split of an image can make.
+ * A split region is a product of a row interval and a column interval
+ * from halving the rows and the columns as many times as its depth,
+ * so each depth has a grid of extremes, built from the grid below it.
+ * All grids but the one of single pixels take about a third of the size
+ * of the image together.
+ * @author Michał Sośnicki
+ */
+public final class ExtremesPyramid implements RegionSummaries {
+
+    private final int[][] values;
+    private final double scale;
+    private final int deepest;
+    private final Intervals rows;
+    private final Intervals columns;
+    private final int[][] mins;
+    private final int[][] maxes;
+
+    /**
+     * Builds the pyramid of the values, which are the values of regions
+     * multiplied by the scale.
+     */
+    public ExtremesPyramid(int[][] values, double scale) {
+        int height = values.length;
+        int width = height == 0 ? 0 : values[0].length;
+        this.values = values;
+        this.scale = scale;
+        this.deepest = Math.max(splitDepth(height), splitDepth(width));
+        this.rows = new Intervals(height, deepest);
+        this.columns = new Intervals(width, deepest);
+        this.mins = new int[deepest][];
+        this.maxes = new int[deepest][];
+
+        for (int depth = deepest - 1; depth >= 0; depth--) {
+            buildLevel(depth);
+        }
+    }
+
+    private static int splitDepth(int length) {
+        int depth = 0;
+        while (length > 1 << depth) {
+            ++depth;
+        }
+        return depth;
+    }
+
+    private void buildLevel(int depth) {
+        int rowCount = rows.count(depth);
+        int columnCount = columns.count(depth);
+        int childColumnCount = columns.count(depth + 1);
+        int[] levelMins = new int[rowCount * columnCount];
+        int[] levelMaxes = new int[rowCount * columnCount];
+
+        TiledEvaluator.shared().forEachBand(rowCount, (fromRow, toRow) -> {
+            for (int row = fromRow; row < toRow; row++) {
+                int[] childRows = rows.children(depth, row);
+                for (int column = 0; column < columnCount; column++) {
+                    int[] childColumns = columns.children(depth, column);
+                    int min = Integer.MAX_VALUE;
+                    int max = Integer.MIN_VALUE;
+                    for (int childRow : childRows) {
+                        for (int childColumn : childColumns) {
+                            if (depth + 1 == deepest) {
+                                int value = values[rows.start(deepest, childRow)]
+                                        [columns.start(deepest, childColumn)];
+                                min = Math.min(min, value);
+                                max = Math.max(max, value);
+                            } else {
+                                int child = childRow * childColumnCount
+                                        + childColumn;
+                                min = Math.min(min, mins[depth + 1][child]);
+                                max = Math.max(max, maxes[depth + 1][child]);
+                            }
+                        }
+                    }
+                    levelMins[row * columnCount + column] = min;
+                    levelMaxes[row * columnCount + column] = max;
+                }
+            }
+        });
+
+        mins[depth] = levelMins;
+        maxes[depth] = levelMaxes;
+    }
+
+    @Override
+    public RegionStatistics statistics(int depth, int y, int x,
+                                       int height, int width) {
+        long count = (long) height * width;
+        if (count == 0) {
+            return RegionStatistics.ofExtremes(
+                    0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+            );
+        }
+
+        // single pixels keep splitting into themselves below the last level
+        int level = Math.min(depth, deepest);
+        int row = rows.find(level, y, height);
+        int column = columns.find(level, x, width);
+        if (level == deepest) {
+            double value = values[y][x] / scale;
+            return RegionStatistics.ofExtremes(1, value, value);
+        }
+        int index = row * columns.count(level) + column;
+        return RegionStatistics.ofExtremes(
+                count, mins[level][index] / scale, maxes[level][index] / scale
+        );
+    }
+
+    /**
+     * Non-empty intervals made by halving a range of the given length,
+     * ordered by their start at every depth.
+     */
+    private static final class Intervals {
+        private final int[][] starts;
+        private final int[][] lengths;
+        private final int[][][] children;
+        private final int[][] indexAt;
+
+        private Intervals(int length, int deepest) {
+            starts = new int[deepest + 1][];
+            lengths = new int[deepest + 1][];
+            children = new int[deepest][][];
+            indexAt = new int[deepest + 1][];
+
+            starts[0] = length > 0 ? new int[]{0} : new int[0];
+            lengths[0] = length > 0 ? new int[]{length} : new int[0];
+            for (int depth = 0; depth < deepest; depth++) {
+                int count = starts[depth].length;
+                int[] nextStarts = new int[2 * count];
+                int[] nextLengths = new int[2 * count];
+                int[][] depthChildren = new int[count][];
+                int next = 0;
+                for (int i = 0; i < count; i++) {
+                    int start = starts[depth][i];
+                    int lower = lengths[depth][i] / 2;
+                    int upper = lengths[depth][i] - lower;
+                    if (lower > 0) {
+                        nextStarts[next] = start;
+                        nextLengths[next] = lower;
+                        ++next;
+                        depthChildren[i] = new int[]{next - 1, next};
+                    } else {
+                        depthChildren[i] = new int[]{next};
+                    }
+                    nextStarts[next] = start + lower;
+                    nextLengths[next] = upper;
+                    ++next;
+                }
+                children[depth] = depthChildren;
+                starts[depth + 1] = Arrays.copyOf(nextStarts, next);
+                lengths[depth + 1] = Arrays.copyOf(nextLengths, next);
+            }
+
+            for (int depth = 0; depth <= deepest; depth++) {
+                int[] depthIndexAt = new int[length];
+                Arrays.fill(depthIndexAt, -1);
+                for (int i = 0; i < starts[depth].length; i++) {
+                    depthIndexAt[starts[depth][i]] = i;
+                }
+                indexAt[depth] = depthIndexAt;
+            }
+        }
+
+        private int count(int depth) {
+            return starts[depth].length;
+        }
+
+        private int start(int depth, int index) {
+            return starts[depth][index];
+        }
+
+        private int[] children(int depth, int index) {
+            return children[depth][index];
+        }
+
+        private int find(int depth, int start, int length) {
+            int index = start >= 0 && start < indexAt[depth].length
+                      ? indexAt[depth][start] : -1;
+            if (index < 0 || lengths[depth][index] != length) {
+                throw new IllegalArgumentException(
+                        "No interval of length " + length + " starts at "
+                      + start + " at depth " + depth + "."
+                );
+            }
+            return index;
+        }
+    }
+
+}
@@ -1,10 +1,18 @@
 package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
 
-import java.util.stream.BaseStream;
-
 /**
+ * Decides if a region is uniform given statistics of its values,
+ * passed as primitives so that classifying merge candidates doesn't
+ * allocate.
  * @author Michał Sośnicki
  */
-public interface RegionClassifier<T, S extends BaseStream<T, S>> {
-    boolean checkUniform(Region<T, S> region);
+public interface RegionClassifier {
+    boolean checkUniform(long count, double sum, double sumOfSquares,
+                         double min, double max);
+
+    default boolean checkUniform(RegionStatistics statistics) {
+        return checkUniform(statistics.getCount(), statistics.getSum(),
+                            statistics.getSumOfSquares(),
+                            statistics.getMin(), statistics.getMax());
+    }
 }
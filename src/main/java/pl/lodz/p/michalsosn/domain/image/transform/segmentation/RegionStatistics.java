@@ -0,0 +1,82 @@
+package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
+
+/**
+ * Count, sum, sum of squares and extremes of the values of a region,
+ * enough to classify it without reading the values again. Moments or
+ * extremes that weren't computed are NaN.
+ * @author Michał Sośnicki
+ */
+public final class RegionStatistics {
+    private final long count;
+    private final double sum;
+    private final double sumOfSquares;
+    private final double min;
+    private final double max;
+
+    public RegionStatistics(long count, double sum, double sumOfSquares) {
+        this(count, sum, sumOfSquares, Double.NaN, Double.NaN);
+    }
+
+    public RegionStatistics(long count, double sum, double sumOfSquares,
+                            double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.sumOfSquares = sumOfSquares;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static RegionStatistics ofExtremes(long count,
+                                              double min, double max) {
+        return new RegionStatistics(count, Double.NaN, Double.NaN, min, max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getSumOfSquares() {
+        return sumOfSquares;
+    }
+
+    /**
+     * The smallest value, positive infinity for empty regions.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * The largest value, negative infinity for empty regions.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return sum / count;
+    }
+
+    public double getVariance() {
+        if (count == 0) {
+            return 0.0;
+        }
+        double mean = getMean();
+        return Math.max(0.0, sumOfSquares / count - mean * mean);
+    }
+
+    @Override
+    public String toString() {
+        return "RegionStatistics{"
+             + "count=" + count
+             + ", sum=" + sum
+             + ", sumOfSquares=" + sumOfSquares
+             + ", min=" + min
+             + ", max=" + max
+             + '}';
+    }
+}
@@ -0,0 +1,27 @@
+package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
+
+import pl.lodz.p.michalsosn.domain.image.statistic.SummedAreaTable;
+
+/**
+ * Index built once per image that tells statistics of split regions
+ * without reading their values. Regions are given by their depth in
+ * the split tree, position and size.
+ * @author Michał Sośnicki
+ */
+public interface RegionSummaries {
+
+    RegionStatistics statistics(int depth, int y, int x,
+                                int height, int width);
+
+    /**
+     * Moments of regions read from the table, which holds the values
+     * multiplied by the scale.
+     */
+    static RegionSummaries ofTable(SummedAreaTable table, double scale) {
+        return (depth, y, x, height, width) -> new RegionStatistics(
+                (long) height * width,
+                table.sum(y, x, height, width) / scale,
+                table.sumOfSquares(y, x, height, width) / (scale * scale)
+        );
+    }
+}
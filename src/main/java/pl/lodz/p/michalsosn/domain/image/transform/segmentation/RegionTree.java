@@ -1,224 +1,359 @@
 package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
 
-import pl.lodz.p.michalsosn.domain.util.Record;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.function.BinaryOperator;
-import java.util.function.ToIntFunction;
-import java.util.stream.BaseStream;
+import java.util.Arrays;
 
 /**
+ * Split and merge segmentation. The constructor splits the image into
+ * a quadtree of uniform regions, {@link #merge()} joins neighbouring
+ * leaves, children before parents, while their union stays uniform.
+ * Nodes and leaves live in primitive arrays and both passes use explicit
+ * stacks. Leaves form a union-find which keeps the count, sums and
+ * extremes of every class in its root, so classifying a merge candidate
+ * takes constant time. Empty regions, made by splitting regions one
+ * pixel wide, don't form classes.
  * @author Michał Sośnicki
  */
-public final class RegionTree<T, S extends BaseStream<T, S>> {
-
-    private final RegionClassifier<T, S> classifier;
-    private final BinaryOperator<S> merger;
-    private final Node<T, S> root;
-    private final SplitRegion<T, S> rootRegion;
-
-    public RegionTree(RegionClassifier<T, S> classifier, BinaryOperator<S> merger,
-                      SplitRegion<T, S> rootRegion) {
+public final class RegionTree {
+
+    private static final int Y = 0;
+    private static final int X = 1;
+    private static final int HEIGHT = 2;
+    private static final int WIDTH = 3;
+    private static final int FIRST_CHILD = 4;
+    private static final int LEAF = 5;
+    private static final int NODE_FIELDS = 6;
+
+    // children are stored in this order after the first child
+    private static final int TOP_LEFT = 0;
+    private static final int TOP_RIGHT = 1;
+    private static final int BOTTOM_LEFT = 2;
+    private static final int BOTTOM_RIGHT = 3;
+
+    private static final int NONE = -1;
+
+    // nodes visited between checks for cancellation
+    private static final int CHECKPOINT_INTERVAL = 4096;
+
+    private final RegionClassifier classifier;
+    private final int height;
+    private final int width;
+
+    private int[] nodes = new int[16 * NODE_FIELDS];
+    private int nodeCount;
+
+    private int[] parents = new int[16];
+    private long[] counts = new long[16];
+    private double[] sums = new double[16];
+    private double[] sumsOfSquares = new double[16];
+    private double[] mins = new double[16];
+    private double[] maxes = new double[16];
+    private int leafCount;
+
+    private int[] firstEdge = new int[16];
+    private int[] secondEdge = new int[16];
+    private int[] edgeStack = new int[32];
+
+    public RegionTree(RegionClassifier classifier, RegionSummaries summaries,
+                      int height, int width) {
         this.classifier = classifier;
-        this.merger = merger;
-        this.rootRegion = rootRegion;
-        this.root = makeNode(rootRegion);
-    }
-
-    private Node<T, S> makeNode(SplitRegion<T, S> region) {
-        if (classifier.checkUniform(region)) {
-            return new LeafNode(region);
-        } else {
-            return new InnerNode(
-                    makeNode(region.subRegion(SubRegion.TOP_LEFT)),
-                    makeNode(region.subRegion(SubRegion.TOP_RIGHT)),
-                    makeNode(region.subRegion(SubRegion.BOTTOM_LEFT)),
-                    makeNode(region.subRegion(SubRegion.BOTTOM_RIGHT))
-            );
-        }
+        this.height = height;
+        this.width = width;
+        split(summaries);
     }
 
-    public void merge() {
-        root.merge();
-    }
-
-    public Mask[] collectMasks() {
-        final Set<Record<Set<SplitRegion<T, S>>>> classes = new HashSet<>();
-
-        root.accept(new NodeVisitor<T, S, Void>() {
-            @Override
-            public Void visit(LeafNode leafNode) {
-                classes.add(leafNode.getRegion().getClassRegions());
-                return null;
+    private void split(RegionSummaries summaries) {
+        addNode(0, 0, height, width);
+        int[] stack = new int[32];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = 0;
+
+        TaskContext context = TaskContext.current();
+        int visited = 0;
+        while (stackSize > 0) {
+            if (++visited % CHECKPOINT_INTERVAL == 0) {
+                context.checkpoint();
             }
-
-            @Override
-            public Void visit(InnerNode innerNode) {
-                innerNode.getBottomLeft().accept(this);
-                innerNode.getBottomRight().accept(this);
-                innerNode.getTopLeft().accept(this);
-                innerNode.getTopRight().accept(this);
-                return null;
+            int depth = stack[--stackSize];
+            int node = stack[--stackSize];
+            int base = node * NODE_FIELDS;
+            int y = nodes[base + Y];
+            int x = nodes[base + X];
+            int nodeHeight = nodes[base + HEIGHT];
+            int nodeWidth = nodes[base + WIDTH];
+            if (nodeHeight == 0 || nodeWidth == 0) {
+                continue;
             }
-        });
-
-        return classes.stream().map(Record::get)
-                .map(this::makeMask)
-                .toArray(Mask[]::new);
-    }
-
-    private Mask makeMask(Set<SplitRegion<T, S>> regions) {
-        int height = rootRegion.getHeight();
-        int width = rootRegion.getWidth();
-        boolean[][] maskArray = new boolean[height][width];
 
-        double unique = Math.random();
-        regions.forEach(region ->
-                region.forEach((y, x) ->
-                        maskArray[y][x] = true
-                )
-        );
-
-        return new Mask(maskArray);
-    }
-
-
-    public interface Node<T, S extends BaseStream<T, S>> {
-        void merge();
-
-        Iterator<ClassifiedRegionSet<T, S>> iterator(RegionEdge edge);
-        <R> R accept(NodeVisitor<T, S, R> visitor);
-    }
-
-    public final class LeafNode implements Node<T, S> {
-        private final ClassifiedRegionSet<T, S> region;
-
-        public LeafNode(SplitRegion<T, S> region) {
-            this.region = new ClassifiedRegionSet<>(region, merger);
-        }
-
-        @Override
-        public void merge() {
-            // do nothing, leaf is already uniform
-        }
+            RegionStatistics statistics = summaries.statistics(
+                    depth, y, x, nodeHeight, nodeWidth
+            );
+            if (nodeHeight * nodeWidth == 1
+                    || classifier.checkUniform(statistics)) {
+                nodes[base + LEAF] = addLeaf(statistics);
+                continue;
+            }
 
-        @Override
-        public Iterator<ClassifiedRegionSet<T, S>> iterator(RegionEdge edge) {
-            return new EdgeIterator<>(edge, this);
+            int midHeight = nodeHeight / 2;
+            int midWidth = nodeWidth / 2;
+            int firstChild = nodeCount;
+            addNode(y + midHeight, x, nodeHeight - midHeight, midWidth);
+            addNode(y + midHeight, x + midWidth,
+                    nodeHeight - midHeight, nodeWidth - midWidth);
+            addNode(y, x, midHeight, midWidth);
+            addNode(y, x + midWidth, midHeight, nodeWidth - midWidth);
+            nodes[base + FIRST_CHILD] = firstChild;
+
+            if (stackSize + 8 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            for (int child = 0; child < 4; child++) {
+                stack[stackSize++] = firstChild + child;
+                stack[stackSize++] = depth + 1;
+            }
         }
+    }
 
-        @Override
-        public <R> R accept(NodeVisitor<T, S, R> visitor) {
-            return visitor.visit(this);
+    private void addNode(int y, int x, int nodeHeight, int nodeWidth) {
+        if ((nodeCount + 1) * NODE_FIELDS > nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * nodes.length);
         }
+        int base = nodeCount * NODE_FIELDS;
+        nodes[base + Y] = y;
+        nodes[base + X] = x;
+        nodes[base + HEIGHT] = nodeHeight;
+        nodes[base + WIDTH] = nodeWidth;
+        nodes[base + FIRST_CHILD] = NONE;
+        nodes[base + LEAF] = NONE;
+        ++nodeCount;
+    }
 
-        public ClassifiedRegionSet<T, S> getRegion() {
-            return region;
+    private int addLeaf(RegionStatistics statistics) {
+        if (leafCount == parents.length) {
+            int capacity = 2 * leafCount;
+            parents = Arrays.copyOf(parents, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            sumsOfSquares = Arrays.copyOf(sumsOfSquares, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxes = Arrays.copyOf(maxes, capacity);
         }
+        int leaf = leafCount++;
+        parents[leaf] = leaf;
+        counts[leaf] = statistics.getCount();
+        sums[leaf] = statistics.getSum();
+        sumsOfSquares[leaf] = statistics.getSumOfSquares();
+        mins[leaf] = statistics.getMin();
+        maxes[leaf] = statistics.getMax();
+        return leaf;
     }
 
-    public final class InnerNode implements Node<T, S> {
-        private final Node<T, S> topLeft;
-        private final Node<T, S> topRight;
-        private final Node<T, S> bottomLeft;
-        private final Node<T, S> bottomRight;
-
-        public InnerNode(Node<T, S> topLeft, Node<T, S> topRight,
-                         Node<T, S> bottomLeft, Node<T, S> bottomRight) {
-            this.topLeft = topLeft;
-            this.topRight = topRight;
-            this.bottomLeft = bottomLeft;
-            this.bottomRight = bottomRight;
+    public void merge() {
+        // reversed pre-order visiting the last child first is the post-order
+        // visiting children from the top left one to the bottom right one
+        int[] order = new int[nodeCount];
+        int orderSize = 0;
+        int[] stack = new int[32];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            int firstChild = nodes[node * NODE_FIELDS + FIRST_CHILD];
+            if (firstChild == NONE) {
+                continue;
+            }
+            order[orderSize++] = node;
+            if (stackSize + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            for (int child = 0; child < 4; child++) {
+                stack[stackSize++] = firstChild + child;
+            }
         }
 
-        @Override
-        public void merge() {
-            topLeft.merge();
-            topRight.merge();
-            bottomLeft.merge();
-            bottomRight.merge();
-
-            mergeVerticalEdge(bottomLeft.iterator(RegionEdge.RIGHT),
-                              bottomRight.iterator(RegionEdge.LEFT));
-            mergeVerticalEdge(topLeft.iterator(RegionEdge.RIGHT),
-                              topRight.iterator(RegionEdge.LEFT));
-            mergeHorizontalEdge(bottomLeft.iterator(RegionEdge.TOP),
-                                topLeft.iterator(RegionEdge.BOTTOM));
-            mergeHorizontalEdge(bottomRight.iterator(RegionEdge.TOP),
-                                topRight.iterator(RegionEdge.BOTTOM));
+        TaskContext context = TaskContext.current();
+        for (int i = orderSize - 1; i >= 0; i--) {
+            if (i % CHECKPOINT_INTERVAL == 0) {
+                context.report(orderSize - i, orderSize);
+            }
+            int firstChild = nodes[order[i] * NODE_FIELDS + FIRST_CHILD];
+            int topLeft = firstChild + TOP_LEFT;
+            int topRight = firstChild + TOP_RIGHT;
+            int bottomLeft = firstChild + BOTTOM_LEFT;
+            int bottomRight = firstChild + BOTTOM_RIGHT;
+
+            mergeEdge(bottomLeft, RegionEdge.RIGHT,
+                      bottomRight, RegionEdge.LEFT, Y, HEIGHT);
+            mergeEdge(topLeft, RegionEdge.RIGHT,
+                      topRight, RegionEdge.LEFT, Y, HEIGHT);
+            mergeEdge(bottomLeft, RegionEdge.TOP,
+                      topLeft, RegionEdge.BOTTOM, X, WIDTH);
+            mergeEdge(bottomRight, RegionEdge.TOP,
+                      topRight, RegionEdge.BOTTOM, X, WIDTH);
         }
+    }
 
-        private void mergeVerticalEdge(Iterator<ClassifiedRegionSet<T, S>> lefts,
-                                       Iterator<ClassifiedRegionSet<T, S>> rights) {
-            mergeEdge(lefts, rights, SplitRegion::getY, SplitRegion::getHeight);
+    /**
+     * Walks leaves along the touching edges of both nodes, ordered by
+     * their position, and merges every touching pair of uniform union.
+     */
+    private void mergeEdge(int first, RegionEdge firstEdgeSide,
+                           int second, RegionEdge secondEdgeSide,
+                           int position, int length) {
+        int firstSize = collectEdge(first, firstEdgeSide, true);
+        int secondSize = collectEdge(second, secondEdgeSide, false);
+        if (firstSize == 0 || secondSize == 0) {
+            return;
         }
 
-        private void mergeHorizontalEdge(Iterator<ClassifiedRegionSet<T, S>> bottoms,
-                                         Iterator<ClassifiedRegionSet<T, S>> tops) {
-            mergeEdge(bottoms, tops, SplitRegion::getX, SplitRegion::getWidth);
+        int i = 0;
+        int j = 0;
+        while (true) {
+            int firstNode = firstEdge[i];
+            int secondNode = secondEdge[j];
+            tryUnion(nodes[firstNode * NODE_FIELDS + LEAF],
+                     nodes[secondNode * NODE_FIELDS + LEAF]);
+
+            int firstEnd = nodes[firstNode * NODE_FIELDS + position]
+                         + nodes[firstNode * NODE_FIELDS + length];
+            int secondEnd = nodes[secondNode * NODE_FIELDS + position]
+                          + nodes[secondNode * NODE_FIELDS + length];
+            if (firstEnd < secondEnd) {
+                ++i;
+            } else if (secondEnd < firstEnd) {
+                ++j;
+            } else if (i + 1 < firstSize && j + 1 < secondSize) {
+                ++i;
+                ++j;
+            } else {
+                break;
+            }
         }
+    }
 
-        private void mergeEdge(Iterator<ClassifiedRegionSet<T, S>> lefts,
-                               Iterator<ClassifiedRegionSet<T, S>> rights,
-                               ToIntFunction<SplitRegion<T, S>> getPos,
-                               ToIntFunction<SplitRegion<T, S>> getLength) {
-            ClassifiedRegionSet<T, S> leftClass = lefts.next();
-            ClassifiedRegionSet<T, S> rightClass = rights.next();
-            while (true) {
-                ClassifiedRegionPair<T, S> regionCandidate
-                        = new ClassifiedRegionPair<>(leftClass, rightClass, merger);
-                if (classifier.checkUniform(regionCandidate)) {
-                    ClassifiedRegionSet.merge(leftClass, rightClass);
+    /**
+     * Collects the non-empty leaves of the node lying on its edge.
+     */
+    private int collectEdge(int node, RegionEdge edge, boolean intoFirst) {
+        int[] edgeNodes = intoFirst ? firstEdge : secondEdge;
+        int size = 0;
+        int[] stack = edgeStack;
+        int stackSize = 0;
+        stack[stackSize++] = node;
+        while (stackSize > 0) {
+            int current = stack[--stackSize];
+            int base = current * NODE_FIELDS;
+            int firstChild = nodes[base + FIRST_CHILD];
+            if (firstChild == NONE) {
+                if (nodes[base + LEAF] != NONE) {
+                    if (size == edgeNodes.length) {
+                        edgeNodes = Arrays.copyOf(edgeNodes, 2 * size);
+                    }
+                    edgeNodes[size++] = current;
                 }
-
-                SplitRegion<T, S> leftSquare = leftClass.getRegion();
-                SplitRegion<T, S> rightSquare = rightClass.getRegion();
-                int leftEnd = getPos.applyAsInt(leftSquare)
-                        + getLength.applyAsInt(leftSquare);
-                int rightEnd = getPos.applyAsInt(rightSquare)
-                        + getLength.applyAsInt(rightSquare);
-                if (leftEnd < rightEnd) {
-                    leftClass = lefts.next();
-                } else if (rightEnd < leftEnd) {
-                    rightClass = rights.next();
-                } else if (lefts.hasNext() && rights.hasNext()) {
-                    leftClass = lefts.next();
-                    rightClass = rights.next();
-                } else {
+                continue;
+            }
+            if (stackSize + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            // pushed so that the child with the smaller position pops first
+            switch (edge) {
+                case RIGHT:
+                    stack[stackSize++] = firstChild + TOP_RIGHT;
+                    stack[stackSize++] = firstChild + BOTTOM_RIGHT;
                     break;
-                }
+                case LEFT:
+                    stack[stackSize++] = firstChild + TOP_LEFT;
+                    stack[stackSize++] = firstChild + BOTTOM_LEFT;
+                    break;
+                case TOP:
+                    stack[stackSize++] = firstChild + TOP_RIGHT;
+                    stack[stackSize++] = firstChild + TOP_LEFT;
+                    break;
+                case BOTTOM:
+                    stack[stackSize++] = firstChild + BOTTOM_RIGHT;
+                    stack[stackSize++] = firstChild + BOTTOM_LEFT;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown edge " + edge);
             }
         }
+        edgeStack = stack;
+        if (intoFirst) {
+            firstEdge = edgeNodes;
+        } else {
+            secondEdge = edgeNodes;
+        }
+        return size;
+    }
 
-        @Override
-        public Iterator<ClassifiedRegionSet<T, S>> iterator(RegionEdge edge) {
-            return new EdgeIterator<>(edge, this);
+    private void tryUnion(int firstLeaf, int secondLeaf) {
+        int first = find(firstLeaf);
+        int second = find(secondLeaf);
+        if (first == second) {
+            return;
         }
 
-        @Override
-        public <R> R accept(NodeVisitor<T, S, R> visitor) {
-            return visitor.visit(this);
+        long count = counts[first] + counts[second];
+        double sum = sums[first] + sums[second];
+        double sumOfSquares = sumsOfSquares[first] + sumsOfSquares[second];
+        double min = Math.min(mins[first], mins[second]);
+        double max = Math.max(maxes[first], maxes[second]);
+        if (!classifier.checkUniform(count, sum, sumOfSquares, min, max)) {
+            return;
         }
 
-        public Node<T, S> getTopLeft() {
-            return topLeft;
+        if (counts[first] < counts[second]) {
+            int swap = first;
+            first = second;
+            second = swap;
         }
+        parents[second] = first;
+        counts[first] = count;
+        sums[first] = sum;
+        sumsOfSquares[first] = sumOfSquares;
+        mins[first] = min;
+        maxes[first] = max;
+    }
 
-        public Node<T, S> getTopRight() {
-            return topRight;
+    private int find(int leaf) {
+        while (parents[leaf] != leaf) {
+            parents[leaf] = parents[parents[leaf]];
+            leaf = parents[leaf];
         }
+        return leaf;
+    }
 
-        public Node<T, S> getBottomLeft() {
-            return bottomLeft;
+    /**
+     * Classes of the leaves. Labels are numbered in the order of leaves,
+     * the label map isn't built until it's asked for.
+     */
+    public Segmentation collectSegmentation() {
+        int[] rootLabels = new int[leafCount];
+        Arrays.fill(rootLabels, NONE);
+        int[] leafLabels = new int[leafCount];
+        int classCount = 0;
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            int root = find(leaf);
+            if (rootLabels[root] == NONE) {
+                rootLabels[root] = classCount++;
+            }
+            leafLabels[leaf] = rootLabels[root];
         }
 
-        public Node<T, S> getBottomRight() {
-            return bottomRight;
+        int[] leafRectangles = new int[4 * leafCount];
+        for (int node = 0; node < nodeCount; node++) {
+            int base = node * NODE_FIELDS;
+            int leaf = nodes[base + LEAF];
+            if (leaf != NONE) {
+                System.arraycopy(nodes, base + Y, leafRectangles, 4 * leaf, 4);
+            }
         }
+
+        return new Segmentation(height, width, classCount,
+                                leafLabels, leafRectangles);
     }
 
 }
-
-
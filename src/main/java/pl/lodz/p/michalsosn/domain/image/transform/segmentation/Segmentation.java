@@ -0,0 +1,113 @@
+package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
+
+import pl.lodz.p.michalsosn.domain.image.Size2d;
+
+import java.util.Arrays;
+
+/**
+ * Classes found by a segmentation, as rectangles labeled with the number
+ * of their class. Counting classes reads only the labels of rectangles,
+ * the label map of pixels is built the first time it's needed.
+ * @author Michał Sośnicki
+ */
+public final class Segmentation implements Size2d {
+
+    private final int height;
+    private final int width;
+    private final int classCount;
+    private final int[] rectangleLabels;
+    private final int[] rectangles;
+    private int[] labels;
+
+    /**
+     * @param rectangles y, x, height and width of every rectangle
+     */
+    public Segmentation(int height, int width, int classCount,
+                        int[] rectangleLabels, int[] rectangles) {
+        if (rectangles.length != 4 * rectangleLabels.length) {
+            throw new IllegalArgumentException(
+                    "Every rectangle needs one label"
+            );
+        }
+        this.height = height;
+        this.width = width;
+        this.classCount = classCount;
+        this.rectangleLabels = rectangleLabels;
+        this.rectangles = rectangles;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Labels of pixels, row after row.
+     */
+    public int[] copyLabels() {
+        int[] labelMap = labels();
+        return Arrays.copyOf(labelMap, labelMap.length);
+    }
+
+    public int getLabel(int y, int x) {
+        return labels()[y * width + x];
+    }
+
+    public Mask toMask(int label) {
+        if (label < 0 || label >= classCount) {
+            throw new IllegalArgumentException(
+                    "Label " + label + " is not in [0, " + classCount + ")."
+            );
+        }
+        int[] labelMap = labels();
+        boolean[][] mask = new boolean[height][width];
+        for (int y = 0; y < height; y++) {
+            boolean[] maskRow = mask[y];
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                maskRow[x] = labelMap[offset + x] == label;
+            }
+        }
+        return new Mask(mask);
+    }
+
+    /**
+     * Masks of at most the given number of classes with the lowest labels.
+     */
+    public Mask[] toMasks(int limit) {
+        Mask[] masks = new Mask[Math.min(limit, classCount)];
+        for (int label = 0; label < masks.length; label++) {
+            masks[label] = toMask(label);
+        }
+        return masks;
+    }
+
+    private synchronized int[] labels() {
+        if (labels == null) {
+            int[] labelMap = new int[height * width];
+            for (int i = 0; i < rectangleLabels.length; i++) {
+                int y = rectangles[4 * i];
+                int x = rectangles[4 * i + 1];
+                int rectangleHeight = rectangles[4 * i + 2];
+                int rectangleWidth = rectangles[4 * i + 3];
+                for (int itY = y; itY < y + rectangleHeight; itY++) {
+                    int offset = itY * width + x;
+                    Arrays.fill(labelMap, offset, offset + rectangleWidth,
+                                rectangleLabels[i]);
+                }
+            }
+            labels = labelMap;
+        }
+        return labels;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+}
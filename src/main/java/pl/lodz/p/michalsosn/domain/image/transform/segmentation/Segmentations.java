@@ -2,9 +2,9 @@ package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
 
 import pl.lodz.p.michalsosn.domain.image.channel.Channel;
 import pl.lodz.p.michalsosn.domain.image.channel.Image;
+import pl.lodz.p.michalsosn.domain.image.statistic.SummedAreaTable;
 
 import java.util.Collection;
-import java.util.stream.DoubleStream;
 
 /**
  * @author Michał Sośnicki
@@ -14,51 +14,61 @@ public final class Segmentations {
     private Segmentations() {
     }
 
-    public static Mask[] splitMergeImageMaxRange(Image image, int maxRange) {
-        return splitMergeImage(image, new DoubleMaxRangeClassifier(maxRange));
+    /**
+     * The ranges of regions are read from a pyramid of extremes of channel
+     * sums, built once per image.
+     */
+    public static Segmentation splitMergeImageMaxRange(Image image,
+                                                       int maxRange) {
+        int channelCount = image.getChannels().size();
+        ExtremesPyramid pyramid
+                = new ExtremesPyramid(channelSums(image), channelCount);
+        return splitMerge(image, pyramid,
+                          new DoubleMaxRangeClassifier(maxRange));
     }
 
-    public static Mask[] splitMergeImageMaxStdDev(Image image, double maxStdDev) {
-        return splitMergeImage(image, new DoubleMaxStdDevClassifier(maxStdDev));
-    }
-
-    private static Mask[] splitMergeImage(
-            Image image, RegionClassifier<Double, DoubleStream> classifier
-    ) {
-        DoubleArrayRegion region = new DoubleArrayRegion(
-                averageValues(image), 0, 0, image.getHeight(), image.getWidth()
+    /**
+     * The standard deviations of regions are read from a summed area
+     * table of channel sums, so every pixel is read only when building it.
+     */
+    public static Segmentation splitMergeImageMaxStdDev(Image image,
+                                                        double maxStdDev) {
+        int channelCount = image.getChannels().size();
+        int[][] sums = channelSums(image);
+        SummedAreaTable table = SummedAreaTable.of(
+                image.getHeight(), image.getWidth(), (y, x) -> sums[y][x]
         );
+        return splitMerge(image, RegionSummaries.ofTable(table, channelCount),
+                          new DoubleMaxStdDevClassifier(maxStdDev));
+    }
 
-        RegionTree<Double, DoubleStream> tree
-                = new RegionTree<>(classifier, DoubleStream::concat, region);
+    private static Segmentation splitMerge(Image image,
+                                           RegionSummaries summaries,
+                                           RegionClassifier classifier) {
+        RegionTree tree = new RegionTree(classifier, summaries,
+                                         image.getHeight(), image.getWidth());
 
         tree.merge();
 
-        return tree.collectMasks();
+        return tree.collectSegmentation();
     }
 
-    private static double[][] averageValues(Image image) {
-        if (image.getSize() == 0) {
-            return new double[0][0];
-        }
-
+    private static int[][] channelSums(Image image) {
         int height = image.getHeight();
         int width = image.getWidth();
-        double[][] averages = new double[height][width];
+        int[][] sums = new int[height][width];
 
         Collection<Channel> channels = image.getChannels().values();
-        int channelCount = channels.size();
-        for (int y = 0; y < height; ++y) {
-            for (int x = 0; x < width; ++x) {
-                double average = 0;
-                for (Channel channel : channels) {
-                    average += channel.getValue(y, x);
+        for (Channel channel : channels) {
+            for (int y = 0; y < height; ++y) {
+                int[] sumsRow = sums[y];
+                for (int x = 0; x < width; ++x) {
+                    sumsRow[x] += channel.getValue(y, x);
                 }
-                averages[y][x] = average / channelCount;
             }
         }
 
-        return averages;
+        return sums;
     }
 
 }
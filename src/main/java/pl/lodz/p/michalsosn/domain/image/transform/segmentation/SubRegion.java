@@ -1,8 +0,0 @@
-package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
-
-/**
- * @author Michał Sośnicki
- */
-enum SubRegion {
-    TOP_LEFT, TOP_RIGHT, BOTTOM_LEFT, BOTTOM_RIGHT
-}
@@ -0,0 +1,228 @@
+package pl.lodz.p.michalsosn.domain.sound;
+
+import pl.lodz.p.michalsosn.domain.sound.filter.Filter;
+import pl.lodz.p.michalsosn.domain.sound.signal.Signal;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+
+import java.nio.FloatBuffer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Minimum, maximum and root mean square of buckets of samples, with
+ * buckets doubling in size from one level to the next. The finest level
+ * has buckets of {@link #BASE_BUCKET_SIZE} samples, the last one has a
+ * single bucket. Every bucket takes three floats, so all the levels take
+ * less than a float per sample. Levels may be views of a mapped file,
+ * reading a range of buckets doesn't touch the others. Buckets start at
+ * the first sample, which is negative for filters.
+ * @author Michał Sośnicki
+ */
+public final class EnvelopePyramid implements Size1d {
+
+    public static final int BASE_BUCKET_SIZE = 16;
+    public static final int BUCKET_FLOATS = 3;
+
+    private static final int MIN = 0;
+    private static final int MAX = 1;
+    private static final int RMS = 2;
+
+    private final int firstSample;
+    private final int length;
+    private final TimeRange samplingTime;
+    private final FloatBuffer[] levels;
+
+    public EnvelopePyramid(int firstSample, int length, TimeRange samplingTime,
+                           FloatBuffer[] levels) {
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    "Length " + length + " must not be negative."
+            );
+        }
+        if (levels.length != levelCount(length)) {
+            throw new IllegalArgumentException(
+                    "Length " + length + " needs " + levelCount(length)
+                  + " levels, not " + levels.length + "."
+            );
+        }
+        for (int level = 0; level < levels.length; ++level) {
+            int floats = BUCKET_FLOATS * bucketCount(length, level);
+            if (levels[level].remaining() != floats) {
+                throw new IllegalArgumentException(
+                        "Level " + level + " needs " + floats + " floats, not "
+                      + levels[level].remaining() + "."
+                );
+            }
+        }
+        this.firstSample = firstSample;
+        this.length = length;
+        this.samplingTime = samplingTime;
+        this.levels = levels;
+    }
+
+    public static EnvelopePyramid of(Sound sound) {
+        return of(0, sound.getLength(), sound.getSamplingTime(), sound::getValue);
+    }
+
+    public static EnvelopePyramid of(Signal signal) {
+        return of(0, signal.getLength(), signal.getSamplingTime(),
+                  signal::getValue);
+    }
+
+    public static EnvelopePyramid of(Filter filter) {
+        return of(-filter.getNegativeLength(), filter.getLength(),
+                  filter.getSamplingTime(), filter::getValue);
+    }
+
+    /**
+     * Envelope of values of samples from the first one.
+     */
+    public static EnvelopePyramid of(int firstSample, int length,
+                                     TimeRange samplingTime,
+                                     IntToDoubleFunction values) {
+        int levelCount = levelCount(length);
+        FloatBuffer[] levels = new FloatBuffer[levelCount];
+        if (levelCount == 0) {
+            return new EnvelopePyramid(firstSample, length, samplingTime, levels);
+        }
+
+        float[] base = new float[BUCKET_FLOATS * bucketCount(length, 0)];
+        for (int bucket = 0; bucket < base.length / BUCKET_FLOATS; ++bucket) {
+            int from = bucket * BASE_BUCKET_SIZE;
+            int to = Math.min(length, from + BASE_BUCKET_SIZE);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sumOfSquares = 0.0;
+            for (int i = from; i < to; ++i) {
+                double value = values.applyAsDouble(firstSample + i);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sumOfSquares += value * value;
+            }
+            int offset = bucket * BUCKET_FLOATS;
+            base[offset + MIN] = (float) min;
+            base[offset + MAX] = (float) max;
+            base[offset + RMS] = (float) Math.sqrt(sumOfSquares / (to - from));
+        }
+        levels[0] = FloatBuffer.wrap(base);
+
+        float[] finer = base;
+        for (int level = 1; level < levelCount; ++level) {
+            long finerSize = bucketSize(level - 1);
+            int finerCount = finer.length / BUCKET_FLOATS;
+            float[] coarser = new float[BUCKET_FLOATS * bucketCount(length, level)];
+            for (int bucket = 0; bucket < coarser.length / BUCKET_FLOATS; ++bucket) {
+                int left = 2 * bucket;
+                int right = left + 1;
+                int offset = bucket * BUCKET_FLOATS;
+                int leftOffset = left * BUCKET_FLOATS;
+                if (right == finerCount) {
+                    System.arraycopy(finer, leftOffset, coarser, offset,
+                                     BUCKET_FLOATS);
+                    continue;
+                }
+                int rightOffset = right * BUCKET_FLOATS;
+                double leftCount = finerSize;
+                double rightCount = Math.min(length - right * finerSize, finerSize);
+                double leftRms = finer[leftOffset + RMS];
+                double rightRms = finer[rightOffset + RMS];
+                coarser[offset + MIN] = Math.min(finer[leftOffset + MIN],
+                                                 finer[rightOffset + MIN]);
+                coarser[offset + MAX] = Math.max(finer[leftOffset + MAX],
+                                                 finer[rightOffset + MAX]);
+                coarser[offset + RMS] = (float) Math.sqrt(
+                        (leftRms * leftRms * leftCount
+                       + rightRms * rightRms * rightCount)
+                      / (leftCount + rightCount)
+                );
+            }
+            levels[level] = FloatBuffer.wrap(coarser);
+            finer = coarser;
+        }
+        return new EnvelopePyramid(firstSample, length, samplingTime, levels);
+    }
+
+    public static int levelCount(int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int levelCount = 1;
+        while (bucketSize(levelCount - 1) < length) {
+            ++levelCount;
+        }
+        return levelCount;
+    }
+
+    public static long bucketSize(int level) {
+        return (long) BASE_BUCKET_SIZE << level;
+    }
+
+    public static int bucketCount(int length, int level) {
+        long size = bucketSize(level);
+        return (int) ((length + size - 1) / size);
+    }
+
+    /**
+     * The finest level covering any span of the given length with at most
+     * the given number of buckets, or -1 when the pyramid is empty.
+     */
+    public int levelFor(int spanLength, int maxBuckets) {
+        for (int level = 0; level < levels.length; ++level) {
+            long size = bucketSize(level);
+            // a span not aligned to buckets touches one more of them
+            if ((spanLength + size - 1) / size + 1 <= maxBuckets) {
+                return level;
+            }
+        }
+        return levels.length - 1;
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Read only view of the level, three floats for each bucket: minimum,
+     * maximum and root mean square.
+     */
+    public FloatBuffer getLevel(int level) {
+        return levels[level].asReadOnlyBuffer();
+    }
+
+    public float getMin(int level, int bucket) {
+        return get(level, bucket, MIN);
+    }
+
+    public float getMax(int level, int bucket) {
+        return get(level, bucket, MAX);
+    }
+
+    public float getRms(int level, int bucket) {
+        return get(level, bucket, RMS);
+    }
+
+    private float get(int level, int bucket, int field) {
+        FloatBuffer buffer = levels[level];
+        return buffer.get(buffer.position() + bucket * BUCKET_FLOATS + field);
+    }
+
+    public int getFirstSample() {
+        return firstSample;
+    }
+
+    /**
+     * Index after the last sample.
+     */
+    public int getEndSample() {
+        return firstSample + length;
+    }
+
+    public TimeRange getSamplingTime() {
+        return samplingTime;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+}
@@ -0,0 +1,87 @@
+package pl.lodz.p.michalsosn.domain.sound.sound;
+
+import pl.lodz.p.michalsosn.domain.sound.TimeRange;
+
+import java.nio.ShortBuffer;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Sound of 16 bit samples kept in a buffer, which takes half the memory
+ * of a {@link BufferSound} and may be a view of a mapped file instead of
+ * the heap.
+ * @author Michał Sośnicki
+ */
+public final class ShortBufferSound implements Sound {
+
+    private final ShortBuffer values;
+    private final TimeRange samplingTime;
+
+    /**
+     * Sound of the remaining values of the buffer, which mustn't be
+     * changed later.
+     */
+    public ShortBufferSound(ShortBuffer values, TimeRange samplingTime) {
+        if (values == null || samplingTime == null) {
+            throw new NullPointerException("arguments can't be null");
+        }
+        this.values = values.slice().asReadOnlyBuffer();
+        this.samplingTime = samplingTime;
+    }
+
+    @Override
+    public int getValue(int sample) {
+        return values.get(sample);
+    }
+
+    @Override
+    public TimeRange getSamplingTime() {
+        return samplingTime;
+    }
+
+    @Override
+    public IntStream values() {
+        return stream().map(values::get);
+    }
+
+    @Override
+    public int getLength() {
+        return values.limit();
+    }
+
+    @Override
+    public Sound map(IntUnaryOperator valueMapper) {
+        return new BufferSound(values().map(valueMapper).toArray(), samplingTime);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ShortBufferSound that = (ShortBufferSound) o;
+
+        return samplingTime.equals(that.samplingTime)
+            && values.equals(that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = values.hashCode();
+        result = 31 * result + samplingTime.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ShortBufferSound{"
+              + "samplingTime=" + samplingTime
+              + ", length=" + getLength()
+              + ", values=" + values
+              + '}';
+    }
+}
@@ -0,0 +1,162 @@
+package pl.lodz.p.michalsosn.domain.sound.spectrum;
+
+import pl.lodz.p.michalsosn.domain.complex.Complex;
+import pl.lodz.p.michalsosn.domain.complex.ReImComplex;
+import pl.lodz.p.michalsosn.domain.sound.TimeRange;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A spectrum stored as interleaved real and imaginary parts in one
+ * double array. Objects of this class are immutable, so views share
+ * the array of the spectrum they were taken from.
+ * @author Michał Sośnicki
+ */
+public final class ArraySpectrum1d implements Spectrum1d {
+
+    private final double[] values;
+    private final int offset;
+    private final int length;
+    private final TimeRange basicTime;
+
+    /**
+     * Creates the Spectrum from interleaved values.
+     * The array is not copied for efficiency, so do it if it's possible
+     * that it changes afterwards.
+     */
+    public ArraySpectrum1d(double[] values, TimeRange basicTime) {
+        this(values, 0, values.length / 2, basicTime);
+        if (values.length % 2 != 0) {
+            throw new IllegalArgumentException(
+                    "Interleaved values must have an even length"
+            );
+        }
+    }
+
+    private ArraySpectrum1d(double[] values, int offset, int length,
+                            TimeRange basicTime) {
+        if (values == null || basicTime == null) {
+            throw new NullPointerException("arguments can't be null");
+        }
+        this.values = values;
+        this.offset = offset;
+        this.length = length;
+        this.basicTime = basicTime;
+    }
+
+    public static double[] interleave(Spectrum1d spectrum) {
+        int length = spectrum.getLength();
+        double[] buffer = new double[2 * length];
+        if (spectrum instanceof ArraySpectrum1d) {
+            ArraySpectrum1d array = (ArraySpectrum1d) spectrum;
+            System.arraycopy(array.values, array.offset, buffer, 0, 2 * length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                Complex value = spectrum.getValue(i);
+                buffer[2 * i] = value.getRe();
+                buffer[2 * i + 1] = value.getIm();
+            }
+        }
+        return buffer;
+    }
+
+    public ArraySpectrum1d view(int from, int viewLength) {
+        if (from < 0 || viewLength < 0 || from + viewLength > length) {
+            throw new IllegalArgumentException(
+                    "View exceeds the spectrum of length " + length
+            );
+        }
+        return new ArraySpectrum1d(
+                values, offset + 2 * from, viewLength, basicTime
+        );
+    }
+
+    @Override
+    public Complex getValue(int sample) {
+        int index = offset + 2 * sample;
+        return ReImComplex.of(values[index], values[index + 1]);
+    }
+
+    @Override
+    public double getRe(int sample) {
+        return values[offset + 2 * sample];
+    }
+
+    @Override
+    public double getIm(int sample) {
+        return values[offset + 2 * sample + 1];
+    }
+
+    @Override
+    public Stream<Complex> values() {
+        return IntStream.range(0, length).mapToObj(this::getValue);
+    }
+
+    @Override
+    public TimeRange getBasicTime() {
+        return basicTime;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public Spectrum1d map(UnaryOperator<Complex> valueMapper) {
+        double[] newValues = new double[2 * length];
+        for (int i = 0; i < length; i++) {
+            Complex value = valueMapper.apply(getValue(i));
+            newValues[2 * i] = value.getRe();
+            newValues[2 * i + 1] = value.getIm();
+        }
+        return new ArraySpectrum1d(newValues, basicTime);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ArraySpectrum1d that = (ArraySpectrum1d) o;
+
+        if (!basicTime.equals(that.basicTime) || length != that.length) {
+            return false;
+        }
+        for (int i = 0; i < 2 * length; i++) {
+            // compared by bits like hashed, as Arrays.equals does
+            if (Double.doubleToLongBits(values[offset + i])
+                    != Double.doubleToLongBits(that.values[that.offset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < 2 * length; i++) {
+            result = 31 * result + Double.hashCode(values[offset + i]);
+        }
+        result = 31 * result + basicTime.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ArraySpectrum1d{"
+             + "basicTime=" + basicTime
+             + ", length=" + length
+             + ", values=" + Arrays.toString(Arrays.copyOfRange(
+                     values, offset, offset + Math.min(2 * length, 20)))
+             + '}';
+    }
+}
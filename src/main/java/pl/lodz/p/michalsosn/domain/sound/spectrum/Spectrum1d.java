@@ -15,6 +15,14 @@ public interface Spectrum1d extends Size1d, Lift<UnaryOperator<Complex>, Spectru
 
     Complex getValue(int sample);
 
+    default double getRe(int sample) {
+        return getValue(sample).getRe();
+    }
+
+    default double getIm(int sample) {
+        return getValue(sample).getIm();
+    }
+
     Stream<Complex> values();
 
     TimeRange getBasicTime();
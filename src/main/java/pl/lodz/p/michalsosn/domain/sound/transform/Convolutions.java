@@ -8,6 +8,7 @@ import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 import pl.lodz.p.michalsosn.domain.sound.spectrum.BufferSpectrum1d;
 import pl.lodz.p.michalsosn.domain.sound.spectrum.Spectrum1d;
 import pl.lodz.p.michalsosn.domain.util.MathUtils;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
 
 import java.util.Arrays;
 import java.util.function.Function;
@@ -35,7 +36,14 @@ public final class Convolutions {
             final int resultLength = soundLength + filterPositive - 1;
 
             final double[] values = new double[resultLength];
+            final TaskContext context = TaskContext.current();
+            final int interval = TaskContext.checkpointInterval(
+                    filterPositive + filterNegative
+            );
             for (int i = 0; i < resultLength; i++) {
+                if (i % interval == 0) {
+                    context.report(i, resultLength);
+                }
                 final int from = Math.max(i - filterPositive + 1, 0);
                 final int to = Math.min(i + filterNegative + 1, soundLength);
                 double result = 0;
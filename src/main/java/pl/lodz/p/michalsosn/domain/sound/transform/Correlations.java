@@ -9,6 +9,7 @@ import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 import pl.lodz.p.michalsosn.domain.sound.spectrum.BufferSpectrum1d;
 import pl.lodz.p.michalsosn.domain.sound.spectrum.Spectrum1d;
 import pl.lodz.p.michalsosn.domain.util.MathUtils;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
 
 import java.util.function.Function;
 
@@ -54,7 +55,12 @@ public final class Correlations {
 
             double[] values = new double[soundLength];
             int safeLength = Math.max(0, soundLength - patternLength);
+            TaskContext context = TaskContext.current();
+            int interval = TaskContext.checkpointInterval(patternLength);
             for (int i = 0; i < safeLength; i++) {
+                if (i % interval == 0) {
+                    context.report(i, soundLength);
+                }
                 double result = 0;
                 for (int j = 0; j < patternLength; j++) {
                      result += (double) pattern.getValue(j) * sound.getValue(i + j);
@@ -62,6 +68,9 @@ public final class Correlations {
                 values[i] = result;
             }
             for (int i = safeLength; i < soundLength; i++) {
+                if (i % interval == 0) {
+                    context.report(i, soundLength);
+                }
                 double result = 0;
                 for (int j = 0; j < patternLength; j++) {
                     result += (double) pattern.getValue(j)
@@ -86,7 +95,12 @@ public final class Correlations {
             final int resultLength = soundLength + patternLength - 1;
 
             final double[] values = new double[resultLength];
+            final TaskContext context = TaskContext.current();
+            final int interval = TaskContext.checkpointInterval(patternLength);
             for (int i = 0; i < resultLength; i++) {
+                if (i % interval == 0) {
+                    context.report(i, resultLength);
+                }
                 final int shiftedI = i - patternLength + 1;
                 final int from = Math.max(-shiftedI, 0);
                 final int to = Math.min(resultLength - i, patternLength);
@@ -1,17 +1,13 @@
 package pl.lodz.p.michalsosn.domain.sound.transform;
 
-import pl.lodz.p.michalsosn.domain.complex.Complex;
+import pl.lodz.p.michalsosn.domain.complex.Fourier;
 import pl.lodz.p.michalsosn.domain.sound.Size1d;
 import pl.lodz.p.michalsosn.domain.sound.signal.BufferSignal;
 import pl.lodz.p.michalsosn.domain.sound.signal.Signal;
-import pl.lodz.p.michalsosn.domain.sound.spectrum.BufferSpectrum1d;
+import pl.lodz.p.michalsosn.domain.sound.spectrum.ArraySpectrum1d;
 import pl.lodz.p.michalsosn.domain.sound.spectrum.Spectrum1d;
 import pl.lodz.p.michalsosn.domain.util.MathUtils;
 
-import java.util.Arrays;
-
-import static pl.lodz.p.michalsosn.domain.complex.Fourier.*;
-
 
 /**
  * @author Michał Sośnicki
@@ -24,28 +20,41 @@ public final class DitFastFourierTransform {
     public static Spectrum1d transform(Spectrum1d spectrum) {
         checkSizePowerOfTwo(spectrum);
 
-        Complex[] complexValues = spectrum.values().toArray(Complex[]::new);
         int length = spectrum.getLength();
-        Complex[] kernel = fourierBasis(length, length / 2);
-        fft(complexValues, kernel, false);
+        double[] re = new double[length];
+        double[] im = new double[length];
+        splitValues(spectrum, re, im);
+
+        Fourier.fft(re, im, false, false);
 
-        return new BufferSpectrum1d(complexValues, spectrum.getBasicTime());
+        double[] interleaved = new double[2 * length];
+        for (int i = 0; i < length; i++) {
+            interleaved[2 * i] = re[i];
+            interleaved[2 * i + 1] = im[i];
+        }
+        return new ArraySpectrum1d(interleaved, spectrum.getBasicTime());
     }
 
     public static Signal inverse(Spectrum1d spectrum) {
         checkSizePowerOfTwo(spectrum);
 
-        Complex[] values = spectrum.values().toArray(Complex[]::new);
-
         int length = spectrum.getLength();
-        Complex[] kernel = inverseBasis(length, length / 2);
-        fft(values, kernel, true);
+        double[] re = new double[length];
+        double[] im = new double[length];
+        splitValues(spectrum, re, im);
 
-        double[] doubleValues = Arrays.stream(values)
-                .mapToDouble(Complex::getRe)
-                .toArray();
+        Fourier.fft(re, im, true, true);
 
-        return new BufferSignal(doubleValues, spectrum.getBasicTime());
+        return new BufferSignal(re, spectrum.getBasicTime());
+    }
+
+    private static void splitValues(Spectrum1d spectrum,
+                                    double[] re, double[] im) {
+        int length = spectrum.getLength();
+        for (int i = 0; i < length; i++) {
+            re[i] = spectrum.getRe(i);
+            im[i] = spectrum.getIm(i);
+        }
     }
 
     private static void checkSizePowerOfTwo(Size1d size1d) {
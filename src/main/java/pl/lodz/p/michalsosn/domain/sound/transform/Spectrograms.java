@@ -1,9 +1,14 @@
 package pl.lodz.p.michalsosn.domain.sound.transform;
 
 import pl.lodz.p.michalsosn.domain.complex.Complex;
+import pl.lodz.p.michalsosn.domain.complex.Fourier;
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
 import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 import pl.lodz.p.michalsosn.domain.util.ArrayUtils;
 
+import static pl.lodz.p.michalsosn.domain.image.channel.Image.MAX_VALUE;
+import static pl.lodz.p.michalsosn.domain.image.channel.Image.MIN_VALUE;
+
 /**
  * @author Michał Sośnicki
  */
@@ -24,4 +29,72 @@ public final class Spectrograms {
         return ArrayUtils.transposeMatrix(matrix, (h, w) -> new Complex[h][w]);
     }
 
+    /**
+     * Absolute values of {@link #spectrogram(int, Sound)}, with frequencies
+     * in rows and windows in columns. Windows are transformed in parallel
+     * and no complex numbers are allocated.
+     */
+    public static float[][] magnitudes(int windowLength, Sound sound) {
+        if (windowLength <= 0 || Integer.bitCount(windowLength) != 1) {
+            throw new IllegalArgumentException(
+                    "Length not a power of two but " + windowLength
+            );
+        }
+        final int length = sound.getLength();
+        final int windowCount = (length + windowLength - 1) / windowLength;
+        final int skipped = (windowLength - 1) / 2;
+        final float[][] magnitudes = new float[windowLength - skipped][windowCount];
+
+        TiledEvaluator.shared().forEachBand(windowCount, (fromWindow, toWindow) -> {
+            final double[] re = new double[windowLength];
+            final double[] im = new double[windowLength];
+            for (int window = fromWindow; window < toWindow; ++window) {
+                final int offset = window * windowLength;
+                final int cutLength = Math.min(windowLength, length - offset);
+                for (int i = 0; i < windowLength; ++i) {
+                    re[i] = i < cutLength ? sound.getValue(offset + i) : 0.0;
+                    im[i] = 0.0;
+                }
+                Fourier.fft(re, im, false, false);
+                for (int bin = skipped; bin < windowLength; ++bin) {
+                    magnitudes[bin - skipped][window]
+                            = (float) Math.hypot(re[bin], im[bin]);
+                }
+            }
+        });
+        return magnitudes;
+    }
+
+    /**
+     * Gray levels of the magnitudes, scaled logarithmically between the
+     * smallest and the largest of them.
+     */
+    public static byte[][] toGray(float[][] magnitudes) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (float[] row : magnitudes) {
+            for (float value : row) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        final double lowest = min;
+        final double factor = MAX_VALUE / Math.log10(max - lowest + 1);
+
+        final byte[][] gray = new byte[magnitudes.length][];
+        TiledEvaluator.shared().forEachBand(magnitudes.length, (fromY, toY) -> {
+            for (int y = fromY; y < toY; ++y) {
+                final float[] row = magnitudes[y];
+                final byte[] grayRow = new byte[row.length];
+                for (int x = 0; x < row.length; ++x) {
+                    final double level = Math.log10(row[x] - lowest + 1) * factor;
+                    grayRow[x] = (byte) (Double.isNaN(level)
+                                         ? MIN_VALUE : Math.round(level + MIN_VALUE));
+                }
+                gray[y] = grayRow;
+            }
+        });
+        return gray;
+    }
+
 }
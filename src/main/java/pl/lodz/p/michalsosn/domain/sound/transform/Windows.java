@@ -8,6 +8,7 @@ import pl.lodz.p.michalsosn.domain.sound.signal.Signal;
 import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
 import pl.lodz.p.michalsosn.domain.sound.sound.LazySound;
 import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -138,11 +139,17 @@ public final class Windows {
     public static Function<Signal, Signal> overlapAdd(
             int windowLength, int hopSize, UnaryOperator<Signal> mapper
     ) {
-        return signal -> overlapAdd(hopSize).apply(
-                slidingSignal(windowLength, hopSize)
-                        .apply(signal)
-                        .map(mapper)
-        );
+        return signal -> {
+            final TaskContext context = TaskContext.current();
+            return overlapAdd(hopSize).apply(
+                    slidingSignal(windowLength, hopSize)
+                            .apply(signal)
+                            .map(window -> {
+                                context.checkpoint();
+                                return mapper.apply(window);
+                            })
+            );
+        };
     }
 
     private static UnaryOperator<Sound> hannSound() {
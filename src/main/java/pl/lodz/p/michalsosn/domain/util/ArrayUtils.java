@@ -22,7 +22,7 @@ public final class ArrayUtils {
 
         if (height == width) {
             T temp;
-            for (int size = height - 1; size > 1; --size) {
+            for (int size = height - 1; size > 0; --size) {
                 for (int i = 0; i < size; ++i) {
                     temp = matrix[size][i];
                     matrix[size][i] = matrix[i][size];
@@ -0,0 +1,123 @@
+package pl.lodz.p.michalsosn.domain.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cancellation flag and progress of a task, bound to the threads working
+ * on it. Long loops call {@link #checkpoint()} every row, window or stage
+ * and stop with a {@link CancellationException} once the task is
+ * cancelled. Threads which aren't working on any task see a context that
+ * is never cancelled and doesn't limit their parallelism.
+ * @author Michał Sośnicki
+ */
+public final class TaskContext {
+
+    // units of work, like products of samples, done between checkpoints
+    private static final int CHECKPOINT_WORK = 1 << 20;
+
+    private static final TaskContext NONE = new TaskContext();
+    private static final ThreadLocal<TaskContext> CURRENT
+            = ThreadLocal.withInitial(() -> NONE);
+
+    private final int parallelism;
+    private volatile boolean cancelled;
+    private volatile int percent;
+
+    public TaskContext() {
+        this(0);
+    }
+
+    /**
+     * @param parallelism Most threads the task works with at once, 0 when
+     *                    it's not limited.
+     */
+    public TaskContext(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException(
+                    "Parallelism " + parallelism + " must not be negative."
+            );
+        }
+        this.parallelism = parallelism;
+    }
+
+    public static TaskContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the callable with the context bound to the calling thread.
+     */
+    public <T> T call(Callable<T> callable) throws Exception {
+        final TaskContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return callable.call();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public void run(Runnable runnable) {
+        final TaskContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            runnable.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public void cancel() {
+        if (this != NONE) {
+            cancelled = true;
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException when the task is cancelled
+     */
+    public void checkpoint() {
+        if (cancelled) {
+            throw new CancellationException("Task cancelled");
+        }
+    }
+
+    /**
+     * Reports that {@code done} of {@code total} parts of the step being
+     * worked on are finished and checks for cancellation.
+     */
+    public void report(long done, long total) {
+        checkpoint();
+        if (this != NONE && total > 0) {
+            percent = (int) (100 * Math.min(done, total) / total);
+        }
+    }
+
+    /**
+     * Number of loop iterations between checkpoints when every iteration
+     * does {@code iterationWork} units of work.
+     */
+    public static int checkpointInterval(int iterationWork) {
+        return Math.max(1, CHECKPOINT_WORK / Math.max(1, iterationWork));
+    }
+
+    /**
+     * Most threads the task works with at once, 0 when it's not limited.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Percent of the step being worked on that is finished.
+     */
+    public int getPercent() {
+        return percent;
+    }
+
+}
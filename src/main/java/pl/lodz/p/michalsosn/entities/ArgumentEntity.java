@@ -2,6 +2,7 @@ package pl.lodz.p.michalsosn.entities;
 
 import javax.persistence.*;
 import java.io.Serializable;
+import java.util.Arrays;
 
 import static javax.persistence.DiscriminatorType.STRING;
 
@@ -66,6 +67,12 @@ public abstract class ArgumentEntity implements Serializable {
     ArgumentEntity() {
     }
 
+    /**
+     * Text equal for arguments of equal values. Images and sounds are
+     * described by their ids and modification times, not their data.
+     */
+    public abstract String describeValue();
+
     @Entity(name = "BooleanArgument")
     @DiscriminatorValue("BOOLEAN")
     public static class BooleanArgumentEntity extends ArgumentEntity {
@@ -87,6 +94,11 @@ public abstract class ArgumentEntity implements Serializable {
         public void setValue(Boolean value) {
             this.value = value;
         }
+
+        @Override
+        public String describeValue() {
+            return String.valueOf(value);
+        }
     }
 
     @Entity(name = "IntegerArgument")
@@ -110,6 +122,11 @@ public abstract class ArgumentEntity implements Serializable {
         public void setValue(Integer value) {
             this.value = value;
         }
+
+        @Override
+        public String describeValue() {
+            return String.valueOf(value);
+        }
     }
 
     @Entity(name = "DoubleArgument")
@@ -133,6 +150,11 @@ public abstract class ArgumentEntity implements Serializable {
         public void setValue(Double value) {
             this.value = value;
         }
+
+        @Override
+        public String describeValue() {
+            return String.valueOf(value);
+        }
     }
 
     @Entity(name = "EnumArgument")
@@ -164,6 +186,11 @@ public abstract class ArgumentEntity implements Serializable {
         public void setValue(E value) {
             this.value = value.name();
         }
+
+        @Override
+        public String describeValue() {
+            return String.valueOf(value);
+        }
     }
 
     @Entity(name = "MatrixArgument")
@@ -187,6 +214,11 @@ public abstract class ArgumentEntity implements Serializable {
         public void setMatrix(double[][] matrix) {
             this.matrix = matrix;
         }
+
+        @Override
+        public String describeValue() {
+            return Arrays.deepToString(matrix);
+        }
     }
 
 
@@ -212,6 +244,12 @@ public abstract class ArgumentEntity implements Serializable {
         public void setImage(ImageEntity image) {
             this.image = image;
         }
+
+        @Override
+        public String describeValue() {
+            return image == null ? "null"
+                 : image.getId() + "@" + image.getModificationTime();
+        }
     }
 
     @Entity(name = "SoundArgument")
@@ -236,6 +274,12 @@ public abstract class ArgumentEntity implements Serializable {
         public void setSound(SoundEntity sound) {
             this.sound = sound;
         }
+
+        @Override
+        public String describeValue() {
+            return sound == null ? "null"
+                 : sound.getId() + "@" + sound.getModificationTime();
+        }
     }
 
 }
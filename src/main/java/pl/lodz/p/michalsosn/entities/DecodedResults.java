@@ -0,0 +1,157 @@
+package pl.lodz.p.michalsosn.entities;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded values of results found by the ids of the results, so that an
+ * operation doesn't decode what the operation before it has just encoded.
+ * Values are weighed by their estimated size in bytes. When their total
+ * weight exceeds the capacity, the least recently used ones are only
+ * weakly referenced and stay until the collector needs their memory.
+ * Values have to be immutable, they are shared between threads.
+ * @author Michał Sośnicki
+ */
+public final class DecodedResults {
+
+    public static final long DEFAULT_CAPACITY = 256L * 1024 * 1024;
+
+    private static volatile DecodedResults shared
+            = new DecodedResults(DEFAULT_CAPACITY);
+
+    private final long capacity;
+    private final LinkedHashMap<Long, Entry> strong
+            = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, WeakEntry> weak = new HashMap<>();
+    private final ReferenceQueue<Object> cleared = new ReferenceQueue<>();
+    private long weight;
+
+    public DecodedResults(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Capacity " + capacity + " must not be negative."
+            );
+        }
+        this.capacity = capacity;
+    }
+
+    public static DecodedResults shared() {
+        return shared;
+    }
+
+    public static void configure(long capacity) {
+        shared = new DecodedResults(capacity);
+    }
+
+    /**
+     * The value of the result, or null when it isn't kept.
+     */
+    public synchronized Object get(long id) {
+        expungeCleared();
+        final Entry entry = strong.get(id);
+        if (entry != null) {
+            return entry.value;
+        }
+        final WeakEntry weakEntry = weak.remove(id);
+        if (weakEntry == null) {
+            return null;
+        }
+        final Object value = weakEntry.get();
+        if (value != null) {
+            keep(id, value, weakEntry.weight);
+        }
+        return value;
+    }
+
+    public synchronized void put(long id, Object value, long valueWeight) {
+        if (valueWeight < 0) {
+            throw new IllegalArgumentException(
+                    "Weight " + valueWeight + " must not be negative."
+            );
+        }
+        expungeCleared();
+        forget(id);
+        keep(id, value, valueWeight);
+    }
+
+    public synchronized void remove(long id) {
+        expungeCleared();
+        forget(id);
+    }
+
+    /**
+     * Total weight of the strongly referenced values.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    private void keep(long id, Object value, long valueWeight) {
+        if (valueWeight > capacity) {
+            weak.put(id, new WeakEntry(id, value, valueWeight, cleared));
+            return;
+        }
+        strong.put(id, new Entry(value, valueWeight));
+        weight += valueWeight;
+
+        final Iterator<Map.Entry<Long, Entry>> eldest
+                = strong.entrySet().iterator();
+        while (weight > capacity) {
+            final Map.Entry<Long, Entry> evicted = eldest.next();
+            eldest.remove();
+            weight -= evicted.getValue().weight;
+            weak.put(evicted.getKey(), new WeakEntry(
+                    evicted.getKey(), evicted.getValue().value,
+                    evicted.getValue().weight, cleared
+            ));
+        }
+    }
+
+    private void forget(long id) {
+        final Entry entry = strong.remove(id);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+        weak.remove(id);
+    }
+
+    private void expungeCleared() {
+        Reference<?> reference;
+        while ((reference = cleared.poll()) != null) {
+            final WeakEntry entry = (WeakEntry) reference;
+            weak.remove(entry.id, entry);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long weight;
+
+        private Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class WeakEntry extends WeakReference<Object> {
+        private final long id;
+        private final long weight;
+
+        private WeakEntry(long id, Object value, long weight,
+                          ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.id = id;
+            this.weight = weight;
+        }
+    }
+
+}
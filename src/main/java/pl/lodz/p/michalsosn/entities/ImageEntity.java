@@ -64,6 +64,10 @@ public class ImageEntity implements Serializable {
         setImage(image);
     }
 
+    public long getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
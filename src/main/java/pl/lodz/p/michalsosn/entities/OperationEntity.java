@@ -2,23 +2,29 @@ package pl.lodz.p.michalsosn.entities;
 
 import pl.lodz.p.michalsosn.specification.OperationRequest;
 import pl.lodz.p.michalsosn.specification.OperationSpecification;
+import pl.lodz.p.michalsosn.util.Hashes;
 
 import javax.persistence.*;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * @author Michał Sośnicki
  */
 @Entity(name = "Operation")
-@Table(name = "operation") //, indexes = {@Index(columnList = "child_id")})
+@Table(name = "operation",
+       indexes = {@Index(columnList = "fingerprint")})
 @SequenceGenerator(name = "operation_sequence",
                    sequenceName = "operation_sequence",
                    allocationSize = 1)
 public class OperationEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
+    // changes when operations start computing different results
+    private static final int FINGERPRINT_VERSION = 1;
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE,
@@ -39,6 +45,9 @@ public class OperationEntity implements Serializable {
     @Column(name = "previous_result", updatable = false)
     private String previousResult;
 
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
     @ManyToOne(optional = false)
     @JoinColumn(name = "process_id", referencedColumnName = "process_id",
                 nullable = false, updatable = false)
@@ -105,6 +114,42 @@ public class OperationEntity implements Serializable {
         return previousResult;
     }
 
+    /**
+     * Fingerprint of the inputs the current results were computed from,
+     * or null when there are no such results.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Hash of everything the results depend on: the specification, the
+     * arguments, the result taken from the parent and the fingerprint of
+     * the parent. Null when the parent has no fingerprint, so its results
+     * can't be told apart.
+     */
+    public String computeFingerprint(OperationEntity parentEntity) {
+        if (parentEntity != null && parentEntity.getFingerprint() == null) {
+            return null;
+        }
+        final StringBuilder inputs = new StringBuilder()
+                .append(FINGERPRINT_VERSION)
+                .append('\n').append(specification.name())
+                .append('\n').append(previousResult);
+        new TreeMap<>(arguments).forEach((role, argument) ->
+                inputs.append('\n').append(role)
+                      .append('=').append(argument.describeValue())
+        );
+        if (parentEntity != null) {
+            inputs.append('\n').append(parentEntity.getFingerprint());
+        }
+        return Hashes.sha256(inputs.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
     public ProcessEntity getProcess() {
         return process;
     }
@@ -121,6 +166,15 @@ public class OperationEntity implements Serializable {
         this.parent = parent;
     }
 
+    /**
+     * Whether the operation takes a result of its parent. Operations which
+     * don't, start independent branches of the process and run while the
+     * operations before them still do.
+     */
+    public boolean isReadingParent() {
+        return parent != null && specification.isReadingParent();
+    }
+
     public OperationEntity getChild() {
         return child;
     }
@@ -151,6 +205,7 @@ public class OperationEntity implements Serializable {
              + "results=" + results
              + ", arguments=" + arguments
              + ", specification='" + specification + '\''
+             + ", fingerprint=" + fingerprint
              + ", id=" + id
              + '}';
     }
@@ -1,22 +1,35 @@
 package pl.lodz.p.michalsosn.entities;
 
+import pl.lodz.p.michalsosn.domain.image.channel.Channel;
+import pl.lodz.p.michalsosn.domain.image.channel.Image;
+import pl.lodz.p.michalsosn.domain.image.channel.PackedChannel;
+import pl.lodz.p.michalsosn.domain.image.channel.ValueLut;
 import pl.lodz.p.michalsosn.domain.image.spectrum.ImageSpectrum;
 import pl.lodz.p.michalsosn.domain.image.transform.segmentation.Mask;
+import pl.lodz.p.michalsosn.domain.sound.EnvelopePyramid;
 import pl.lodz.p.michalsosn.domain.sound.filter.Filter;
 import pl.lodz.p.michalsosn.domain.sound.signal.Signal;
+import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.LazySound;
 import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 import pl.lodz.p.michalsosn.domain.sound.spectrum.Spectrum1d;
 import pl.lodz.p.michalsosn.domain.sound.transform.Note;
-import pl.lodz.p.michalsosn.domain.util.ArrayUtils;
 import pl.lodz.p.michalsosn.io.BufferedImageIO;
 import pl.lodz.p.michalsosn.io.CompressionIO;
+import pl.lodz.p.michalsosn.io.ImageEncoding;
+import pl.lodz.p.michalsosn.io.ImageTiles;
+import pl.lodz.p.michalsosn.specification.PointwiseOperationRequest;
+import pl.lodz.p.michalsosn.specification.PointwiseOperationRequest.FusedRun;
 
 import javax.persistence.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.function.ToLongFunction;
 
 import static javax.persistence.DiscriminatorType.STRING;
+import static pl.lodz.p.michalsosn.domain.Lift.lift;
 import static pl.lodz.p.michalsosn.io.BufferedImageIO.fromByteArray;
 
 /**
@@ -33,6 +46,8 @@ import static pl.lodz.p.michalsosn.io.BufferedImageIO.fromByteArray;
 public abstract class ResultEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
+    // weight of a spectrum value, at most a complex object of two doubles
+    private static final int COMPLEX_BYTES = 40;
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE,
@@ -53,9 +68,20 @@ public abstract class ResultEntity implements Serializable {
                 nullable = false)
     private OperationEntity operation;
 
+    @Transient
+    private transient Object decoded;
+
+    @Transient
+    private transient long decodedWeight;
+
     public ResultEntity() {
     }
 
+    @FunctionalInterface
+    protected interface Decoder<T> {
+        T decode() throws IOException;
+    }
+
     public long getId() {
         return id;
     }
@@ -80,6 +106,101 @@ public abstract class ResultEntity implements Serializable {
         this.operation = operation;
     }
 
+    /**
+     * The decoded value of the result, taken from this entity, from the
+     * {@link DecodedResults} by the id or decoded and kept in both.
+     */
+    protected final <T> T getDecoded(Class<T> type, Decoder<T> decoder,
+                                     ToLongFunction<? super T> weigher)
+            throws IOException {
+        final T found = findDecoded(type);
+        if (found != null) {
+            return found;
+        }
+        final T value = decoder.decode();
+        setDecoded(value, weigher.applyAsLong(value));
+        return value;
+    }
+
+    /**
+     * The decoded value of the result if this entity or the
+     * {@link DecodedResults} have it, null otherwise.
+     */
+    protected final <T> T findDecoded(Class<T> type) {
+        if (type.isInstance(decoded)) {
+            return type.cast(decoded);
+        }
+        if (id != 0) {
+            final Object cached = DecodedResults.shared().get(id);
+            if (type.isInstance(cached)) {
+                decoded = cached;
+                return type.cast(cached);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remembers the value the result was encoded from, it's shared once
+     * the result is persisted. Null forgets the previous value.
+     */
+    protected final void setDecoded(Object value, long weight) {
+        decoded = value;
+        decodedWeight = weight;
+        if (id == 0) {
+            return;
+        }
+        if (value == null) {
+            DecodedResults.shared().remove(id);
+        } else {
+            DecodedResults.shared().put(id, value, weight);
+        }
+    }
+
+    /**
+     * Whether the values of the result are evaluated from the results
+     * before it when they're read, see {@link PointwiseOperationRequest}.
+     */
+    public boolean isDeferred() {
+        return false;
+    }
+
+    /**
+     * Evaluates and encodes the values of a deferred result, so that they
+     * are stored with it.
+     */
+    public void materialize() throws IOException {
+    }
+
+    /**
+     * New result of the same type and values, to be given to another
+     * operation. Payloads point at the same data, arrays are shared, they
+     * never change once written, and so is the decoded value.
+     */
+    public abstract ResultEntity copy() throws IOException;
+
+    /**
+     * Gives the copy the decoded value of this result.
+     */
+    protected final <T extends ResultEntity> T withDecoded(T copy) {
+        final ResultEntity result = copy;
+        result.decoded = decoded;
+        result.decodedWeight = decodedWeight;
+        return copy;
+    }
+
+    @PostPersist
+    private void shareDecoded() {
+        if (decoded != null) {
+            DecodedResults.shared().put(id, decoded, decodedWeight);
+        }
+    }
+
+    @PostRemove
+    private void forgetDecoded() {
+        DecodedResults.shared().remove(id);
+    }
+
     @Override
     public String toString() {
         return "ResultEntity{"
@@ -95,6 +216,12 @@ public abstract class ResultEntity implements Serializable {
             super();
         }
 
+        @Override
+        public NoneResultEntity copy() throws IOException {
+            final NoneResultEntity copy = new NoneResultEntity();
+            return withDecoded(copy);
+        }
+
         @Override
         public String toString() {
             return "NoneResultEntity{} " + super.toString();
@@ -111,6 +238,13 @@ public abstract class ResultEntity implements Serializable {
         public IntegerResultEntity() {
         }
 
+        @Override
+        public IntegerResultEntity copy() throws IOException {
+            final IntegerResultEntity copy = new IntegerResultEntity();
+            copy.value = value;
+            return withDecoded(copy);
+        }
+
         public IntegerResultEntity(Integer value) {
             this.value = value;
         }
@@ -141,6 +275,13 @@ public abstract class ResultEntity implements Serializable {
         public DoubleResultEntity() {
         }
 
+        @Override
+        public DoubleResultEntity copy() throws IOException {
+            final DoubleResultEntity copy = new DoubleResultEntity();
+            copy.value = value;
+            return withDecoded(copy);
+        }
+
         public DoubleResultEntity(Double value) {
             this.value = value;
         }
@@ -165,38 +306,153 @@ public abstract class ResultEntity implements Serializable {
     @DiscriminatorValue("IMAGE")
     public static class ImageResultEntity extends ResultEntity {
 
-        @Lob
-        @Column(name = "data")
-        @Basic(fetch = FetchType.LAZY)
-        private byte[] data;
+        private static volatile ImageEncoding encoding = ImageEncoding.FAST;
+
+        @Embedded
+        private ResultPayload data;
+
+        // null for images written compactly before encodings were chosen
+        @Enumerated(EnumType.STRING)
+        @Column(name = "image_encoding", length = 16)
+        private ImageEncoding dataEncoding;
+
+        @Embedded
+        @AttributeOverrides({
+                @AttributeOverride(name = "data",
+                                   column = @Column(name = "data_presentation")),
+                @AttributeOverride(name = "key",
+                                   column = @Column(name = "data_presentation_key",
+                                                    length = 64))
+        })
+        private ResultPayload compactData;
 
         public ImageResultEntity() {
         }
 
+        @Override
+        public ImageResultEntity copy() throws IOException {
+            final ImageResultEntity copy = new ImageResultEntity();
+            copy.data = ResultPayload.copyOf(data);
+            copy.dataEncoding = dataEncoding;
+            copy.compactData = ResultPayload.copyOf(compactData);
+            return withDecoded(copy);
+        }
+
         public ImageResultEntity(BufferedImage image) throws IOException {
             setImage(image);
         }
 
-        public BufferedImage getImage() throws IOException {
-            return fromByteArray(data);
+        public ImageResultEntity(Image image) throws IOException {
+            setDomainImage(image);
         }
 
-        public void setImage(BufferedImage image) throws IOException {
-            data = BufferedImageIO.toByteArray(image);
+        /**
+         * Result of a pointwise operation without values until they're read.
+         */
+        public static ImageResultEntity deferred() {
+            return new ImageResultEntity();
         }
 
-        public byte[] getData() {
-            return data;
+        @Override
+        public boolean isDeferred() {
+            return data == null;
         }
 
-        public void setData(byte[] data) {
-            this.data = data;
+        @Override
+        public void materialize() throws IOException {
+            if (isDeferred()) {
+                encode(BufferedImageIO.fromImage(getDomainImage()));
+            }
+        }
+
+        public BufferedImage getImage() throws IOException {
+            materialize();
+            return fromByteArray(data.toArray());
+        }
+
+        public void setImage(BufferedImage image) throws IOException {
+            encode(image);
+            setDecoded(null, 0);
+        }
+
+        private void encode(BufferedImage image) throws IOException {
+            final ImageEncoding currentEncoding = encoding;
+            data = ResultPayload.of(currentEncoding.encode(image));
+            dataEncoding = currentEncoding;
+            compactData = null;
+        }
+
+        /**
+         * Sets the encoding of images written from now on.
+         */
+        public static void configureEncoding(ImageEncoding imageEncoding) {
+            encoding = imageEncoding;
+        }
+
+        /**
+         * PNG of the image written compactly. An image written otherwise
+         * is encoded again the first time it's asked for and the result
+         * is kept with it.
+         */
+        public ByteBuffer getCompactPng() throws IOException {
+            materialize();
+            if (dataEncoding == null || dataEncoding == ImageEncoding.COMPACT) {
+                return data.read();
+            }
+            if (compactData == null) {
+                compactData = ResultPayload.of(
+                        ImageEncoding.COMPACT.encode(getImage())
+                );
+            }
+            return compactData.read();
+        }
+
+        public Image getDomainImage() throws IOException {
+            return getDecoded(Image.class, this::decodeImage,
+                              ImageResultEntity::weigh);
+        }
+
+        private Image decodeImage() throws IOException {
+            if (!isDeferred()) {
+                return BufferedImageIO.toImage(getImage());
+            }
+            final FusedRun run = PointwiseOperationRequest.runOf(this);
+            final Image source
+                    = ((ImageResultEntity) run.getSource()).getDomainImage();
+            return source.map(lift(ValueLut.of(run.getValueMapper())));
+        }
+
+        /**
+         * Keeps the image read back from its encoded pixels, so that values
+         * out of range are cut the same way whether it's decoded or not.
+         */
+        public void setDomainImage(Image image) throws IOException {
+            final BufferedImage bufferedImage = BufferedImageIO.fromImage(image);
+            encode(bufferedImage);
+            final Image encodedImage = BufferedImageIO.toImage(bufferedImage);
+            setDecoded(encodedImage, weigh(encodedImage));
+        }
+
+        private static long weigh(Image image) {
+            long weight = 0;
+            for (Channel channel : image.getChannels().values()) {
+                final long bytes = channel instanceof PackedChannel
+                                 ? Byte.BYTES : Integer.BYTES;
+                weight += bytes * channel.getHeight() * channel.getWidth();
+            }
+            return weight;
+        }
+
+        public ResultPayload getData() {
+            return data;
         }
 
         @Override
         public String toString() {
             return "ImageResultEntity{"
-                    + "data=" + ArrayUtils.limitedToString(data, 10)
+                    + "data=" + data
+                    + ", dataEncoding=" + dataEncoding
+                    + ", compactData=" + compactData
                     + "} " + super.toString();
         }
     }
@@ -211,6 +467,13 @@ public abstract class ResultEntity implements Serializable {
         public ImageHistogramResultEntity() {
         }
 
+        @Override
+        public ImageHistogramResultEntity copy() throws IOException {
+            final ImageHistogramResultEntity copy = new ImageHistogramResultEntity();
+            copy.histogram = histogram;
+            return withDecoded(copy);
+        }
+
         public ImageHistogramResultEntity(int[] histogram) {
             this.histogram = histogram;
         }
@@ -233,19 +496,30 @@ public abstract class ResultEntity implements Serializable {
     @DiscriminatorValue("IMAGE_SPECTRUM")
     public static class ImageSpectrumResultEntity extends ResultEntity {
 
-        @Lob
-        @Column(name = "data")
-        @Basic(fetch = FetchType.LAZY)
-        private byte[] data;
+        @Embedded
+        private ResultPayload data;
 
-        @Lob
-        @Column(name = "data_presentation")
-        @Basic(fetch = FetchType.LAZY)
-        private byte[] presentationData;
+        @Embedded
+        @AttributeOverrides({
+                @AttributeOverride(name = "data",
+                                   column = @Column(name = "data_presentation")),
+                @AttributeOverride(name = "key",
+                                   column = @Column(name = "data_presentation_key",
+                                                    length = 64))
+        })
+        private ResultPayload presentationData;
 
         public ImageSpectrumResultEntity() {
         }
 
+        @Override
+        public ImageSpectrumResultEntity copy() throws IOException {
+            final ImageSpectrumResultEntity copy = new ImageSpectrumResultEntity();
+            copy.data = ResultPayload.copyOf(data);
+            copy.presentationData = ResultPayload.copyOf(presentationData);
+            return withDecoded(copy);
+        }
+
         public ImageSpectrumResultEntity(ImageSpectrum imageSpectrum,
                                          BufferedImage presentationImage)
                 throws IOException {
@@ -254,45 +528,47 @@ public abstract class ResultEntity implements Serializable {
         }
 
         public ImageSpectrum getImageSpectrum() throws IOException {
-            return CompressionIO.toImageSpectrum(data);
+            return getDecoded(ImageSpectrum.class,
+                              () -> CompressionIO.toImageSpectrum(data.read()),
+                              ImageSpectrumResultEntity::weigh);
         }
 
         public void setImageSpectrum(ImageSpectrum imageSpectrum)
                 throws IOException {
-            data = CompressionIO.fromImageSpectrum(imageSpectrum);
+            data = ResultPayload.of(CompressionIO.fromImageSpectrum(imageSpectrum));
+            setDecoded(imageSpectrum, weigh(imageSpectrum));
         }
 
-        public byte[] getData() {
-            return data;
+        private static long weigh(ImageSpectrum imageSpectrum) {
+            return (long) COMPLEX_BYTES * imageSpectrum.getSpectra().size()
+                 * imageSpectrum.getHeight() * imageSpectrum.getWidth();
         }
 
-        public void setData(byte[] data) {
-            this.data = data;
+        public ResultPayload getData() {
+            return data;
         }
 
         public BufferedImage getPresentationImage() throws IOException {
-            return fromByteArray(presentationData);
+            return fromByteArray(presentationData.toArray());
         }
 
         public void setPresentationImage(BufferedImage image)
                 throws IOException {
-            presentationData = BufferedImageIO.toByteArray(image);
+            presentationData = ResultPayload.of(
+                    BufferedImageIO.toByteArray(image)
+            );
         }
 
-        public byte[] getPresentationData() {
+        public ResultPayload getPresentationData() {
             return presentationData;
         }
 
-        public void setPresentationData(byte[] presentationData) {
-            this.presentationData = presentationData;
-        }
-
         @Override
         public String toString() {
             return "ImageSpectrumResultEntity{"
-                    + "data=" + ArrayUtils.limitedToString(data, 10)
+                    + "data=" + data
                     + ", dataPresentation="
-                    + ArrayUtils.limitedToString(presentationData, 10)
+                    + presentationData
                     + "} " + super.toString();
         }
     }
@@ -307,6 +583,13 @@ public abstract class ResultEntity implements Serializable {
         public ImageMaskResultEntity() {
         }
 
+        @Override
+        public ImageMaskResultEntity copy() throws IOException {
+            final ImageMaskResultEntity copy = new ImageMaskResultEntity();
+            copy.data = data;
+            return withDecoded(copy);
+        }
+
         public ImageMaskResultEntity(boolean[][] data) {
             this.data = data;
         }
@@ -337,42 +620,168 @@ public abstract class ResultEntity implements Serializable {
         }
     }
 
+    @Entity(name = "ImageTilesResult")
+    @DiscriminatorValue("IMAGE_TILES")
+    public static class ImageTilesResultEntity extends ResultEntity {
+
+        @Embedded
+        private ResultPayload data;
+
+        public ImageTilesResultEntity() {
+        }
+
+        @Override
+        public ImageTilesResultEntity copy() throws IOException {
+            final ImageTilesResultEntity copy = new ImageTilesResultEntity();
+            copy.data = ResultPayload.copyOf(data);
+            return withDecoded(copy);
+        }
+
+        public ImageTilesResultEntity(ImageTiles tiles) throws IOException {
+            setTiles(tiles);
+        }
+
+        public ImageTiles getTiles() throws IOException {
+            return CompressionIO.toImageTiles(data.read());
+        }
+
+        public void setTiles(ImageTiles tiles) throws IOException {
+            data = ResultPayload.of(CompressionIO.fromImageTiles(tiles));
+        }
+
+        public ResultPayload getData() {
+            return data;
+        }
+
+        @Override
+        public String toString() {
+            return "ImageTilesResultEntity{"
+                    + "data=" + data
+                    + "} " + super.toString();
+        }
+    }
+
     @Entity(name = "SoundResult")
     @DiscriminatorValue("SOUND")
     public static class SoundResultEntity extends ResultEntity {
 
-        @Lob
-        @Column(name = "data")
-        @Basic(fetch = FetchType.LAZY)
-        private byte[] data;
+        @Embedded
+        private ResultPayload data;
+
+        @Embedded
+        @AttributeOverrides({
+                @AttributeOverride(name = "data",
+                                   column = @Column(name = "data_envelope")),
+                @AttributeOverride(name = "key",
+                                   column = @Column(name = "data_envelope_key",
+                                                    length = 64))
+        })
+        private ResultPayload envelopeData;
 
         public SoundResultEntity() {
         }
 
+        @Override
+        public SoundResultEntity copy() throws IOException {
+            final SoundResultEntity copy = new SoundResultEntity();
+            copy.data = ResultPayload.copyOf(data);
+            copy.envelopeData = ResultPayload.copyOf(envelopeData);
+            return withDecoded(copy);
+        }
+
         public SoundResultEntity(Sound sound) throws IOException {
             setSound(sound);
         }
 
+        /**
+         * Result of a pointwise operation without values until they're read.
+         */
+        public static SoundResultEntity deferred() {
+            return new SoundResultEntity();
+        }
+
+        @Override
+        public boolean isDeferred() {
+            return data == null;
+        }
+
+        @Override
+        public void materialize() throws IOException {
+            if (isDeferred()) {
+                setSound(getSound());
+            }
+        }
+
         public Sound getSound() throws IOException {
-            return CompressionIO.toSound(data);
+            return getDecoded(Sound.class, this::decodeSound,
+                              SoundResultEntity::weigh);
+        }
+
+        /**
+         * Sound inflating only the parts of the payload its samples are read
+         * from, for sending parts of it, unless it's decoded already.
+         */
+        public Sound viewSound() throws IOException {
+            final Sound found = findDecoded(Sound.class);
+            if (found != null) {
+                return found;
+            }
+            return isDeferred() ? getSound() : CompressionIO.viewSound(data.read());
+        }
+
+        private Sound decodeSound() throws IOException {
+            if (!isDeferred()) {
+                return CompressionIO.toSound(data.read());
+            }
+            final FusedRun run = PointwiseOperationRequest.runOf(this);
+            final Sound source
+                    = ((SoundResultEntity) run.getSource()).getSound();
+            return evaluate(source.map(run.getValueMapper()));
         }
 
         public void setSound(Sound sound) throws IOException {
-            data = CompressionIO.fromSound(sound);
+            final Sound evaluated = evaluate(sound);
+            data = ResultPayload.of(CompressionIO.fromSound(evaluated));
+            envelopeData = ResultPayload.of(CompressionIO.fromEnvelope(
+                    EnvelopePyramid.of(evaluated)
+            ));
+            setDecoded(evaluated, weigh(evaluated));
         }
 
-        public byte[] getData() {
+        // evaluated once for the payload, the envelope and later reads
+        private static Sound evaluate(Sound sound) {
+            return sound instanceof LazySound
+                 ? new BufferSound(sound.values().toArray(),
+                                   sound.getSamplingTime())
+                 : sound;
+        }
+
+        private static long weigh(Sound sound) {
+            return (long) Integer.BYTES * sound.getLength();
+        }
+
+        public ResultPayload getData() {
             return data;
         }
 
-        public void setData(byte[] data) {
-            this.data = data;
+        /**
+         * Envelope for charts, built from the data of results saved
+         * before envelopes.
+         */
+        public EnvelopePyramid getEnvelope() throws IOException {
+            return envelopeData == null
+                 ? EnvelopePyramid.of(getSound())
+                 : CompressionIO.toEnvelope(envelopeData.read());
+        }
+
+        public ResultPayload getEnvelopeData() {
+            return envelopeData;
         }
 
         @Override
         public String toString() {
             return "SoundResultEntity{"
-                 + "data=" + ArrayUtils.limitedToString(data, 10)
+                 + "data=" + data
                  + "} " + super.toString();
         }
     }
@@ -381,38 +790,46 @@ public abstract class ResultEntity implements Serializable {
     @DiscriminatorValue("SOUND_SPECTRUM")
     public static class SoundSpectrumResultEntity extends ResultEntity {
 
-        @Lob
-        @Column(name = "data")
-        @Basic(fetch = FetchType.LAZY)
-        private byte[] data;
+        @Embedded
+        private ResultPayload data;
 
         public SoundSpectrumResultEntity() {
         }
 
+        @Override
+        public SoundSpectrumResultEntity copy() throws IOException {
+            final SoundSpectrumResultEntity copy = new SoundSpectrumResultEntity();
+            copy.data = ResultPayload.copyOf(data);
+            return withDecoded(copy);
+        }
+
         public SoundSpectrumResultEntity(Spectrum1d spectrum) throws IOException {
             setSpectrum(spectrum);
         }
 
         public Spectrum1d getSpectrum() throws IOException {
-            return CompressionIO.toSoundSpectrum(data);
+            return getDecoded(Spectrum1d.class,
+                              () -> CompressionIO.toSoundSpectrum(data.read()),
+                              SoundSpectrumResultEntity::weigh);
         }
 
         public void setSpectrum(Spectrum1d spectrum) throws IOException {
-            data = CompressionIO.fromSoundSpectrum(spectrum);
+            data = ResultPayload.of(CompressionIO.fromSoundSpectrum(spectrum));
+            setDecoded(spectrum, weigh(spectrum));
         }
 
-        public byte[] getData() {
-            return data;
+        private static long weigh(Spectrum1d spectrum) {
+            return (long) COMPLEX_BYTES * spectrum.getLength();
         }
 
-        public void setData(byte[] data) {
-            this.data = data;
+        public ResultPayload getData() {
+            return data;
         }
 
         @Override
         public String toString() {
             return "SoundSpectrumResultEntity{"
-                  + "data=" + ArrayUtils.limitedToString(data, 10)
+                  + "data=" + data
                   + "} " + super.toString();
         }
     }
@@ -421,38 +838,67 @@ public abstract class ResultEntity implements Serializable {
     @DiscriminatorValue("SIGNAL")
     public static class SignalResultEntity extends ResultEntity {
 
-        @Lob
-        @Column(name = "data")
-        @Basic(fetch = FetchType.LAZY)
-        private byte[] data;
+        @Embedded
+        private ResultPayload data;
+
+        @Embedded
+        @AttributeOverrides({
+                @AttributeOverride(name = "data",
+                                   column = @Column(name = "data_envelope")),
+                @AttributeOverride(name = "key",
+                                   column = @Column(name = "data_envelope_key",
+                                                    length = 64))
+        })
+        private ResultPayload envelopeData;
 
         public SignalResultEntity() {
         }
 
+        @Override
+        public SignalResultEntity copy() throws IOException {
+            final SignalResultEntity copy = new SignalResultEntity();
+            copy.data = ResultPayload.copyOf(data);
+            copy.envelopeData = ResultPayload.copyOf(envelopeData);
+            return withDecoded(copy);
+        }
+
         public SignalResultEntity(Signal signal) throws IOException {
             setSignal(signal);
         }
 
         public Signal getSignal() throws IOException {
-            return CompressionIO.toSignal(data);
+            return CompressionIO.toSignal(data.read());
         }
 
         public void setSignal(Signal signal) throws IOException {
-            data = CompressionIO.fromSignal(signal);
+            data = ResultPayload.of(CompressionIO.fromSignal(signal));
+            envelopeData = ResultPayload.of(CompressionIO.fromEnvelope(
+                    EnvelopePyramid.of(signal)
+            ));
         }
 
-        public byte[] getData() {
+        public ResultPayload getData() {
             return data;
         }
 
-        public void setData(byte[] data) {
-            this.data = data;
+        /**
+         * Envelope for charts, built from the data of results saved
+         * before envelopes.
+         */
+        public EnvelopePyramid getEnvelope() throws IOException {
+            return envelopeData == null
+                 ? EnvelopePyramid.of(getSignal())
+                 : CompressionIO.toEnvelope(envelopeData.read());
+        }
+
+        public ResultPayload getEnvelopeData() {
+            return envelopeData;
         }
 
         @Override
         public String toString() {
             return "SignalResultEntity{"
-                 + "data=" + ArrayUtils.limitedToString(data, 10)
+                 + "data=" + data
                  + "} " + super.toString();
         }
     }
@@ -461,38 +907,67 @@ public abstract class ResultEntity implements Serializable {
     @DiscriminatorValue("SOUND_FILTER")
     public static class SoundFilterResultEntity extends ResultEntity {
 
-        @Lob
-        @Column(name = "data")
-        @Basic(fetch = FetchType.LAZY)
-        private byte[] data;
+        @Embedded
+        private ResultPayload data;
+
+        @Embedded
+        @AttributeOverrides({
+                @AttributeOverride(name = "data",
+                                   column = @Column(name = "data_envelope")),
+                @AttributeOverride(name = "key",
+                                   column = @Column(name = "data_envelope_key",
+                                                    length = 64))
+        })
+        private ResultPayload envelopeData;
 
         public SoundFilterResultEntity() {
         }
 
+        @Override
+        public SoundFilterResultEntity copy() throws IOException {
+            final SoundFilterResultEntity copy = new SoundFilterResultEntity();
+            copy.data = ResultPayload.copyOf(data);
+            copy.envelopeData = ResultPayload.copyOf(envelopeData);
+            return withDecoded(copy);
+        }
+
         public SoundFilterResultEntity(Filter filter) throws IOException {
             setFilter(filter);
         }
 
         public Filter getFilter() throws IOException {
-            return CompressionIO.toFilter(data);
+            return CompressionIO.toFilter(data.read());
         }
 
         public void setFilter(Filter filter) throws IOException {
-            data = CompressionIO.fromFilter(filter);
+            data = ResultPayload.of(CompressionIO.fromFilter(filter));
+            envelopeData = ResultPayload.of(CompressionIO.fromEnvelope(
+                    EnvelopePyramid.of(filter)
+            ));
         }
 
-        public byte[] getData() {
+        public ResultPayload getData() {
             return data;
         }
 
-        public void setData(byte[] data) {
-            this.data = data;
+        /**
+         * Envelope for charts, built from the data of results saved
+         * before envelopes.
+         */
+        public EnvelopePyramid getEnvelope() throws IOException {
+            return envelopeData == null
+                 ? EnvelopePyramid.of(getFilter())
+                 : CompressionIO.toEnvelope(envelopeData.read());
+        }
+
+        public ResultPayload getEnvelopeData() {
+            return envelopeData;
         }
 
         @Override
         public String toString() {
             return "SoundFilterResultEntity{"
-                 + "data=" + ArrayUtils.limitedToString(data, 10)
+                 + "data=" + data
                  + "} " + super.toString();
         }
     }
@@ -501,38 +976,39 @@ public abstract class ResultEntity implements Serializable {
     @DiscriminatorValue("NOTE_SEQUENCE")
     public static class NoteSequenceResultEntity extends ResultEntity {
 
-        @Lob
-        @Column(name = "data")
-        @Basic(fetch = FetchType.LAZY)
-        private byte[] data;
+        @Embedded
+        private ResultPayload data;
 
         public NoteSequenceResultEntity() {
         }
 
+        @Override
+        public NoteSequenceResultEntity copy() throws IOException {
+            final NoteSequenceResultEntity copy = new NoteSequenceResultEntity();
+            copy.data = ResultPayload.copyOf(data);
+            return withDecoded(copy);
+        }
+
         public NoteSequenceResultEntity(Note[] notes) throws IOException {
             setNotes(notes);
         }
 
         public Note[] getNotes() throws IOException {
-            return CompressionIO.toNotes(data);
+            return CompressionIO.toNotes(data.read());
         }
 
         public void setNotes(Note[] notes) throws IOException {
-            data = CompressionIO.fromNotes(notes);
+            data = ResultPayload.of(CompressionIO.fromNotes(notes));
         }
 
-        public byte[] getData() {
+        public ResultPayload getData() {
             return data;
         }
 
-        public void setData(byte[] data) {
-            this.data = data;
-        }
-
         @Override
         public String toString() {
             return "NoteSequenceResultEntity{"
-                    + "data=" + ArrayUtils.limitedToString(data, 10)
+                    + "data=" + data
                     + "} " + super.toString();
         }
     }
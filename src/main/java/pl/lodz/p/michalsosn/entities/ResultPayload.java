@@ -0,0 +1,184 @@
+package pl.lodz.p.michalsosn.entities;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.lodz.p.michalsosn.domain.util.ArrayUtils;
+import pl.lodz.p.michalsosn.io.PayloadStore;
+
+import javax.persistence.*;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Binary data of a result. When a {@link PayloadStore} is configured new
+ * payloads are written to it and the row only keeps their key, otherwise
+ * they stay in the row. Payloads written before the store was configured
+ * are still read from their rows.
+ * @author Michał Sośnicki
+ */
+@Embeddable
+public class ResultPayload implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Object UNWRITTEN_KEYS = new Object();
+
+    private static volatile PayloadStore store;
+
+    @Lob
+    @Column(name = "data")
+    @Basic(fetch = FetchType.LAZY)
+    private byte[] data;
+
+    @Column(name = "data_key", length = 64)
+    private String key;
+
+    protected ResultPayload() {
+    }
+
+    public static void configureStore(PayloadStore payloadStore) {
+        store = payloadStore;
+    }
+
+    public static ResultPayload of(byte[] data) throws IOException {
+        final ResultPayload payload = new ResultPayload();
+        final PayloadStore currentStore = store;
+        if (currentStore == null) {
+            payload.data = data;
+        } else {
+            payload.key = currentStore.write(data);
+            awaitBeforeCommit(payload.key);
+        }
+        return payload;
+    }
+
+    /**
+     * Waits for the payloads written in the current transaction to be in
+     * the store, so that no row keeps the key of a payload that was lost.
+     * Transactions wait for them before committing anyway, this lets them
+     * fail earlier.
+     * @throws IOException when a payload failed to be written
+     */
+    public static void awaitWritten() throws IOException {
+        if (!TransactionSynchronizationManager.hasResource(UNWRITTEN_KEYS)) {
+            return;
+        }
+        final Set<String> keys = unwrittenKeys();
+        final PayloadStore currentStore = store;
+        for (Iterator<String> it = keys.iterator(); it.hasNext(); ) {
+            currentStore.awaitWritten(it.next());
+            it.remove();
+        }
+    }
+
+    /**
+     * Deletes the payloads in the store which aren't referenced and weren't
+     * written since the given instant.
+     * @return number of deleted payloads
+     */
+    public static int sweepStore(Set<String> referenced, Instant since)
+            throws IOException {
+        final PayloadStore currentStore = store;
+        return currentStore == null ? 0 : currentStore.sweep(referenced, since);
+    }
+
+    private static void awaitBeforeCommit(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.hasResource(UNWRITTEN_KEYS)) {
+            TransactionSynchronizationManager.bindResource(
+                    UNWRITTEN_KEYS, new LinkedHashSet<String>()
+            );
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void beforeCommit(boolean readOnly) {
+                            try {
+                                awaitWritten();
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException(ex);
+                            }
+                        }
+
+                        @Override
+                        public void afterCompletion(int status) {
+                            TransactionSynchronizationManager
+                                    .unbindResourceIfPossible(UNWRITTEN_KEYS);
+                        }
+                    }
+            );
+        }
+        unwrittenKeys().add(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> unwrittenKeys() {
+        return (Set<String>) TransactionSynchronizationManager
+                .getResource(UNWRITTEN_KEYS);
+    }
+
+    /**
+     * New payload with the same data or key, null for null. Stored payloads
+     * are renewed, so that sweeps don't delete them before the copy is
+     * saved, even if the rows of the original are gone by then.
+     * @throws IOException when the stored payload is missing
+     */
+    public static ResultPayload copyOf(ResultPayload payload)
+            throws IOException {
+        if (payload == null) {
+            return null;
+        }
+        if (payload.key != null) {
+            final PayloadStore currentStore = store;
+            if (currentStore == null) {
+                throw new IOException("Payload " + payload.key + " is in a store, "
+                                    + "but no store is configured");
+            }
+            currentStore.touch(payload.key);
+        }
+        final ResultPayload copy = new ResultPayload();
+        copy.data = payload.data;
+        copy.key = payload.key;
+        return copy;
+    }
+
+    public ByteBuffer read() throws IOException {
+        if (key == null) {
+            return ByteBuffer.wrap(data).asReadOnlyBuffer();
+        }
+        final PayloadStore currentStore = store;
+        if (currentStore == null) {
+            throw new IOException("Payload " + key + " is in a store, "
+                                + "but no store is configured");
+        }
+        return currentStore.read(key);
+    }
+
+    public byte[] toArray() throws IOException {
+        if (key == null) {
+            return data;
+        }
+        final ByteBuffer buffer = read();
+        final byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+
+    public boolean isStored() {
+        return key != null;
+    }
+
+    @Override
+    public String toString() {
+        return key != null
+             ? "ResultPayload{key=" + key + '}'
+             : "ResultPayload{data=" + ArrayUtils.limitedToString(data, 10) + '}';
+    }
+}
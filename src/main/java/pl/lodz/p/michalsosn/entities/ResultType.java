@@ -5,6 +5,6 @@ package pl.lodz.p.michalsosn.entities;
  */
 public enum ResultType {
     NONE, INTEGER, DOUBLE,
-    IMAGE, IMAGE_HISTOGRAM, IMAGE_SPECTRUM, IMAGE_MASK,
+    IMAGE, IMAGE_HISTOGRAM, IMAGE_SPECTRUM, IMAGE_MASK, IMAGE_TILES,
     SOUND, SOUND_SPECTRUM, SIGNAL, SOUND_FILTER, NOTE_SEQUENCE
 }
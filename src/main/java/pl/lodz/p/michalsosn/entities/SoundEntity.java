@@ -58,6 +58,10 @@ public class SoundEntity implements Serializable {
         setDataWithConversion(inputStream);
     }
 
+    public long getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -1,16 +1,21 @@
 package pl.lodz.p.michalsosn.io;
 
-import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
 import pl.lodz.p.michalsosn.domain.image.channel.Channel;
 import pl.lodz.p.michalsosn.domain.image.channel.GrayImage;
 import pl.lodz.p.michalsosn.domain.image.channel.Image;
 import pl.lodz.p.michalsosn.domain.image.channel.ImageVisitor;
+import pl.lodz.p.michalsosn.domain.image.channel.PackedChannel;
 import pl.lodz.p.michalsosn.domain.image.channel.RgbImage;
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -42,7 +47,9 @@ public final class BufferedImageIO {
     public static Image toImage(BufferedImage bufferedImage)
             throws IOException {
         Raster raster = bufferedImage.getRaster();
-        int elementNum = raster.getNumDataElements();
+        // packed pixels are a single data element whatever their bands are
+        int elementNum = raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                       ? raster.getNumBands() : raster.getNumDataElements();
 
         switch (elementNum) {
             case 1:
@@ -61,7 +68,10 @@ public final class BufferedImageIO {
         int height = bufferedImage.getHeight();
         int width = bufferedImage.getWidth();
 
-        if (bufferedImage.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+        // 16 bit gray samples are scaled down below instead of drawn
+        int type = bufferedImage.getType();
+        if (type != BufferedImage.TYPE_BYTE_GRAY
+                && type != BufferedImage.TYPE_USHORT_GRAY) {
             BufferedImage convertedImage
                     = new BufferedImage(width, height,
                                         BufferedImage.TYPE_BYTE_GRAY);
@@ -72,14 +82,22 @@ public final class BufferedImageIO {
         }
 
         WritableRaster raster = bufferedImage.getRaster();
-
-        int[][] newValues = new int[height][width];
-
-        for (int y = 0; y < height; y++) {
-            raster.getPixels(0, y, width, 1, newValues[y]);
+        byte[] grayValues = new byte[height * width];
+        if (!copyBand(raster, 0, grayValues)) {
+            int shift = Math.max(0,
+                    raster.getSampleModel().getSampleSize(0) - Byte.SIZE);
+            TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+                int[] row = new int[width];
+                for (int y = fromY; y < toY; y++) {
+                    raster.getSamples(0, y, width, 1, 0, row);
+                    for (int x = 0; x < width; x++) {
+                        grayValues[y * width + x] = (byte) (row[x] >>> shift);
+                    }
+                }
+            });
         }
 
-        Channel grayChannel = new BufferChannel(newValues);
+        Channel grayChannel = new PackedChannel(height, width, grayValues);
         return new GrayImage(grayChannel);
     }
 
@@ -87,30 +105,144 @@ public final class BufferedImageIO {
         int height = bufferedImage.getHeight();
         int width = bufferedImage.getWidth();
 
-        int[][] redValues = new int[height][width];
-        int[][] greenValues = new int[height][width];
-        int[][] blueValues = new int[height][width];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int color = bufferedImage.getRGB(x, y);
+        byte[] redValues = new byte[height * width];
+        byte[] greenValues = new byte[height * width];
+        byte[] blueValues = new byte[height * width];
 
-                int blue = color & 0xff;
-                int green = (color & 0xff00) >> 8;
-                int red = (color & 0xff0000) >> 16;
+        int type = bufferedImage.getType();
+        WritableRaster raster = bufferedImage.getRaster();
+        boolean copied;
+        switch (type) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                copied = copyBand(raster, 0, redValues)
+                      && copyBand(raster, 1, greenValues)
+                      && copyBand(raster, 2, blueValues);
+                break;
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_BGR:
+                copied = copyPackedBands(raster, redValues, greenValues, blueValues);
+                break;
+            default:
+                copied = false;
+        }
 
-                redValues[y][x] = red;
-                greenValues[y][x] = green;
-                blueValues[y][x] = blue;
-            }
+        if (!copied) {
+            BufferedImage source = bufferedImage;
+            TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+                int[] row = new int[width];
+                for (int y = fromY; y < toY; y++) {
+                    source.getRGB(0, y, width, 1, row, 0, width);
+                    int rowStart = y * width;
+                    for (int x = 0; x < width; x++) {
+                        int color = row[x];
+                        blueValues[rowStart + x] = (byte) color;
+                        greenValues[rowStart + x] = (byte) (color >> 8);
+                        redValues[rowStart + x] = (byte) (color >> 16);
+                    }
+                }
+            });
         }
 
-        Channel redChannel = new BufferChannel(redValues);
-        Channel greenChannel = new BufferChannel(greenValues);
-        Channel blueChannel = new BufferChannel(blueValues);
+        Channel redChannel = new PackedChannel(height, width, redValues);
+        Channel greenChannel = new PackedChannel(height, width, greenValues);
+        Channel blueChannel = new PackedChannel(height, width, blueValues);
         return new RgbImage(redChannel, greenChannel, blueChannel);
     }
 
+    /**
+     * Copies one band of a raster straight from its byte buffer into
+     * a packed array. Returns false when the raster isn't laid out
+     * as interleaved bytes, leaving the target untouched.
+     */
+    private static boolean copyBand(Raster raster, int band, byte[] target) {
+        if (!(raster.getDataBuffer() instanceof DataBufferByte)
+                || !(raster.getSampleModel() instanceof ComponentSampleModel)
+                || raster.getSampleModel().getSampleSize(band) != Byte.SIZE) {
+            return false;
+        }
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        ComponentSampleModel sampleModel
+                = (ComponentSampleModel) raster.getSampleModel();
+        byte[] data = dataBuffer.getData(sampleModel.getBankIndices()[band]);
+
+        int height = raster.getHeight();
+        int width = raster.getWidth();
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int start = dataBuffer.getOffsets()[sampleModel.getBankIndices()[band]]
+                + sampleModel.getOffset(
+                        raster.getMinX() - raster.getSampleModelTranslateX(),
+                        raster.getMinY() - raster.getSampleModelTranslateY(),
+                        band
+                );
+
+        TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+            for (int y = fromY; y < toY; y++) {
+                int source = start + y * scanlineStride;
+                if (pixelStride == 1) {
+                    System.arraycopy(data, source, target, y * width, width);
+                } else {
+                    int dest = y * width;
+                    for (int x = 0; x < width; x++, source += pixelStride) {
+                        target[dest + x] = data[source];
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Copies the first three bands of a raster of pixels packed into
+     * ints straight from its int buffer. Returns false when the raster
+     * isn't laid out this way.
+     */
+    private static boolean copyPackedBands(Raster raster, byte[] red,
+                                           byte[] green, byte[] blue) {
+        if (!(raster.getDataBuffer() instanceof DataBufferInt)
+                || !(raster.getSampleModel()
+                        instanceof SinglePixelPackedSampleModel)) {
+            return false;
+        }
+        SinglePixelPackedSampleModel sampleModel
+                = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        for (int band = 0; band < 3; band++) {
+            if (sampleModel.getSampleSize(band) != Byte.SIZE) {
+                return false;
+            }
+        }
+        DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = dataBuffer.getData();
+        int[] shifts = sampleModel.getBitOffsets();
+        int redShift = shifts[0];
+        int greenShift = shifts[1];
+        int blueShift = shifts[2];
+
+        int height = raster.getHeight();
+        int width = raster.getWidth();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int start = dataBuffer.getOffset() + sampleModel.getOffset(
+                raster.getMinX() - raster.getSampleModelTranslateX(),
+                raster.getMinY() - raster.getSampleModelTranslateY()
+        );
+
+        TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+            for (int y = fromY; y < toY; y++) {
+                int source = start + y * scanlineStride;
+                int dest = y * width;
+                for (int x = 0; x < width; x++) {
+                    int pixel = data[source + x];
+                    red[dest + x] = (byte) (pixel >>> redShift);
+                    green[dest + x] = (byte) (pixel >>> greenShift);
+                    blue[dest + x] = (byte) (pixel >>> blueShift);
+                }
+            }
+        });
+        return true;
+    }
+
     public static BufferedImage fromImage(Image image) {
         return image.accept(ImageVisitor.imageVisitor(
                 grayImage -> {
@@ -121,13 +253,26 @@ public final class BufferedImageIO {
                     BufferedImage bufferedImage
                             = new BufferedImage(width, height,
                                                 BufferedImage.TYPE_BYTE_GRAY);
-                    WritableRaster raster = bufferedImage.getRaster();
-
-                    grayImage.forEach((y, x) ->
-                            raster.setSample(
-                                    x, y, 0, grayChannel.getValue(y, x)
-                            )
-                    );
+                    byte[] data = ((DataBufferByte) bufferedImage.getRaster()
+                            .getDataBuffer()).getData();
+
+                    TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+                        if (grayChannel instanceof PackedChannel) {
+                            PackedChannel packed = (PackedChannel) grayChannel;
+                            for (int y = fromY; y < toY; y++) {
+                                packed.copyTo(y, data, y * width);
+                            }
+                            return;
+                        }
+                        int[] row = new int[width];
+                        for (int y = fromY; y < toY; y++) {
+                            grayChannel.copyTo(y, row, 0);
+                            int rowStart = y * width;
+                            for (int x = 0; x < width; x++) {
+                                data[rowStart + x] = (byte) row[x];
+                            }
+                        }
+                    });
 
                     return bufferedImage;
                 },
@@ -141,14 +286,26 @@ public final class BufferedImageIO {
                     BufferedImage bufferedImage
                             = new BufferedImage(width, height,
                                                 BufferedImage.TYPE_3BYTE_BGR);
-
-                    rgbImage.forEach((y, x) -> {
-                        int red = redChannel.getValue(y, x);
-                        int green = greenChannel.getValue(y, x);
-                        int blue = blueChannel.getValue(y, x);
-
-                        int value = blue | green << 8 | red << 16;
-                        bufferedImage.setRGB(x, y, value);
+                    byte[] data = ((DataBufferByte) bufferedImage.getRaster()
+                            .getDataBuffer()).getData();
+
+                    // bytes of a pixel are blue, green and red
+                    TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+                        int[] reds = new int[width];
+                        int[] greens = new int[width];
+                        int[] blues = new int[width];
+                        for (int y = fromY; y < toY; y++) {
+                            redChannel.copyTo(y, reds, 0);
+                            greenChannel.copyTo(y, greens, 0);
+                            blueChannel.copyTo(y, blues, 0);
+                            int pixel = 3 * y * width;
+                            for (int x = 0; x < width; x++, pixel += 3) {
+                                int value = blues[x] | greens[x] << 8 | reds[x] << 16;
+                                data[pixel] = (byte) value;
+                                data[pixel + 1] = (byte) (value >> 8);
+                                data[pixel + 2] = (byte) (value >> 16);
+                            }
+                        }
                     });
 
                     return bufferedImage;
@@ -1,155 +1,354 @@
 package pl.lodz.p.michalsosn.io;
 
-import pl.lodz.p.michalsosn.domain.complex.Complex;
-import pl.lodz.p.michalsosn.domain.image.spectrum.BufferSpectrum2d;
+import pl.lodz.p.michalsosn.domain.image.spectrum.ArraySpectrum2d;
 import pl.lodz.p.michalsosn.domain.image.spectrum.ImageSpectrum;
 import pl.lodz.p.michalsosn.domain.image.spectrum.Spectrum2d;
+import pl.lodz.p.michalsosn.domain.sound.EnvelopePyramid;
 import pl.lodz.p.michalsosn.domain.sound.TimeRange;
 import pl.lodz.p.michalsosn.domain.sound.filter.BufferFilter;
 import pl.lodz.p.michalsosn.domain.sound.filter.Filter;
 import pl.lodz.p.michalsosn.domain.sound.signal.BufferSignal;
 import pl.lodz.p.michalsosn.domain.sound.signal.Signal;
 import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.LazySound;
 import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
-import pl.lodz.p.michalsosn.domain.sound.spectrum.BufferSpectrum1d;
+import pl.lodz.p.michalsosn.domain.sound.spectrum.ArraySpectrum1d;
 import pl.lodz.p.michalsosn.domain.sound.spectrum.Spectrum1d;
 import pl.lodz.p.michalsosn.domain.sound.transform.Note;
 import pl.lodz.p.michalsosn.util.Maps;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 /**
+ * Binary format of results. Data starts with a header naming the version
+ * and the number of entries. Every entry has a name, a codec, and a block
+ * of little endian primitives written in bulk through a {@link ByteBuffer}.
+ * The codec is picked for each result type: values of spectra and
+ * signals hardly compress and are stored as they are, samples of sounds
+ * compress well once bytes of the same significance are put together and
+ * they are deflated in blocks which are read on their own.
+ * Data written as a zip of {@link DataOutputStream} entries by earlier
+ * versions is still read.
  * @author Michał Sośnicki
  */
 public final class CompressionIO {
 
+    private static final byte[] MAGIC = {'L', 'M', 'P', 'K'};
+    private static final byte VERSION = 1;
+
     private CompressionIO() {
     }
 
-    public static byte[] fromImageSpectrum(ImageSpectrum imageSpectrum)
-            throws IOException {
-        final Map<String, Spectrum2d> spectra = imageSpectrum.getSpectra();
-        final Map<String, OutputStreamConsumer> consumers = Maps.applyToValues(
-                spectra, spectrum -> dataStream -> {
-                    final int height = spectrum.getHeight();
-                    final int width = spectrum.getWidth();
-                    dataStream.writeInt(height);
-                    dataStream.writeInt(width);
-                    for (int y = 0; y < height; ++y) {
-                        for (int x = 0; x < width; ++x) {
-                            Complex value = spectrum.getValue(y, x);
-                            dataStream.writeDouble(value.getRe());
-                            dataStream.writeDouble(value.getIm());
-                        }
-                    }
+    /**
+     * Transformation of entry blocks. Shuffling stores the n-th bytes of
+     * all elements together before deflating them.
+     */
+    public enum Codec {
+        NONE(0), DEFLATE(1), SHUFFLED_DEFLATE(2);
+
+        private final byte id;
+
+        Codec(int id) {
+            this.id = (byte) id;
+        }
+
+        private static Codec ofId(byte id) throws IOException {
+            for (Codec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
                 }
-        );
-        return writeMultiple(consumers);
+            }
+            throw new IOException("Unknown codec " + id);
+        }
+
+        private byte[] encode(byte[] raw, int elementSize) {
+            switch (this) {
+                case NONE:
+                    return raw;
+                case DEFLATE:
+                    return deflate(raw);
+                case SHUFFLED_DEFLATE:
+                    return deflate(shuffle(raw, elementSize));
+                default:
+                    throw new IllegalStateException("Unknown codec " + this);
+            }
+        }
+
+        private ByteBuffer decode(ByteBuffer stored, int rawLength,
+                                  int elementSize) throws IOException {
+            switch (this) {
+                case NONE:
+                    return stored;
+                case DEFLATE:
+                    return ByteBuffer.wrap(inflate(toArray(stored), rawLength));
+                case SHUFFLED_DEFLATE:
+                    return ByteBuffer.wrap(unshuffle(
+                            inflate(toArray(stored), rawLength), elementSize
+                    ));
+                default:
+                    throw new IllegalStateException("Unknown codec " + this);
+            }
+        }
     }
 
-    public static ImageSpectrum toImageSpectrum(byte[] bytes)
+    public static byte[] fromImageSpectrum(ImageSpectrum imageSpectrum)
             throws IOException {
-        Map<String, Spectrum2d> spectra = readMultiple(bytes,
-                dataStream -> {
-            final int height = dataStream.readInt();
-            final int width = dataStream.readInt();
-
-            final Complex[][] values = new Complex[height][width];
+        final Map<String, Spectrum2d> spectra = imageSpectrum.getSpectra();
+        final Map<String, Block> blocks = Maps.applyToValues(spectra, spectrum -> {
+            final int height = spectrum.getHeight();
+            final int width = spectrum.getWidth();
+            final Block block = new Block(
+                    2 * Integer.BYTES + 2 * Double.BYTES * height * width
+            );
+            block.putInt(height);
+            block.putInt(width);
+            final double[] buffer = new double[2 * width];
             for (int y = 0; y < height; ++y) {
-                for (int x = 0; x < width; ++x) {
-                    final double re = dataStream.readDouble();
-                    final double im = dataStream.readDouble();
-                    values[y][x] = Complex.ofReIm(re, im);
-                }
+                spectrum.copyTo(y, buffer, 0);
+                block.putDoubles(buffer, 0, buffer.length);
             }
+            return block;
+        });
+        return write(blocks, Codec.NONE, Double.BYTES);
+    }
+
+    public static ImageSpectrum toImageSpectrum(byte[] data) throws IOException {
+        return toImageSpectrum(ByteBuffer.wrap(data));
+    }
 
-            return new BufferSpectrum2d(values);
+    public static ImageSpectrum toImageSpectrum(ByteBuffer data) throws IOException {
+        Map<String, Spectrum2d> spectra = readAll(data, source -> {
+            final int height = source.readInt();
+            final int width = source.readInt();
+
+            final double[] values = new double[2 * height * width];
+            source.readDoubles(values);
+
+            return new ArraySpectrum2d(height, width, values);
         });
         return new ImageSpectrum(spectra);
     }
 
     private static final String SOUND_ENTRY = "sound";
+    private static final String SOUND_BLOCKS_ENTRY = "sound_blocks";
+    // samples deflated together, parts of sounds are read without
+    // inflating the blocks before them
+    private static final int SOUND_BLOCK_SAMPLES = 1 << 16;
 
     public static byte[] fromSound(Sound sound) throws IOException {
-        return writeSingle(SOUND_ENTRY, dataStream -> {
-            final double duration = sound.getSamplingTime().getDuration();
-            final int length = sound.getLength();
-            dataStream.writeDouble(duration);
-            dataStream.writeInt(length);
-            for (int i = 0; i < length; ++i) {
-                dataStream.writeInt(sound.getValue(i));
+        final int length = sound.getLength();
+        final int blockCount
+                = (length + SOUND_BLOCK_SAMPLES - 1) / SOUND_BLOCK_SAMPLES;
+        final byte[][] blocks = new byte[blockCount][];
+        int storedLength = 0;
+        for (int index = 0; index < blockCount; ++index) {
+            final int from = index * SOUND_BLOCK_SAMPLES;
+            final int to = Math.min(length, from + SOUND_BLOCK_SAMPLES);
+            final Block samples = new Block(Integer.BYTES * (to - from));
+            for (int i = from; i < to; ++i) {
+                samples.putInt(sound.getValue(i));
             }
-        });
+            blocks[index] = Codec.SHUFFLED_DEFLATE.encode(samples.toArray(),
+                                                          Integer.BYTES);
+            storedLength += blocks[index].length;
+        }
+
+        final Block block = new Block(Double.BYTES + 3 * Integer.BYTES
+                                    + Integer.BYTES * blockCount + storedLength);
+        block.putDouble(sound.getSamplingTime().getDuration());
+        block.putInt(length);
+        block.putInt(SOUND_BLOCK_SAMPLES);
+        block.putInt(blockCount);
+        for (byte[] stored : blocks) {
+            block.putInt(stored.length);
+        }
+        for (byte[] stored : blocks) {
+            block.putBytes(ByteBuffer.wrap(stored));
+        }
+        return write(SOUND_BLOCKS_ENTRY, block, Codec.NONE, 1);
     }
+
     public static Sound toSound(byte[] data) throws IOException {
-        return readSingle(data, SOUND_ENTRY, dataStream -> {
-            final double duration = dataStream.readDouble();
-            final int length = dataStream.readInt();
+        return toSound(ByteBuffer.wrap(data));
+    }
+
+    public static Sound toSound(ByteBuffer data) throws IOException {
+        final SoundBlocks blocks = readSoundBlocks(data);
+        if (blocks != null) {
+            return blocks.toSound();
+        }
+        return readSingle(data, SOUND_ENTRY, source -> {
+            final double duration = source.readDouble();
+            final int length = source.readInt();
             final int[] values = new int[length];
-            for (int i = 0; i < length; ++i) {
-                values[i] = dataStream.readInt();
-            }
+            source.readInts(values);
             return new BufferSound(values, TimeRange.ofDuration(duration));
         });
     }
 
+    /**
+     * Sound inflating the blocks of samples as they are read, so that
+     * reading a part of it doesn't inflate the rest. Sounds written before
+     * blocks are inflated at once.
+     */
+    public static Sound viewSound(ByteBuffer data) throws IOException {
+        final SoundBlocks blocks = readSoundBlocks(data);
+        return blocks != null ? blocks.toLazySound() : toSound(data);
+    }
+
+    private static SoundBlocks readSoundBlocks(ByteBuffer data)
+            throws IOException {
+        return readAll(data, SoundBlocks::new, SOUND_BLOCKS_ENTRY)
+                .get(SOUND_BLOCKS_ENTRY);
+    }
+
+    /**
+     * Samples of a sound in blocks deflated one by one. The last inflated
+     * block is kept, so reading samples in order inflates each block once.
+     */
+    private static final class SoundBlocks implements IntUnaryOperator {
+        private final TimeRange samplingTime;
+        private final int length;
+        private final int blockSamples;
+        private final ByteBuffer[] blocks;
+        private volatile InflatedBlock last;
+
+        private SoundBlocks(Source source) throws IOException {
+            samplingTime = TimeRange.ofDuration(source.readDouble());
+            length = source.readInt();
+            blockSamples = source.readInt();
+            blocks = new ByteBuffer[source.readInt()];
+            if (length < 0 || blockSamples <= 0 || blocks.length
+                    != (length + (long) blockSamples - 1) / blockSamples) {
+                throw new IOException("Malformed sound blocks");
+            }
+            final int[] storedLengths = new int[blocks.length];
+            source.readInts(storedLengths);
+            for (int index = 0; index < blocks.length; ++index) {
+                blocks[index] = source.viewBytes(storedLengths[index]);
+            }
+        }
+
+        @Override
+        public int applyAsInt(int sample) {
+            final int index = sample / blockSamples;
+            InflatedBlock block = last;
+            if (block == null || block.index != index) {
+                try {
+                    block = new InflatedBlock(index, inflate(index));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                last = block;
+            }
+            return block.values[sample - index * blockSamples];
+        }
+
+        private int[] inflate(int index) throws IOException {
+            final int from = index * blockSamples;
+            final int[] values = new int[Math.min(blockSamples, length - from)];
+            Codec.SHUFFLED_DEFLATE
+                    .decode(blocks[index], Integer.BYTES * values.length,
+                            Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+            return values;
+        }
+
+        private Sound toSound() throws IOException {
+            final int[] values = new int[length];
+            for (int index = 0; index < blocks.length; ++index) {
+                final int[] block = inflate(index);
+                System.arraycopy(block, 0, values, index * blockSamples,
+                                 block.length);
+            }
+            return new BufferSound(values, samplingTime);
+        }
+
+        private Sound toLazySound() {
+            return new LazySound(this, length, samplingTime);
+        }
+    }
+
+    private static final class InflatedBlock {
+        private final int index;
+        private final int[] values;
+
+        private InflatedBlock(int index, int[] values) {
+            this.index = index;
+            this.values = values;
+        }
+    }
+
     private static final String SOUND_SPECTRUM_ENTRY = "sound_spectrum";
 
     public static byte[] fromSoundSpectrum(Spectrum1d spectrum) throws IOException {
-        return writeSingle(SOUND_SPECTRUM_ENTRY, dataStream -> {
-            final double duration = spectrum.getBasicTime().getDuration();
-            final int length = spectrum.getLength();
-            dataStream.writeDouble(duration);
-            dataStream.writeInt(length);
-            for (int i = 0; i < length; ++i) {
-                Complex value = spectrum.getValue(i);
-                dataStream.writeDouble(value.getRe());
-                dataStream.writeDouble(value.getIm());
-            }
-        });
+        final int length = spectrum.getLength();
+        final Block block = new Block(
+                Double.BYTES + Integer.BYTES + 2 * Double.BYTES * length
+        );
+        block.putDouble(spectrum.getBasicTime().getDuration());
+        block.putInt(length);
+        for (int i = 0; i < length; ++i) {
+            block.putDouble(spectrum.getRe(i));
+            block.putDouble(spectrum.getIm(i));
+        }
+        return write(SOUND_SPECTRUM_ENTRY, block, Codec.NONE, Double.BYTES);
     }
+
     public static Spectrum1d toSoundSpectrum(byte[] data) throws IOException {
-        return readSingle(data, SOUND_SPECTRUM_ENTRY, dataStream -> {
-            final double duration = dataStream.readDouble();
-            final int length = dataStream.readInt();
-            final Complex[] values = new Complex[length];
-            for (int i = 0; i < length; ++i) {
-                final double re = dataStream.readDouble();
-                final double im = dataStream.readDouble();
-                values[i] = Complex.ofReIm(re, im);
-            }
-            return new BufferSpectrum1d(values, TimeRange.ofDuration(duration));
+        return toSoundSpectrum(ByteBuffer.wrap(data));
+    }
+
+    public static Spectrum1d toSoundSpectrum(ByteBuffer data) throws IOException {
+        return readSingle(data, SOUND_SPECTRUM_ENTRY, source -> {
+            final double duration = source.readDouble();
+            final int length = source.readInt();
+            final double[] values = new double[2 * length];
+            source.readDoubles(values);
+            return new ArraySpectrum1d(values, TimeRange.ofDuration(duration));
         });
     }
 
     private static final String SIGNAL_ENTRY = "signal";
 
     public static byte[] fromSignal(Signal signal) throws IOException {
-        return writeSingle(SIGNAL_ENTRY, dataStream -> {
-            final double duration = signal.getSamplingTime().getDuration();
-            final int length = signal.getLength();
-            dataStream.writeDouble(duration);
-            dataStream.writeInt(length);
-            for (int i = 0; i < length; ++i) {
-                dataStream.writeDouble(signal.getValue(i));
-            }
-        });
+        final int length = signal.getLength();
+        final Block block = new Block(
+                Double.BYTES + Integer.BYTES + Double.BYTES * length
+        );
+        block.putDouble(signal.getSamplingTime().getDuration());
+        block.putInt(length);
+        for (int i = 0; i < length; ++i) {
+            block.putDouble(signal.getValue(i));
+        }
+        return write(SIGNAL_ENTRY, block, Codec.NONE, Double.BYTES);
     }
 
     public static Signal toSignal(byte[] data) throws IOException {
-        return readSingle(data, SIGNAL_ENTRY, dataStream -> {
-            final double duration = dataStream.readDouble();
-            final int length = dataStream.readInt();
+        return toSignal(ByteBuffer.wrap(data));
+    }
+
+    public static Signal toSignal(ByteBuffer data) throws IOException {
+        return readSingle(data, SIGNAL_ENTRY, source -> {
+            final double duration = source.readDouble();
+            final int length = source.readInt();
             final double[] values = new double[length];
-            for (int i = 0; i < length; ++i) {
-                values[i] = dataStream.readDouble();
-            }
+            source.readDoubles(values);
             return new BufferSignal(values, TimeRange.ofDuration(duration));
         });
     }
@@ -157,28 +356,31 @@ public final class CompressionIO {
     private static final String SOUND_FILTER_ENTRY = "sound_filter";
 
     public static byte[] fromFilter(Filter filter) throws IOException {
-        return writeSingle(SOUND_FILTER_ENTRY, dataStream -> {
-            final int length = filter.getLength();
-            final int negativeLength = filter.getNegativeLength();
-            final double duration = filter.getSamplingTime().getDuration();
-            dataStream.writeInt(length);
-            dataStream.writeInt(negativeLength);
-            dataStream.writeDouble(duration);
-            for (int i = -negativeLength; i < filter.getPositiveLength(); ++i) {
-                dataStream.writeDouble(filter.getValue(i));
-            }
-        });
+        final int length = filter.getLength();
+        final int negativeLength = filter.getNegativeLength();
+        final Block block = new Block(
+                2 * Integer.BYTES + Double.BYTES + Double.BYTES * length
+        );
+        block.putInt(length);
+        block.putInt(negativeLength);
+        block.putDouble(filter.getSamplingTime().getDuration());
+        for (int i = -negativeLength; i < filter.getPositiveLength(); ++i) {
+            block.putDouble(filter.getValue(i));
+        }
+        return write(SOUND_FILTER_ENTRY, block, Codec.DEFLATE, Double.BYTES);
     }
 
     public static Filter toFilter(byte[] data) throws IOException {
-        return readSingle(data, SOUND_FILTER_ENTRY, dataStream -> {
-            final int length = dataStream.readInt();
-            final int negativeLength = dataStream.readInt();
-            final double duration = dataStream.readDouble();
+        return toFilter(ByteBuffer.wrap(data));
+    }
+
+    public static Filter toFilter(ByteBuffer data) throws IOException {
+        return readSingle(data, SOUND_FILTER_ENTRY, source -> {
+            final int length = source.readInt();
+            final int negativeLength = source.readInt();
+            final double duration = source.readDouble();
             final double[] values = new double[length];
-            for (int i = 0; i < length; ++i) {
-                values[i] = dataStream.readDouble();
-            }
+            source.readDoubles(values);
             return new BufferFilter(
                     values, negativeLength, TimeRange.ofDuration(duration)
             );
@@ -189,37 +391,40 @@ public final class CompressionIO {
     private static final String NOTES_ENTRY = "notes";
 
     public static byte[] fromNotes(Note[] notes) throws IOException {
-        return writeSingle(NOTES_ENTRY, dataStream -> {
-            final int arrayLength = notes.length;
-            dataStream.writeInt(arrayLength);
-
-            for (Note note : notes) {
-                final boolean isPresent = note.getPitch().isPresent();
-                dataStream.writeBoolean(isPresent);
-                dataStream.writeInt(note.getLength());
-                dataStream.writeDouble(note.getSamplingTime().getFrequency());
-                if (isPresent) {
-                    dataStream.writeDouble(note.getPitch().getAsDouble());
-                    dataStream.writeInt(note.getAmplitudeStart().getAsInt());
-                    dataStream.writeInt(note.getAmplitudeEnd().getAsInt());
-                }
+        final Block block = new Block(Integer.BYTES + 40 * notes.length);
+        block.putInt(notes.length);
+
+        for (Note note : notes) {
+            final boolean isPresent = note.getPitch().isPresent();
+            block.putBoolean(isPresent);
+            block.putInt(note.getLength());
+            block.putDouble(note.getSamplingTime().getFrequency());
+            if (isPresent) {
+                block.putDouble(note.getPitch().getAsDouble());
+                block.putInt(note.getAmplitudeStart().getAsInt());
+                block.putInt(note.getAmplitudeEnd().getAsInt());
             }
-        });
+        }
+        return write(NOTES_ENTRY, block, Codec.DEFLATE, Double.BYTES);
     }
 
     public static Note[] toNotes(byte[] data) throws IOException {
-        return readSingle(data, NOTES_ENTRY, dataStream -> {
-            final int arrayLength = dataStream.readInt();
+        return toNotes(ByteBuffer.wrap(data));
+    }
+
+    public static Note[] toNotes(ByteBuffer data) throws IOException {
+        return readSingle(data, NOTES_ENTRY, source -> {
+            final int arrayLength = source.readInt();
             final Note[] notes = new Note[arrayLength];
 
             for (int i = 0; i < arrayLength; ++i) {
-                final boolean isPresent = dataStream.readBoolean();
-                final int length = dataStream.readInt();
-                final TimeRange time = TimeRange.ofFrequency(dataStream.readDouble());
+                final boolean isPresent = source.readBoolean();
+                final int length = source.readInt();
+                final TimeRange time = TimeRange.ofFrequency(source.readDouble());
                 if (isPresent) {
-                    final double pitch = dataStream.readDouble();
-                    final int amplitudeStart = dataStream.readInt();
-                    final int amplitudeEnd = dataStream.readInt();
+                    final double pitch = source.readDouble();
+                    final int amplitudeStart = source.readInt();
+                    final int amplitudeEnd = source.readInt();
                     notes[i] = Note.of(pitch, amplitudeStart, amplitudeEnd, length, time);
                 } else {
                     notes[i] = Note.unknown(length, time);
@@ -233,142 +438,525 @@ public final class CompressionIO {
     private static final String DOUBLE_ARRAY_ENTRY = "double_array";
 
     public static byte[] fromDoubleArray(double[][] array) throws IOException {
-        return writeSingle(DOUBLE_ARRAY_ENTRY, dataStream -> {
-            final int height = array.length;
-            dataStream.writeInt(height);
-            if (height == 0) {
-                return;
+        final int height = array.length;
+        final int width = height == 0 ? 0 : array[0].length;
+        final Block block = new Block(
+                2 * Integer.BYTES + Double.BYTES * height * width
+        );
+        block.putInt(height);
+        if (height > 0) {
+            block.putInt(width);
+            for (double[] row : array) {
+                block.putDoubles(row, 0, width);
             }
+        }
+        return write(DOUBLE_ARRAY_ENTRY, block, Codec.NONE, Double.BYTES);
+    }
 
-            final int width = array[0].length;
-            dataStream.writeInt(width);
-            for (int y = 0; y < height; ++y) {
-                for (int x = 0; x < width; ++x) {
-                    dataStream.writeDouble(array[y][x]);
-                }
-            }
-        });
+    public static double[][] toDoubleArray(byte[] data) throws IOException {
+        return toDoubleArray(ByteBuffer.wrap(data));
     }
 
-    public static double[][] toDoubleArray(byte[] data)
-            throws IOException {
-        return readSingle(data, DOUBLE_ARRAY_ENTRY, dataStream -> {
-            final int height = dataStream.readInt();
+    public static double[][] toDoubleArray(ByteBuffer data) throws IOException {
+        return readSingle(data, DOUBLE_ARRAY_ENTRY, source -> {
+            final int height = source.readInt();
             if (height == 0) {
                 return new double[0][0];
             }
 
-            final int width = dataStream.readInt();
+            final int width = source.readInt();
             double[][] array = new double[height][width];
-            for (int y = 0; y < height; ++y) {
-                for (int x = 0; x < width; ++x) {
-                    array[y][x] = dataStream.readDouble();
-                }
+            for (double[] row : array) {
+                source.readDoubles(row);
             }
             return array;
         });
     }
 
-    @FunctionalInterface
-    private interface OutputStreamConsumer {
-        void write(DataOutputStream outputStream) throws IOException;
+    private static final String ENVELOPE_ENTRY = "envelope";
+
+    public static byte[] fromEnvelope(EnvelopePyramid envelope)
+            throws IOException {
+        final int levelCount = envelope.getLevelCount();
+        int floats = 0;
+        for (int level = 0; level < levelCount; ++level) {
+            floats += envelope.getLevel(level).remaining();
+        }
+        final Block block = new Block(
+                3 * Integer.BYTES + Double.BYTES + Float.BYTES * floats
+        );
+        block.putInt(envelope.getFirstSample());
+        block.putInt(envelope.getLength());
+        block.putDouble(envelope.getSamplingTime().getDuration());
+        block.putInt(levelCount);
+        for (int level = 0; level < levelCount; ++level) {
+            block.putFloats(envelope.getLevel(level));
+        }
+        return write(ENVELOPE_ENTRY, block, Codec.NONE, Float.BYTES);
     }
 
-    private static byte[] writeSingle(
-            String entryName, OutputStreamConsumer consumer
-    ) throws IOException {
-        return writeMultiple(Collections.singletonMap(entryName, consumer));
+    public static EnvelopePyramid toEnvelope(byte[] data) throws IOException {
+        return toEnvelope(ByteBuffer.wrap(data));
     }
 
-    private static byte[] writeMultiple(
-            Map<String, OutputStreamConsumer> consumers
-    ) throws IOException {
-        final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        try (ZipOutputStream zipStream = new ZipOutputStream(byteStream)) {
+    /**
+     * Levels of the returned envelope are views of the data, not copies.
+     */
+    public static EnvelopePyramid toEnvelope(ByteBuffer data) throws IOException {
+        return readSingle(data, ENVELOPE_ENTRY, source -> {
+            final int firstSample = source.readInt();
+            final int length = source.readInt();
+            final double duration = source.readDouble();
+            final int levelCount = source.readInt();
+            final FloatBuffer[] levels = new FloatBuffer[levelCount];
+            for (int level = 0; level < levelCount; ++level) {
+                levels[level] = source.viewFloats(EnvelopePyramid.BUCKET_FLOATS
+                        * EnvelopePyramid.bucketCount(length, level));
+            }
+            try {
+                return new EnvelopePyramid(firstSample, length,
+                                           TimeRange.ofDuration(duration), levels);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Malformed envelope", ex);
+            }
+        });
+    }
 
-            for (String entryName : consumers.keySet()) {
-                final ZipEntry singleEntry = new ZipEntry(entryName);
-                zipStream.putNextEntry(singleEntry);
+    private static final String IMAGE_TILES_ENTRY = "image_tiles";
 
-                final DataOutputStream dataStream = new DataOutputStream(zipStream);
-                consumers.get(entryName).write(dataStream);
+    public static byte[] fromImageTiles(ImageTiles tiles) throws IOException {
+        final int tileCount = tiles.getTileCount();
+        int bytes = 0;
+        for (int tile = 0; tile < tileCount; ++tile) {
+            bytes += tiles.getTile(tile).remaining();
+        }
+        final Block block = new Block(
+                (4 + tileCount) * Integer.BYTES + bytes
+        );
+        block.putInt(tiles.getHeight());
+        block.putInt(tiles.getWidth());
+        block.putInt(tileCount);
+        for (int tile = 0; tile < tileCount; ++tile) {
+            block.putInt(tiles.getTile(tile).remaining());
+        }
+        for (int tile = 0; tile < tileCount; ++tile) {
+            block.putBytes(tiles.getTile(tile));
+        }
+        // tiles are already deflated pngs
+        return write(IMAGE_TILES_ENTRY, block, Codec.NONE, 1);
+    }
+
+    public static ImageTiles toImageTiles(byte[] data) throws IOException {
+        return toImageTiles(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Tiles of the returned image are views of the data, not copies.
+     */
+    public static ImageTiles toImageTiles(ByteBuffer data) throws IOException {
+        return readSingle(data, IMAGE_TILES_ENTRY, source -> {
+            final int height = source.readInt();
+            final int width = source.readInt();
+            final int[] lengths = new int[source.readInt()];
+            source.readInts(lengths);
+            final ByteBuffer[] tiles = new ByteBuffer[lengths.length];
+            for (int tile = 0; tile < tiles.length; ++tile) {
+                tiles[tile] = source.viewBytes(lengths[tile]);
+            }
+            try {
+                return new ImageTiles(height, width, tiles);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Malformed image tiles", ex);
+            }
+        });
+    }
+
+    /**
+     * Growing little endian buffer of an entry.
+     */
+    private static final class Block {
+        private ByteBuffer buffer;
+
+        private Block(int capacity) {
+            buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void putInt(int value) {
+            ensureRemaining(Integer.BYTES).putInt(value);
+        }
+
+        private void putDouble(double value) {
+            ensureRemaining(Double.BYTES).putDouble(value);
+        }
+
+        private void putBoolean(boolean value) {
+            ensureRemaining(1).put(value ? (byte) 1 : (byte) 0);
+        }
+
+        private void putFloats(FloatBuffer values) {
+            final int length = values.remaining();
+            ensureRemaining(Float.BYTES * length).asFloatBuffer()
+                    .put(values.duplicate());
+            buffer.position(buffer.position() + Float.BYTES * length);
+        }
+
+        private void putBytes(ByteBuffer values) {
+            ensureRemaining(values.remaining()).put(values.duplicate());
+        }
+
+        private void putDoubles(double[] values, int offset, int length) {
+            ensureRemaining(Double.BYTES * length).asDoubleBuffer()
+                    .put(values, offset, length);
+            buffer.position(buffer.position() + Double.BYTES * length);
+        }
+
+        private ByteBuffer ensureRemaining(int bytes) {
+            if (buffer.remaining() < bytes) {
+                int capacity = Math.max(2 * buffer.capacity(),
+                                        buffer.position() + bytes);
+                ByteBuffer grown = ByteBuffer.allocate(capacity)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+
+        private byte[] toArray() {
+            byte[] array = buffer.array();
+            return buffer.position() == array.length
+                 ? array : Arrays.copyOf(array, buffer.position());
+        }
+    }
+
+    private static byte[] write(String entryName, Block block, Codec codec,
+                                int elementSize) {
+        return write(Collections.singletonMap(entryName, block),
+                     codec, elementSize);
+    }
+
+    private static byte[] write(Map<String, Block> blocks, Codec codec,
+                                int elementSize) {
+        final Map<byte[], byte[]> encoded = new LinkedHashMap<>();
+        final Map<byte[], Integer> rawLengths = new HashMap<>();
+        int size = MAGIC.length + 1 + Integer.BYTES;
+        for (Map.Entry<String, Block> entry : blocks.entrySet()) {
+            final byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            final byte[] raw = entry.getValue().toArray();
+            final byte[] stored = codec.encode(raw, elementSize);
+            encoded.put(name, stored);
+            rawLengths.put(name, raw.length);
+            size += Short.BYTES + name.length + 2 + 2 * Integer.BYTES
+                  + stored.length;
+        }
+
+        final ByteBuffer output = ByteBuffer.allocate(size)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        output.put(MAGIC).put(VERSION).putInt(encoded.size());
+        for (Map.Entry<byte[], byte[]> entry : encoded.entrySet()) {
+            final byte[] name = entry.getKey();
+            final byte[] stored = entry.getValue();
+            output.putShort((short) name.length).put(name)
+                  .put(codec.id).put((byte) elementSize)
+                  .putInt(rawLengths.get(name)).putInt(stored.length)
+                  .put(stored);
+        }
+        return output.array();
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] output = new byte[raw.length + raw.length / 64 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, 2 * output.length);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return Arrays.copyOf(output, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored, int rawLength)
+            throws IOException {
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(stored);
+            final byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.finished()
+                        || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Entry ends before its declared length");
+                }
+                length += inflated;
+            }
+            return raw;
+        } catch (DataFormatException ex) {
+            throw new IOException("Malformed deflated entry", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        final ByteBuffer duplicate = buffer.duplicate();
+        final byte[] array = new byte[duplicate.remaining()];
+        duplicate.get(array);
+        return array;
+    }
+
+    private static byte[] shuffle(byte[] raw, int elementSize) {
+        final int count = raw.length / elementSize;
+        final byte[] shuffled = new byte[raw.length];
+        for (int i = 0; i < count; ++i) {
+            for (int b = 0; b < elementSize; ++b) {
+                shuffled[b * count + i] = raw[i * elementSize + b];
+            }
+        }
+        final int tail = count * elementSize;
+        System.arraycopy(raw, tail, shuffled, tail, raw.length - tail);
+        return shuffled;
+    }
+
+    private static byte[] unshuffle(byte[] shuffled, int elementSize) {
+        final int count = shuffled.length / elementSize;
+        final byte[] raw = new byte[shuffled.length];
+        for (int b = 0; b < elementSize; ++b) {
+            for (int i = 0; i < count; ++i) {
+                raw[i * elementSize + b] = shuffled[b * count + i];
+            }
+        }
+        final int tail = count * elementSize;
+        System.arraycopy(shuffled, tail, raw, tail, shuffled.length - tail);
+        return raw;
+    }
+
+    /**
+     * Primitives of an entry, either of the current format or of the zip
+     * format of earlier versions.
+     */
+    private interface Source {
+        int readInt() throws IOException;
+        double readDouble() throws IOException;
+        boolean readBoolean() throws IOException;
+        void readInts(int[] values) throws IOException;
+        void readDoubles(double[] values) throws IOException;
+        FloatBuffer viewFloats(int count) throws IOException;
+        ByteBuffer viewBytes(int count) throws IOException;
+    }
+
+    private static final class BufferSource implements Source {
+        private final ByteBuffer buffer;
+
+        private BufferSource(ByteBuffer bytes) {
+            buffer = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        public int readInt() {
+            return buffer.getInt();
+        }
+
+        @Override
+        public double readDouble() {
+            return buffer.getDouble();
+        }
+
+        @Override
+        public boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        @Override
+        public void readInts(int[] values) {
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + Integer.BYTES * values.length);
+        }
+
+        @Override
+        public void readDoubles(double[] values) {
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + Double.BYTES * values.length);
+        }
+
+        @Override
+        public FloatBuffer viewFloats(int count) {
+            final FloatBuffer view = buffer.asFloatBuffer();
+            view.limit(count);
+            buffer.position(buffer.position() + Float.BYTES * count);
+            return view;
+        }
+
+        @Override
+        public ByteBuffer viewBytes(int count) {
+            final ByteBuffer view = buffer.slice();
+            view.limit(count);
+            buffer.position(buffer.position() + count);
+            return view;
+        }
+    }
+
+    private static final class StreamSource implements Source {
+        private final DataInputStream stream;
+
+        private StreamSource(DataInputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return stream.readInt();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return stream.readDouble();
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return stream.readBoolean();
+        }
+
+        @Override
+        public void readInts(int[] values) throws IOException {
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = stream.readInt();
             }
+        }
 
+        @Override
+        public void readDoubles(double[] values) throws IOException {
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = stream.readDouble();
+            }
+        }
+
+        @Override
+        public FloatBuffer viewFloats(int count) throws IOException {
+            final float[] values = new float[count];
+            for (int i = 0; i < count; ++i) {
+                values[i] = stream.readFloat();
+            }
+            return FloatBuffer.wrap(values);
+        }
+
+        @Override
+        public ByteBuffer viewBytes(int count) throws IOException {
+            final byte[] values = new byte[count];
+            stream.readFully(values);
+            return ByteBuffer.wrap(values);
         }
-        return byteStream.toByteArray();
     }
 
     @FunctionalInterface
-    private interface InputStreamConsumer<T> {
-        T read(DataInputStream inputStream) throws IOException;
+    private interface SourceConsumer<T> {
+        T read(Source source) throws IOException;
     }
 
     private static <T> T readSingle(
-            byte[] data, String entryName, InputStreamConsumer<T> consumer
+            ByteBuffer data, String entryName, SourceConsumer<T> consumer
+    ) throws IOException {
+        final T result = readAll(data, consumer, entryName).get(entryName);
+        if (result == null) {
+            throw new IOException("No entry " + entryName);
+        }
+        return result;
+    }
+
+    private static <T> Map<String, T> readAll(
+            ByteBuffer bytes, SourceConsumer<T> consumer
     ) throws IOException {
-        return readMultiple(
-                data, Collections.singletonMap(entryName, consumer)
-        ).get(entryName);
+        return readAll(bytes, consumer, null);
     }
 
     /**
-     * Reads data compressed with zip, passing entry to a matching consumers.
-     * It will ignore entries that does not have consumers associated in the
-     * consumer map.
-     * @param bytes Byte array with data compressed with zip.
-     * @param consumers A map from zip entry names to consumers that are to
-     *                  read data from them.
-     * @param <T> Type of results returned by the consumers.
-     * @return A map associating zip entry names and data returned by consumers.
-     * @throws IOException when IO goes wrong
+     * Reads entries of data in the current or the zip format, passing
+     * them to the consumer.
+     * @param bytes Data of all entries.
+     * @param consumer Consumer that can read data from each entry.
+     * @param onlyEntry Name of the only entry to read or null to read all.
+     * @param <T> Type of data read by the consumer.
+     * @return A map from entry names to results of the consumer.
+     * @throws IOException when the data is malformed
      */
-    private static <T> Map<String, T> readMultiple(
-            byte[] bytes, Map<String, InputStreamConsumer<T>> consumers
+    private static <T> Map<String, T> readAll(
+            ByteBuffer bytes, SourceConsumer<T> consumer, String onlyEntry
     ) throws IOException {
-        final Map<String, T> resultMap = new HashMap<>();
-
-        try (ByteArrayInputStream byteStream = new ByteArrayInputStream(bytes);
-             ZipInputStream zipStream = new ZipInputStream(byteStream)) {
+        if (!hasMagic(bytes)) {
+            return readZip(toArray(bytes), consumer, onlyEntry);
+        }
 
-            ZipEntry nextEntry = zipStream.getNextEntry();
-            while (nextEntry != null) {
-                final InputStreamConsumer<T> consumer
-                        = consumers.get(nextEntry.getName());
-                if (consumer != null) {
-                    final DataInputStream dataStream = new DataInputStream(zipStream);
-                    final T result = consumer.read(dataStream);
-                    resultMap.put(nextEntry.getName(), result);
+        final Map<String, T> resultMap = new LinkedHashMap<>();
+        try {
+            final ByteBuffer input = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+            input.position(MAGIC.length);
+            final byte version = input.get();
+            if (version != VERSION) {
+                throw new IOException("Unknown format version " + version);
+            }
+            final int entryCount = input.getInt();
+            for (int i = 0; i < entryCount; ++i) {
+                final byte[] name = new byte[input.getShort()];
+                input.get(name);
+                final Codec codec = Codec.ofId(input.get());
+                final int elementSize = input.get();
+                final int rawLength = input.getInt();
+                final int storedLength = input.getInt();
+                final ByteBuffer stored = input.slice();
+                stored.limit(storedLength);
+                input.position(input.position() + storedLength);
+
+                final String entryName = new String(name, StandardCharsets.UTF_8);
+                if (onlyEntry == null || onlyEntry.equals(entryName)) {
+                    final ByteBuffer raw = codec.decode(stored, rawLength, elementSize);
+                    resultMap.put(entryName, consumer.read(new BufferSource(raw)));
                 }
-                nextEntry = zipStream.getNextEntry();
             }
+        } catch (RuntimeException ex) {
+            throw new IOException("Malformed data", ex);
         }
-
         return resultMap;
     }
 
-    /**
-     * Reads all entries and passess it to the consumer, expecting it to handle
-     * them all.
-     * @param bytes Byte array with data compressed with zip.
-     * @param consumer Consumer that can read data from each zipped file.
-     * @param <T> Type of data read by the InputStreamConsumer.
-     * @return A map containing all results generated by the consumer.
-     * @throws IOException when an IO operation fails
-     */
-    private static <T> Map<String, T> readMultiple(
-            byte[] bytes, InputStreamConsumer<T> consumer
+    private static boolean hasMagic(ByteBuffer bytes) {
+        if (bytes.remaining() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (bytes.get(bytes.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> Map<String, T> readZip(
+            byte[] bytes, SourceConsumer<T> consumer, String onlyEntry
     ) throws IOException {
-        Map<String, T> resultMap = new HashMap<>();
+        final Map<String, T> resultMap = new HashMap<>();
 
         try (ByteArrayInputStream byteStream = new ByteArrayInputStream(bytes);
              ZipInputStream zipStream = new ZipInputStream(byteStream)) {
 
             ZipEntry nextEntry = zipStream.getNextEntry();
             while (nextEntry != null) {
-                DataInputStream dataStream = new DataInputStream(zipStream);
-                T result = consumer.read(dataStream);
-                resultMap.put(nextEntry.getName(), result);
-
+                if (onlyEntry == null || onlyEntry.equals(nextEntry.getName())) {
+                    final DataInputStream dataStream = new DataInputStream(
+                            new BufferedInputStream(zipStream)
+                    );
+                    final T result = consumer.read(new StreamSource(dataStream));
+                    resultMap.put(nextEntry.getName(), result);
+                }
                 nextEntry = zipStream.getNextEntry();
             }
         }
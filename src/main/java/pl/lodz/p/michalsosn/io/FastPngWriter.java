@@ -0,0 +1,201 @@
+package pl.lodz.p.michalsosn.io;
+
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writer of 8 bit gray and RGB PNGs without row filters at the fastest
+ * deflate level. Rows are copied straight from the bytes of the image and
+ * bands of them are deflated in parallel.
+ * @author Michał Sośnicki
+ */
+final class FastPngWriter {
+
+    private static final byte[] SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'
+    };
+    private static final byte GRAY = 0;
+    private static final byte RGB = 2;
+    private static final byte NO_FILTER = 0;
+    // deflate with a 32K window at the fastest level
+    private static final byte[] ZLIB_HEADER = {0x78, 0x01};
+    private static final long ADLER_BASE = 65521;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FastPngWriter() {
+    }
+
+    /**
+     * Whether the image is gray or BGR bytes the writer can copy.
+     */
+    static boolean supports(BufferedImage image) {
+        final int type = image.getType();
+        final Raster raster = image.getRaster();
+        return (type == BufferedImage.TYPE_BYTE_GRAY
+                || type == BufferedImage.TYPE_3BYTE_BGR)
+            && raster.getDataBuffer() instanceof DataBufferByte
+            && raster.getSampleModel() instanceof ComponentSampleModel
+            && raster.getSampleModelTranslateX() == 0
+            && raster.getSampleModelTranslateY() == 0;
+    }
+
+    static byte[] write(BufferedImage image) throws IOException {
+        if (!supports(image)) {
+            throw new IllegalArgumentException(
+                    "Can't write image of type " + image.getType() + "."
+            );
+        }
+        final int height = image.getHeight();
+        final int width = image.getWidth();
+        final Raster raster = image.getRaster();
+        final ComponentSampleModel sampleModel
+                = (ComponentSampleModel) raster.getSampleModel();
+        final DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        final byte[] data = dataBuffer.getData();
+        final int bands = sampleModel.getNumBands();
+        final int pixelStride = sampleModel.getPixelStride();
+        final int scanlineStride = sampleModel.getScanlineStride();
+        final int[] bandOffsets = sampleModel.getBandOffsets();
+        final int offset = dataBuffer.getOffset();
+
+        // bands of rows are deflated in parallel into segments of one stream,
+        // all but the last one end flushed to a byte boundary
+        final int rowLength = bands * width + 1;
+        final byte[][] segments = new byte[height][];
+        final long[] checksums = new long[height];
+        TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            final Adler32 checksum = new Adler32();
+            final ByteArrayOutputStream segment = new ByteArrayOutputStream(
+                    (toY - fromY) * rowLength / 2 + 64
+            );
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            final byte[] row = new byte[rowLength];
+            row[0] = NO_FILTER;
+            try {
+                for (int y = fromY; y < toY; ++y) {
+                    final int rowStart = offset + y * scanlineStride;
+                    if (bands == 1 && pixelStride == 1) {
+                        System.arraycopy(data, rowStart + bandOffsets[0],
+                                         row, 1, width);
+                    } else {
+                        // bands are in red, green, blue order whatever the bytes are
+                        int target = 1;
+                        for (int x = 0; x < width; ++x) {
+                            final int pixel = rowStart + x * pixelStride;
+                            for (int band = 0; band < bands; ++band) {
+                                row[target++] = data[pixel + bandOffsets[band]];
+                            }
+                        }
+                    }
+                    checksum.update(row);
+                    deflater.setInput(row);
+                    while (!deflater.needsInput()) {
+                        segment.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                }
+                if (toY == height) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        segment.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                } else {
+                    int length;
+                    do {
+                        length = deflater.deflate(buffer, 0, buffer.length,
+                                                  Deflater.SYNC_FLUSH);
+                        segment.write(buffer, 0, length);
+                    } while (length == buffer.length);
+                }
+            } finally {
+                deflater.end();
+            }
+            segments[fromY] = segment.toByteArray();
+            checksums[fromY] = checksum.getValue();
+        });
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+                height * rowLength / 2 + 64
+        );
+        compressed.write(ZLIB_HEADER);
+        long checksum = 1;
+        int segmentStart = 0;
+        for (int y = 1; y <= height; ++y) {
+            if (y == height || segments[y] != null) {
+                compressed.write(segments[segmentStart]);
+                checksum = combineAdler32(checksum, checksums[segmentStart],
+                                          (long) (y - segmentStart) * rowLength);
+                segmentStart = y;
+            }
+        }
+        new DataOutputStream(compressed).writeInt((int) checksum);
+
+        final ByteArrayOutputStream png
+                = new ByteArrayOutputStream(compressed.size() + 64);
+        png.write(SIGNATURE);
+        final ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        final DataOutputStream headerOutput = new DataOutputStream(header);
+        headerOutput.writeInt(width);
+        headerOutput.writeInt(height);
+        headerOutput.writeByte(8);
+        headerOutput.writeByte(bands == 1 ? GRAY : RGB);
+        headerOutput.writeByte(0);
+        headerOutput.writeByte(0);
+        headerOutput.writeByte(0);
+        writeChunk(png, "IHDR", header.toByteArray());
+        writeChunk(png, "IDAT", compressed.toByteArray());
+        writeChunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    /**
+     * Checksum of two byte sequences from the checksums of both and the
+     * length of the second, as in zlib.
+     */
+    private static long combineAdler32(long first, long second, long secondLength) {
+        final long remainder = secondLength % ADLER_BASE;
+        long low = first & 0xffff;
+        long high = remainder * low % ADLER_BASE;
+        low += (second & 0xffff) + ADLER_BASE - 1;
+        high += (first >> 16 & 0xffff) + (second >> 16 & 0xffff)
+              + ADLER_BASE - remainder;
+        if (low >= ADLER_BASE) {
+            low -= ADLER_BASE;
+        }
+        if (low >= ADLER_BASE) {
+            low -= ADLER_BASE;
+        }
+        if (high >= 2 * ADLER_BASE) {
+            high -= 2 * ADLER_BASE;
+        }
+        if (high >= ADLER_BASE) {
+            high -= ADLER_BASE;
+        }
+        return high << 16 | low;
+    }
+
+    private static void writeChunk(ByteArrayOutputStream png, String type,
+                                   byte[] content) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(content);
+        final DataOutputStream output = new DataOutputStream(png);
+        output.writeInt(content.length);
+        output.write(typeBytes);
+        output.write(content);
+        output.writeInt((int) crc.getValue());
+    }
+
+}
@@ -0,0 +1,237 @@
+package pl.lodz.p.michalsosn.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.lodz.p.michalsosn.util.Hashes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payloads in files named by the SHA-256 of their content, in
+ * subdirectories named by its first byte. Equal payloads share a file.
+ * Files are written next to their target and moved into place, so
+ * readers never see a partial payload, and they are read by mapping
+ * them into memory. Files may be written by a background thread, then
+ * payloads are read from memory until their files are in place and
+ * results must wait for their files before they are saved. Files no row
+ * refers to are deleted by sweeps, reusing a file renews it.
+ * @author Michał Sośnicki
+ */
+public final class FilePayloadStore implements PayloadStore, Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(FilePayloadStore.class);
+
+    private final Path directory;
+    private final ExecutorService writer;
+    private final ConcurrentMap<String, PendingWrite> pending
+            = new ConcurrentHashMap<>();
+    private final Object sweepLock = new Object();
+
+    public FilePayloadStore(Path directory) throws IOException {
+        this(directory, false);
+    }
+
+    /**
+     * @param background Whether files are written by a background thread,
+     *                   so that writing returns once the key is known.
+     */
+    public FilePayloadStore(Path directory, boolean background)
+            throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.writer = !background ? null : Executors.newSingleThreadExecutor(
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "payload-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    @Override
+    public String write(byte[] data) throws IOException {
+        final String key = Hashes.sha256(data);
+        final Path path = resolve(key);
+        if (pending.containsKey(key) || reuse(path)) {
+            return key;
+        }
+        if (writer == null) {
+            store(path, key, data);
+            return key;
+        }
+
+        final PendingWrite write = new PendingWrite(data);
+        if (pending.putIfAbsent(key, write) == null) {
+            try {
+                writer.execute(() -> {
+                    try {
+                        store(path, key, data);
+                        write.done.complete(null);
+                    } catch (IOException | RuntimeException ex) {
+                        log.error("Failed to write payload {}", key, ex);
+                        write.done.completeExceptionally(ex);
+                    } finally {
+                        pending.remove(key, write);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                pending.remove(key, write);
+                store(path, key, data);
+            }
+        }
+        return key;
+    }
+
+    @Override
+    public void touch(String key) throws IOException {
+        final Path path = resolve(key);
+        if (!pending.containsKey(key) && !reuse(path)) {
+            throw new IOException("Payload " + key + " is missing");
+        }
+    }
+
+    /**
+     * Waits for the background thread to write the payload.
+     * @throws IOException when it failed, the payload is lost then
+     */
+    @Override
+    public void awaitWritten(String key) throws IOException {
+        final Path path = resolve(key);
+        final PendingWrite write = pending.get(key);
+        if (write != null) {
+            try {
+                write.done.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted writing " + key);
+            } catch (ExecutionException ex) {
+                throw new IOException("Failed to write payload " + key,
+                                      ex.getCause());
+            }
+        }
+        if (!Files.exists(path)) {
+            throw new IOException("Payload " + key + " wasn't written");
+        }
+    }
+
+    /**
+     * Marks an existing file as written now, so that sweeps keep it for
+     * the rows which are about to refer to it.
+     */
+    private boolean reuse(Path path) throws IOException {
+        synchronized (sweepLock) {
+            if (!Files.exists(path)) {
+                return false;
+            }
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+            return true;
+        }
+    }
+
+    private static void store(Path path, String key, byte[] data)
+            throws IOException {
+        final Path parent = Files.createDirectories(path.getParent());
+        final Path temporary = Files.createTempFile(parent, key, ".tmp");
+        try {
+            Files.write(temporary, data);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String key) throws IOException {
+        final PendingWrite write = pending.get(key);
+        if (write != null) {
+            return ByteBuffer.wrap(write.data).asReadOnlyBuffer();
+        }
+        try (FileChannel channel = FileChannel.open(resolve(key),
+                                                    StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public int sweep(Set<String> referenced, Instant since) throws IOException {
+        final FileTime threshold = FileTime.from(since);
+        int deleted = 0;
+        try (DirectoryStream<Path> prefixes
+                     = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path prefix : prefixes) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(prefix)) {
+                    for (Path file : files) {
+                        final String key = file.getFileName().toString();
+                        if (!isKey(key) || referenced.contains(key)
+                                || pending.containsKey(key)) {
+                            continue;
+                        }
+                        synchronized (sweepLock) {
+                            if (Files.getLastModifiedTime(file)
+                                    .compareTo(threshold) < 0
+                                    && Files.deleteIfExists(file)) {
+                                ++deleted;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Waits for the files still being written, later payloads are written
+     * before writing returns.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted writing payloads");
+        }
+    }
+
+    private Path resolve(String key) {
+        if (!isKey(key)) {
+            throw new IllegalArgumentException(key + " is not a payload key.");
+        }
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static boolean isKey(String name) {
+        return name.length() == 64 && name.chars().allMatch(
+                c -> c >= '0' && c <= '9' || c >= 'a' && c <= 'f');
+    }
+
+    private static final class PendingWrite {
+        private final byte[] data;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(byte[] data) {
+            this.data = data;
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package pl.lodz.p.michalsosn.io;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Ways of writing images as PNGs. Both are lossless and read the same,
+ * they trade the time of writing for the size of the file.
+ * @author Michał Sośnicki
+ */
+public enum ImageEncoding {
+
+    /**
+     * No row filters and the fastest deflate level, for images written
+     * often and rarely looked at. Images which aren't 8 bit gray or BGR
+     * are written by ImageIO.
+     */
+    FAST {
+        @Override
+        public byte[] encode(BufferedImage image) throws IOException {
+            return FastPngWriter.supports(image)
+                 ? FastPngWriter.write(image)
+                 : BufferedImageIO.toByteArray(image);
+        }
+    },
+
+    /**
+     * Adaptive row filters of ImageIO at the best deflate level, where
+     * the writer lets it be chosen.
+     */
+    COMPACT {
+        @Override
+        public byte[] encode(BufferedImage image) throws IOException {
+            final ImageWriter writer
+                    = ImageIO.getImageWritersByFormatName("png").next();
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(0.0f);
+            }
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (ImageOutputStream imageOutput
+                         = ImageIO.createImageOutputStream(output)) {
+                writer.setOutput(imageOutput);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return output.toByteArray();
+        }
+    };
+
+    public abstract byte[] encode(BufferedImage image) throws IOException;
+
+}
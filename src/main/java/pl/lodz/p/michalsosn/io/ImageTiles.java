@@ -0,0 +1,216 @@
+package pl.lodz.p.michalsosn.io;
+
+import pl.lodz.p.michalsosn.domain.image.channel.TiledEvaluator;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+/**
+ * Gray image cut into PNG tiles at zoom levels. Level 0 has the full
+ * size, every next one has half the height and width of the previous
+ * one, down to the level fitting in a single tile. Tiles are numbered by
+ * level, then row, then column, and are kept encoded.
+ * @author Michał Sośnicki
+ */
+public final class ImageTiles {
+
+    public static final int TILE_SIZE = 256;
+
+    private final int height;
+    private final int width;
+    private final ByteBuffer[] tiles;
+
+    public ImageTiles(int height, int width, ByteBuffer[] tiles) {
+        if (height <= 0 || width <= 0) {
+            throw new IllegalArgumentException(
+                    "Size " + height + "x" + width + " must be positive."
+            );
+        }
+        if (tiles.length != tileCount(height, width)) {
+            throw new IllegalArgumentException(
+                    "Size " + height + "x" + width + " needs "
+                  + tileCount(height, width) + " tiles, not " + tiles.length + "."
+            );
+        }
+        this.height = height;
+        this.width = width;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Tiles of the gray levels given by rows. Levels after the first
+     * average squares of four pixels of the previous one.
+     */
+    public static ImageTiles ofGray(byte[][] rows) throws IOException {
+        final int height = rows.length;
+        final int width = height == 0 ? 0 : rows[0].length;
+        if (height == 0 || width == 0) {
+            throw new IllegalArgumentException("Image must not be empty.");
+        }
+
+        final ByteBuffer[] tiles = new ByteBuffer[tileCount(height, width)];
+        // a single tile is enough work to be encoded on its own
+        final TiledEvaluator evaluator = TiledEvaluator.shared().withTileSize(1);
+        byte[][] level = rows;
+        int offset = 0;
+        for (int index = 0; index < levelCount(height, width); ++index) {
+            if (index > 0) {
+                level = halve(level);
+            }
+            final byte[][] levelRows = level;
+            final int tileRows = tileRows(height, index);
+            final int tileColumns = tileColumns(width, index);
+            final int levelOffset = offset;
+            try {
+                evaluator.forEachBand(tileRows * tileColumns, (from, to) -> {
+                    for (int tile = from; tile < to; ++tile) {
+                        tiles[levelOffset + tile] = encodeTile(
+                                levelRows, tile / tileColumns, tile % tileColumns
+                        );
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            offset += tileRows * tileColumns;
+        }
+        return new ImageTiles(height, width, tiles);
+    }
+
+    private static byte[][] halve(byte[][] rows) {
+        final int height = (rows.length + 1) / 2;
+        final int width = (rows[0].length + 1) / 2;
+        final byte[][] halved = new byte[height][width];
+        TiledEvaluator.shared().forEachBand(height, (fromY, toY) -> {
+            for (int y = fromY; y < toY; ++y) {
+                final byte[] top = rows[2 * y];
+                final byte[] bottom = 2 * y + 1 < rows.length ? rows[2 * y + 1] : top;
+                for (int x = 0; x < width; ++x) {
+                    final int right = Math.min(2 * x + 1, top.length - 1);
+                    final int sum = (top[2 * x] & 0xff) + (top[right] & 0xff)
+                                  + (bottom[2 * x] & 0xff) + (bottom[right] & 0xff);
+                    halved[y][x] = (byte) ((sum + 2) / 4);
+                }
+            }
+        });
+        return halved;
+    }
+
+    private static ByteBuffer encodeTile(byte[][] rows, int tileRow, int tileColumn) {
+        final int fromY = tileRow * TILE_SIZE;
+        final int fromX = tileColumn * TILE_SIZE;
+        final int tileHeight = Math.min(TILE_SIZE, rows.length - fromY);
+        final int tileWidth = Math.min(TILE_SIZE, rows[0].length - fromX);
+
+        final BufferedImage image = new BufferedImage(
+                tileWidth, tileHeight, BufferedImage.TYPE_BYTE_GRAY
+        );
+        final byte[] pixels
+                = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < tileHeight; ++y) {
+            System.arraycopy(rows[fromY + y], fromX, pixels, y * tileWidth, tileWidth);
+        }
+        try {
+            return ByteBuffer.wrap(BufferedImageIO.toByteArray(image));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public static int levelCount(int height, int width) {
+        int levelCount = 1;
+        while (levelHeight(height, levelCount - 1) > TILE_SIZE
+                || levelWidth(width, levelCount - 1) > TILE_SIZE) {
+            ++levelCount;
+        }
+        return levelCount;
+    }
+
+    public static int tileCount(int height, int width) {
+        int tileCount = 0;
+        for (int level = 0; level < levelCount(height, width); ++level) {
+            tileCount += tileRows(height, level) * tileColumns(width, level);
+        }
+        return tileCount;
+    }
+
+    private static int levelHeight(int height, int level) {
+        return (int) (((long) height + (1L << level) - 1) >> level);
+    }
+
+    private static int levelWidth(int width, int level) {
+        return levelHeight(width, level);
+    }
+
+    private static int tileRows(int height, int level) {
+        return (levelHeight(height, level) + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    private static int tileColumns(int width, int level) {
+        return (levelWidth(width, level) + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    public int getLevelCount() {
+        return levelCount(height, width);
+    }
+
+    public int getTileRows(int level) {
+        return tileRows(height, level);
+    }
+
+    public int getTileColumns(int level) {
+        return tileColumns(width, level);
+    }
+
+    /**
+     * PNG bytes of the tile.
+     * @throws NoSuchElementException when there is no such tile
+     */
+    public ByteBuffer getTile(int level, int row, int column) {
+        final int levelCount = getLevelCount();
+        if (level < 0 || level >= levelCount
+                || row < 0 || row >= getTileRows(level)
+                || column < 0 || column >= getTileColumns(level)) {
+            throw new NoSuchElementException(
+                    "No tile " + row + ", " + column + " at level " + level
+            );
+        }
+        int offset = 0;
+        for (int previous = 0; previous < level; ++previous) {
+            offset += getTileRows(previous) * getTileColumns(previous);
+        }
+        return tiles[offset + row * getTileColumns(level) + column].duplicate();
+    }
+
+    /**
+     * The single tile of the last level, showing the whole image.
+     */
+    public ByteBuffer getPreview() {
+        return getTile(getLevelCount() - 1, 0, 0);
+    }
+
+    public int getTileCount() {
+        return tiles.length;
+    }
+
+    /**
+     * PNG bytes of the tile of the given index, in the order of levels,
+     * rows and columns.
+     */
+    public ByteBuffer getTile(int index) {
+        return tiles[index].duplicate();
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+}
@@ -0,0 +1,49 @@
+package pl.lodz.p.michalsosn.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Storage of large result payloads kept out of database rows. Payloads
+ * are immutable and found by the key returned when writing them.
+ * @author Michał Sośnicki
+ */
+public interface PayloadStore {
+
+    String write(byte[] data) throws IOException;
+
+    /**
+     * Read only view of the payload. Reading a slice of the buffer
+     * doesn't need to load the whole payload.
+     */
+    ByteBuffer read(String key) throws IOException;
+
+    /**
+     * Waits until the payload is in the store, writing may return before.
+     * @throws IOException when the payload failed to be written
+     */
+    default void awaitWritten(String key) throws IOException {
+    }
+
+    /**
+     * Renews a payload that a new row is about to refer to, so that sweeps
+     * keep it as if it was just written.
+     * @throws IOException when the payload isn't in the store
+     */
+    default void touch(String key) throws IOException {
+    }
+
+    /**
+     * Deletes the payloads whose keys aren't referenced. Payloads written
+     * since the given instant are kept, as rows not committed yet may
+     * refer to them.
+     * @return number of deleted payloads
+     */
+    default int sweep(Set<String> referenced, Instant since)
+            throws IOException {
+        return 0;
+    }
+
+}
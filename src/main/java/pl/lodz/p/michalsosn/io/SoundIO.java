@@ -2,11 +2,15 @@ package pl.lodz.p.michalsosn.io;
 
 import net.sourceforge.javaflacencoder.FLACFileWriter;
 import pl.lodz.p.michalsosn.domain.sound.TimeRange;
-import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.ShortBufferSound;
 import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 
 import javax.sound.sampled.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 
 import static pl.lodz.p.michalsosn.domain.sound.sound.Sound.MID_VALUE;
@@ -49,6 +53,12 @@ public final class SoundIO {
     private static final int SAMPLE_BITS = 8 * SAMPLE_BYTES;
     private static final AudioType DEFAULT_TYPE = AudioType.WAVE;
 
+    public static final int WAVE_HEADER_BYTES = 44;
+    private static final int WAVE_CHUNK_BYTES = 8192;
+    private static final int READ_BLOCK_BYTES = 64 * 1024;
+    // about 16 MiB of samples stay on the heap, longer sounds are spilled
+    private static final int MEMORY_SAMPLES = 8 * 1024 * 1024;
+
     private SoundIO() {
     }
 
@@ -77,38 +87,115 @@ public final class SoundIO {
         }
     }
 
+    /**
+     * Reads the stream in blocks, mixing channels down to one and scaling
+     * samples to 16 bits. Long sounds are kept in a temporary file
+     * instead of the heap.
+     */
     public static Sound readSound(AudioInputStream audioStream) throws IOException {
-        AudioFormat sourceFormat = audioStream.getFormat();
-        double sampleRate = sourceFormat.getSampleRate();
-        AudioFormat targetFormat = makeDefaultFormat(sampleRate);
-        try (AudioInputStream convertedStream
-                     = AudioSystem.getAudioInputStream(targetFormat, audioStream)) {
-            AudioFormat convertedFormat = convertedStream.getFormat();
-            int frameSize = convertedFormat.getFrameSize();
-            int frameLength = limitedFrameLength(audioStream);
-            double frameRate = convertedFormat.getFrameRate();
-
-            int levels = 1 << frameSize * Byte.SIZE;
-            if (levels != Sound.MAX_VALUE - Sound.MIN_VALUE + 1) {
-                throw new IOException("Unsupported number of levels " + levels);
+        AudioFormat format = audioStream.getFormat();
+        if (!isPcm(format)) {
+            AudioFormat pcmFormat = new AudioFormat(
+                    format.getSampleRate(), SAMPLE_BITS, format.getChannels(),
+                    true, false
+            );
+            try (AudioInputStream pcmStream
+                         = AudioSystem.getAudioInputStream(pcmFormat, audioStream)) {
+                return readSound(pcmStream);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        int channels = format.getChannels();
+        int sampleBits = format.getSampleSizeInBits();
+        int sampleBytes = (sampleBits + Byte.SIZE - 1) / Byte.SIZE;
+        int frameSize = format.getFrameSize();
+        if (channels <= 0 || sampleBits <= 0 || sampleBits > Integer.SIZE
+                || frameSize != channels * sampleBytes) {
+            throw new IOException("Unsupported format " + format);
+        }
+
+        byte[] block = new byte[READ_BLOCK_BYTES - READ_BLOCK_BYTES % frameSize];
+        ByteBuffer blockBuffer = ByteBuffer.wrap(block).order(
+                format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN
+        );
+        short[] samples = new short[block.length / frameSize];
+        try (SpillBuffer spill = new SpillBuffer(MEMORY_SAMPLES)) {
+            int filled = 0;
+            int read;
+            while ((read = audioStream.read(block, filled, block.length - filled)) >= 0) {
+                filled += read;
+                int frames = filled / frameSize;
+                decodeFrames(blockBuffer, frames, format, samples);
+                spill.put(samples, 0, frames);
+                int used = frames * frameSize;
+                System.arraycopy(block, used, block, 0, filled - used);
+                filled -= used;
+            }
+            if (filled != 0) {
+                throw new IOException(String.format(
+                        "Could not read a full frame of size %d "
+                      + "when reading the %dth frame", frameSize, spill.size()
+                ));
             }
+            return new ShortBufferSound(spill.toShortBuffer(),
+                                        TimeRange.ofFrequency(format.getFrameRate()));
+        }
+    }
+
+    private static boolean isPcm(AudioFormat format) {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        return AudioFormat.Encoding.PCM_SIGNED.equals(encoding)
+            || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding);
+    }
 
-            int[] readSamples = new int[frameLength];
-            byte[] singleFrame = new byte[frameSize];
-            for (int i = 0; i < frameLength; ++i) {
-                if (convertedStream.read(singleFrame) != frameSize) {
-                    throw new IOException(String.format(
-                            "Could not read a full frame of size %d "
-                          + "when reading the %dth frame", frameSize, i
-                    ));
+    /**
+     * Decodes frames from the start of the block into 16 bit samples,
+     * averaging the channels.
+     */
+    private static void decodeFrames(ByteBuffer block, int frames,
+                                     AudioFormat format, short[] samples) {
+        int channels = format.getChannels();
+        int sampleBits = format.getSampleSizeInBits();
+        boolean signed = AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding());
+
+        if (sampleBits == SAMPLE_BITS && signed) {
+            ShortBuffer shorts = block.asShortBuffer();
+            if (channels == 1) {
+                shorts.get(samples, 0, frames);
+                return;
+            }
+            for (int frame = 0; frame < frames; ++frame) {
+                int sum = 0;
+                for (int channel = 0; channel < channels; ++channel) {
+                    sum += shorts.get(frame * channels + channel);
                 }
-                int nextSample = MID_VALUE;
-                nextSample += singleFrame[0] & 0xff;
-                nextSample += singleFrame[1] << Byte.SIZE;
-                readSamples[i] = nextSample;
+                samples[frame] = (short) (sum / channels);
             }
+            return;
+        }
 
-            return new BufferSound(readSamples, TimeRange.ofFrequency(frameRate));
+        int sampleBytes = (sampleBits + Byte.SIZE - 1) / Byte.SIZE;
+        int unusedBits = Integer.SIZE - sampleBytes * Byte.SIZE;
+        boolean bigEndian = block.order() == ByteOrder.BIG_ENDIAN;
+        for (int frame = 0; frame < frames; ++frame) {
+            long sum = 0;
+            for (int channel = 0; channel < channels; ++channel) {
+                int offset = (frame * channels + channel) * sampleBytes;
+                int value = 0;
+                for (int b = 0; b < sampleBytes; ++b) {
+                    int index = bigEndian ? offset + b : offset + sampleBytes - 1 - b;
+                    value = value << Byte.SIZE | block.get(index) & 0xff;
+                }
+                // moves the sign bit to the top, then scales to 32 bits
+                value <<= unusedBits;
+                if (!signed) {
+                    value ^= Integer.MIN_VALUE;
+                }
+                sum += value >> Integer.SIZE - SAMPLE_BITS;
+            }
+            samples[frame] = (short) (sum / channels);
         }
     }
 
@@ -134,6 +221,18 @@ public final class SoundIO {
     }
 
     public static byte[] writeSound(Sound sound, AudioType type) throws IOException {
+        if (type == AudioType.WAVE) {
+            // the length is known, so the file is written once without copies
+            long length = waveLength(sound);
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Wave file of " + length + " bytes is too long");
+            }
+            byte[] wave = new byte[(int) length];
+            System.arraycopy(makeWaveHeader(sound), 0, wave, 0, WAVE_HEADER_BYTES);
+            encodeSamples(sound, 0, wave, WAVE_HEADER_BYTES,
+                          wave.length - WAVE_HEADER_BYTES);
+            return wave;
+        }
         try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
             writeSound(sound, outputStream, type);
             return outputStream.toByteArray();
@@ -145,21 +244,14 @@ public final class SoundIO {
         writeSound(sound, outputStream, DEFAULT_TYPE);
     }
 
+    /**
+     * Decodes the audio with {@link #readSound(AudioInputStream)} and
+     * encodes it again as 16 bit mono.
+     */
     public static byte[] convertAudio(InputStream inputStream, AudioType type)
             throws IOException {
-        try (BufferedInputStream bufferedStream = new BufferedInputStream(inputStream);
-             AudioInputStream audioStream
-                     = AudioSystem.getAudioInputStream(bufferedStream)) {
-            AudioFormat sourceFormat = audioStream.getFormat();
-            AudioFormat targetFormat = makeDefaultFormat(sourceFormat.getSampleRate());
-            try (AudioInputStream convertedStream
-                         = AudioSystem.getAudioInputStream(targetFormat, audioStream);
-                 ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                AudioSystem.write(convertedStream, type.getFileType(), outputStream);
-                return outputStream.toByteArray();
-            }
-        } catch (UnsupportedAudioFileException ex) {
-            throw new IOException(ex);
+        try (BufferedInputStream bufferedStream = new BufferedInputStream(inputStream)) {
+            return writeSound(readSound(bufferedStream), type);
         }
     }
 
@@ -179,17 +271,141 @@ public final class SoundIO {
         return convertAudio(input, DEFAULT_TYPE);
     }
 
+    /**
+     * Length in bytes of the wave file written by
+     * {@link #writeWave(Sound, long, long, OutputStream)}.
+     */
+    public static long waveLength(Sound sound) {
+        return WAVE_HEADER_BYTES + (long) SAMPLE_BYTES * sound.getLength();
+    }
+
+    /**
+     * Writes bytes from the given range of the 16 bit PCM wave file of
+     * the sound. Samples are encoded in small chunks while they are
+     * written, so the whole file is never held in memory.
+     * @param sound Sound to write.
+     * @param from Index of the first byte written.
+     * @param to Index after the last byte written.
+     * @param outputStream Stream the bytes are written to.
+     * @throws IOException when writing to the stream fails
+     */
+    public static void writeWave(Sound sound, long from, long to,
+                                 OutputStream outputStream) throws IOException {
+        if (from < 0 || from > to || to > waveLength(sound)) {
+            throw new IllegalArgumentException(
+                    "Range " + from + "-" + to + " is outside of the wave file."
+            );
+        }
+
+        long position = from;
+        if (position < WAVE_HEADER_BYTES) {
+            byte[] header = makeWaveHeader(sound);
+            int headerEnd = (int) Math.min(to, WAVE_HEADER_BYTES);
+            outputStream.write(header, (int) position, headerEnd - (int) position);
+            position = headerEnd;
+        }
+
+        byte[] chunk = new byte[(int) Math.min(WAVE_CHUNK_BYTES, to - position)];
+        while (position < to) {
+            int count = (int) Math.min(chunk.length, to - position);
+            encodeSamples(sound, position - WAVE_HEADER_BYTES, chunk, 0, count);
+            outputStream.write(chunk, 0, count);
+            position += count;
+        }
+    }
+
+    /**
+     * Encodes bytes of 16 bit little endian samples, starting from the
+     * given byte of the first sample.
+     */
+    private static void encodeSamples(Sound sound, long dataPosition,
+                                      byte[] bytes, int offset, int count) {
+        for (int i = 0; i < count; ++i) {
+            long byteIndex = dataPosition + i;
+            int value = sound.getValue((int) (byteIndex / SAMPLE_BYTES))
+                      - MID_VALUE;
+            bytes[offset + i] = (byte) (byteIndex % SAMPLE_BYTES == 0
+                                        ? value & 0xff : value >> Byte.SIZE);
+        }
+    }
+
+    private static byte[] makeWaveHeader(Sound sound) {
+        int sampleRate = (int) (float) sound.getSamplingTime().getFrequency();
+        int dataLength = SAMPLE_BYTES * sound.getLength();
+        ByteBuffer header = ByteBuffer.allocate(WAVE_HEADER_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII))
+              .putInt(WAVE_HEADER_BYTES - 8 + dataLength)
+              .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+              .put("fmt ".getBytes(StandardCharsets.US_ASCII))
+              .putInt(16)
+              .putShort((short) 1)
+              .putShort((short) 1)
+              .putInt(sampleRate)
+              .putInt(sampleRate * SAMPLE_BYTES)
+              .putShort((short) SAMPLE_BYTES)
+              .putShort((short) SAMPLE_BITS)
+              .put("data".getBytes(StandardCharsets.US_ASCII))
+              .putInt(dataLength);
+        return header.array();
+    }
+
     private static AudioInputStream writeSoundStream(Sound sound) {
         double sampleRate = sound.getSamplingTime().getFrequency();
         AudioFormat audioFormat = makeDefaultFormat(sampleRate);
 
         int length = sound.getLength();
-        byte[] data = copyToByteBuffer(sound);
-        ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        InputStream stream = new SampleInputStream(sound);
 
         return new AudioInputStream(stream, audioFormat, length);
     }
 
+    /**
+     * Samples of a sound encoded as they are read.
+     */
+    private static final class SampleInputStream extends InputStream {
+        private final Sound sound;
+        private final long length;
+        private long position;
+
+        private SampleInputStream(Sound sound) {
+            this.sound = sound;
+            this.length = (long) SAMPLE_BYTES * sound.getLength();
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) {
+            if (count == 0) {
+                return 0;
+            }
+            if (position == length) {
+                return -1;
+            }
+            int readCount = (int) Math.min(count, length - position);
+            encodeSamples(sound, position, bytes, offset, readCount);
+            position += readCount;
+            return readCount;
+        }
+
+        @Override
+        public long skip(long count) {
+            long skipped = Math.max(0, Math.min(count, length - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, length - position);
+        }
+    }
+
     public static void play(Sound sound) throws LineUnavailableException {
         double sampleRate = sound.getSamplingTime().getFrequency();
         AudioFormat audioFormat = makeDefaultFormat(sampleRate);
@@ -198,29 +414,18 @@ public final class SoundIO {
         dataLine.open(audioFormat, (int) Math.ceil(sampleRate));
         dataLine.start();
 
-        byte[] toneBuffer = copyToByteBuffer(sound);
-
-        dataLine.write(toneBuffer, 0, toneBuffer.length);
+        long length = (long) SAMPLE_BYTES * sound.getLength();
+        byte[] chunk = new byte[WAVE_CHUNK_BYTES];
+        for (long position = 0; position < length; position += chunk.length) {
+            int count = (int) Math.min(chunk.length, length - position);
+            encodeSamples(sound, position, chunk, 0, count);
+            dataLine.write(chunk, 0, count);
+        }
 
         dataLine.drain();
         dataLine.close();
     }
 
-    private static byte[] copyToByteBuffer(Sound sound) {
-        int length = sound.getLength();
-        byte[] data = new byte[2 * length];
-        sound.stream().forEach(p -> {
-            int value = sound.getValue(p) - MID_VALUE;
-            data[2 * p] = (byte) (value & 0xff);
-            data[2 * p + 1] = (byte) (value >> Byte.SIZE);
-        });
-        return data;
-    }
-
-    private static int limitedFrameLength(AudioInputStream audioStream) {
-        return (int) Math.min(audioStream.getFrameLength(), Integer.MAX_VALUE);
-    }
-
     private static AudioFormat makeDefaultFormat(double sampleRate) {
         return new AudioFormat((float) sampleRate, SAMPLE_BITS, 1, true, false);
     }
@@ -0,0 +1,130 @@
+package pl.lodz.p.michalsosn.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Growing buffer of shorts kept on the heap until it exceeds a limit,
+ * then spilled to a temporary file. The file is mapped when the buffer
+ * is finished, so long sounds don't take the heap, and is deleted once
+ * the mapping is no longer used.
+ * @author Michał Sośnicki
+ */
+public final class SpillBuffer implements Closeable {
+
+    private static final int WRITE_CHUNK_BYTES = 64 * 1024;
+    private static final int MAX_SHORTS = Integer.MAX_VALUE / Short.BYTES;
+
+    private final int memoryLimit;
+    private short[] memory = new short[1024];
+    private int size;
+
+    private FileChannel channel;
+    private ByteBuffer chunk;
+
+    /**
+     * @param memoryLimit Number of shorts kept on the heap at most.
+     */
+    public SpillBuffer(int memoryLimit) {
+        if (memoryLimit < 0) {
+            throw new IllegalArgumentException(
+                    "Memory limit " + memoryLimit + " must not be negative."
+            );
+        }
+        this.memoryLimit = memoryLimit;
+    }
+
+    public void put(short[] values, int offset, int length) throws IOException {
+        if (length > MAX_SHORTS - size) {
+            throw new IOException("More than " + MAX_SHORTS + " values");
+        }
+        if (channel == null && size + length > memoryLimit) {
+            spill();
+        }
+        if (channel == null) {
+            if (size + length > memory.length) {
+                memory = Arrays.copyOf(
+                        memory, Math.min(memoryLimit,
+                                         Math.max(2 * memory.length, size + length))
+                );
+            }
+            System.arraycopy(values, offset, memory, size, length);
+        } else {
+            write(values, offset, length);
+        }
+        size += length;
+    }
+
+    private void spill() throws IOException {
+        Path path = Files.createTempFile("lampek-", ".spill");
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE,
+                                       StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(path);
+            throw ex;
+        }
+        chunk = ByteBuffer.allocateDirect(WRITE_CHUNK_BYTES)
+                .order(ByteOrder.nativeOrder());
+        write(memory, 0, size);
+        memory = null;
+    }
+
+    private void write(short[] values, int offset, int length) throws IOException {
+        int written = 0;
+        while (written < length) {
+            if (chunk.remaining() < Short.BYTES) {
+                flush();
+            }
+            int count = Math.min(length - written, chunk.remaining() / Short.BYTES);
+            chunk.asShortBuffer().put(values, offset + written, count);
+            chunk.position(chunk.position() + Short.BYTES * count);
+            written += count;
+        }
+    }
+
+    private void flush() throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+        chunk.clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * All the values put so far. After a spill they are a read only view
+     * of the mapped file and the buffer takes no more values.
+     */
+    public ShortBuffer toShortBuffer() throws IOException {
+        if (channel == null) {
+            return ShortBuffer.wrap(memory, 0, size).slice();
+        }
+        flush();
+        ByteBuffer mapped = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0, (long) Short.BYTES * size
+        );
+        close();
+        return mapped.order(ByteOrder.nativeOrder()).asShortBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+}
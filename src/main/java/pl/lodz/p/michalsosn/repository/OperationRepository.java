@@ -19,6 +19,10 @@ public interface OperationRepository extends CrudRepository<OperationEntity, Lon
             long id, ProcessEntity processEntity
     );
 
+    Optional<OperationEntity> findFirstByFingerprintAndDoneTrueAndFailedFalse(
+            String fingerprint
+    );
+
     @Modifying
     @Query("UPDATE Operation o SET o.child = NULL WHERE o = ?1")
     void clearChild(OperationEntity operation);
@@ -1,11 +1,13 @@
 package pl.lodz.p.michalsosn.repository;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import pl.lodz.p.michalsosn.entities.OperationEntity;
 import pl.lodz.p.michalsosn.entities.ResultEntity;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -16,4 +18,12 @@ public interface ResultRepository extends CrudRepository<ResultEntity, Long> {
     Optional<ResultEntity> findByIdAndOperation(
             long id, OperationEntity operationEntity
     );
+
+    @Query(value = "SELECT data_key FROM result WHERE data_key IS NOT NULL "
+                 + "UNION SELECT data_presentation_key FROM result "
+                 + "WHERE data_presentation_key IS NOT NULL "
+                 + "UNION SELECT data_envelope_key FROM result "
+                 + "WHERE data_envelope_key IS NOT NULL",
+           nativeQuery = true)
+    List<String> findPayloadKeys();
 }
@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import pl.lodz.p.michalsosn.security.ForbiddenException;
 import pl.lodz.p.michalsosn.security.NotAuthenticatedException;
+import pl.lodz.p.michalsosn.service.OperationQueueFullException;
 
 import java.util.NoSuchElementException;
 
@@ -62,4 +63,12 @@ public class GeneralRestControllerAdvice {
         return new VndErrors("error", ex.getMessage());
     }
 
+    @ResponseBody
+    @ExceptionHandler(OperationQueueFullException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    VndErrors handleOperationQueueFullException(OperationQueueFullException ex) {
+        log.warn("OperationQueueFullException handled: {}", ex.getMessage());
+        return new VndErrors("error", ex.getMessage());
+    }
+
 }
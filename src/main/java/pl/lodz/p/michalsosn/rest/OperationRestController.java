@@ -53,6 +53,7 @@ public class OperationRestController {
             @RequestParam(defaultValue = "false") boolean replace,
             @RequestBody OperationRequest operationRequest
     ) {
+        operationService.checkCapacity();
         long newId;
         if (replace) {
             newId = operationService.replaceOperation(
@@ -63,7 +64,7 @@ public class OperationRestController {
                     username, processName, operationId, operationRequest
             );
         }
-        operationService.submitOperation(newId);
+        operationService.submitFollowingOperation(newId);
         return new OperationRequestSupport(username,
                 new OperationStatusAttachment<>(
                         false, false,
@@ -82,7 +83,7 @@ public class OperationRestController {
         operationService.deleteOperation(
                 username, processName, operationId
         ).ifPresent(id ->
-            operationService.submitOperation(id)
+            operationService.submitFollowingOperation(id)
         );
     }
 
@@ -0,0 +1,25 @@
+package pl.lodz.p.michalsosn.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import pl.lodz.p.michalsosn.service.OperationScheduler;
+import pl.lodz.p.michalsosn.service.OperationService;
+
+/**
+ * @author Michał Sośnicki
+ */
+@RestController
+@RequestMapping("/operation-scheduler")
+public class OperationSchedulerRestController {
+
+    @Autowired
+    private OperationService operationService;
+
+    @RequestMapping(method = RequestMethod.GET)
+    public OperationScheduler.Statistics getStatistics() {
+        return operationService.getSchedulerStatistics();
+    }
+
+}
@@ -55,9 +55,10 @@ public class ProcessRestController {
             @PathVariable String name,
             @RequestBody OperationRequest rootRequest
     ) throws IOException {
+        operationService.checkCapacity();
         ReplaceResult replaceResult
                 = processService.replaceProcess(username, name, rootRequest);
-        operationService.submitOperation(replaceResult.getId());
+        operationService.submitFollowingOperation(replaceResult.getId());
 
         return ResponseEntity.status(
             replaceResult.isFound() ? HttpStatus.NO_CONTENT : HttpStatus.CREATED
@@ -1,16 +1,21 @@
 package pl.lodz.p.michalsosn.rest;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 import pl.lodz.p.michalsosn.entities.ResultEntity;
+import pl.lodz.p.michalsosn.io.SoundIO;
 import pl.lodz.p.michalsosn.rest.support.OperationStatusAttachment;
+import pl.lodz.p.michalsosn.rest.support.RangeResponses;
 import pl.lodz.p.michalsosn.rest.support.ResultListSupport;
 import pl.lodz.p.michalsosn.service.ResultService;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -21,6 +26,9 @@ import java.util.Map;
               + "/operation/{operation}/result")
 public class ResultRestController {
 
+    private static final String WAVE_VALUE = "audio/x-wav";
+    private static final String FLAC_VALUE = "audio/flac";
+
     @Autowired
     private ResultService resultService;
 
@@ -55,44 +63,75 @@ public class ResultRestController {
 
     @RequestMapping(path = "/{result}", method = RequestMethod.GET,
                     produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<byte[]> getResultAsPng(
+    public ResponseEntity<StreamingResponseBody> getResultAsPng(
             @PathVariable String username,
             @PathVariable("process") String processName,
             @PathVariable("operation") long operationId,
-            @PathVariable("result") String resultName
+            @PathVariable("result") String resultName,
+            @RequestHeader HttpHeaders headers
     ) throws IOException {
-        byte[] imageData = resultService.getResultAsPng(
+        ByteBuffer imageData = resultService.getResultAsPng(
                 username, processName, operationId, resultName
         );
-        return new ResponseEntity<>(imageData, HttpStatus.OK);
+        return RangeResponses.ofBuffer(headers, MediaType.IMAGE_PNG, imageData);
+    }
+
+    @RequestMapping(path = "/{result}/tile/{level}/{row}/{column}",
+                    method = RequestMethod.GET,
+                    produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<StreamingResponseBody> getResultTile(
+            @PathVariable String username,
+            @PathVariable("process") String processName,
+            @PathVariable("operation") long operationId,
+            @PathVariable("result") String resultName,
+            @PathVariable("level") int level,
+            @PathVariable("row") int row,
+            @PathVariable("column") int column,
+            @RequestHeader HttpHeaders headers
+    ) throws IOException {
+        ByteBuffer tileData = resultService.getResultTile(
+                username, processName, operationId, resultName, level, row, column
+        );
+        return RangeResponses.ofBuffer(headers, MediaType.IMAGE_PNG, tileData);
     }
 
     @RequestMapping(path = "/{result}", method = RequestMethod.GET,
-                    produces = "audio/x-wav")
-    public ResponseEntity<byte[]> getResultAsWave(
+                    produces = WAVE_VALUE)
+    public ResponseEntity<StreamingResponseBody> getResultAsWave(
             @PathVariable String username,
             @PathVariable("process") String processName,
             @PathVariable("operation") long operationId,
-            @PathVariable("result") String resultName
+            @PathVariable("result") String resultName,
+            @RequestHeader HttpHeaders headers
     ) throws IOException {
-        byte[] soundData = resultService.getResultAsWave(
+        Sound sound = resultService.getSoundResult(
                 username, processName, operationId, resultName
         );
-        return new ResponseEntity<>(soundData, HttpStatus.OK);
+        return RangeResponses.ofRange(
+                headers, MediaType.parseMediaType(WAVE_VALUE),
+                SoundIO.waveLength(sound),
+                (from, to, outputStream) ->
+                        SoundIO.writeWave(sound, from, to, outputStream)
+        );
     }
 
     @RequestMapping(path = "/{result}", method = RequestMethod.GET,
-                    produces = "audio/flac")
-    public ResponseEntity<byte[]> getResultAsFlac(
+                    produces = FLAC_VALUE)
+    public ResponseEntity<StreamingResponseBody> getResultAsFlac(
             @PathVariable String username,
             @PathVariable("process") String processName,
             @PathVariable("operation") long operationId,
             @PathVariable("result") String resultName
     ) throws IOException {
-        byte[] soundData = resultService.getResultAsFlac(
+        Sound sound = resultService.getSoundResult(
                 username, processName, operationId, resultName
         );
-        return new ResponseEntity<>(soundData, HttpStatus.OK);
+        return RangeResponses.ofStream(
+                MediaType.parseMediaType(FLAC_VALUE),
+                outputStream -> SoundIO.writeSound(
+                        sound, outputStream, SoundIO.AudioType.FLAC
+                )
+        );
     }
 
 }
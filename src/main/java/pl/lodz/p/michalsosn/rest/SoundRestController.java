@@ -2,17 +2,24 @@ package pl.lodz.p.michalsosn.rest;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 import pl.lodz.p.michalsosn.entities.SoundEntity;
+import pl.lodz.p.michalsosn.io.SoundIO;
+import pl.lodz.p.michalsosn.rest.support.RangeResponses;
 import pl.lodz.p.michalsosn.rest.support.SoundEntitySupport;
 import pl.lodz.p.michalsosn.rest.support.SoundPageSupport;
 import pl.lodz.p.michalsosn.service.SoundService;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * @author Michał Sośnicki
@@ -21,6 +28,9 @@ import java.io.InputStream;
 @RequestMapping("/user/{username}/sound")
 public class SoundRestController {
 
+    private static final String WAVE_VALUE = "audio/x-wav";
+    private static final String FLAC_VALUE = "audio/flac";
+
     @Autowired
     private SoundService soundService;
 
@@ -45,23 +55,30 @@ public class SoundRestController {
     }
 
     @RequestMapping(path = "/{name}", method = RequestMethod.GET,
-                    produces = "audio/x-wav")
-    public ResponseEntity<byte[]> getSoundAsWave(
+                    produces = WAVE_VALUE)
+    public ResponseEntity<StreamingResponseBody> getSoundAsWave(
             @PathVariable String username,
-            @PathVariable String name
+            @PathVariable String name,
+            @RequestHeader HttpHeaders headers
     ) throws IOException {
         byte[] soundData = soundService.getSoundAsWave(username, name);
-        return new ResponseEntity<>(soundData, HttpStatus.OK);
+        return RangeResponses.ofBuffer(headers, MediaType.parseMediaType(WAVE_VALUE),
+                                       ByteBuffer.wrap(soundData));
     }
 
     @RequestMapping(path = "/{name}", method = RequestMethod.GET,
-                    produces = "audio/flac")
-    public ResponseEntity<byte[]> getSoundAsFlac(
+                    produces = FLAC_VALUE)
+    public ResponseEntity<StreamingResponseBody> getSoundAsFlac(
             @PathVariable String username,
             @PathVariable String name
     ) throws IOException {
-        byte[] soundData = soundService.getSoundAsFlac(username, name);
-        return new ResponseEntity<>(soundData, HttpStatus.OK);
+        Sound sound = soundService.getSound(username, name);
+        return RangeResponses.ofStream(
+                MediaType.parseMediaType(FLAC_VALUE),
+                outputStream -> SoundIO.writeSound(
+                        sound, outputStream, SoundIO.AudioType.FLAC
+                )
+        );
     }
 
     @RequestMapping(path = "/{name}", method = RequestMethod.PUT)
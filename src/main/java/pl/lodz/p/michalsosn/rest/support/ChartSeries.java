@@ -0,0 +1,99 @@
+package pl.lodz.p.michalsosn.rest.support;
+
+import pl.lodz.p.michalsosn.domain.sound.EnvelopePyramid;
+
+import java.io.IOException;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Points of a chart of a span of samples. Short spans are drawn with
+ * their samples. Longer ones are drawn with the minimum and the maximum
+ * of every bucket of samples, so that peaks don't disappear, and come with
+ * root mean squares of the buckets. Buckets are read from the envelope
+ * of the result, only short spans load the samples.
+ * @author Michał Sośnicki
+ */
+final class ChartSeries {
+
+    @FunctionalInterface
+    interface SampleLoader {
+        IntToDoubleFunction load() throws IOException;
+    }
+
+    private final double[] values;
+    private final double[] rms;
+    private final int firstSample;
+    private final double valueStep;
+
+    private ChartSeries(double[] values, double[] rms, int firstSample,
+                        double valueStep) {
+        this.values = values;
+        this.rms = rms;
+        this.firstSample = firstSample;
+        this.valueStep = valueStep;
+    }
+
+    /**
+     * Points of samples from the start to the end, which have to lie
+     * within the envelope.
+     */
+    static ChartSeries of(int sampleStart, int sampleEnd, int plotSize,
+                          EnvelopePyramid envelope, SampleLoader loader)
+            throws IOException {
+        int spanLength = sampleEnd - sampleStart;
+        if (spanLength < 0) {
+            return new ChartSeries(new double[0], null, sampleStart, Double.NaN);
+        }
+        if (spanLength < 2 * plotSize) {
+            IntToDoubleFunction samples = spanLength == 0
+                                        ? null : loader.load();
+            double[] values = new double[spanLength];
+            for (int i = 0; i < spanLength; ++i) {
+                values[i] = samples.applyAsDouble(sampleStart + i);
+            }
+            return new ChartSeries(values, null, sampleStart, 1.0);
+        }
+
+        int level = envelope.levelFor(spanLength, plotSize);
+        long bucketSize = EnvelopePyramid.bucketSize(level);
+        int origin = envelope.getFirstSample();
+        int firstBucket = (int) ((sampleStart - origin) / bucketSize);
+        int bucketCount = (int) ((sampleEnd - 1 - origin) / bucketSize)
+                        - firstBucket + 1;
+
+        double[] values = new double[2 * bucketCount];
+        double[] rms = new double[bucketCount];
+        for (int i = 0; i < bucketCount; ++i) {
+            values[2 * i] = envelope.getMin(level, firstBucket + i);
+            values[2 * i + 1] = envelope.getMax(level, firstBucket + i);
+            rms[i] = envelope.getRms(level, firstBucket + i);
+        }
+        return new ChartSeries(values, rms,
+                               (int) (origin + firstBucket * bucketSize),
+                               bucketSize / 2.0);
+    }
+
+    double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Root mean squares of buckets, each spanning two values, or null
+     * when the values are samples.
+     */
+    double[] getRms() {
+        return rms;
+    }
+
+    int getFirstSample() {
+        return firstSample;
+    }
+
+    /**
+     * Number of samples between consecutive values.
+     */
+    double getValueStep() {
+        return valueStep;
+    }
+
+}
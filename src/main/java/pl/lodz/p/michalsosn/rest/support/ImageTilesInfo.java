@@ -0,0 +1,38 @@
+package pl.lodz.p.michalsosn.rest.support;
+
+import pl.lodz.p.michalsosn.io.ImageTiles;
+
+/**
+ * Layout of tiles, so that a viewer knows which ones to ask for.
+ * @author Michał Sośnicki
+ */
+public class ImageTilesInfo {
+
+    private final int height;
+    private final int width;
+    private final int tileSize;
+    private final int levelCount;
+
+    public ImageTilesInfo(ImageTiles tiles) {
+        this.height = tiles.getHeight();
+        this.width = tiles.getWidth();
+        this.tileSize = ImageTiles.TILE_SIZE;
+        this.levelCount = tiles.getLevelCount();
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+}
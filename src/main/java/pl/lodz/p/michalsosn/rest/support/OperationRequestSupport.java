@@ -18,6 +18,7 @@ public class OperationRequestSupport extends ResourceSupport {
     private final long operationId;
     private final boolean done;
     private final boolean failed;
+    private final Integer progress;
 
     public OperationRequestSupport(String username,
             OperationStatusAttachment<OperationRequest> operationRequest,
@@ -27,6 +28,7 @@ public class OperationRequestSupport extends ResourceSupport {
         this.operationId = operationId;
         this.done = operationRequest.isDone();
         this.failed = operationRequest.isFailed();
+        this.progress = operationRequest.getProgress();
 
         add(linkTo(methodOn(OperationRestController.class)
                 .retrieveRequest(username, processName, operationId))
@@ -55,4 +57,8 @@ public class OperationRequestSupport extends ResourceSupport {
     public boolean isFailed() {
         return failed;
     }
+
+    public Integer getProgress() {
+        return progress;
+    }
 }
@@ -8,13 +8,24 @@ public class OperationStatusAttachment<T> {
     private final boolean failed;
     private final String type;
     private final T payload;
+    private final Integer progress;
 
     public OperationStatusAttachment(boolean done, boolean failed,
                                      String type, T payload) {
+        this(done, failed, type, payload, null);
+    }
+
+    /**
+     * @param progress Percent of the running step, null when the operation
+     *                 isn't running.
+     */
+    public OperationStatusAttachment(boolean done, boolean failed,
+                                     String type, T payload, Integer progress) {
         this.done = done;
         this.failed = failed;
         this.type = type;
         this.payload = payload;
+        this.progress = progress;
     }
 
     public boolean isDone() {
@@ -32,5 +43,9 @@ public class OperationStatusAttachment<T> {
     public T getPayload() {
         return payload;
     }
+
+    public Integer getProgress() {
+        return progress;
+    }
 }
 
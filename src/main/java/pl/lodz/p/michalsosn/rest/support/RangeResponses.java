@@ -0,0 +1,109 @@
+package pl.lodz.p.michalsosn.rest.support;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Streaming responses answering requests for a single byte range of
+ * their body. Requests for many ranges, or with malformed ranges, get
+ * the whole body.
+ * @author Michał Sośnicki
+ */
+public final class RangeResponses {
+
+    private RangeResponses() {
+    }
+
+    @FunctionalInterface
+    public interface RangeWriter {
+        void write(long from, long to, OutputStream outputStream)
+                throws IOException;
+    }
+
+    public static ResponseEntity<StreamingResponseBody> ofRange(
+            HttpHeaders requestHeaders, MediaType contentType,
+            long length, RangeWriter writer
+    ) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        HttpRange range = findSingleRange(requestHeaders);
+        if (range == null) {
+            headers.setContentLength(length);
+            return new ResponseEntity<>(
+                    outputStream -> writer.write(0, length, outputStream),
+                    headers, HttpStatus.OK
+            );
+        }
+
+        long from = range.getRangeStart(length);
+        long to = range.getRangeEnd(length) + 1;
+        if (from >= length || from >= to) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return new ResponseEntity<>(
+                    headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE
+            );
+        }
+        headers.set(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + from + "-" + (to - 1) + "/" + length);
+        headers.setContentLength(to - from);
+        return new ResponseEntity<>(
+                outputStream -> writer.write(from, to, outputStream),
+                headers, HttpStatus.PARTIAL_CONTENT
+        );
+    }
+
+    public static ResponseEntity<StreamingResponseBody> ofBuffer(
+            HttpHeaders requestHeaders, MediaType contentType, ByteBuffer data
+    ) {
+        ByteBuffer body = data.duplicate();
+        return ofRange(requestHeaders, contentType, body.remaining(),
+                       (from, to, outputStream) -> {
+            ByteBuffer slice = body.duplicate();
+            slice.position(slice.position() + (int) from);
+            slice.limit(slice.position() + (int) (to - from));
+            WritableByteChannel channel = Channels.newChannel(outputStream);
+            while (slice.hasRemaining()) {
+                channel.write(slice);
+            }
+        });
+    }
+
+    /**
+     * Streams the whole body, for formats which can't be cut into ranges.
+     */
+    public static ResponseEntity<StreamingResponseBody> ofStream(
+            MediaType contentType, StreamingResponseBody body
+    ) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "none");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    private static HttpRange findSingleRange(HttpHeaders requestHeaders) {
+        if (requestHeaders == null) {
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = requestHeaders.getRange();
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+
+}
@@ -45,7 +45,17 @@ public class ResultEntitySupport extends ResourceSupport {
                 case IMAGE_MASK:
                     value = null;
                     add(linkTo(methodOn(ResultRestController.class)
-                            .getResultAsPng(username, processName, operationId, role))
+                            .getResultAsPng(username, processName, operationId, role,
+                                            null))
+                            .withRel("image"));
+                    break;
+                case IMAGE_TILES:
+                    value = new ImageTilesInfo(
+                            ((ImageTilesResultEntity) result).getTiles()
+                    );
+                    add(linkTo(methodOn(ResultRestController.class)
+                            .getResultAsPng(username, processName, operationId, role,
+                                            null))
                             .withRel("image"));
                     break;
                 case SOUND:
@@ -53,7 +63,8 @@ public class ResultEntitySupport extends ResourceSupport {
                             (SoundResultEntity) result
                     );
                     add(linkTo(methodOn(ResultRestController.class)
-                            .getResultAsWave(username, processName, operationId, role))
+                            .getResultAsWave(username, processName, operationId, role,
+                                             null))
                             .withRel("sound"));
                     break;
                 case SOUND_SPECTRUM:
@@ -1,19 +1,21 @@
 package pl.lodz.p.michalsosn.rest.support;
 
-import pl.lodz.p.michalsosn.domain.sound.signal.Signal;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import pl.lodz.p.michalsosn.domain.sound.EnvelopePyramid;
 import pl.lodz.p.michalsosn.entities.ResultEntity.SignalResultEntity;
 
 import java.io.IOException;
-import java.util.stream.IntStream;
 
 /**
  * @author Michał Sośnicki
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SignalChartPack {
 
     private static final int PLOT_SIZE = 1000;
 
     private final double[] values;
+    private final double[] rms;
     private final double start;
     private final double end;
     private final double frequency;
@@ -26,8 +28,8 @@ public class SignalChartPack {
     public SignalChartPack(
             SignalResultEntity result, Double start, Double end
     ) throws IOException {
-        Signal signal = result.getSignal();
-        int length = signal.getLength();
+        EnvelopePyramid envelope = result.getEnvelope();
+        int length = envelope.getLength();
 
         if (start == null || start < 0) {
             start = 0.0;
@@ -38,30 +40,32 @@ public class SignalChartPack {
 
         int sampleStart = (int) Math.ceil(start);
         int sampleEnd = (int) Math.floor(end);
-        int spanLength = sampleEnd - sampleStart;
 
-        int step = (int) Math.floor((double) spanLength / PLOT_SIZE);
-        if (step < 0) {
-            this.values = new double[0];
-        } else if (step <= 1) {
-            this.values = signal.values().skip(sampleStart).limit(spanLength).toArray();
+        ChartSeries series = ChartSeries.of(
+                sampleStart, sampleEnd, PLOT_SIZE, envelope,
+                () -> result.getSignal()::getValue
+        );
+        this.values = series.getValues();
+        this.rms = series.getRms();
+        if (series.getRms() == null) {
+            this.start = start;
+            this.end = end;
         } else {
-            int resultLength = (int) Math.ceil((double) spanLength / step);
-            this.values = IntStream.range(0, resultLength)
-                    .map(i -> i * step + sampleStart)
-                    .mapToDouble(signal::getValue)
-                    .toArray();
+            this.start = series.getFirstSample();
+            this.end = this.start + series.getValueStep() * values.length;
         }
-        this.start = start;
-        this.end = end;
-        this.frequency = signal.getSamplingTime().getFrequency();
-        this.duration = signal.getSamplingTime().getDuration();
+        this.frequency = envelope.getSamplingTime().getFrequency();
+        this.duration = envelope.getSamplingTime().getDuration();
     }
 
     public double[] getValues() {
         return values;
     }
 
+    public double[] getRms() {
+        return rms;
+    }
+
     public double getStart() {
         return start;
     }
@@ -1,20 +1,23 @@
 package pl.lodz.p.michalsosn.rest.support;
 
-import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import pl.lodz.p.michalsosn.domain.sound.EnvelopePyramid;
 
 import java.io.IOException;
-import java.util.stream.IntStream;
+import java.util.Arrays;
 
 import static pl.lodz.p.michalsosn.entities.ResultEntity.SoundResultEntity;
 
 /**
  * @author Michał Sośnicki
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SoundChartPack {
 
     private static final int PLOT_SIZE = 1000;
 
     private final int[] values;
+    private final double[] rms;
     private final double startTime;
     private final double duration;
 
@@ -25,9 +28,9 @@ public class SoundChartPack {
     public SoundChartPack(
             SoundResultEntity result, Double startTime, Double endTime
     ) throws IOException {
-        Sound sound = result.getSound();
-        int length = sound.getLength();
-        double sampleDuration = sound.getSamplingTime().getDuration();
+        EnvelopePyramid envelope = result.getEnvelope();
+        int length = envelope.getLength();
+        double sampleDuration = envelope.getSamplingTime().getDuration();
 
         if (startTime == null || startTime < 0) {
             startTime = 0.0;
@@ -38,30 +41,27 @@ public class SoundChartPack {
 
         int sampleStart = Math.max(0, (int) Math.ceil(startTime / sampleDuration));
         int sampleEnd = Math.min(length, (int) Math.floor(endTime / sampleDuration));
-        int spanLength = sampleEnd - sampleStart;
-
-        int step = (int) Math.floor((double) spanLength / PLOT_SIZE);
-        if (step < 0) {
-            this.values = new int[0];
-            this.duration = Double.NaN;
-        } else if (step <= 1) {
-            this.values = sound.values().skip(sampleStart).limit(spanLength).toArray();
-            this.duration = sampleDuration;
-        } else {
-            int resultLength = (int) Math.ceil((double) spanLength / step);
-            this.values = IntStream.range(0, resultLength)
-                    .map(i -> i * step + sampleStart)
-                    .map(sound::getValue)
-                    .toArray();
-            this.duration = sampleDuration * step;
-        }
-        this.startTime = startTime;
+
+        ChartSeries series = ChartSeries.of(
+                sampleStart, sampleEnd, PLOT_SIZE, envelope,
+                () -> result.viewSound()::getValue
+        );
+        this.values = Arrays.stream(series.getValues())
+                .mapToInt(value -> (int) value).toArray();
+        this.rms = series.getRms();
+        this.duration = sampleDuration * series.getValueStep();
+        this.startTime = values.length == 0
+                       ? startTime : sampleDuration * series.getFirstSample();
     }
 
     public int[] getValues() {
         return values;
     }
 
+    public double[] getRms() {
+        return rms;
+    }
+
     public double getDuration() {
         return duration;
     }
@@ -28,7 +28,7 @@ public class SoundEntitySupport extends ResourceSupport {
                 .withSelfRel());
         try {
             add(linkTo(methodOn(SoundRestController.class)
-                    .getSoundAsWave(username, name))
+                    .getSoundAsWave(username, name, null))
                     .withRel("sound"));
         } catch (IOException e) {
             throw new IllegalStateException(
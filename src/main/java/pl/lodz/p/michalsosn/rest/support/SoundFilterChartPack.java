@@ -1,20 +1,22 @@
 package pl.lodz.p.michalsosn.rest.support;
 
-import pl.lodz.p.michalsosn.domain.sound.filter.Filter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import pl.lodz.p.michalsosn.domain.sound.EnvelopePyramid;
 
 import java.io.IOException;
-import java.util.stream.IntStream;
 
 import static pl.lodz.p.michalsosn.entities.ResultEntity.SoundFilterResultEntity;
 
 /**
  * @author Michał Sośnicki
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SoundFilterChartPack {
 
     private static final int PLOT_SIZE = 1000;
 
     private final double[] values;
+    private final double[] rms;
     private final double startTime;
     private final double duration;
 
@@ -25,47 +27,42 @@ public class SoundFilterChartPack {
     public SoundFilterChartPack(
             SoundFilterResultEntity result, Double startTime, Double endTime
     ) throws IOException {
-        final Filter filter = result.getFilter();
-        final int positiveLength = filter.getPositiveLength();
-        final int negativeLength = filter.getNegativeLength();
-        final double sampleDuration = filter.getSamplingTime().getDuration();
+        final EnvelopePyramid envelope = result.getEnvelope();
+        final int firstSample = envelope.getFirstSample();
+        final int endSample = envelope.getEndSample();
+        final double sampleDuration = envelope.getSamplingTime().getDuration();
 
-        if (startTime == null || startTime < -negativeLength * sampleDuration) {
-            startTime = -negativeLength * sampleDuration;
+        if (startTime == null || startTime < firstSample * sampleDuration) {
+            startTime = firstSample * sampleDuration;
         }
-        if (endTime == null || endTime > positiveLength * sampleDuration) {
-            endTime = positiveLength * sampleDuration;
+        if (endTime == null || endTime > endSample * sampleDuration) {
+            endTime = endSample * sampleDuration;
         }
 
-        int sampleStart = Math.max(-negativeLength,
+        int sampleStart = Math.max(firstSample,
                                    (int) Math.ceil(startTime / sampleDuration));
-        int sampleEnd = Math.min(positiveLength,
+        int sampleEnd = Math.min(endSample,
                                  (int) Math.floor(endTime / sampleDuration));
-        int spanLength = sampleEnd - sampleStart;
-
-        int step = (int) Math.floor((double) spanLength / PLOT_SIZE);
-        if (step < 0) {
-            this.values = new double[0];
-            this.duration = Double.NaN;
-        } else if (step <= 1) {
-            this.values = IntStream.range(sampleStart, sampleEnd)
-                    .mapToDouble(filter::getValue).toArray();
-            this.duration = sampleDuration;
-        } else {
-            int resultLength = (int) Math.ceil((double) spanLength / step);
-            this.values = IntStream.range(0, resultLength)
-                    .map(i -> i * step + sampleStart)
-                    .mapToDouble(filter::getValue)
-                    .toArray();
-            this.duration = sampleDuration * step;
-        }
-        this.startTime = startTime;
+
+        ChartSeries series = ChartSeries.of(
+                sampleStart, sampleEnd, PLOT_SIZE, envelope,
+                () -> result.getFilter()::getValue
+        );
+        this.values = series.getValues();
+        this.rms = series.getRms();
+        this.duration = sampleDuration * series.getValueStep();
+        this.startTime = values.length == 0
+                       ? startTime : sampleDuration * series.getFirstSample();
     }
 
     public double[] getValues() {
         return values;
     }
 
+    public double[] getRms() {
+        return rms;
+    }
+
     public double getStartTime() {
         return startTime;
     }
@@ -32,7 +32,7 @@ public class SoundPageSupport extends ResourceSupport {
                     .withSelfRel());
             try {
                 add(linkTo(methodOn(SoundRestController.class)
-                        .getSoundAsWave(username, name))
+                        .getSoundAsWave(username, name, null))
                         .withRel("sound"));
             } catch (IOException e) {
                 throw new IllegalStateException(
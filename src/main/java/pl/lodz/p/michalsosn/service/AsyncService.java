@@ -3,25 +3,34 @@ package pl.lodz.p.michalsosn.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
 import pl.lodz.p.michalsosn.entities.OperationEntity;
+import pl.lodz.p.michalsosn.entities.ResultEntity;
+import pl.lodz.p.michalsosn.entities.ResultPayload;
 import pl.lodz.p.michalsosn.security.OwnerOnly;
 import pl.lodz.p.michalsosn.specification.OperationRequest;
 import pl.lodz.p.michalsosn.repository.OperationRepository;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.function.IntConsumer;
 
 /**
+ * Execution of operations, called by the workers of the operation
+ * scheduler.
  * @author Michał Sośnicki
  */
 @Service
@@ -38,11 +47,24 @@ public class AsyncService {
     private final ConcurrentMap<Long, Future<OperationEntity>>
             submittedOperations = new ConcurrentHashMap<>();
 
+    private final ConcurrentMap<Long, TaskContext> runningOperations
+            = new ConcurrentHashMap<>();
+
     public ConcurrentMap<Long, Future<OperationEntity>>
     getSubmittedOperations() {
         return submittedOperations;
     }
 
+    /**
+     * Percent of the step the operation is running, empty when it isn't
+     * running.
+     */
+    public OptionalInt getProgress(long operationId) {
+        TaskContext context = runningOperations.get(operationId);
+        return context == null ? OptionalInt.empty()
+                               : OptionalInt.of(context.getPercent());
+    }
+
     public void cancelOperation(long operationId) {
         Future<OperationEntity> oldFuture =
                 submittedOperations.get(operationId);
@@ -52,12 +74,13 @@ public class AsyncService {
         }
     }
 
-    @Async
     @OwnerOnly
-    public Future<OperationEntity> executeRequest(
+    public OperationEntity executeRequest(
             long operationId, Long parentId
     ) throws Exception {
         log.info("Operation {} started executing", operationId);
+        TaskContext context = TaskContext.current();
+        runningOperations.put(operationId, context);
         OperationEntity entity = null;
         try {
             entity = operationRepository.findOne(operationId);
@@ -67,23 +90,49 @@ public class AsyncService {
                 parent = operationRepository.findOne(parentId);
             }
 
+            // a child reading no results of this operation isn't affected
+            // by it and runs on its own
             OperationEntity child = entity.getChild();
-            if (child != null) {
+            if (child != null && child.isReadingParent()) {
                 child.setDone(false);
                 child.setFailed(false);
                 operationRepository.setStatus(child, false, false);
                 long childId = child.getId();
                 afterCompletion(status -> {
+                    if (status != TransactionSynchronization.STATUS_COMMITTED) {
+                        return;
+                    }
                     log.info("Operation {} will submit its child {}",
                             operationId, childId);
-                    operationService.submitOperation(childId);
+                    operationService.submitFollowingOperation(childId);
                 });
             }
 
-            OperationRequest request = entity.dentitize();
-            entity.getResults().clear();
+            String fingerprint = entity.computeFingerprint(parent);
             Instant before = Instant.now();
-            request.execute(entity, parent);
+            if (fingerprint != null && fingerprint.equals(entity.getFingerprint())) {
+                log.info("Operation {} has unchanged inputs, results are kept",
+                        operationId);
+            } else {
+                entity.getResults().clear();
+                entity.setFingerprint(null);
+                Optional<OperationEntity> twin = fingerprint == null
+                        ? Optional.empty()
+                        : operationRepository
+                                .findFirstByFingerprintAndDoneTrueAndFailedFalse(
+                                        fingerprint
+                                );
+                if (twin.isPresent()) {
+                    copyResults(twin.get(), entity);
+                    log.info("Operation {} took results of operation {}",
+                            operationId, twin.get().getId());
+                } else {
+                    OperationRequest request = entity.dentitize();
+                    request.execute(entity, parent);
+                }
+                entity.setFingerprint(fingerprint);
+            }
+            ResultPayload.awaitWritten();
             Instant after = Instant.now();
 
             entity.setFailed(false);
@@ -91,20 +140,42 @@ public class AsyncService {
             operationRepository.setStatus(entity, true, false);
             log.info("Operation {} executed successfully in {}",
                     operationId, Duration.between(before, after));
-            return new AsyncResult<>(entity);
+            return entity;
+        } catch (CancellationException e) {
+            // the transaction is rolled back, whoever cancelled the operation
+            // submits it again if it should be run
+            log.info("Execution of operation {} cancelled.", operationId);
+            throw e;
         } catch (Exception e) {
             if (entity != null) {
+                entity.setFingerprint(null);
                 entity.setFailed(true);
                 entity.setDone(true);
                 operationRepository.setStatus(entity, true, true);
             }
             log.error("Execution of operation {} failed.", operationId, e);
-            return new AsyncResult<>(entity);
+            return entity;
         } finally {
+            runningOperations.remove(operationId, context);
             submittedOperations.remove(operationId);
         }
     }
 
+    /**
+     * Gives the target copies of results of an operation with the same
+     * fingerprint, possibly from another process.
+     */
+    private static void copyResults(OperationEntity source,
+                                    OperationEntity target) throws IOException {
+        for (Map.Entry<String, ResultEntity> entry
+                : source.getResults().entrySet()) {
+            ResultEntity copy = entry.getValue().copy();
+            copy.setOperation(target);
+            copy.setRole(entry.getKey());
+            target.getResults().put(entry.getKey(), copy);
+        }
+    }
+
     private void afterCompletion(IntConsumer statusConsumer) {
         TransactionSynchronizationManager.registerSynchronization(
                 new TransactionSynchronizationAdapter() {
@@ -0,0 +1,13 @@
+package pl.lodz.p.michalsosn.service;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class OperationQueueFullException extends RuntimeException {
+    public OperationQueueFullException() {
+    }
+
+    public OperationQueueFullException(String message) {
+        super(message);
+    }
+}
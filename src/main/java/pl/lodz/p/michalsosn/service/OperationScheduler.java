@@ -0,0 +1,332 @@
+package pl.lodz.p.michalsosn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor of operations by a fixed number of workers. Every owner has a
+ * queue of their own and the next operation comes from the owner who was
+ * given the least weight of work so far, so one owner submitting many
+ * heavy operations doesn't keep the others waiting. Owners which have
+ * just started submitting are counted as if they had been given as much
+ * as the least served of the waiting ones. New operations are refused
+ * by {@link #checkCapacity()} once too many are waiting, before they are
+ * stored and submitted. The bound is soft: requests checking the capacity
+ * at once may all pass it, and operations following accepted ones are
+ * queued regardless of it.
+ * Every task runs in a {@link TaskContext} of its own, which is cancelled
+ * together with its future, so a cancelled task stops at its next
+ * checkpoint, and which limits the threads the task splits its work
+ * between.
+ * @author Michał Sośnicki
+ */
+public class OperationScheduler implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(OperationScheduler.class);
+
+    private final int capacity;
+    private final int taskParallelism;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Map<String, Owner> owners = new LinkedHashMap<>();
+    private long virtualTime;
+    private int queued;
+    private int running;
+    private boolean closed;
+
+    private long submitted;
+    private long rejected;
+    private long started;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    public OperationScheduler(int workerCount, int capacity) {
+        this(workerCount, capacity, 0);
+    }
+
+    /**
+     * @param workerCount Number of operations executed at once.
+     * @param capacity Number of operations which can wait at most.
+     * @param taskParallelism Most threads an operation works with at once,
+     *                        0 when it's not limited.
+     */
+    public OperationScheduler(int workerCount, int capacity,
+                              int taskParallelism) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException(
+                    "Worker count " + workerCount + " must be positive."
+            );
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Capacity " + capacity + " must not be negative."
+            );
+        }
+        if (taskParallelism < 0) {
+            throw new IllegalArgumentException(
+                    "Task parallelism " + taskParallelism + " must not be negative."
+            );
+        }
+        this.capacity = capacity;
+        this.taskParallelism = taskParallelism;
+        for (int i = 0; i < workerCount; ++i) {
+            Thread worker = new Thread(this::work, "operation-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues the task of the owner even if too many tasks are waiting,
+     * new tasks are admitted with {@link #checkCapacity()} beforehand.
+     * @param weight Estimated cost of the task, counted against the owner.
+     */
+    public <T> Future<T> submitFollowing(String owner, int weight,
+                                         Callable<T> task) {
+        return enqueue(owner, weight, task);
+    }
+
+    /**
+     * @throws OperationQueueFullException when too many tasks are waiting
+     *                                     to submit one more
+     */
+    public synchronized void checkCapacity() {
+        if (queued >= capacity) {
+            ++rejected;
+            throw new OperationQueueFullException(String.format(
+                    "%d operations are waiting, try again later", queued
+            ));
+        }
+    }
+
+    private synchronized <T> Future<T> enqueue(String owner, int weight,
+                                               Callable<T> callable) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException(
+                    "Weight " + weight + " must be positive."
+            );
+        }
+        if (closed) {
+            throw new IllegalStateException("Scheduler is closed.");
+        }
+        Owner queue = owners.computeIfAbsent(owner, name -> new Owner());
+        if (queue.tasks.isEmpty()) {
+            queue.served = Math.max(queue.served, virtualTime);
+        }
+        Task<T> task = new Task<>(owner, weight, callable);
+        queue.tasks.addLast(task);
+        ++queued;
+        ++submitted;
+        notify();
+        return task;
+    }
+
+    private synchronized Task<?> take() throws InterruptedException {
+        while (queued == 0 && !closed) {
+            wait();
+        }
+        if (closed) {
+            return null;
+        }
+        Owner chosen = null;
+        for (Owner owner : owners.values()) {
+            if (!owner.tasks.isEmpty()
+                    && (chosen == null || owner.served < chosen.served)) {
+                chosen = owner;
+            }
+        }
+        Task<?> task = chosen.tasks.removeFirst();
+        virtualTime = chosen.served;
+        chosen.served += task.weight;
+        // idle owners are forgotten once the others have caught up with them
+        owners.values().removeIf(owner ->
+                owner.tasks.isEmpty() && owner.served <= virtualTime
+        );
+        --queued;
+        ++running;
+        ++started;
+        long waitNanos = System.nanoTime() - task.enqueuedNanos;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        return task;
+    }
+
+    private synchronized boolean remove(Task<?> task) {
+        Owner owner = owners.get(task.owner);
+        if (owner == null || !owner.tasks.remove(task)) {
+            return false;
+        }
+        --queued;
+        return true;
+    }
+
+    private synchronized void finished() {
+        --running;
+    }
+
+    private void work() {
+        try {
+            Task<?> task;
+            while ((task = take()) != null) {
+                try {
+                    task.run();
+                } finally {
+                    finished();
+                    // a cancelled task may leave the interrupt behind
+                    Thread.interrupted();
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.debug("Worker {} interrupted", Thread.currentThread().getName());
+        }
+    }
+
+    public synchronized Statistics getStatistics() {
+        Map<String, Integer> ownerQueues = new LinkedHashMap<>();
+        owners.forEach((name, owner) -> {
+            if (!owner.tasks.isEmpty()) {
+                ownerQueues.put(name, owner.tasks.size());
+            }
+        });
+        long meanWaitNanos = started == 0 ? 0 : totalWaitNanos / started;
+        return new Statistics(
+                workers.size(), capacity, queued, running, submitted, rejected,
+                TimeUnit.NANOSECONDS.toMillis(meanWaitNanos),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos), ownerQueues
+        );
+    }
+
+    /**
+     * Cancels the waiting tasks and stops the workers, interrupting the
+     * running tasks.
+     */
+    @Override
+    public void close() {
+        List<Task<?>> cancelled = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            owners.values().forEach(owner -> cancelled.addAll(owner.tasks));
+            owners.clear();
+            queued = 0;
+            notifyAll();
+        }
+        cancelled.forEach(task -> task.cancel(false));
+        workers.forEach(Thread::interrupt);
+    }
+
+    private static final class Owner {
+        private final ArrayDeque<Task<?>> tasks = new ArrayDeque<>();
+        private long served;
+    }
+
+    private final class Task<T> extends FutureTask<T> {
+        private final String owner;
+        private final int weight;
+        private final long enqueuedNanos = System.nanoTime();
+        private final TaskContext context = new TaskContext(taskParallelism);
+
+        private Task(String owner, int weight, Callable<T> callable) {
+            super(callable);
+            this.owner = owner;
+            this.weight = weight;
+        }
+
+        @Override
+        public void run() {
+            context.run(super::run);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                context.cancel();
+                remove(this);
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * Counts of the scheduler at one moment, with waiting times of the
+     * tasks started so far.
+     */
+    public static final class Statistics {
+        private final int workers;
+        private final int capacity;
+        private final int queued;
+        private final int running;
+        private final long submitted;
+        private final long rejected;
+        private final long meanWaitMillis;
+        private final long maxWaitMillis;
+        private final Map<String, Integer> queuedByOwner;
+
+        private Statistics(int workers, int capacity, int queued, int running,
+                           long submitted, long rejected, long meanWaitMillis,
+                           long maxWaitMillis, Map<String, Integer> queuedByOwner) {
+            this.workers = workers;
+            this.capacity = capacity;
+            this.queued = queued;
+            this.running = running;
+            this.submitted = submitted;
+            this.rejected = rejected;
+            this.meanWaitMillis = meanWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.queuedByOwner = Collections.unmodifiableMap(queuedByOwner);
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getMeanWaitMillis() {
+            return meanWaitMillis;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public Map<String, Integer> getQueuedByOwner() {
+            return queuedByOwner;
+        }
+    }
+
+}
@@ -18,6 +18,8 @@ import pl.lodz.p.michalsosn.specification.OperationRequest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
 /**
@@ -38,6 +40,8 @@ public class OperationService {
     private OperationRepository operationRepository;
     @Autowired
     private AsyncService asyncService;
+    @Autowired
+    private OperationScheduler operationScheduler;
 
     public List<OperationSummaryAttachment<Long>> listOperationIds(
             String username, String processName
@@ -71,11 +75,13 @@ public class OperationService {
 
         OperationRequest operationRequest = operationEntity.dentitize();
 
+        OptionalInt progress = asyncService.getProgress(operationId);
         return new OperationStatusAttachment<>(
                 operationEntity.isDone(),
                 operationEntity.isFailed(),
                 operationEntity.getSpecification().getType(),
-                operationRequest
+                operationRequest,
+                progress.isPresent() ? progress.getAsInt() : null
         );
     }
 
@@ -212,12 +218,33 @@ public class OperationService {
         }
     }
 
-    public void submitOperation(long operationId) {
+    /**
+     * Called before storing new operations, so that the ones refused
+     * aren't stored.
+     * @throws OperationQueueFullException when too many operations wait to
+     *                                     accept one more
+     */
+    public void checkCapacity() {
+        operationScheduler.checkCapacity();
+    }
+
+    public OperationScheduler.Statistics getSchedulerStatistics() {
+        return operationScheduler.getStatistics();
+    }
+
+    /**
+     * Schedules the operation, even if too many operations wait. New
+     * operations are refused by {@link #checkCapacity()} before they are
+     * stored, once stored they have to run, as do the ones following them.
+     */
+    public void submitFollowingOperation(long operationId) {
         OperationEntity entity = operationRepository.findOne(operationId);
 
+        // operations which don't read their parent start branches of their
+        // own, they don't wait for the operations before them
         OperationEntity parent = entity.getParent();
         Long parentId = null;
-        if (parent != null) {
+        if (entity.isReadingParent()) {
             parentId = parent.getId();
             if (!parent.isDone()) {
                 log.info(
@@ -235,18 +262,20 @@ public class OperationService {
             log.info("Cancelled old future {} for {}", oldFuture, operationId);
         }
 
+        String owner = entity.getProcess().getAccount().getUsername();
+        int weight = entity.getSpecification().getCpuWeight();
+        Long finalParentId = parentId;
+        Callable<OperationEntity> task = () ->
+                asyncService.executeRequest(operationId, finalParentId);
+        Future<OperationEntity> future =
+                operationScheduler.submitFollowing(owner, weight, task);
+
         entity.setDone(false);
         entity.setFailed(false);
 //        operationRepository.setStatus(entity, false, false);
-        try {
-            Future<OperationEntity> future = asyncService.executeRequest(
-                    operationId, parentId
-            );
-            asyncService.getSubmittedOperations().put(operationId, future);
-            log.info("Submitted operation {}", operationId);
-        } catch (Exception e) {
-            throw new IllegalStateException("It should never happen", e);
-        }
+        asyncService.getSubmittedOperations().put(operationId, future);
+        log.info("Submitted operation {} of {} weighing {}",
+                operationId, owner, weight);
     }
 
 }
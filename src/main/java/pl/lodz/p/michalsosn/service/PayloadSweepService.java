@@ -0,0 +1,49 @@
+package pl.lodz.p.michalsosn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pl.lodz.p.michalsosn.entities.ResultPayload;
+import pl.lodz.p.michalsosn.repository.ResultRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Deletion of stored payloads no result refers to anymore. Equal payloads
+ * share a file, so they can't be deleted with the results, instead the
+ * store is swept from time to time.
+ * @author Michał Sośnicki
+ */
+@Service
+@Transactional(readOnly = true)
+public class PayloadSweepService {
+
+    private final Logger log = LoggerFactory.getLogger(PayloadSweepService.class);
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Value("${lampek.result.sweep-age:86400000}")
+    private long sweepAge;
+
+    @Scheduled(initialDelayString = "${lampek.result.sweep-interval:3600000}",
+               fixedDelayString = "${lampek.result.sweep-interval:3600000}")
+    public void sweepPayloads() throws IOException {
+        // taken before the keys, payloads written later may belong to rows
+        // which aren't visible yet
+        Instant since = Instant.now().minus(Duration.ofMillis(sweepAge));
+        Set<String> referenced = new HashSet<>(resultRepository.findPayloadKeys());
+        int deleted = ResultPayload.sweepStore(referenced, since);
+        log.info("Deleted {} unreferenced payloads, {} are referenced",
+                deleted, referenced.size());
+    }
+
+}
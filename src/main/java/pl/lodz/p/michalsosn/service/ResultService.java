@@ -12,13 +12,13 @@ import pl.lodz.p.michalsosn.entities.OperationEntity;
 import pl.lodz.p.michalsosn.entities.ProcessEntity;
 import pl.lodz.p.michalsosn.entities.ResultEntity;
 import pl.lodz.p.michalsosn.io.BufferedImageIO;
-import pl.lodz.p.michalsosn.io.SoundIO;
 import pl.lodz.p.michalsosn.repository.OperationRepository;
 import pl.lodz.p.michalsosn.repository.ProcessRepository;
 import pl.lodz.p.michalsosn.rest.support.*;
 import pl.lodz.p.michalsosn.security.OwnerOnly;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -53,17 +53,21 @@ public class ResultService {
         );
     }
 
-    public byte[] getResultAsPng(String username, String processName,
-                                 long operationId, String resultName)
+    public ByteBuffer getResultAsPng(String username, String processName,
+                                     long operationId, String resultName)
             throws IOException {
         ResultEntity result = findResult(username, processName, operationId, resultName);
 
         switch (result.getType()) {
             case IMAGE:
-                return ((ResultEntity.ImageResultEntity) result).getData();
+                return ((ResultEntity.ImageResultEntity) result)
+                        .getCompactPng();
             case IMAGE_SPECTRUM:
                 return ((ResultEntity.ImageSpectrumResultEntity) result)
-                        .getPresentationData();
+                        .getPresentationData().read();
+            case IMAGE_TILES:
+                return ((ResultEntity.ImageTilesResultEntity) result)
+                        .getTiles().getPreview();
             case IMAGE_MASK:
                 Mask mask = ((ResultEntity.ImageMaskResultEntity) result)
                         .getMask();
@@ -71,37 +75,44 @@ public class ResultService {
                         mask.getHeight(), mask.getWidth(), Image.MAX_VALUE
                 ));
                 Image maskImage = image.map(mask.toOperator());
-                return BufferedImageIO.toByteArray(BufferedImageIO.fromImage(maskImage));
+                return ByteBuffer.wrap(BufferedImageIO.toByteArray(
+                        BufferedImageIO.fromImage(maskImage)
+                ));
             default:
                 throw new NoSuchElementException("Result of wrong type");
         }
     }
 
-    public byte[] getResultAsWave(String username, String processName,
-                                  long operationId, String resultName)
+    /**
+     * PNG bytes of a tile of the result, read without decoding the others.
+     */
+    public ByteBuffer getResultTile(String username, String processName,
+                                    long operationId, String resultName,
+                                    int level, int row, int column)
             throws IOException {
-        return getAudioResult(
-                username, processName, operationId, resultName, SoundIO.AudioType.WAVE
-        );
-    }
+        ResultEntity result = findResult(username, processName, operationId, resultName);
 
-    public byte[] getResultAsFlac(String username, String processName,
-                                  long operationId, String resultName)
-            throws IOException {
-        return getAudioResult(
-                username, processName, operationId, resultName, SoundIO.AudioType.FLAC
-        );
+        switch (result.getType()) {
+            case IMAGE_TILES:
+                return ((ResultEntity.ImageTilesResultEntity) result)
+                        .getTiles().getTile(level, row, column);
+            default:
+                throw new NoSuchElementException("Result of wrong type");
+        }
     }
 
-    private byte[] getAudioResult(String username, String processName,
-                                 long operationId, String resultName,
-                                 SoundIO.AudioType type) throws IOException {
+    /**
+     * Sound of the result, its samples are decoded as they are read, so
+     * that sending a part of it decodes only that part.
+     */
+    public Sound getSoundResult(String username, String processName,
+                                long operationId, String resultName)
+            throws IOException {
         ResultEntity result = findResult(username, processName, operationId, resultName);
 
         switch (result.getType()) {
             case SOUND:
-                Sound sound = ((ResultEntity.SoundResultEntity) result).getSound();
-                return SoundIO.writeSound(sound, type);
+                return ((ResultEntity.SoundResultEntity) result).viewSound();
             default:
                 throw new NoSuchElementException("Result of wrong type");
         }
@@ -135,8 +146,12 @@ public class ResultService {
         }
     }
 
+    /**
+     * The result to be viewed, with its values stored if they were deferred.
+     */
     private ResultEntity findResult(String username, String processName,
-                                    long operationId, String resultName) {
+                                    long operationId, String resultName)
+            throws IOException {
         ProcessEntity process = processRepository
                 .findByAccountUsernameAndName(username, processName).get();
         OperationEntity operation = operationRepository
@@ -145,6 +160,7 @@ public class ResultService {
         if (result == null)  {
             throw new NoSuchElementException("Result not found");
         }
+        result.materialize();
         return result;
     }
 
@@ -9,6 +9,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 import pl.lodz.p.michalsosn.entities.AccountEntity;
 import pl.lodz.p.michalsosn.entities.SoundEntity;
 import pl.lodz.p.michalsosn.io.SoundIO;
@@ -57,11 +58,14 @@ public class SoundService {
         return sound.getData();
     }
 
-    public byte[] getSoundAsFlac(String username, String name) throws IOException {
+    /**
+     * Decoded sound, so that it can be encoded as it's sent.
+     */
+    public Sound getSound(String username, String name) throws IOException {
         SoundEntity sound = soundRepository
                 .findByAccountUsernameAndName(username, name)
                 .get();
-        return SoundIO.convertAudio(sound.getData(), SoundIO.AudioType.FLAC);
+        return SoundIO.readSound(sound.getData());
     }
 
     @OwnerOnly
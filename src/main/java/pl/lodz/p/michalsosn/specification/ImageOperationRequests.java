@@ -4,9 +4,11 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import pl.lodz.p.michalsosn.domain.image.channel.*;
 import pl.lodz.p.michalsosn.domain.image.statistic.Errors;
 import pl.lodz.p.michalsosn.domain.image.transform.ColorConversions;
+import pl.lodz.p.michalsosn.domain.image.transform.CompassEdges;
 import pl.lodz.p.michalsosn.domain.image.transform.Kernel;
 import pl.lodz.p.michalsosn.domain.image.transform.NoiseFilters;
 import pl.lodz.p.michalsosn.domain.image.transform.segmentation.Mask;
+import pl.lodz.p.michalsosn.domain.image.transform.segmentation.Segmentation;
 import pl.lodz.p.michalsosn.domain.image.transform.segmentation.Segmentations;
 import pl.lodz.p.michalsosn.domain.util.ArrayUtils;
 import pl.lodz.p.michalsosn.entities.ImageEntity;
@@ -19,11 +21,13 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 import java.util.function.UnaryOperator;
 
 import static pl.lodz.p.michalsosn.domain.Lift.lift;
 import static pl.lodz.p.michalsosn.domain.image.statistic.Histograms.valueHistogram;
 import static pl.lodz.p.michalsosn.domain.image.statistic.Histograms.valueHistogramRunningTotal;
+import static pl.lodz.p.michalsosn.domain.image.transform.ChannelOps.compassOperator;
 import static pl.lodz.p.michalsosn.domain.image.transform.ChannelOps.convolution;
 import static pl.lodz.p.michalsosn.domain.image.transform.ChannelOps.kirschOperator;
 import static pl.lodz.p.michalsosn.domain.image.transform.HistogramAdjustments.hyperbolicDensity;
@@ -37,6 +41,7 @@ import static pl.lodz.p.michalsosn.entities.ResultEntity.*;
 public final class ImageOperationRequests {
 
     private static final String IMAGE_ENTRY = "image";
+    private static final int MAX_SEGMENTATION_MASKS = 20;
 
     private ImageOperationRequests() {
     }
@@ -64,12 +69,37 @@ public final class ImageOperationRequests {
         }
     }
 
-    public static class NegateRequest extends OperationRequest {
+    /**
+     * Pointwise operation on every channel of an image. Channels keep their
+     * values as bytes, so only the lowest eight bits of mapped values stay.
+     */
+    public abstract static class PointwiseImageRequest
+            extends PointwiseOperationRequest {
 
         @Override
         protected void execute(Map<String, ResultEntity> results,
-                               ResultEntity last) throws IOException {
-            transformDomainImage(results, last, lift(lift(negate())));
+                               ResultEntity last) {
+            if (!(last instanceof ImageResultEntity)) {
+                throw new IllegalArgumentException(
+                        "Last result " + getLastResult() + " isn't an image"
+                );
+            }
+            results.put(IMAGE_ENTRY, ImageResultEntity.deferred());
+        }
+
+        @Override
+        public IntUnaryOperator getValueMapper() {
+            return getChannelMapper().andThen(value -> value & Image.MAX_VALUE);
+        }
+
+        protected abstract IntUnaryOperator getChannelMapper();
+    }
+
+    public static class NegateRequest extends PointwiseImageRequest {
+
+        @Override
+        protected IntUnaryOperator getChannelMapper() {
+            return negate();
         }
 
         @Override
@@ -78,16 +108,12 @@ public final class ImageOperationRequests {
         }
     }
 
-    public static class ChangeBrightnessRequest extends OperationRequest {
+    public static class ChangeBrightnessRequest extends PointwiseImageRequest {
         private int change;
 
         @Override
-        protected void execute(Map<String, ResultEntity> results,
-                               ResultEntity last) throws IOException {
-            transformDomainImage(
-                    results, last,
-                    lift(lift(precalculating(changeBrightness(change))))
-            );
+        protected IntUnaryOperator getChannelMapper() {
+            return changeBrightness(change);
         }
 
         @Override
@@ -100,16 +126,12 @@ public final class ImageOperationRequests {
         }
     }
 
-    public static class ChangeContrastRequest extends OperationRequest {
+    public static class ChangeContrastRequest extends PointwiseImageRequest {
         private double change;
 
         @Override
-        protected void execute(Map<String, ResultEntity> results,
-                               ResultEntity last) throws IOException {
-            transformDomainImage(
-                    results, last,
-                    lift(lift(precalculating(changeContrast(change))))
-            );
+        protected IntUnaryOperator getChannelMapper() {
+            return changeContrast(change);
         }
 
         @Override
@@ -122,16 +144,12 @@ public final class ImageOperationRequests {
         }
     }
 
-    public static class ClipBelowRequest extends OperationRequest {
+    public static class ClipBelowRequest extends PointwiseImageRequest {
         private int threshold;
 
         @Override
-        protected void execute(Map<String, ResultEntity> results,
-                               ResultEntity last) throws IOException {
-            transformDomainImage(
-                    results, last,
-                    lift(lift(precalculating(clipBelow(threshold))))
-            );
+        protected IntUnaryOperator getChannelMapper() {
+            return clipBelow(threshold);
         }
 
         @Override
@@ -193,7 +211,7 @@ public final class ImageOperationRequests {
             } else {
                 transformDomainImage(
                         results, last,
-                        lift(NoiseFilters.medianRunning(range))
+                        lift(NoiseFilters.medianConstantTime(range))
                 );
             }
         }
@@ -269,8 +287,7 @@ public final class ImageOperationRequests {
 
         protected void execute(Map<String, ResultEntity> results,
                                ResultEntity last) throws IOException {
-            BufferedImage bufferedImage = ((ImageResultEntity) last).getImage();
-            Image domainImage = BufferedImageIO.toImage(bufferedImage);
+            Image domainImage = ((ImageResultEntity) last).getDomainImage();
             Map<String, Channel> channelMap = domainImage.getChannels();
 
             if (!runningTotal) {
@@ -336,6 +353,26 @@ public final class ImageOperationRequests {
 
     }
 
+    public static class CompassOperatorRequest extends OperationRequest {
+
+        private CompassEdges.CompassSet kernels;
+
+        protected void execute(Map<String, ResultEntity> results,
+                               ResultEntity last) throws IOException {
+            transformDomainImage(results, last,
+                                 lift(compassOperator(kernels)));
+        }
+
+        @Override
+        public OperationSpecification getSpecification() {
+            return OperationSpecification.COMPASS_OPERATOR;
+        }
+
+        public CompassEdges.CompassSet getKernels() {
+            return kernels;
+        }
+    }
+
     public static class ErrorMeasurementRequest extends OperationRequest {
 
         private String image;
@@ -345,10 +382,8 @@ public final class ImageOperationRequests {
         @Override
         protected void execute(Map<String, ResultEntity> results,
                                ResultEntity last) throws IOException {
-            BufferedImage bufferedResult
-                    = ((ImageResultEntity) last).getImage();
+            Image actualImage = ((ImageResultEntity) last).getDomainImage();
             BufferedImage bufferedArgument = imageEntity.getImage();
-            Image actualImage = BufferedImageIO.toImage(bufferedResult);
             Image expectedImage = BufferedImageIO.toImage(bufferedArgument);
 
             results.put("MSE", new DoubleResultEntity(
@@ -403,31 +438,22 @@ public final class ImageOperationRequests {
         @Override
         protected void execute(Map<String, ResultEntity> results,
                                ResultEntity last) throws Exception {
-            BufferedImage bufferedImage = ((ImageResultEntity) last).getImage();
-            Image domainImage = BufferedImageIO.toImage(bufferedImage);
+            Image domainImage = ((ImageResultEntity) last).getDomainImage();
 
             AudaciousConsumerAdapter<GrayImage> grayConsumer =
                     new AudaciousConsumerAdapter<>(grayImage ->
-                            results.put("Gray",
-                                    new ImageResultEntity(bufferedImage)
-                            )
+                            results.put("Gray", new ImageResultEntity(grayImage))
                     );
             AudaciousConsumerAdapter<RgbImage> rgbConsumer =
                     new AudaciousConsumerAdapter<>(rgbImage -> {
                         results.put("Red", new ImageResultEntity(
-                                BufferedImageIO.fromImage(
-                                        ColorConversions.extractRed(rgbImage)
-                                )
+                                ColorConversions.extractRed(rgbImage)
                         ));
                         results.put("Green", new ImageResultEntity(
-                                BufferedImageIO.fromImage(
-                                        ColorConversions.extractGreen(rgbImage)
-                                )
+                                ColorConversions.extractGreen(rgbImage)
                         ));
                         results.put("Blue", new ImageResultEntity(
-                                BufferedImageIO.fromImage(
-                                        ColorConversions.extractBlue(rgbImage)
-                                )
+                                ColorConversions.extractBlue(rgbImage)
                         ));
                     });
             domainImage.accept(ImageVisitor.imageVisitor(
@@ -452,17 +478,12 @@ public final class ImageOperationRequests {
         @Override
         protected void execute(Map<String, ResultEntity> results,
                                ResultEntity last) throws Exception {
-            BufferedImage bufferedImage = ((ImageResultEntity) last).getImage();
-            Image domainImage = BufferedImageIO.toImage(bufferedImage);
+            Image domainImage = ((ImageResultEntity) last).getDomainImage();
 
-            Mask[] masks = Segmentations.splitMergeImageMaxRange(domainImage, maxRange);
+            Segmentation segmentation
+                    = Segmentations.splitMergeImageMaxRange(domainImage, maxRange);
 
-            results.put("mask-count", new IntegerResultEntity(masks.length));
-            if (!countOnly) {
-                for (int i = 0; i < Math.min(masks.length, 20); ++i) {
-                    results.put("mask-" + i, new ImageMaskResultEntity(masks[i]));
-                }
-            }
+            putSegmentation(results, segmentation, countOnly);
         }
 
         @Override
@@ -487,17 +508,12 @@ public final class ImageOperationRequests {
         @Override
         protected void execute(Map<String, ResultEntity> results,
                                ResultEntity last) throws Exception {
-            BufferedImage bufferedImage = ((ImageResultEntity) last).getImage();
-            Image domainImage = BufferedImageIO.toImage(bufferedImage);
+            Image domainImage = ((ImageResultEntity) last).getDomainImage();
 
-            Mask[] masks = Segmentations.splitMergeImageMaxStdDev(domainImage, maxStdDev);
+            Segmentation segmentation
+                    = Segmentations.splitMergeImageMaxStdDev(domainImage, maxStdDev);
 
-            results.put("mask-count", new IntegerResultEntity(masks.length));
-            if (!countOnly) {
-                for (int i = 0; i < Math.min(masks.length, 20); ++i) {
-                    results.put("mask-" + i, new ImageMaskResultEntity(masks[i]));
-                }
-            }
+            putSegmentation(results, segmentation, countOnly);
         }
 
         @Override
@@ -548,12 +564,24 @@ public final class ImageOperationRequests {
             Map<String, ResultEntity> results, ResultEntity last,
             UnaryOperator<Image> action
     ) throws IOException {
-        BufferedImage bufferedImage = ((ImageResultEntity) last).getImage();
-        Image domainImage = BufferedImageIO.toImage(bufferedImage);
+        Image domainImage = ((ImageResultEntity) last).getDomainImage();
         Image domainResult = action.apply(domainImage);
-        BufferedImage bufferedResult = BufferedImageIO.fromImage(domainResult);
 
-        results.put(IMAGE_ENTRY, new ImageResultEntity(bufferedResult));
+        results.put(IMAGE_ENTRY, new ImageResultEntity(domainResult));
+    }
+
+    private static void putSegmentation(
+            Map<String, ResultEntity> results, Segmentation segmentation,
+            boolean countOnly
+    ) {
+        results.put("mask-count",
+                    new IntegerResultEntity(segmentation.getClassCount()));
+        if (!countOnly) {
+            Mask[] masks = segmentation.toMasks(MAX_SEGMENTATION_MASKS);
+            for (int i = 0; i < masks.length; ++i) {
+                results.put("mask-" + i, new ImageMaskResultEntity(masks[i]));
+            }
+        }
     }
 
 }
@@ -41,8 +41,7 @@ public final class ImageSpectrumOperationRequests {
         @Override
         protected void execute(Map<String, ResultEntity> results,
                                ResultEntity last) throws Exception {
-            BufferedImage bufferedImage = ((ImageResultEntity) last).getImage();
-            Image domainImage = BufferedImageIO.toImage(bufferedImage);
+            Image domainImage = ((ImageResultEntity) last).getDomainImage();
 
             Map<String, Channel> channels = domainImage.getChannels();
             Record<Map<String, Spectrum2d>> spectra = new Record<>(null);
@@ -93,10 +92,7 @@ public final class ImageSpectrumOperationRequests {
             log.info("Pure 2D IFFT executed in " + duration);
 
             Image result = Image.fromChannels(invertedChannels.get());
-            BufferedImage bufferedResult = BufferedImageIO.fromImage(result);
-            results.put(IMAGE_ENTRY,
-                    new ImageResultEntity(bufferedResult)
-            );
+            results.put(IMAGE_ENTRY, new ImageResultEntity(result));
         }
 
         @Override
@@ -127,9 +123,7 @@ public final class ImageSpectrumOperationRequests {
             for (String name : extractedChannels.keySet()) {
                 Channel channel = extractedChannels.get(name);
                 GrayImage valueImage = new GrayImage(channel);
-                BufferedImage bufferedResult
-                        = BufferedImageIO.fromImage(valueImage);
-                results.put(name, new ImageResultEntity(bufferedResult));
+                results.put(name, new ImageResultEntity(valueImage));
             }
         }
 
@@ -160,9 +154,7 @@ public final class ImageSpectrumOperationRequests {
             for (String name : extractedChannels.keySet()) {
                 Channel channel = extractedChannels.get(name);
                 GrayImage valueImage = new GrayImage(channel);
-                BufferedImage bufferedResult
-                        = BufferedImageIO.fromImage(valueImage);
-                results.put(name, new ImageResultEntity(bufferedResult));
+                results.put(name, new ImageResultEntity(valueImage));
             }
         }
 
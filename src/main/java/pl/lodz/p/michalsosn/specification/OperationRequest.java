@@ -43,6 +43,8 @@ import static com.fasterxml.jackson.annotation.JsonSubTypes.Type;
               value = ImageOperationRequests.ConvolutionRequest.class),
         @Type(name = "KIRSCH_OPERATOR",
               value = ImageOperationRequests.KirschOperatorRequest.class),
+        @Type(name = "COMPASS_OPERATOR",
+              value = ImageOperationRequests.CompassOperatorRequest.class),
         @Type(name = "ERROR_MEASUREMENT",
               value = ImageOperationRequests.ErrorMeasurementRequest.class),
         @Type(name = "TO_GRAYSCALE_CONVERSION",
@@ -3,6 +3,7 @@ package pl.lodz.p.michalsosn.specification;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.context.ApplicationContext;
+import pl.lodz.p.michalsosn.domain.image.transform.CompassEdges;
 import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 import pl.lodz.p.michalsosn.domain.sound.transform.Correlations;
 import pl.lodz.p.michalsosn.domain.sound.transform.Windows;
@@ -29,6 +30,7 @@ import static pl.lodz.p.michalsosn.specification.ImageSpectrumOperationRequests.
 public enum OperationSpecification {
     LOAD_IMAGE(LoadImageRequest.class, self ->
         self.inCategory("Image")
+        .readingNoParent()
         .withImageParam("Image", "imageEntity", "image")),
     NEGATE(NegateRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE)
@@ -53,6 +55,7 @@ public enum OperationSpecification {
     MEDIAN_FILTER(MedianFilterRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE)
         .inCategory("Image")
+        .withCpuWeight(4)
         .withIntegerParam("range", 0, 30)
         .withBooleanParam("use sliding window algorithm", "runningWindow")),
     UNIFORM_DENSITY(UniformDensityRequest.class, self ->
@@ -72,11 +75,18 @@ public enum OperationSpecification {
     CONVOLUTION(ConvolutionRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE)
         .inCategory("Image")
+        .withCpuWeight(4)
         .withMatrixParam("kernel")
         .withBooleanParam("keep size", "keepSize")),
     KIRSCH_OPERATOR(KirschOperatorRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE)
-        .inCategory("Image")),
+        .inCategory("Image")
+        .withCpuWeight(4)),
+    COMPASS_OPERATOR(CompassOperatorRequest.class, self ->
+        self.acceptingTypes(ResultType.IMAGE)
+        .inCategory("Image")
+        .withCpuWeight(4)
+        .withEnumParam("kernels", CompassEdges.CompassSet.class)),
     ERROR_MEASUREMENT(ErrorMeasurementRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE)
         .inCategory("Image")
@@ -90,11 +100,13 @@ public enum OperationSpecification {
     SPLIT_MERGE_MAX_RANGE(SplitMergeMaxRangeRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE_MASK)
         .inCategory("Image 2")
+        .withCpuWeight(8)
         .withIntegerParam("maxRange", MIN_VALUE, MAX_VALUE)
         .withBooleanParam("countOnly")),
     SPLIT_MERGE_MAX_STDDEV(SplitMergeMaxStdDevRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE_MASK)
         .inCategory("Image 2")
+        .withCpuWeight(8)
         .withDoubleParam("maxStdDev", 0, 128.0)
         .withBooleanParam("countOnly")),
     APPLY_IMAGE_MASK(ApplyImageMaskRequest.class, self ->
@@ -104,11 +116,13 @@ public enum OperationSpecification {
     DIT_FFT(DitFftRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE)
         .withDescription("DIT FFT")
-        .inCategory("Image 2")),
+        .inCategory("Image 2")
+        .withCpuWeight(8)),
     INVERSE_DIT_FFT(InverseDitFftRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE_SPECTRUM)
         .withDescription("Inverse DIT FFT")
-        .inCategory("Image 2")),
+        .inCategory("Image 2")
+        .withCpuWeight(8)),
     EXTRACT_RE_IM_PARTS(ExtractReImPartsRequest.class, self ->
         self.acceptingTypes(ResultType.IMAGE_SPECTRUM)
         .withDescription("Extract real and imaginary parts")
@@ -153,9 +167,11 @@ public enum OperationSpecification {
         .withBooleanParam("preserveMean")),
     LOAD_SOUND(LoadSoundRequest.class, self ->
         self.inCategory("Sound")
+        .readingNoParent()
         .withSoundParam("Sound", "soundEntity", "sound")),
     GENERATE_SINE_SOUND(GenerateSineSoundRequest.class, self ->
         self.inCategory("Sound")
+        .readingNoParent()
         .withIntegerParam("Amplitude", "amplitude", 0, Sound.MAX_VALUE - MID_VALUE)
         .withDoubleParam("Basic frequency (Hz)", "basicFrequency",
                          0.0, Constants.FREQUENCY_LIMIT, 1000.0)
@@ -196,14 +212,17 @@ public enum OperationSpecification {
     AUTOCORRELATION(AutocorrelationRequest.class, self ->
         self.acceptingTypes(ResultType.SOUND)
         .withEnumParam("type", Correlations.CorrelationType.class)
-        .inCategory("Sound")),
+        .inCategory("Sound")
+        .withCpuWeight(8)),
     CEPSTRUM(CepstrumRequest.class, self ->
         self.acceptingTypes(ResultType.SOUND)
-        .inCategory("Sound")),
+        .inCategory("Sound")
+        .withCpuWeight(4)),
     BASIC_FREQUENCY(BasicFrequencyRequest.class, self ->
         self.acceptingTypes(ResultType.SOUND)
         .withDescription("Find basic frequency")
         .inCategory("Sound")
+        .withCpuWeight(8)
         .withEnumParam("method", BasicFrequencyRequest.Method.class)
         .withEnumParam("window", Windows.Window.class)
         .withDoubleParam("Threshold", "threshold", 0.0, 1.0, 0.9)
@@ -213,13 +232,16 @@ public enum OperationSpecification {
         self.acceptingTypes(ResultType.SOUND, ResultType.SOUND_SPECTRUM,
                             ResultType.SIGNAL, ResultType.SOUND_FILTER)
         .withDescription("DIT FFT")
-        .inCategory("Sound 2")),
+        .inCategory("Sound 2")
+        .withCpuWeight(4)),
     SOUND_INVERSE_DIT_FFT(SoundInverseDitFftRequest.class, self ->
         self.acceptingTypes(ResultType.SOUND_SPECTRUM)
         .withDescription("Inverse DIT FFT")
-        .inCategory("Sound 2")),
+        .inCategory("Sound 2")
+        .withCpuWeight(4)),
     GENERATE_SINC(GenerateSincRequest.class, self ->
         self.inCategory("Sound 2")
+        .readingNoParent()
         .withDoubleParam("Cutoff frequency (Hz)", "cutoffFrequency",
                          0.0, Constants.FREQUENCY_LIMIT, 1000.0)
         .withDoubleParam("Sampling frequency (Hz)", "samplingFrequency",
@@ -235,6 +257,7 @@ public enum OperationSpecification {
     ),
     FILTER_IN_TIME(FilterInTimeRequest.class, self ->
         self.inCategory("Sound 2")
+        .withCpuWeight(4)
         .withDoubleParam("Cutoff frequency (Hz)", "cutoffFrequency",
                 0.0, Constants.FREQUENCY_LIMIT, 1000.0)
         .withIntegerParam("Filter length", "filterLength", 0, Constants.LENGTH_LIMIT, 128)
@@ -242,6 +265,7 @@ public enum OperationSpecification {
         .withBooleanParam("causal")),
     FILTER_OVERLAP_ADD(FilterOverlapAddRequest.class, self ->
         self.inCategory("Sound 2")
+        .withCpuWeight(4)
         .withDoubleParam("Cutoff frequency (Hz)", "cutoffFrequency",
                          0.0, Constants.FREQUENCY_LIMIT, 1000.0)
         .withIntegerParam("Filter length", "filterLength",
@@ -255,6 +279,7 @@ public enum OperationSpecification {
         .withEnumParam("Window window", "windowWindow", Windows.Window.class)),
     EQUALIZER_10_BAND(Equalizer10BandRequest.class, self ->
         self.inCategory("Sound 2")
+        .withCpuWeight(8)
         .withIntegerParam("Window length", "windowLength",
                           0, Constants.LENGTH_LIMIT, 2048)
         .withIntegerParam("Hop size", "hopSize", 0, Constants.LENGTH_LIMIT, 2048)
@@ -274,10 +299,12 @@ public enum OperationSpecification {
         .withDoubleParam("Amplification 10240-20480", "amplification9", -20, 20)),
     SPECTROGRAM(SpectrogramRequest.class, self ->
         self.inCategory("Sound 2")
+        .withCpuWeight(4)
         .withIntegerParam("Window length", "windowLength", 1, 2048, 512)),
     WAH_WAH(WahWahRequest.class, self ->
         self.withDescription("Wah-wah")
         .inCategory("Sound 2")
+        .withCpuWeight(8)
         .withIntegerParam("Window length", "windowLength",
                           0, Constants.LENGTH_LIMIT, 2048)
         .withIntegerParam("Hop size", "hopSize", 0, Constants.LENGTH_LIMIT, 2048)
@@ -306,6 +333,8 @@ public enum OperationSpecification {
     private final Map<String, ParameterSpecification> parameters = new TreeMap<>();
     private String description;
     private String category;
+    private int cpuWeight = 1;
+    private boolean readingParent = true;
 
     OperationSpecification(
             Class requestClass, Consumer<OperationSpecification> configurer
@@ -330,6 +359,24 @@ public enum OperationSpecification {
         return this;
     }
 
+    /**
+     * Estimated cost relative to the simplest point operations, which
+     * weigh 1.
+     */
+    private OperationSpecification withCpuWeight(int cpuWeight) {
+        this.cpuWeight = cpuWeight;
+        return this;
+    }
+
+    /**
+     * Marks operations which make their results from the arguments alone,
+     * so they don't wait for the operations before them.
+     */
+    private OperationSpecification readingNoParent() {
+        this.readingParent = false;
+        return this;
+    }
+
     private OperationSpecification withBooleanParam(
             String description, String name
     ) {
@@ -495,6 +542,22 @@ public enum OperationSpecification {
         return category;
     }
 
+    public int getCpuWeight() {
+        return cpuWeight;
+    }
+
+    public boolean isReadingParent() {
+        return readingParent;
+    }
+
+    /**
+     * Whether operations map every value on its own, so that runs of them
+     * are evaluated in one pass.
+     */
+    public boolean isPointwise() {
+        return PointwiseOperationRequest.class.isAssignableFrom(requestClass);
+    }
+
     public OperationEntity entitize(OperationRequest request,
                                     ProcessEntity process,
                                     ApplicationContext context,
@@ -0,0 +1,94 @@
+package pl.lodz.p.michalsosn.specification;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import pl.lodz.p.michalsosn.entities.OperationEntity;
+import pl.lodz.p.michalsosn.entities.ResultEntity;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Request of an operation which maps every value of the result before it
+ * on its own. Operations followed by another such operation leave deferred
+ * results without values, the last operation of a run evaluates the values
+ * of the whole run in one pass over the result before the run. Deferred
+ * results are evaluated in memory when they're read and stored once
+ * they're viewed.
+ * @author Michał Sośnicki
+ */
+public abstract class PointwiseOperationRequest extends OperationRequest {
+
+    /**
+     * Mapping of a single value to the one the result keeps.
+     */
+    @JsonIgnore
+    public abstract IntUnaryOperator getValueMapper();
+
+    @Override
+    public void execute(OperationEntity entity, OperationEntity parent)
+            throws Exception {
+        super.execute(entity, parent);
+        OperationEntity child = entity.getChild();
+        boolean continued = child != null && child.isReadingParent()
+                && child.getSpecification().isPointwise();
+        if (!continued) {
+            for (ResultEntity result : entity.getResults().values()) {
+                result.materialize();
+            }
+        }
+    }
+
+    /**
+     * The run of pointwise operations ending with the deferred result.
+     * @throws IllegalStateException when a result the run starts from
+     *                               isn't available
+     */
+    public static FusedRun runOf(ResultEntity deferred) {
+        IntUnaryOperator valueMapper = IntUnaryOperator.identity();
+        ResultEntity result = deferred;
+        while (result.isDeferred()) {
+            OperationEntity operation = result.getOperation();
+            if (!operation.isReadingParent()
+                    || !operation.getSpecification().isPointwise()) {
+                throw new IllegalStateException(
+                        "Result of operation " + operation.getId()
+                      + " can't be deferred"
+                );
+            }
+            OperationRequest request = operation.dentitize();
+            valueMapper = ((PointwiseOperationRequest) request)
+                    .getValueMapper().andThen(valueMapper);
+            OperationEntity parent = operation.getParent();
+            result = parent.getResults().get(request.getLastResult());
+            if (result == null) {
+                throw new IllegalStateException(
+                        "Result " + request.getLastResult() + " of operation "
+                      + parent.getId() + " isn't available"
+                );
+            }
+        }
+        return new FusedRun(result, valueMapper);
+    }
+
+    /**
+     * Result a run of pointwise operations starts from and the mapping of
+     * values of all of them.
+     */
+    public static final class FusedRun {
+        private final ResultEntity source;
+        private final IntUnaryOperator valueMapper;
+
+        private FusedRun(ResultEntity source, IntUnaryOperator valueMapper) {
+            this.source = source;
+            this.valueMapper = valueMapper;
+        }
+
+        public ResultEntity getSource() {
+            return source;
+        }
+
+        public IntUnaryOperator getValueMapper() {
+            return valueMapper;
+        }
+    }
+
+}
@@ -17,9 +17,9 @@ import pl.lodz.p.michalsosn.io.SoundIO;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.function.IntUnaryOperator;
 import java.util.function.UnaryOperator;
 
-import static pl.lodz.p.michalsosn.domain.Lift.lift;
 import static pl.lodz.p.michalsosn.domain.sound.transform.Extensions.*;
 import static pl.lodz.p.michalsosn.domain.sound.transform.SampleOps.clipAbove;
 import static pl.lodz.p.michalsosn.domain.sound.transform.SampleOps.scaleValue;
@@ -105,13 +105,30 @@ public final class SoundOperationRequests {
         }
     }
 
-    public static class ScaleValueRequest extends OperationRequest {
-        private double change;
+    /**
+     * Pointwise operation on the samples of a sound.
+     */
+    public abstract static class PointwiseSoundRequest
+            extends PointwiseOperationRequest {
 
         @Override
         protected void execute(Map<String, ResultEntity> results,
-                               ResultEntity last) throws IOException {
-            transformSound(results, last, lift(scaleValue(change)));
+                               ResultEntity last) {
+            if (!(last instanceof SoundResultEntity)) {
+                throw new IllegalArgumentException(
+                        "Last result " + getLastResult() + " isn't a sound"
+                );
+            }
+            results.put(SOUND_ENTRY, SoundResultEntity.deferred());
+        }
+    }
+
+    public static class ScaleValueRequest extends PointwiseSoundRequest {
+        private double change;
+
+        @Override
+        public IntUnaryOperator getValueMapper() {
+            return scaleValue(change);
         }
 
         @Override
@@ -124,13 +141,12 @@ public final class SoundOperationRequests {
         }
     }
 
-    public static class ClipAboveRequest extends OperationRequest {
+    public static class ClipAboveRequest extends PointwiseSoundRequest {
         private int threshold;
 
         @Override
-        protected void execute(Map<String, ResultEntity> results,
-                               ResultEntity last) throws IOException {
-            transformSound(results, last, lift(clipAbove(threshold)));
+        public IntUnaryOperator getValueMapper() {
+            return clipAbove(threshold);
         }
 
         @Override
@@ -2,13 +2,9 @@ package pl.lodz.p.michalsosn.specification;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import pl.lodz.p.michalsosn.domain.complex.Complex;
+import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
 import pl.lodz.p.michalsosn.domain.image.channel.Channel;
 import pl.lodz.p.michalsosn.domain.image.channel.GrayImage;
-import pl.lodz.p.michalsosn.domain.image.channel.Image;
-import pl.lodz.p.michalsosn.domain.image.spectrum.BufferSpectrum2d;
-import pl.lodz.p.michalsosn.domain.image.spectrum.Spectrum2d;
-import pl.lodz.p.michalsosn.domain.image.transform.*;
 import pl.lodz.p.michalsosn.domain.sound.TimeRange;
 import pl.lodz.p.michalsosn.domain.sound.filter.Filter;
 import pl.lodz.p.michalsosn.domain.sound.signal.Signal;
@@ -18,14 +14,14 @@ import pl.lodz.p.michalsosn.domain.sound.transform.*;
 import pl.lodz.p.michalsosn.domain.sound.transform.DitFastFourierTransform;
 import pl.lodz.p.michalsosn.domain.sound.transform.Filters;
 import pl.lodz.p.michalsosn.entities.ResultEntity;
+import pl.lodz.p.michalsosn.entities.ResultEntity.ImageTilesResultEntity;
 import pl.lodz.p.michalsosn.entities.ResultEntity.NoteSequenceResultEntity;
 import pl.lodz.p.michalsosn.entities.ResultEntity.SignalResultEntity;
 import pl.lodz.p.michalsosn.entities.ResultEntity.SoundFilterResultEntity;
 import pl.lodz.p.michalsosn.entities.ResultEntity.SoundSpectrumResultEntity;
-import pl.lodz.p.michalsosn.io.BufferedImageIO;
+import pl.lodz.p.michalsosn.io.ImageTiles;
 import pl.lodz.p.michalsosn.util.Timed;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.List;
@@ -491,6 +487,11 @@ public final class SoundSpectrumOperationRequests {
 
     public static class SpectrogramRequest extends OperationRequest {
 
+        /**
+         * Wider spectrograms are only kept as tiles.
+         */
+        public static final int MAX_IMAGE_WIDTH = 4096;
+
         private int windowLength;
 
         @Override
@@ -498,13 +499,21 @@ public final class SoundSpectrumOperationRequests {
                                ResultEntity last) throws IOException {
             Sound sound = ((SoundResultEntity) last).getSound();
 
-            final Complex[][] spectrogram = Spectrograms.spectrogram(windowLength, sound);
-            final Spectrum2d spectrum = new BufferSpectrum2d(spectrogram);
-            final Channel channel = SpectrumConversions.spectrumToAbs(spectrum);
-            final Image image = new GrayImage(channel);
-            final BufferedImage bufferedImage = BufferedImageIO.fromImage(image);
+            final float[][] magnitudes = Spectrograms.magnitudes(windowLength, sound);
+            final byte[][] gray = Spectrograms.toGray(magnitudes);
+            if (gray[0].length == 0) {
+                throw new IllegalArgumentException("Sound must not be empty.");
+            }
 
-            results.put("spectrogram", new ImageResultEntity(bufferedImage));
+            results.put("spectrogram_tiles",
+                        new ImageTilesResultEntity(ImageTiles.ofGray(gray)));
+            if (gray[0].length <= MAX_IMAGE_WIDTH) {
+                final Channel channel = BufferChannel.construct(
+                        gray.length, gray[0].length, (y, x) -> gray[y][x] & 0xff
+                );
+                results.put("spectrogram",
+                            new ImageResultEntity(new GrayImage(channel)));
+            }
         }
 
         @Override
@@ -0,0 +1,35 @@
+package pl.lodz.p.michalsosn.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * @author Michał Sośnicki
+ */
+public final class Hashes {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Hashes() {
+    }
+
+    /**
+     * SHA-256 of the data as 64 lowercase hexadecimal digits.
+     */
+    public static String sha256(byte[] data) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(data);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is unavailable", ex);
+        }
+        final char[] hex = new char[2 * digest.length];
+        for (int i = 0; i < digest.length; ++i) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+}
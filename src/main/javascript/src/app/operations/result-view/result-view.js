@@ -68,9 +68,19 @@ angular.module('lampek.operations.result-view', [
       .map(function (_, i) {
         return i * value.duration + value.startTime;
       });
-    return [{
-      type: 'scatter', x: range, y: value.values
+    var data = [{
+      type: 'scatter', x: range, y: value.values, name: 'Envelope'
     }];
+    if (value.rms) {
+      data.push({
+        type: 'scatter', name: 'RMS',
+        x: value.rms.map(function (_, i) {
+          return (2 * i + 1) * value.duration + value.startTime;
+        }),
+        y: value.rms
+      });
+    }
+    return data;
   };
 
   return function (result, processName, operationId) {
@@ -122,9 +132,19 @@ angular.module('lampek.operations.result-view', [
     var serverStep = (value.end - value.start) / length;
     var range = Array.apply(null, Array(length))
       .map(function (_, i) { return i * serverStep + value.start; });
-    return [{
-      type: 'scatter', x: range, y: value.values
+    var data = [{
+      type: 'scatter', x: range, y: value.values, name: 'Envelope'
     }];
+    if (value.rms) {
+      data.push({
+        type: 'scatter', name: 'RMS',
+        x: value.rms.map(function (_, i) {
+          return (2 * i + 1) * serverStep + value.start;
+        }),
+        y: value.rms
+      });
+    }
+    return data;
   };
 
   var prepareSignalLayout = function (value) {
@@ -0,0 +1,88 @@
+package pl.lodz.p.michalsosn.domain.complex;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class FourierTest {
+
+    @Test
+    public void testSplitFftMatchesComplexFft() throws Exception {
+        Random random = new Random(17);
+        for (int length = 1; length <= 1024; length <<= 1) {
+            for (boolean inverse : new boolean[]{false, true}) {
+                double[] re = new double[length];
+                double[] im = new double[length];
+                Complex[] row = new Complex[length];
+                for (int i = 0; i < length; i++) {
+                    re[i] = random.nextInt(256);
+                    im[i] = random.nextDouble();
+                    row[i] = ReImComplex.of(re[i], im[i]);
+                }
+
+                Complex[] kernel = inverse
+                        ? Fourier.inverseBasis(length, length / 2)
+                        : Fourier.fourierBasis(length, length / 2);
+                Fourier.fft(row, kernel, inverse);
+                Fourier.fft(re, im, inverse, inverse);
+
+                for (int i = 0; i < length; i++) {
+                    assertThat(re[i], is(row[i].getRe()));
+                    assertThat(im[i], is(row[i].getIm()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFft2dMatchesDefinition() throws Exception {
+        int height = 4;
+        int width = 8;
+        Random random = new Random(3);
+        double[][] values = new double[height][width];
+        double[][] re = new double[height][width];
+        double[][] im = new double[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                values[y][x] = random.nextInt(256);
+                re[y][x] = values[y][x];
+            }
+        }
+
+        Fourier.fft2d(re, im, false, false);
+
+        for (int v = 0; v < height; v++) {
+            for (int u = 0; u < width; u++) {
+                double expectedRe = 0.0;
+                double expectedIm = 0.0;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        double phase = -2 * Math.PI
+                                * ((double) v * y / height + (double) u * x / width);
+                        expectedRe += values[y][x] * Math.cos(phase);
+                        expectedIm += values[y][x] * Math.sin(phase);
+                    }
+                }
+                assertThat(re[v][u], closeTo(expectedRe, 1e-6));
+                assertThat(im[v][u], closeTo(expectedIm, 1e-6));
+            }
+        }
+
+        Fourier.fft2d(re, im, true, true);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertThat(re[y][x], closeTo(values[y][x], 1e-9));
+                assertThat(im[y][x], closeTo(0.0, 1e-9));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package pl.lodz.p.michalsosn.domain.image.channel;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class PackedChannelTest {
+
+    private static final byte[] VALUES = {
+            0, 1, 2, (byte) 3,
+            4, 5, 6, (byte) 7,
+            8, 9, 10, (byte) 255
+    };
+
+    @Test
+    public void testCrop() throws Exception {
+        PackedChannel channel = new PackedChannel(3, 4, VALUES);
+
+        PackedChannel crop = channel.crop(1, 2, 2, 2);
+
+        assertThat(crop.copyValues(), is(new int[][]{{6, 7}, {10, 255}}));
+        assertThat(crop.crop(1, 1, 1, 1).getValue(0, 0), is(255));
+    }
+
+    @Test
+    public void testEqualToBufferChannel() throws Exception {
+        PackedChannel channel = new PackedChannel(3, 4, VALUES);
+        BufferChannel buffer = new BufferChannel(channel.copyValues());
+
+        assertThat(channel.equals(buffer), is(true));
+        assertThat(buffer.equals(channel), is(true));
+        assertThat(channel.hashCode(), is(buffer.hashCode()));
+        assertThat(channel.crop(0, 0, 2, 2),
+                   is(new BufferChannel(new int[][]{{0, 1}, {4, 5}})));
+    }
+
+    @Test
+    public void testConstructOutOfRange() throws Exception {
+        Channel packed = PackedChannel.construct(2, 3, (y, x) -> y + x);
+        Channel unpacked = PackedChannel.construct(2, 3, (y, x) -> y - x);
+
+        assertThat(packed, instanceOf(PackedChannel.class));
+        assertThat(unpacked, instanceOf(BufferChannel.class));
+        assertThat(unpacked.copyValues(),
+                   is(new int[][]{{0, -1, -2}, {1, 0, -1}}));
+    }
+
+}
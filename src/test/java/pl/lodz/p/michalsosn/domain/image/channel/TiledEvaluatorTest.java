@@ -0,0 +1,124 @@
+package pl.lodz.p.michalsosn.domain.image.channel;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.image.transform.NoiseFilters;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class TiledEvaluatorTest {
+
+    @Test
+    public void testEvaluateCoversAllTiles() throws Exception {
+        TiledEvaluator evaluator = new TiledEvaluator(16, 4);
+
+        int[][] values = evaluator.evaluate(37, 50, (y, x) -> y * 100 + x);
+
+        for (int y = 0; y < 37; y++) {
+            for (int x = 0; x < 50; x++) {
+                assertThat(values[y][x], is(y * 100 + x));
+            }
+        }
+    }
+
+    @Test
+    public void testNestedOperations() throws Exception {
+        TiledEvaluator evaluator = new TiledEvaluator(8, 3);
+        AtomicInteger rows = new AtomicInteger();
+
+        List<Integer> results = evaluator.mapAll(Arrays.asList(10, 20, 30),
+                height -> {
+                    evaluator.withParallelism(2).forEachBand(height,
+                            (fromY, toY) -> rows.addAndGet(toY - fromY));
+                    return height;
+                });
+
+        assertThat(results, is(Arrays.asList(10, 20, 30)));
+        assertThat(rows.get(), is(60));
+    }
+
+    @Test
+    public void testTilesRunInCallerContext() throws Exception {
+        TiledEvaluator evaluator = new TiledEvaluator(4, 3);
+        TaskContext context = new TaskContext();
+        AtomicInteger foreign = new AtomicInteger();
+
+        context.run(() -> evaluator.forEachTile(32, 32, (fromY, toY, fromX, toX) -> {
+            if (TaskContext.current() != context) {
+                foreign.incrementAndGet();
+            }
+        }));
+
+        assertThat(foreign.get(), is(0));
+        assertThat(context.getPercent(), is(100));
+    }
+
+    @Test
+    public void testSharedEvaluatorIsCappedByContext() throws Exception {
+        TaskContext context = new TaskContext(1);
+        Thread caller = Thread.currentThread();
+        AtomicInteger foreign = new AtomicInteger();
+
+        TiledEvaluator capped = context.call(TiledEvaluator::shared);
+        context.run(() -> TiledEvaluator.shared().forEachTile(512, 512,
+                (fromY, toY, fromX, toX) -> {
+            if (Thread.currentThread() != caller) {
+                foreign.incrementAndGet();
+            }
+        }));
+
+        assertThat(capped.getParallelism(), is(1));
+        assertThat(foreign.get(), is(0));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testCancelledContextStopsTiles() throws Exception {
+        TiledEvaluator evaluator = new TiledEvaluator(4, 3);
+        TaskContext context = new TaskContext();
+        AtomicInteger tiles = new AtomicInteger();
+
+        try {
+            context.run(() -> evaluator.forEachTile(64, 64, (fromY, toY, fromX, toX) -> {
+                if (tiles.incrementAndGet() == 10) {
+                    context.cancel();
+                }
+            }));
+        } finally {
+            assertThat(tiles.get() < 64, is(true));
+        }
+    }
+
+    @Test
+    public void testParallelFiltersMatchSequential() throws Exception {
+        Channel channel = new BufferChannel(
+                new TiledEvaluator(1, 1).evaluate(70, 90, (y, x) ->
+                        (y * 31 + x * 17 + y * x) % 256)
+        );
+
+        TiledEvaluator.configure(1, 1);
+        Channel mean = NoiseFilters.arithmeticMean(2).apply(channel);
+        Channel median = NoiseFilters.median(2).apply(channel);
+        try {
+            TiledEvaluator.configure(16, 4);
+            assertThat(NoiseFilters.arithmeticMean(2).apply(channel), is(mean));
+            assertThat(NoiseFilters.arithmeticMeanRunning(2).apply(channel),
+                       is(mean));
+            assertThat(NoiseFilters.median(2).apply(channel), is(median));
+            assertThat(NoiseFilters.medianRunning(2).apply(channel),
+                       is(median));
+        } finally {
+            TiledEvaluator.configure(TiledEvaluator.DEFAULT_TILE_SIZE,
+                    Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package pl.lodz.p.michalsosn.domain.image.channel;
+
+import org.junit.Test;
+
+import java.util.function.IntUnaryOperator;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class ValueLutTest {
+
+    private static final IntUnaryOperator HALF = value -> value / 2;
+    private static final IntUnaryOperator NEGATE = value -> 255 - value;
+
+    @Test
+    public void testTableMapsLikeOperator() throws Exception {
+        ValueLut lut = ValueLut.of(HALF);
+
+        for (int value = 0; value <= 255; ++value) {
+            assertThat(lut.applyAsInt(value), is(HALF.applyAsInt(value)));
+        }
+        assertThat(lut.applyAsInt(-10), is(-5));
+        assertThat(lut.applyAsInt(300), is(150));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsValuesOutOfRange() throws Exception {
+        ValueLut.of(value -> value + 1);
+    }
+
+    @Test
+    public void testCombinedTables() throws Exception {
+        ValueLut combined = ValueLut.of(HALF).andThen(ValueLut.of(NEGATE));
+        IntUnaryOperator expected = HALF.andThen(NEGATE);
+
+        for (int value = -10; value <= 300; ++value) {
+            assertThat(combined.applyAsInt(value), is(expected.applyAsInt(value)));
+        }
+    }
+
+    @Test
+    public void testPackedChannelMapsThroughTable() throws Exception {
+        byte[] values = new byte[12];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (byte) (i * 23);
+        }
+        PackedChannel channel = new PackedChannel(3, 4, values).crop(1, 1, 2, 3);
+
+        Channel mapped = channel.map(ValueLut.of(NEGATE));
+
+        assertThat(mapped, instanceOf(PackedChannel.class));
+        assertThat(mapped, is(channel.map(NEGATE)));
+    }
+
+}
@@ -0,0 +1,65 @@
+package pl.lodz.p.michalsosn.domain.image.spectrum;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.complex.Complex;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class ArraySpectrum2dTest {
+
+    private static final double[] VALUES = {
+            1, 2, 3, 4, 5, 6,
+            7, 8, 9, 10, 11, 12
+    };
+
+    @Test
+    public void testViewsShareValues() throws Exception {
+        ArraySpectrum2d spectrum = new ArraySpectrum2d(2, 3, VALUES);
+
+        ArraySpectrum2d row = spectrum.rowView(1);
+        assertThat(row.getHeight(), is(1));
+        assertThat(row.getWidth(), is(3));
+        assertThat(row.getRe(0, 2), is(11.0));
+        assertThat(row.getIm(0, 2), is(12.0));
+
+        ArraySpectrum2d region = spectrum.regionView(0, 1, 2, 2);
+        assertThat(region.getValue(1, 0), is(Complex.ofReIm(9, 10)));
+
+        double[] buffer = new double[4];
+        region.copyTo(0, buffer, 0);
+        assertThat(buffer, is(new double[]{3, 4, 5, 6}));
+    }
+
+    @Test
+    public void testMatchesBufferSpectrum() throws Exception {
+        BufferSpectrum2d buffer = BufferSpectrum2d.construct(2, 3, (y, x) ->
+                Complex.ofReIm(VALUES[6 * y + 2 * x], VALUES[6 * y + 2 * x + 1])
+        );
+
+        assertThat(ArraySpectrum2d.interleave(buffer), is(VALUES));
+        assertThat(ArraySpectrum2d.of(buffer),
+                   is(new ArraySpectrum2d(2, 3, VALUES)));
+        assertThat(ArraySpectrum2d.of(buffer).copyValues(),
+                   is(buffer.copyValues()));
+    }
+
+    @Test
+    public void testEqualsMatchesHashCode() throws Exception {
+        ArraySpectrum2d withNaN = new ArraySpectrum2d(1, 1, new double[] {Double.NaN, 1});
+        ArraySpectrum2d positive = new ArraySpectrum2d(1, 1, new double[] {0.0, 1});
+        ArraySpectrum2d negative = new ArraySpectrum2d(1, 1, new double[] {-0.0, 1});
+
+        assertThat(withNaN, is(new ArraySpectrum2d(1, 1, new double[] {Double.NaN, 1})));
+        assertThat(positive.equals(negative), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegionOutside() throws Exception {
+        new ArraySpectrum2d(2, 3, VALUES).regionView(1, 1, 2, 2);
+    }
+
+}
@@ -0,0 +1,68 @@
+package pl.lodz.p.michalsosn.domain.image.statistic;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
+import pl.lodz.p.michalsosn.domain.image.channel.Channel;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class SummedAreaTableTest {
+
+    @Test
+    public void testRectanglesMatchDirectSums() throws Exception {
+        Random random = new Random(5);
+        int[][] values = new int[150][131];
+        for (int[] row : values) {
+            Arrays.setAll(row, x -> random.nextInt(256));
+        }
+        Channel channel = new BufferChannel(values);
+
+        SummedAreaTable table = SummedAreaTable.of(channel);
+
+        for (int i = 0; i < 200; i++) {
+            int y = random.nextInt(150);
+            int x = random.nextInt(131);
+            int height = random.nextInt(150 - y + 1);
+            int width = random.nextInt(131 - x + 1);
+
+            long sum = 0;
+            long sumOfSquares = 0;
+            for (int itY = y; itY < y + height; itY++) {
+                for (int itX = x; itX < x + width; itX++) {
+                    sum += values[itY][itX];
+                    sumOfSquares += values[itY][itX] * values[itY][itX];
+                }
+            }
+
+            assertThat(table.sum(y, x, height, width), is(sum));
+            assertThat(table.sumOfSquares(y, x, height, width),
+                       is(sumOfSquares));
+            if (height > 0 && width > 0) {
+                double count = height * width;
+                double mean = sum / count;
+                assertThat(table.mean(y, x, height, width), closeTo(mean, 1e-9));
+                assertThat(table.variance(y, x, height, width),
+                           closeTo(sumOfSquares / count - mean * mean, 1e-6));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsRectanglesOutside() throws Exception {
+        SummedAreaTable.of(new BufferChannel(new int[4][5])).sum(2, 2, 3, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSumsOnlyTableHasNoSquares() throws Exception {
+        SummedAreaTable.sumsOf(4, 5, (y, x) -> y + x).sumOfSquares(0, 0, 1, 1);
+    }
+
+}
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
@@ -91,6 +92,75 @@ public class ChannelOpsTest {
         assertThat(convolution, is(expected));
     }
 
+    @Test
+    public void testConvolutionStrategiesAgree() throws Exception {
+        Random random = new Random(5);
+        int[][] values = new int[70][90];
+        for (int[] row : values) {
+            Arrays.setAll(row, x -> random.nextInt(256));
+        }
+        Channel channel = new BufferChannel(values);
+
+        List<Kernel> kernels = Arrays.asList(
+                Kernel.normalized(randomMatrix(random, 3, 3)),
+                Kernel.normalized(randomMatrix(random, 31, 31)),
+                Kernel.normalized(outerProduct(random, 7, 5)),
+                Kernel.normalized(outerProduct(random, 31, 31)),
+                Kernel.normalized(new double[][]{
+                        {1, 1, 1, 1}, {1, 1, 1, 1}, {1, 1, 1, 1}, {1, 1, 1, 1}
+                })
+        );
+
+        for (Kernel kernel : kernels) {
+            for (boolean crop : new boolean[]{false, true}) {
+                Channel direct = ConvolutionPlanner.convolve(
+                        channel, kernel, crop, ConvolutionPlanner.Strategy.DIRECT
+                );
+                Channel fft = ConvolutionPlanner.convolve(
+                        channel, kernel, crop, ConvolutionPlanner.Strategy.FFT
+                );
+                assertThat(fft, is(direct));
+                if (ConvolutionPlanner.separate(kernel).isPresent()) {
+                    Channel separable = ConvolutionPlanner.convolve(
+                            channel, kernel, crop,
+                            ConvolutionPlanner.Strategy.SEPARABLE
+                    );
+                    assertThat(separable, is(direct));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompassOperatorsMatchKernels() throws Exception {
+        Random random = new Random(43);
+        int[][] values = new int[41][37];
+        for (int[] row : values) {
+            Arrays.setAll(row, x -> random.nextInt(Image.MAX_VALUE + 1));
+        }
+        Channel channel = new BufferChannel(values);
+
+        for (CompassEdges.CompassSet set : CompassEdges.CompassSet.values()) {
+            Channel[] convolutions = Arrays.stream(set.getKernels())
+                    .map(kernel -> ConvolutionPlanner.convolve(
+                            channel, kernel, false,
+                            ConvolutionPlanner.Strategy.DIRECT
+                    ))
+                    .toArray(Channel[]::new);
+            Channel expected = channel.constructSimilar((y, x) -> {
+                int max = Integer.MIN_VALUE;
+                for (Channel convolution : convolutions) {
+                    max = Math.max(max, convolution.getValue(y, x));
+                }
+                return max;
+            });
+
+            Channel result = ChannelOps.compassOperator(set).apply(channel);
+
+            assertThat(result, is(expected));
+        }
+    }
+
     @Test
     public void testOpsDontCrash() throws Exception {
         List<UnaryOperator<Image>> channelOperations = Arrays.asList(
@@ -110,4 +180,24 @@ public class ChannelOpsTest {
         }
     }
 
-}
\ No newline at end of file
+    private static double[][] randomMatrix(Random random, int height, int width) {
+        double[][] matrix = new double[height][width];
+        for (double[] row : matrix) {
+            Arrays.setAll(row, x -> random.nextDouble() - 0.3);
+        }
+        return matrix;
+    }
+
+    private static double[][] outerProduct(Random random, int height, int width) {
+        double[] column = randomMatrix(random, 1, height)[0];
+        double[] row = randomMatrix(random, 1, width)[0];
+        double[][] matrix = new double[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                matrix[y][x] = column[y] * row[x];
+            }
+        }
+        return matrix;
+    }
+
+}
@@ -0,0 +1,81 @@
+package pl.lodz.p.michalsosn.domain.image.transform;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
+import pl.lodz.p.michalsosn.domain.image.channel.Channel;
+import pl.lodz.p.michalsosn.domain.image.channel.Image;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class NoiseFiltersTest {
+
+    @Test
+    public void testMedianConstantTimeMatchesSorting() throws Exception {
+        Random random = new Random(11);
+        int[][] sizes = {{1, 1}, {3, 50}, {37, 29}, {64, 70}};
+        for (int[] size : sizes) {
+            Channel channel = randomChannel(random, size[0], size[1]);
+            for (int range : new int[]{0, 1, 2, 5, 15}) {
+                Channel expected = NoiseFilters.median(range).apply(channel);
+
+                Channel result = NoiseFilters.medianConstantTime(range)
+                        .apply(channel);
+
+                assertThat(result, is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testMedianConstantTimeOnNarrowValues() throws Exception {
+        Random random = new Random(12);
+        int[][] values = new int[40][45];
+        for (int[] row : values) {
+            Arrays.setAll(row, x -> 120 + random.nextInt(3));
+        }
+        Channel channel = new BufferChannel(values);
+
+        Channel result = NoiseFilters.medianConstantTime(3).apply(channel);
+
+        assertThat(result, is(NoiseFilters.medianRunning(3).apply(channel)));
+    }
+
+    @Test
+    public void testArithmeticMeanRunningMatchesDirect() throws Exception {
+        Random random = new Random(13);
+        int[][] sizes = {{1, 1}, {2, 40}, {33, 47}};
+        for (int[] size : sizes) {
+            Channel channel = randomChannel(random, size[0], size[1]);
+            for (int range : new int[]{0, 1, 4, 30}) {
+                Channel expected = NoiseFilters.arithmeticMean(range)
+                        .apply(channel);
+
+                Channel result = NoiseFilters.arithmeticMeanRunning(range)
+                        .apply(channel);
+
+                assertThat(result, is(expected));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMedianConstantTimeRejectsNegativeRange() {
+        NoiseFilters.medianConstantTime(-1);
+    }
+
+    private static Channel randomChannel(Random random, int height, int width) {
+        int[][] values = new int[height][width];
+        for (int[] row : values) {
+            Arrays.setAll(row, x -> random.nextInt(Image.MAX_VALUE + 1));
+        }
+        return new BufferChannel(values);
+    }
+
+}
@@ -26,7 +26,7 @@ public class ValueOpsTest {
     public void testOpsDontCrash() throws Exception {
         List<UnaryOperator<Image>> valueOperations = Arrays.asList(
                 lift(lift(negate())),
-                lift(lift(precalculating(ValueOps.negate()))),
+                lift(lift(negate().andThen(changeBrightness(0)))),
                 lift(lift(changeBrightness(50))),
                 lift(lift(changeBrightness(0))),
                 lift(lift(changeBrightness(-100))),
@@ -52,7 +52,7 @@ public class ValueOpsTest {
     public void testOpsSelfInverse() throws Exception {
         List<UnaryOperator<Image>> operations = Arrays.asList(
                 lift(lift(negate())),
-                lift(lift(precalculating(ValueOps.negate())))
+                lift(lift(value -> Image.MAX_VALUE - value))
         );
 
         try (Stream<Path> paths = ResourceSet.listResources(ResourceSet.IMAGES)) {
@@ -0,0 +1,66 @@
+package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class ExtremesPyramidTest {
+
+    @Test
+    public void testSplitRegionsMatchValues() throws Exception {
+        Random random = new Random(21);
+        int[][] sizes = {{1, 1}, {1, 9}, {37, 23}, {64, 64}, {5, 70}};
+        for (int[] size : sizes) {
+            int[][] values = new int[size[0]][size[1]];
+            for (int[] row : values) {
+                Arrays.setAll(row, x -> random.nextInt(766));
+            }
+
+            ExtremesPyramid pyramid = new ExtremesPyramid(values, 3.0);
+
+            checkRegion(pyramid, values, 0, 0, 0, size[0], size[1]);
+        }
+    }
+
+    private static void checkRegion(ExtremesPyramid pyramid, int[][] values,
+                                    int depth, int y, int x,
+                                    int height, int width) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int itY = y; itY < y + height; itY++) {
+            for (int itX = x; itX < x + width; itX++) {
+                min = Math.min(min, values[itY][itX]);
+                max = Math.max(max, values[itY][itX]);
+            }
+        }
+
+        RegionStatistics statistics
+                = pyramid.statistics(depth, y, x, height, width);
+
+        assertThat(statistics.getCount(), is((long) height * width));
+        if (height * width > 0) {
+            assertThat(statistics.getMin(), is(min / 3.0));
+            assertThat(statistics.getMax(), is(max / 3.0));
+        }
+
+        if (height * width > 1) {
+            int midHeight = height / 2;
+            int midWidth = width / 2;
+            checkRegion(pyramid, values, depth + 1, y, x, midHeight, midWidth);
+            checkRegion(pyramid, values, depth + 1, y, x + midWidth,
+                        midHeight, width - midWidth);
+            checkRegion(pyramid, values, depth + 1, y + midHeight, x,
+                        height - midHeight, midWidth);
+            checkRegion(pyramid, values, depth + 1, y + midHeight, x + midWidth,
+                        height - midHeight, width - midWidth);
+        }
+    }
+
+}
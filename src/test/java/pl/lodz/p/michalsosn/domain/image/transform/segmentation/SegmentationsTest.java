@@ -1,14 +1,17 @@
 package pl.lodz.p.michalsosn.domain.image.transform.segmentation;
 
 import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.image.channel.Channel;
 import pl.lodz.p.michalsosn.domain.image.channel.Image;
 import pl.lodz.p.michalsosn.io.BufferedImageIO;
 import pl.lodz.p.michalsosn.io.ResourceSet;
 
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
-//import static org.hamcrest.CoreMatchers.is;
-//import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 
 /**
  * @author Michał Sośnicki
@@ -22,7 +25,8 @@ public class SegmentationsTest {
 //        int width = image.getWidth();
 //        Image fullImage = new GrayImage(new ConstChannel(height, width, 255));
 
-        Mask[] masks = Segmentations.splitMergeImageMaxRange(image, 100);
+        Mask[] masks = Segmentations.splitMergeImageMaxRange(image, 100)
+                .toMasks(20);
 
         for (int i = 0; i < masks.length; ++i) {
 //            Image maskedImage = fullImage.map(masks[i].toOperator());
@@ -31,4 +35,89 @@ public class SegmentationsTest {
 
 //      assertThat(recovered, is(image));
     }
+
+    @Test
+    public void splitMergeKeepsClassCounts() throws Exception {
+        // class counts and largest classes of the recursive implementation,
+        // except for the largest std-dev class of lena, it's 73322 there as
+        // rounding the average values put a two pixel region deviating by
+        // exactly 24 above the limit
+        Segmentation camera = Segmentations.splitMergeImageMaxRange(
+                readImage(ResourceSet.GRAY, "camera.bmp"), 60
+        );
+        assertThat(camera.getClassCount(), is(3406));
+        assertThat(largestClass(camera), is(26481));
+
+        Segmentation boat = Segmentations.splitMergeImageMaxStdDev(
+                readImage(ResourceSet.GRAY, "boat.bmp"), 20
+        );
+        assertThat(boat.getClassCount(), is(816));
+        assertThat(largestClass(boat), is(109218));
+
+        Image lena = readImage(ResourceSet.COLOR, "lenac.bmp");
+        Segmentation lenaRange = Segmentations.splitMergeImageMaxRange(lena, 90);
+        assertThat(lenaRange.getClassCount(), is(1071));
+        assertThat(largestClass(lenaRange), is(12688));
+        Segmentation lenaStdDev
+                = Segmentations.splitMergeImageMaxStdDev(lena, 24);
+        assertThat(lenaStdDev.getClassCount(), is(169));
+        assertThat(largestClass(lenaStdDev), is(73323));
+    }
+
+    @Test
+    public void splitMergeImageMaxRangeMakesUniformClasses() throws Exception {
+        Image image = readImage(ResourceSet.GRAY, "boat.bmp");
+        Channel channel = image.getChannels().values().iterator().next();
+
+        Segmentation segmentation
+                = Segmentations.splitMergeImageMaxRange(image, 50);
+
+        int classCount = segmentation.getClassCount();
+        int[] mins = new int[classCount];
+        int[] maxes = new int[classCount];
+        Arrays.fill(mins, Integer.MAX_VALUE);
+        Arrays.fill(maxes, Integer.MIN_VALUE);
+        channel.forEach((y, x) -> {
+            int label = segmentation.getLabel(y, x);
+            mins[label] = Math.min(mins[label], channel.getValue(y, x));
+            maxes[label] = Math.max(maxes[label], channel.getValue(y, x));
+        });
+        for (int label = 0; label < classCount; label++) {
+            assertThat(maxes[label] - mins[label] <= 50, is(true));
+        }
+    }
+
+    @Test
+    public void masksMatchLabels() throws Exception {
+        Image image = readImage(ResourceSet.GRAY, "camera.bmp");
+
+        Segmentation segmentation
+                = Segmentations.splitMergeImageMaxStdDev(image, 30);
+
+        Mask[] masks = segmentation.toMasks(5);
+        assertThat(masks.length, is(Math.min(5, segmentation.getClassCount())));
+        for (int label = 0; label < masks.length; label++) {
+            Mask mask = masks[label];
+            int finalLabel = label;
+            mask.forEach((y, x) -> assertThat(
+                    mask.isMasked(y, x),
+                    is(segmentation.getLabel(y, x) == finalLabel)
+            ));
+        }
+    }
+
+    private static Image readImage(ResourceSet resourceSet, String name)
+            throws Exception {
+        return BufferedImageIO.readImage(
+                Paths.get(resourceSet.getUri()).resolve(name)
+        );
+    }
+
+    private static int largestClass(Segmentation segmentation) {
+        int[] sizes = new int[segmentation.getClassCount()];
+        for (int label : segmentation.copyLabels()) {
+            ++sizes[label];
+        }
+        return Arrays.stream(sizes).max().getAsInt();
+    }
 }
@@ -0,0 +1,100 @@
+package pl.lodz.p.michalsosn.domain.sound;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.sound.filter.BufferFilter;
+import pl.lodz.p.michalsosn.domain.sound.filter.Filter;
+import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class EnvelopePyramidTest {
+
+    @Test
+    public void testBucketsMatchDirectStatistics() throws Exception {
+        Random random = new Random(3);
+        int[] samples = new int[1237];
+        for (int i = 0; i < samples.length; ++i) {
+            samples[i] = random.nextInt(2 * Sound.MAX_VALUE) - Sound.MAX_VALUE;
+        }
+        Sound sound = new BufferSound(samples, TimeRange.ofFrequency(8000));
+
+        EnvelopePyramid envelope = EnvelopePyramid.of(sound);
+
+        assertThat(envelope.getLevelCount(), is(8));
+        for (int level = 0; level < envelope.getLevelCount(); ++level) {
+            int size = (int) EnvelopePyramid.bucketSize(level);
+            int count = EnvelopePyramid.bucketCount(samples.length, level);
+            for (int bucket = 0; bucket < count; ++bucket) {
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                double sumOfSquares = 0.0;
+                int to = Math.min(samples.length, (bucket + 1) * size);
+                for (int i = bucket * size; i < to; ++i) {
+                    min = Math.min(min, samples[i]);
+                    max = Math.max(max, samples[i]);
+                    sumOfSquares += (double) samples[i] * samples[i];
+                }
+                double rms = Math.sqrt(sumOfSquares / (to - bucket * size));
+
+                assertThat(envelope.getMin(level, bucket), is((float) min));
+                assertThat(envelope.getMax(level, bucket), is((float) max));
+                assertThat((double) envelope.getRms(level, bucket),
+                           is(closeTo(rms, rms * 1e-5)));
+            }
+        }
+    }
+
+    @Test
+    public void testFilterStartsAtNegativeSamples() throws Exception {
+        double[] values = new double[40];
+        values[3] = -5.0;
+        values[37] = 7.0;
+        Filter filter = new BufferFilter(values, 20, TimeRange.ofFrequency(100));
+
+        EnvelopePyramid envelope = EnvelopePyramid.of(filter);
+
+        assertThat(envelope.getFirstSample(), is(-20));
+        assertThat(envelope.getEndSample(), is(20));
+        assertThat(envelope.getMin(0, 0), is(-5.0f));
+        assertThat(envelope.getMax(0, 2), is(7.0f));
+        assertThat(envelope.getMin(2, 0), is(-5.0f));
+        assertThat(envelope.getMax(2, 0), is(7.0f));
+    }
+
+    @Test
+    public void testLevelForCoversSpans() throws Exception {
+        EnvelopePyramid envelope = EnvelopePyramid.of(
+                0, 1000000, TimeRange.ofFrequency(44100), i -> i % 100
+        );
+
+        for (int span : new int[] {2000, 16000, 16001, 99999, 1000000}) {
+            int level = envelope.levelFor(span, 1000);
+            long size = EnvelopePyramid.bucketSize(level);
+
+            assertThat((span + size - 1) / size + 1, is(lessThanOrEqualTo(1000L)));
+            if (level > 0) {
+                long finer = EnvelopePyramid.bucketSize(level - 1);
+                assertThat((span + finer - 1) / finer + 1 > 1000, is(true));
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        EnvelopePyramid envelope = EnvelopePyramid.of(
+                0, 0, TimeRange.ofFrequency(10), i -> 0.0
+        );
+
+        assertThat(envelope.getLevelCount(), is(0));
+    }
+
+}
@@ -0,0 +1,57 @@
+package pl.lodz.p.michalsosn.domain.sound.transform;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.complex.Complex;
+import pl.lodz.p.michalsosn.domain.sound.TimeRange;
+import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class SpectrogramsTest {
+
+    @Test
+    public void testMagnitudesMatchSpectrogram() {
+        Sound sound = new BufferSound(
+                new Random(4).ints(1000, 0, 256).toArray(),
+                TimeRange.ofFrequency(8000)
+        );
+
+        Complex[][] spectrogram = Spectrograms.spectrogram(64, sound);
+        float[][] magnitudes = Spectrograms.magnitudes(64, sound);
+
+        assertThat(magnitudes.length, is(spectrogram.length));
+        for (int y = 0; y < magnitudes.length; ++y) {
+            assertThat(magnitudes[y].length, is(spectrogram[y].length));
+            for (int x = 0; x < magnitudes[y].length; ++x) {
+                double expected = spectrogram[y][x].getAbs();
+                assertThat((double) magnitudes[y][x],
+                           is(closeTo(expected, 1e-5 * (1 + expected))));
+            }
+        }
+    }
+
+    @Test
+    public void testGrayScalesLogarithmically() {
+        byte[][] gray = Spectrograms.toGray(new float[][] {{0f, 9f, 99f}});
+
+        assertThat(gray[0][0] & 0xff, is(0));
+        assertThat(gray[0][1] & 0xff, is(128));
+        assertThat(gray[0][2] & 0xff, is(255));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWindowNotPowerOfTwo() {
+        Spectrograms.magnitudes(100, new BufferSound(
+                new int[10], TimeRange.ofFrequency(8000)
+        ));
+    }
+
+}
@@ -0,0 +1,57 @@
+package pl.lodz.p.michalsosn.domain.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class TaskContextTest {
+
+    @Test
+    public void testContextIsBoundWhileRunning() throws Exception {
+        TaskContext outside = TaskContext.current();
+        TaskContext context = new TaskContext();
+
+        TaskContext inside = context.call(TaskContext::current);
+
+        assertThat(inside, is(context));
+        assertThat(TaskContext.current(), is(outside));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testCheckpointAfterCancel() throws Exception {
+        TaskContext context = new TaskContext();
+        context.checkpoint();
+        context.cancel();
+        context.checkpoint();
+    }
+
+    @Test
+    public void testThreadsWithoutTaskAreNeverCancelled() throws Exception {
+        TaskContext.current().cancel();
+        TaskContext.current().checkpoint();
+        assertThat(TaskContext.current().isCancelled(), is(false));
+    }
+
+    @Test
+    public void testReportsPercent() throws Exception {
+        TaskContext context = new TaskContext();
+        context.report(1, 4);
+        assertThat(context.getPercent(), is(25));
+        context.report(5, 4);
+        assertThat(context.getPercent(), is(100));
+    }
+
+    @Test
+    public void testCheckpointIntervalShrinksWithWork() throws Exception {
+        assertThat(TaskContext.checkpointInterval(0), is(1 << 20));
+        assertThat(TaskContext.checkpointInterval(1024), is(1024));
+        assertThat(TaskContext.checkpointInterval(1 << 30), is(1));
+    }
+
+}
@@ -0,0 +1,83 @@
+package pl.lodz.p.michalsosn.entities;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class DecodedResultsTest {
+
+    @Test
+    public void testGetPut() {
+        DecodedResults results = new DecodedResults(100);
+        Object first = new Object();
+        Object second = new Object();
+
+        results.put(1, first, 30);
+        results.put(2, second, 30);
+
+        assertThat(results.get(1), is(sameInstance(first)));
+        assertThat(results.get(2), is(sameInstance(second)));
+        assertThat(results.get(3), is(nullValue()));
+        assertThat(results.getWeight(), is(60L));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        DecodedResults results = new DecodedResults(100);
+        Object first = new Object();
+        Object second = new Object();
+        Object third = new Object();
+
+        results.put(1, first, 40);
+        results.put(2, second, 40);
+        results.get(1);
+        results.put(3, third, 40);
+
+        assertThat(results.getWeight(), is(80L));
+        // the second one is only weakly referenced, but still reachable here
+        assertThat(results.get(2), is(sameInstance(second)));
+        assertThat(results.getWeight(), is(80L));
+        assertThat(results.get(1), is(sameInstance(first)));
+    }
+
+    @Test
+    public void testKeepsHeavyValuesWeakly() {
+        DecodedResults results = new DecodedResults(100);
+        Object heavy = new Object();
+
+        results.put(1, heavy, 200);
+
+        assertThat(results.getWeight(), is(0L));
+        assertThat(results.get(1), is(sameInstance(heavy)));
+    }
+
+    @Test
+    public void testReplaceRemove() {
+        DecodedResults results = new DecodedResults(100);
+        Object replaced = new Object();
+        Object replacement = new Object();
+
+        results.put(1, replaced, 50);
+        results.put(1, replacement, 20);
+
+        assertThat(results.get(1), is(sameInstance(replacement)));
+        assertThat(results.getWeight(), is(20L));
+
+        results.remove(1);
+
+        assertThat(results.get(1), is(nullValue()));
+        assertThat(results.getWeight(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNegativeCapacity() {
+        new DecodedResults(-1);
+    }
+
+}
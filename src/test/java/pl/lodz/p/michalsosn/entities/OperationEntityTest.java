@@ -0,0 +1,78 @@
+package pl.lodz.p.michalsosn.entities;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.specification.OperationSpecification;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static pl.lodz.p.michalsosn.entities.ArgumentEntity.IntegerArgumentEntity;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class OperationEntityTest {
+
+    @Test
+    public void testFingerprintOfEqualInputs() {
+        OperationEntity parent = brightness(10, null);
+        parent.setFingerprint(parent.computeFingerprint(null));
+
+        String first = brightness(20, parent).computeFingerprint(parent);
+        String second = brightness(20, parent).computeFingerprint(parent);
+
+        assertThat(first.length(), is(64));
+        assertThat(first, is(second));
+    }
+
+    @Test
+    public void testFingerprintFollowsInputs() {
+        OperationEntity parent = brightness(10, null);
+        parent.setFingerprint(parent.computeFingerprint(null));
+        OperationEntity otherParent = brightness(11, null);
+        otherParent.setFingerprint(otherParent.computeFingerprint(null));
+
+        String fingerprint = brightness(20, parent).computeFingerprint(parent);
+
+        assertThat(brightness(21, parent).computeFingerprint(parent),
+                   is(not(fingerprint)));
+        assertThat(brightness(20, otherParent).computeFingerprint(otherParent),
+                   is(not(fingerprint)));
+        assertThat(brightness(20, null).computeFingerprint(null),
+                   is(not(fingerprint)));
+    }
+
+    @Test
+    public void testNoFingerprintAfterUnknownParent() {
+        OperationEntity parent = brightness(10, null);
+
+        assertThat(brightness(20, parent).computeFingerprint(parent),
+                   is(nullValue()));
+    }
+
+    @Test
+    public void testSourcesDontReadParent() {
+        OperationEntity parent = brightness(10, null);
+        OperationEntity child = brightness(20, parent);
+        child.setParent(parent);
+        OperationEntity source = new OperationEntity(
+                OperationSpecification.LOAD_IMAGE, null, null
+        );
+        source.setParent(child);
+
+        assertThat(parent.isReadingParent(), is(false));
+        assertThat(child.isReadingParent(), is(true));
+        assertThat(source.isReadingParent(), is(false));
+    }
+
+    private static OperationEntity brightness(int change, OperationEntity parent) {
+        OperationEntity entity = new OperationEntity(
+                OperationSpecification.CHANGE_BRIGHTNESS,
+                parent == null ? null : "image", null
+        );
+        entity.getArguments().put("change", new IntegerArgumentEntity(change));
+        return entity;
+    }
+
+}
@@ -0,0 +1,90 @@
+package pl.lodz.p.michalsosn.entities;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
+import pl.lodz.p.michalsosn.domain.image.channel.GrayImage;
+import pl.lodz.p.michalsosn.domain.image.channel.Image;
+import pl.lodz.p.michalsosn.domain.sound.TimeRange;
+import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.LazySound;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+import pl.lodz.p.michalsosn.io.BufferedImageIO;
+import pl.lodz.p.michalsosn.io.CompressionIO;
+import pl.lodz.p.michalsosn.io.ImageEncoding;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static pl.lodz.p.michalsosn.entities.ResultEntity.ImageResultEntity;
+import static pl.lodz.p.michalsosn.entities.ResultEntity.SoundResultEntity;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class ResultEntityTest {
+
+    @Test
+    public void testImageKeepsEncodedValues() throws Exception {
+        Image image = new GrayImage(new BufferChannel(new int[][] {
+                {0, 100, 255}, {256, 300, -1}
+        }));
+
+        ImageResultEntity entity = new ImageResultEntity(image);
+        Image decoded = BufferedImageIO.toImage(entity.getImage());
+
+        assertThat(entity.getDomainImage(), is(decoded));
+        assertThat(entity.getDomainImage(), is(sameInstance(entity.getDomainImage())));
+    }
+
+    @Test
+    public void testCompactPngReadsTheSame() throws Exception {
+        Image image = new GrayImage(new BufferChannel(new int[][] {
+                {0, 10, 20, 30}, {40, 50, 60, 70}, {80, 90, 100, 110}
+        }));
+
+        ImageResultEntity entity = new ImageResultEntity(image);
+        ByteBuffer png = entity.getCompactPng();
+
+        assertThat(png, is(ByteBuffer.wrap(ImageEncoding.COMPACT.encode(
+                BufferedImageIO.fromImage(image)
+        ))));
+        assertThat(entity.getCompactPng(), is(png));
+        assertThat(BufferedImageIO.toImage(entity.getImage()), is(image));
+    }
+
+    @Test
+    public void testCopySharesValues() throws Exception {
+        Sound sound = new BufferSound(new int[] {1, 2, 3}, TimeRange.ofFrequency(8000));
+        SoundResultEntity entity = new SoundResultEntity(sound);
+        entity.setRole("sound");
+
+        ResultEntity copy = entity.copy();
+
+        assertThat(copy, is(instanceOf(SoundResultEntity.class)));
+        SoundResultEntity soundCopy = (SoundResultEntity) copy;
+        assertThat(soundCopy.getData(), is(not(sameInstance(entity.getData()))));
+        assertThat(soundCopy.getData().toArray(),
+                   is(sameInstance(entity.getData().toArray())));
+        assertThat(soundCopy.getEnvelopeData().toArray(),
+                   is(sameInstance(entity.getEnvelopeData().toArray())));
+        assertThat(soundCopy.getSound(), is(sameInstance(sound)));
+        assertThat(soundCopy.getRole(), is(nullValue()));
+    }
+
+    @Test
+    public void testSoundEvaluatesLazySounds() throws Exception {
+        Sound sound = new LazySound(sample -> 3 * sample, 5,
+                                    TimeRange.ofFrequency(8000));
+
+        SoundResultEntity entity = new SoundResultEntity(sound);
+
+        assertThat(entity.getSound(), is(instanceOf(BufferSound.class)));
+        assertThat(entity.getSound(), is(CompressionIO.toSound(entity.getData().read())));
+    }
+
+}
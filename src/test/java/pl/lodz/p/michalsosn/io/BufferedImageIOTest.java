@@ -1,18 +1,24 @@
 package pl.lodz.p.michalsosn.io;
 
 import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.image.channel.GrayImage;
 import pl.lodz.p.michalsosn.domain.image.channel.Image;
 import pl.lodz.p.michalsosn.domain.image.channel.ImageVisitor;
+import pl.lodz.p.michalsosn.domain.image.channel.RgbImage;
 import pl.lodz.p.michalsosn.domain.Lift;
 
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Random;
 import java.util.function.IntUnaryOperator;
 import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static pl.lodz.p.michalsosn.io.BufferedImageIO.fromImage;
 import static pl.lodz.p.michalsosn.io.BufferedImageIO.readImage;
+import static pl.lodz.p.michalsosn.io.BufferedImageIO.toImage;
 import static pl.lodz.p.michalsosn.io.BufferedImageIO.writeImage;
 
 /**
@@ -62,4 +68,88 @@ public class BufferedImageIOTest {
         };
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testRgbLayouts() throws Exception {
+        int[] types = {
+                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+                BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+                BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_USHORT_565_RGB
+        };
+        Random random = new Random(5);
+        for (int type : types) {
+            BufferedImage bufferedImage = new BufferedImage(37, 301, type);
+            for (int y = 0; y < 301; y++) {
+                for (int x = 0; x < 37; x++) {
+                    bufferedImage.setRGB(x, y, random.nextInt());
+                }
+            }
+
+            RgbImage image = (RgbImage) toImage(bufferedImage);
+
+            for (int y = 0; y < 301; y++) {
+                for (int x = 0; x < 37; x++) {
+                    int color = bufferedImage.getRGB(x, y);
+                    assertThat(image.getRed().getValue(y, x), is(color >> 16 & 0xff));
+                    assertThat(image.getGreen().getValue(y, x), is(color >> 8 & 0xff));
+                    assertThat(image.getBlue().getValue(y, x), is(color & 0xff));
+                }
+            }
+            BufferedImage recovered = fromImage(image);
+            for (int y = 0; y < 301; y++) {
+                for (int x = 0; x < 37; x++) {
+                    assertThat(recovered.getRGB(x, y) & 0xffffff,
+                               is(bufferedImage.getRGB(x, y) & 0xffffff));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGrayLayouts() throws Exception {
+        Random random = new Random(6);
+        BufferedImage bufferedImage
+                = new BufferedImage(41, 299, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 299; y++) {
+            for (int x = 0; x < 41; x++) {
+                bufferedImage.getRaster().setSample(x, y, 0, random.nextInt(256));
+            }
+        }
+
+        GrayImage image = (GrayImage) toImage(bufferedImage);
+        GrayImage unpacked = new GrayImage(image.getGray().toLazy().toStrict());
+
+        for (BufferedImage recovered : new BufferedImage[] {
+                fromImage(image), fromImage(unpacked)
+        }) {
+            for (int y = 0; y < 299; y++) {
+                for (int x = 0; x < 41; x++) {
+                    int value = bufferedImage.getRaster().getSample(x, y, 0);
+                    assertThat(image.getGray().getValue(y, x), is(value));
+                    assertThat(recovered.getRaster().getSample(x, y, 0), is(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSixteenBitGray() throws Exception {
+        Random random = new Random(7);
+        BufferedImage bufferedImage
+                = new BufferedImage(37, 53, BufferedImage.TYPE_USHORT_GRAY);
+        for (int y = 0; y < 53; y++) {
+            for (int x = 0; x < 37; x++) {
+                bufferedImage.getRaster().setSample(x, y, 0, random.nextInt(65536));
+            }
+        }
+
+        GrayImage image = (GrayImage) toImage(bufferedImage);
+
+        for (int y = 0; y < 53; y++) {
+            for (int x = 0; x < 37; x++) {
+                int value = bufferedImage.getRaster().getSample(x, y, 0);
+                assertThat(image.getGray().getValue(y, x), is(value >>> 8));
+            }
+        }
+    }
+
+}
@@ -5,15 +5,35 @@ import pl.lodz.p.michalsosn.domain.image.channel.*;
 import pl.lodz.p.michalsosn.domain.image.spectrum.ImageSpectrum;
 import pl.lodz.p.michalsosn.domain.image.spectrum.Spectrum2d;
 import pl.lodz.p.michalsosn.domain.image.transform.DitFastFourierTransform;
+import pl.lodz.p.michalsosn.domain.sound.EnvelopePyramid;
+import pl.lodz.p.michalsosn.domain.sound.TimeRange;
+import pl.lodz.p.michalsosn.domain.sound.filter.BufferFilter;
+import pl.lodz.p.michalsosn.domain.sound.filter.Filter;
+import pl.lodz.p.michalsosn.domain.sound.signal.BufferSignal;
+import pl.lodz.p.michalsosn.domain.sound.signal.Signal;
+import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+import pl.lodz.p.michalsosn.domain.sound.spectrum.ArraySpectrum1d;
+import pl.lodz.p.michalsosn.domain.sound.spectrum.Spectrum1d;
+import pl.lodz.p.michalsosn.domain.sound.transform.Note;
 import pl.lodz.p.michalsosn.util.Maps;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Random;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static pl.lodz.p.michalsosn.io.BufferedImageIO.readImage;
 import static pl.lodz.p.michalsosn.io.CompressionIO.*;
 
@@ -73,4 +93,163 @@ public class CompressionIOTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testReadWriteSound() throws Exception {
+        int[] samples = new int[10000];
+        for (int i = 0; i < samples.length; ++i) {
+            samples[i] = (int) (100 * Math.sin(i / 20.0)) + 128;
+        }
+        Sound sound = new BufferSound(samples, TimeRange.ofFrequency(44100));
+
+        byte[] data = fromSound(sound);
+        Sound recovered = toSound(data);
+
+        assertThat(recovered, is(sound));
+        assertThat(data.length, is(lessThan(Integer.BYTES * samples.length / 4)));
+    }
+
+    @Test
+    public void testViewSoundInflatesOnlyReadBlocks() throws Exception {
+        int[] samples = new int[3 * (1 << 16) + 100];
+        for (int i = 0; i < samples.length; ++i) {
+            samples[i] = (int) (1000 * Math.sin(i / 30.0));
+        }
+        Sound sound = new BufferSound(samples, TimeRange.ofFrequency(44100));
+        byte[] data = fromSound(sound);
+
+        Sound view = viewSound(ByteBuffer.wrap(data));
+        assertThat(view.getLength(), is(samples.length));
+        assertThat(view.values().toArray(), is(samples));
+
+        // header, entry header, sound header and four block lengths
+        int firstBlock = 9 + 2 + "sound_blocks".length() + 10 + 20 + 16;
+        data[firstBlock] = (byte) 0xff;
+        Sound damaged = viewSound(ByteBuffer.wrap(data));
+        int last = samples.length - 1;
+        assertThat(damaged.getValue(last), is(samples[last]));
+        try {
+            damaged.getValue(0);
+            fail("The damaged block was read");
+        } catch (UncheckedIOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadWriteSoundSpectrum() throws Exception {
+        double[] values = {1.0, -2.0, 0.5, 0.25, -8.0, 3.0};
+        Spectrum1d spectrum = new ArraySpectrum1d(
+                values, TimeRange.ofFrequency(8000)
+        );
+
+        Spectrum1d recovered = toSoundSpectrum(fromSoundSpectrum(spectrum));
+
+        assertThat(recovered.getLength(), is(3));
+        assertThat(recovered.getBasicTime(), is(spectrum.getBasicTime()));
+        for (int i = 0; i < 3; ++i) {
+            assertThat(recovered.getRe(i), is(spectrum.getRe(i)));
+            assertThat(recovered.getIm(i), is(spectrum.getIm(i)));
+        }
+    }
+
+    @Test
+    public void testReadWriteSignal() throws Exception {
+        Signal signal = new BufferSignal(
+                new double[] {0.5, -1.0, 3.25, 8.0}, TimeRange.ofFrequency(100)
+        );
+
+        assertThat(toSignal(fromSignal(signal)), is(signal));
+    }
+
+    @Test
+    public void testReadWriteFilter() throws Exception {
+        Filter filter = new BufferFilter(
+                new double[] {0.25, 0.5, 1.0, 0.5, 0.25}, 2,
+                TimeRange.ofFrequency(100)
+        );
+
+        assertThat(toFilter(fromFilter(filter)), is(filter));
+    }
+
+    @Test
+    public void testReadWriteNotes() throws Exception {
+        TimeRange time = TimeRange.ofFrequency(44100);
+        Note[] notes = {
+                Note.of(440.0, 10, 20, 1000, time),
+                Note.unknown(500, time),
+                Note.of(261.6, 30, 5, 2000, time)
+        };
+
+        assertThat(toNotes(fromNotes(notes)), is(notes));
+    }
+
+    @Test
+    public void testReadWriteEnvelope() throws Exception {
+        Filter filter = new BufferFilter(
+                new Random(2).doubles(1000, -1.0, 1.0).toArray(), 300,
+                TimeRange.ofFrequency(100)
+        );
+        EnvelopePyramid envelope = EnvelopePyramid.of(filter);
+
+        EnvelopePyramid recovered = toEnvelope(fromEnvelope(envelope));
+
+        assertThat(recovered.getFirstSample(), is(-300));
+        assertThat(recovered.getLength(), is(1000));
+        assertThat(recovered.getSamplingTime(), is(filter.getSamplingTime()));
+        assertThat(recovered.getLevelCount(), is(envelope.getLevelCount()));
+        for (int level = 0; level < envelope.getLevelCount(); ++level) {
+            assertThat(recovered.getLevel(level), is(envelope.getLevel(level)));
+        }
+    }
+
+    @Test
+    public void testReadWriteImageTiles() throws Exception {
+        byte[][] rows = new byte[300][600];
+        new Random(3).nextBytes(rows[0]);
+        ImageTiles tiles = ImageTiles.ofGray(rows);
+
+        ImageTiles recovered = toImageTiles(fromImageTiles(tiles));
+
+        assertThat(recovered.getHeight(), is(300));
+        assertThat(recovered.getWidth(), is(600));
+        assertThat(recovered.getTileCount(), is(tiles.getTileCount()));
+        for (int tile = 0; tile < tiles.getTileCount(); ++tile) {
+            assertThat(recovered.getTile(tile), is(tiles.getTile(tile)));
+        }
+    }
+
+    @Test
+    public void testReadWriteEmptyDoubleArray() throws Exception {
+        double[][] recovered = toDoubleArray(fromDoubleArray(new double[0][0]));
+
+        assertThat(recovered.length, is(0));
+    }
+
+    @Test
+    public void testReadLegacyZipFormat() throws Exception {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zipStream = new ZipOutputStream(byteStream)) {
+            zipStream.putNextEntry(new ZipEntry("sound"));
+            DataOutputStream dataStream = new DataOutputStream(zipStream);
+            dataStream.writeDouble(TimeRange.ofFrequency(8000).getDuration());
+            dataStream.writeInt(3);
+            dataStream.writeInt(7);
+            dataStream.writeInt(255);
+            dataStream.writeInt(0);
+            dataStream.flush();
+            zipStream.closeEntry();
+        }
+
+        Sound recovered = toSound(byteStream.toByteArray());
+
+        assertThat(recovered, is(new BufferSound(
+                new int[] {7, 255, 0}, TimeRange.ofFrequency(8000)
+        )));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadMissingEntry() throws Exception {
+        toSignal(fromSound(new BufferSound(new int[] {1, 2}, TimeRange.ofFrequency(10))));
+    }
+
+}
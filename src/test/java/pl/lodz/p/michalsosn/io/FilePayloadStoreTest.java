@@ -0,0 +1,160 @@
+package pl.lodz.p.michalsosn.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.lodz.p.michalsosn.domain.sound.TimeRange;
+import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+import pl.lodz.p.michalsosn.util.Hashes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class FilePayloadStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRead() throws Exception {
+        PayloadStore store = new FilePayloadStore(folder.getRoot().toPath());
+        byte[] data = {1, 2, 3, 4, 5};
+
+        String key = store.write(data);
+        ByteBuffer buffer = store.read(key);
+
+        byte[] recovered = new byte[buffer.remaining()];
+        buffer.get(recovered);
+        assertThat(recovered, is(data));
+    }
+
+    @Test
+    public void testEqualPayloadsShareKeys() throws Exception {
+        PayloadStore store = new FilePayloadStore(folder.getRoot().toPath());
+
+        String first = store.write(new byte[] {7, 8, 9});
+        String second = store.write(new byte[] {7, 8, 9});
+        String third = store.write(new byte[] {7, 8});
+
+        assertThat(first, is(second));
+        assertThat(first, is(not(third)));
+        assertThat(Files.list(folder.getRoot().toPath().resolve(first.substring(0, 2)))
+                        .count(), is(1L));
+    }
+
+    @Test
+    public void testReadMappedSound() throws Exception {
+        PayloadStore store = new FilePayloadStore(folder.getRoot().toPath());
+        Sound sound = new BufferSound(
+                new int[] {0, 50, 100, 150, 200, 255}, TimeRange.ofFrequency(8000)
+        );
+
+        String key = store.write(CompressionIO.fromSound(sound));
+
+        assertThat(CompressionIO.toSound(store.read(key)), is(sound));
+    }
+
+    @Test
+    public void testWriteInBackground() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        byte[] data = {4, 5, 6};
+
+        String key;
+        try (FilePayloadStore store = new FilePayloadStore(directory, true)) {
+            key = store.write(data);
+            assertThat(toArray(store.read(key)), is(data));
+        }
+
+        assertThat(Files.exists(directory.resolve(key.substring(0, 2)).resolve(key)),
+                   is(true));
+        assertThat(toArray(new FilePayloadStore(directory).read(key)), is(data));
+    }
+
+    @Test
+    public void testFailedBackgroundWriteIsReported() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        byte[] data = {7, 7, 7};
+        String expectedKey = Hashes.sha256(data);
+        // a file in place of the subdirectory of the payload
+        Files.createFile(directory.resolve(expectedKey.substring(0, 2)));
+
+        try (FilePayloadStore store = new FilePayloadStore(directory, true)) {
+            String key = store.write(data);
+            try {
+                store.awaitWritten(key);
+                fail("The lost payload wasn't reported");
+            } catch (IOException ex) {
+                assertThat(ex.getMessage(), containsString(key));
+            }
+        }
+    }
+
+    @Test
+    public void testSweepDeletesUnreferencedPayloads() throws Exception {
+        PayloadStore store = new FilePayloadStore(folder.getRoot().toPath());
+        String kept = store.write(new byte[] {1, 2});
+        String swept = store.write(new byte[] {3, 4});
+
+        assertThat(store.sweep(Collections.singleton(kept),
+                               Instant.now().minusSeconds(60)), is(0));
+        assertThat(store.sweep(Collections.singleton(kept),
+                               Instant.now().plusSeconds(60)), is(1));
+
+        assertThat(toArray(store.read(kept)), is(new byte[] {1, 2}));
+        try {
+            store.read(swept);
+            fail("The unreferenced payload wasn't deleted");
+        } catch (IOException ex) {
+            // expected
+        }
+        assertThat(store.write(new byte[] {3, 4}), is(swept));
+        assertThat(toArray(store.read(swept)), is(new byte[] {3, 4}));
+    }
+
+    @Test
+    public void testTouchKeepsPayloadsFromSweeps() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        PayloadStore store = new FilePayloadStore(directory);
+        String key = store.write(new byte[] {5, 6});
+        Files.setLastModifiedTime(directory.resolve(key.substring(0, 2)).resolve(key),
+                                  FileTime.from(Instant.now().minusSeconds(3600)));
+
+        store.touch(key);
+
+        assertThat(store.sweep(Collections.emptySet(),
+                               Instant.now().minusSeconds(60)), is(0));
+        assertThat(toArray(store.read(key)), is(new byte[] {5, 6}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTouchMissingPayload() throws Exception {
+        new FilePayloadStore(folder.getRoot().toPath()).touch(Hashes.sha256(new byte[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsPathsAsKeys() throws Exception {
+        new FilePayloadStore(folder.getRoot().toPath()).read("../../etc/passwd");
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+
+}
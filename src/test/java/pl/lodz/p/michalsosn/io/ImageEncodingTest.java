@@ -0,0 +1,56 @@
+package pl.lodz.p.michalsosn.io;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static pl.lodz.p.michalsosn.io.BufferedImageIO.fromByteArray;
+import static pl.lodz.p.michalsosn.io.BufferedImageIO.fromImage;
+import static pl.lodz.p.michalsosn.io.BufferedImageIO.readImage;
+import static pl.lodz.p.michalsosn.io.BufferedImageIO.toImage;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class ImageEncodingTest {
+
+    @Test
+    public void testEncodingsReadTheSame() throws Exception {
+        try (Stream<Path> paths = ResourceSet.listResources(ResourceSet.IMAGES)) {
+            paths.forEach(path -> {
+                try {
+                    BufferedImage image = fromImage(readImage(path));
+                    for (ImageEncoding encoding : ImageEncoding.values()) {
+                        BufferedImage recovered
+                                = fromByteArray(encoding.encode(image));
+                        assertThat(toImage(recovered), is(toImage(image)));
+                    }
+                } catch (IOException ex) {
+                    throw new AssertionError("IO operation failed", ex);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testFastWritesSubimages() throws Exception {
+        BufferedImage image = new BufferedImage(5, 4, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < 4; ++y) {
+            for (int x = 0; x < 5; ++x) {
+                image.setRGB(x, y, 0x10203 * (5 * y + x));
+            }
+        }
+        BufferedImage subimage = image.getSubimage(1, 1, 3, 2);
+
+        BufferedImage recovered
+                = fromByteArray(ImageEncoding.FAST.encode(subimage));
+
+        assertThat(toImage(recovered), is(toImage(subimage)));
+    }
+
+}
@@ -0,0 +1,88 @@
+package pl.lodz.p.michalsosn.io;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class ImageTilesTest {
+
+    @Test
+    public void testLevelAndTileCounts() {
+        assertThat(ImageTiles.levelCount(1, 1), is(1));
+        assertThat(ImageTiles.levelCount(256, 256), is(1));
+        assertThat(ImageTiles.levelCount(100, 257), is(2));
+        assertThat(ImageTiles.levelCount(129, 4000), is(5));
+
+        assertThat(ImageTiles.tileCount(256, 256), is(1));
+        assertThat(ImageTiles.tileCount(100, 257), is(2 + 1));
+        assertThat(ImageTiles.tileCount(129, 4000), is(16 + 8 + 4 + 2 + 1));
+    }
+
+    @Test
+    public void testTilesHoldPixels() throws IOException {
+        byte[][] rows = new byte[300][520];
+        for (int y = 0; y < rows.length; ++y) {
+            for (int x = 0; x < rows[y].length; ++x) {
+                rows[y][x] = (byte) (y + 3 * x);
+            }
+        }
+
+        ImageTiles tiles = ImageTiles.ofGray(rows);
+
+        assertThat(tiles.getLevelCount(), is(3));
+        assertThat(tiles.getTileRows(0), is(2));
+        assertThat(tiles.getTileColumns(0), is(3));
+        BufferedImage corner = decode(tiles.getTile(0, 1, 2));
+        assertThat(corner.getHeight(), is(300 - 256));
+        assertThat(corner.getWidth(), is(520 - 512));
+        for (int y = 0; y < corner.getHeight(); ++y) {
+            for (int x = 0; x < corner.getWidth(); ++x) {
+                assertThat(corner.getRaster().getSample(x, y, 0),
+                           is(rows[256 + y][512 + x] & 0xff));
+            }
+        }
+    }
+
+    @Test
+    public void testLevelsAverageSquares() throws IOException {
+        byte[][] rows = new byte[3][513];
+        for (byte[] row : rows) {
+            for (int x = 0; x < row.length; ++x) {
+                row[x] = (byte) (x % 2 == 0 ? 10 : 20);
+            }
+        }
+        rows[2][512] = (byte) 200;
+
+        ImageTiles tiles = ImageTiles.ofGray(rows);
+
+        assertThat(tiles.getLevelCount(), is(3));
+        BufferedImage preview = decode(tiles.getPreview());
+        assertThat(preview.getHeight(), is(1));
+        assertThat(preview.getWidth(), is(129));
+        assertThat(preview.getRaster().getSample(0, 0, 0), is(15));
+        assertThat(preview.getRaster().getSample(128, 0, 0), is(105));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testMissingTile() throws IOException {
+        ImageTiles.ofGray(new byte[10][10]).getTile(0, 0, 1);
+    }
+
+    private static BufferedImage decode(ByteBuffer tile) throws IOException {
+        byte[] bytes = new byte[tile.remaining()];
+        tile.get(bytes);
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+}
@@ -1,9 +1,18 @@
 package pl.lodz.p.michalsosn.io;
 
 import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.sound.TimeRange;
+import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
 import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
 
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -74,4 +83,87 @@ public class SoundIOTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testWriteWaveMatchesAudioSystem() throws Exception {
+        try (Stream<Path> paths = ResourceSet.listResources(ResourceSet.SOUNDS)) {
+            paths.forEach(path -> {
+                try {
+                    Sound sound = readSound(path);
+                    byte[] expected = writeSound(sound, AudioType.WAVE);
+
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    writeWave(sound, 0, waveLength(sound), outputStream);
+
+                    assertThat(waveLength(sound), is((long) expected.length));
+                    assertThat(outputStream.toByteArray(), is(expected));
+                } catch (Exception ex) {
+                    throw new AssertionError(ex);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testWriteWaveRanges() throws Exception {
+        Sound sound = new BufferSound(
+                new int[] {0, 255, 128, 1, 77, 200, 13}, TimeRange.ofFrequency(8000)
+        );
+        byte[] whole = writeSound(sound, AudioType.WAVE);
+
+        long[][] ranges = {{0, 10}, {40, 50}, {45, 46}, {44, 58}, {13, 13}};
+        for (long[] range : ranges) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            writeWave(sound, range[0], range[1], outputStream);
+
+            assertThat(outputStream.toByteArray(), is(Arrays.copyOfRange(
+                    whole, (int) range[0], (int) range[1]
+            )));
+        }
+    }
+
+    @Test
+    public void testReadSoundMixesChannels() throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(4 * 3).order(ByteOrder.LITTLE_ENDIAN);
+        data.asShortBuffer().put(new short[] {100, 300, -32768, -32768, 32767, 0});
+        AudioFormat format = new AudioFormat(8000, 16, 2, true, false);
+
+        Sound sound = readSound(new AudioInputStream(
+                new ByteArrayInputStream(data.array()), format, 3
+        ));
+
+        assertThat(sound.getLength(), is(3));
+        assertThat(sound.getSamplingTime(), is(TimeRange.ofFrequency(8000)));
+        assertThat(sound.values().toArray(), is(new int[] {200, -32768, 16383}));
+    }
+
+    @Test
+    public void testReadSoundScalesSamples() throws Exception {
+        byte[] data = {
+                0x00, 0x00, (byte) 0x80,
+                (byte) 0xff, (byte) 0xff, 0x7f,
+                0x00, 0x00, 0x00
+        };
+        AudioFormat format = new AudioFormat(8000, 24, 1, true, false);
+
+        Sound sound = readSound(new AudioInputStream(
+                new ByteArrayInputStream(data), format, 3
+        ));
+
+        assertThat(sound.values().toArray(), is(new int[] {-32768, 32767, 0}));
+    }
+
+    @Test
+    public void testConvertAudioKeepsWave() throws Exception {
+        Sound sound = new BufferSound(
+                new int[] {0, -3, 5, 32767, -32768}, TimeRange.ofFrequency(8000)
+        );
+        byte[] wave = writeSound(sound, AudioType.WAVE);
+
+        byte[] converted = convertAudio(wave);
+
+        assertThat(converted, is(wave));
+        assertThat(readSound(converted).values().toArray(),
+                   is(sound.values().toArray()));
+    }
+
+}
@@ -0,0 +1,48 @@
+package pl.lodz.p.michalsosn.io;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class SpillBufferTest {
+
+    @Test
+    public void testKeepsValuesInMemory() throws Exception {
+        try (SpillBuffer buffer = new SpillBuffer(100)) {
+            buffer.put(new short[] {1, 2, 3, 4}, 1, 2);
+            buffer.put(new short[] {-5}, 0, 1);
+
+            ShortBuffer values = buffer.toShortBuffer();
+
+            assertThat(values.isDirect(), is(false));
+            assertThat(values, is(ShortBuffer.wrap(new short[] {2, 3, -5})));
+        }
+    }
+
+    @Test
+    public void testSpillsToFile() throws Exception {
+        short[] expected = new short[100000];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = (short) (i * 7);
+        }
+
+        try (SpillBuffer buffer = new SpillBuffer(1000)) {
+            for (int i = 0; i < expected.length; i += 300) {
+                buffer.put(expected, i, Math.min(300, expected.length - i));
+            }
+
+            ShortBuffer values = buffer.toShortBuffer();
+
+            assertThat(buffer.size(), is(expected.length));
+            assertThat(values.isDirect(), is(true));
+            assertThat(values, is(ShortBuffer.wrap(expected)));
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package pl.lodz.p.michalsosn.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.util.TaskContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class OperationSchedulerTest {
+
+    private OperationScheduler scheduler;
+    private CountDownLatch blocker;
+    private List<String> order;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new OperationScheduler(1, 4);
+        blocker = new CountDownLatch(1);
+        order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocking = new CountDownLatch(1);
+        scheduler.submitFollowing("blocker", 1, () -> {
+            blocking.countDown();
+            return blocker.await(10, TimeUnit.SECONDS);
+        });
+        blocking.await(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        blocker.countDown();
+        scheduler.close();
+    }
+
+    private Future<String> submit(String owner, int weight, String name) {
+        scheduler.checkCapacity();
+        return scheduler.submitFollowing(owner, weight, () -> {
+            order.add(name);
+            return name;
+        });
+    }
+
+    @Test
+    public void testOwnersTakeTurns() throws Exception {
+        submit("a", 1, "a1");
+        submit("a", 1, "a2");
+        Future<String> last = submit("a", 1, "a3");
+        submit("b", 1, "b1");
+
+        blocker.countDown();
+        last.get(10, TimeUnit.SECONDS);
+        assertThat(order, is(Arrays.asList("a1", "b1", "a2", "a3")));
+    }
+
+    @Test
+    public void testHeavyTasksCountMore() throws Exception {
+        submit("a", 8, "a1");
+        Future<String> last = submit("a", 8, "a2");
+        submit("b", 1, "b1");
+        submit("b", 1, "b2");
+
+        blocker.countDown();
+        last.get(10, TimeUnit.SECONDS);
+        assertThat(order, is(Arrays.asList("a1", "b1", "b2", "a2")));
+    }
+
+    @Test(expected = OperationQueueFullException.class)
+    public void testRejectsPastCapacity() throws Exception {
+        for (int i = 0; i < 5; ++i) {
+            submit("a", 1, "a" + i);
+        }
+    }
+
+    @Test
+    public void testFollowingTasksAreAccepted() throws Exception {
+        for (int i = 0; i < 4; ++i) {
+            submit("a", 1, "a" + i);
+        }
+        Future<String> following = scheduler.submitFollowing("a", 1, () -> "b");
+
+        blocker.countDown();
+        assertThat(following.get(10, TimeUnit.SECONDS), is("b"));
+    }
+
+    @Test
+    public void testCancelledTasksLeaveTheQueue() throws Exception {
+        Future<String> cancelled = submit("a", 1, "a1");
+        Future<String> kept = submit("a", 1, "a2");
+        assertThat(scheduler.getStatistics().getQueued(), is(2));
+
+        cancelled.cancel(true);
+        assertThat(scheduler.getStatistics().getQueued(), is(1));
+
+        blocker.countDown();
+        kept.get(10, TimeUnit.SECONDS);
+        assertThat(order, is(Collections.singletonList("a2")));
+    }
+
+    @Test
+    public void testCancelStopsRunningTask() throws Exception {
+        blocker.countDown();
+        CountDownLatch started = new CountDownLatch(1);
+        Future<Integer> endless = scheduler.submitFollowing("a", 1, () -> {
+            started.countDown();
+            while (true) {
+                TaskContext.current().checkpoint();
+            }
+        });
+        started.await(10, TimeUnit.SECONDS);
+
+        endless.cancel(true);
+        assertThat(submit("a", 1, "a1").get(10, TimeUnit.SECONDS), is("a1"));
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        submit("a", 1, "a1");
+        submit("b", 1, "b1");
+        Future<String> last = submit("b", 1, "b2");
+
+        OperationScheduler.Statistics statistics = scheduler.getStatistics();
+        assertThat(statistics.getWorkers(), is(1));
+        assertThat(statistics.getRunning(), is(1));
+        assertThat(statistics.getQueued(), is(3));
+        assertThat(statistics.getSubmitted(), is(4L));
+        assertThat(statistics.getQueuedByOwner().get("b"), is(2));
+
+        blocker.countDown();
+        last.get(10, TimeUnit.SECONDS);
+        assertThat(scheduler.getStatistics().getQueued(), is(0));
+        assertThat(scheduler.getStatistics().getQueuedByOwner().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testTasksAreLimitedToTheirParallelism() throws Exception {
+        OperationScheduler limited = new OperationScheduler(1, 1, 3);
+        try {
+            Future<Integer> parallelism = limited.submitFollowing("a", 1,
+                    () -> TaskContext.current().getParallelism());
+
+            assertThat(parallelism.get(10, TimeUnit.SECONDS), is(3));
+        } finally {
+            limited.close();
+        }
+    }
+
+}
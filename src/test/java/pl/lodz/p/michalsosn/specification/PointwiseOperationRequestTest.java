@@ -0,0 +1,159 @@
+package pl.lodz.p.michalsosn.specification;
+
+import org.junit.Test;
+import pl.lodz.p.michalsosn.domain.image.channel.BufferChannel;
+import pl.lodz.p.michalsosn.domain.image.channel.GrayImage;
+import pl.lodz.p.michalsosn.domain.image.channel.Image;
+import pl.lodz.p.michalsosn.domain.sound.TimeRange;
+import pl.lodz.p.michalsosn.domain.sound.sound.BufferSound;
+import pl.lodz.p.michalsosn.domain.sound.sound.Sound;
+import pl.lodz.p.michalsosn.entities.ArgumentEntity;
+import pl.lodz.p.michalsosn.entities.OperationEntity;
+import pl.lodz.p.michalsosn.entities.ResultEntity;
+import pl.lodz.p.michalsosn.entities.ResultEntity.ImageResultEntity;
+import pl.lodz.p.michalsosn.entities.ResultEntity.SoundResultEntity;
+import pl.lodz.p.michalsosn.entities.ResultType;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static pl.lodz.p.michalsosn.domain.Lift.lift;
+import static pl.lodz.p.michalsosn.domain.image.transform.ValueOps.changeBrightness;
+import static pl.lodz.p.michalsosn.domain.image.transform.ValueOps.clipBelow;
+import static pl.lodz.p.michalsosn.domain.image.transform.ValueOps.negate;
+import static pl.lodz.p.michalsosn.domain.sound.transform.SampleOps.clipAbove;
+import static pl.lodz.p.michalsosn.domain.sound.transform.SampleOps.scaleValue;
+import static pl.lodz.p.michalsosn.entities.ArgumentEntity.DoubleArgumentEntity;
+import static pl.lodz.p.michalsosn.entities.ArgumentEntity.IntegerArgumentEntity;
+
+/**
+ * @author Michał Sośnicki
+ */
+public class PointwiseOperationRequestTest {
+
+    private static final Image IMAGE = new GrayImage(new BufferChannel(new int[][] {
+            {0, 40, 80, 120}, {160, 200, 240, 255}
+    }));
+
+    @Test
+    public void testRunIsEvaluatedByItsLastOperation() throws Exception {
+        OperationEntity source = source(OperationSpecification.LOAD_IMAGE,
+                                        "image", new ImageResultEntity(IMAGE));
+        OperationEntity brightness = append(source, OperationSpecification
+                .CHANGE_BRIGHTNESS, "change", new IntegerArgumentEntity(100));
+        OperationEntity negation = append(brightness,
+                                          OperationSpecification.NEGATE, null, null);
+        OperationEntity clipping = append(negation, OperationSpecification
+                .CLIP_BELOW, "threshold", new IntegerArgumentEntity(30));
+
+        execute(brightness, negation, clipping);
+
+        ImageResultEntity brightened = imageOf(brightness);
+        ImageResultEntity negated = imageOf(negation);
+        ImageResultEntity clipped = imageOf(clipping);
+        assertThat(brightened.isDeferred(), is(true));
+        assertThat(negated.isDeferred(), is(true));
+        assertThat(clipped.isDeferred(), is(false));
+
+        Image expectedBrightened = IMAGE.map(lift(changeBrightness(100)));
+        Image expectedNegated = expectedBrightened.map(lift(negate()));
+        Image expectedClipped = expectedNegated.map(lift(clipBelow(30)));
+        assertThat(clipped.getDomainImage(), is(expectedClipped));
+        assertThat(negated.getDomainImage(), is(expectedNegated));
+        assertThat(brightened.getDomainImage(), is(expectedBrightened));
+        assertThat(negated.isDeferred(), is(true));
+    }
+
+    @Test
+    public void testViewedResultIsStored() throws Exception {
+        OperationEntity source = source(OperationSpecification.LOAD_IMAGE,
+                                        "image", new ImageResultEntity(IMAGE));
+        OperationEntity negation = append(source,
+                                          OperationSpecification.NEGATE, null, null);
+        OperationEntity brightness = append(negation, OperationSpecification
+                .CHANGE_BRIGHTNESS, "change", new IntegerArgumentEntity(-20));
+
+        execute(negation, brightness);
+        ImageResultEntity negated = imageOf(negation);
+        negated.getCompactPng();
+
+        assertThat(negated.isDeferred(), is(false));
+        assertThat(negated.getDomainImage(), is(IMAGE.map(lift(negate()))));
+    }
+
+    @Test
+    public void testSoundRunIsEvaluatedByItsLastOperation() throws Exception {
+        Sound sound = new BufferSound(new int[] {-3000, -100, 0, 200, 5000},
+                                      TimeRange.ofFrequency(8000));
+        OperationEntity source = source(OperationSpecification.LOAD_SOUND,
+                                        "sound", new SoundResultEntity(sound));
+        OperationEntity scaling = append(source, OperationSpecification
+                .SCALE_VALUE, "change", new DoubleArgumentEntity(2.0));
+        OperationEntity clipping = append(scaling, OperationSpecification
+                .CLIP_ABOVE, "threshold", new IntegerArgumentEntity(1000));
+
+        execute(scaling, clipping);
+
+        SoundResultEntity scaled = soundOf(scaling);
+        SoundResultEntity clipped = soundOf(clipping);
+        assertThat(scaled.isDeferred(), is(true));
+        assertThat(clipped.isDeferred(), is(false));
+        assertThat(clipped.getSound().values().toArray(),
+                   is(new int[] {-1000, -200, 0, 400, 1000}));
+        assertThat(scaled.getSound().values().toArray(),
+                   is(sound.map(scaleValue(2.0)).values().toArray()));
+        assertThat(clipped.getSound().values().toArray(),
+                   is(sound.map(scaleValue(2.0).andThen(clipAbove(1000)))
+                           .values().toArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingLastResultFailsExecution() throws Exception {
+        OperationEntity source = source(OperationSpecification.LOAD_SOUND,
+                                        "sound", new SoundResultEntity(
+                new BufferSound(new int[] {0}, TimeRange.ofFrequency(8000))
+        ));
+        OperationEntity negation = append(source,
+                                          OperationSpecification.NEGATE, null, null);
+        append(negation, OperationSpecification.NEGATE, null, null);
+
+        execute(negation);
+    }
+
+    private static OperationEntity source(OperationSpecification specification,
+                                          String role, ResultEntity result) {
+        OperationEntity entity = new OperationEntity(specification, null, null);
+        result.setOperation(entity);
+        result.setRole(role);
+        entity.getResults().put(role, result);
+        return entity;
+    }
+
+    private static OperationEntity append(OperationEntity parent,
+                                          OperationSpecification specification,
+                                          String name, ArgumentEntity argument) {
+        String role = specification.getLastResult().contains(ResultType.IMAGE)
+                    ? "image" : "sound";
+        OperationEntity entity = new OperationEntity(specification, role, null);
+        if (argument != null) {
+            entity.getArguments().put(name, argument);
+        }
+        entity.setParent(parent);
+        parent.setChild(entity);
+        return entity;
+    }
+
+    private static void execute(OperationEntity... operations) throws Exception {
+        for (OperationEntity operation : operations) {
+            operation.dentitize().execute(operation, operation.getParent());
+        }
+    }
+
+    private static ImageResultEntity imageOf(OperationEntity operation) {
+        return (ImageResultEntity) operation.getResults().get("image");
+    }
+
+    private static SoundResultEntity soundOf(OperationEntity operation) {
+        return (SoundResultEntity) operation.getResults().get("sound");
+    }
+
+}